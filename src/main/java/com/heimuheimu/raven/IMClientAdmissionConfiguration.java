@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven;
+
+/**
+ * IMServer 接收连接时使用的准入控制配置信息，用于在大量 IM 客户端同时重连时平滑接收连接，超出限制的连接将在创建 IM 客户端之前被直接关闭。
+ *
+ * <p>
+ *     准入控制包括以下三项限制，任意一项小于等于 0 时表示不启用该项限制：
+ *     <ul>
+ *         <li>全局接收速率：以令牌桶方式限制每秒接收的连接数量</li>
+ *         <li>握手中连接数量：已建立但尚未发送过任何数据的 IM 客户端数量，超过握手超时时间的 IM 客户端不再计入</li>
+ *         <li>单个来源地址接收速率：以令牌桶方式限制同一 IP 每秒接收的连接数量，来源地址记录在固定容量的 LRU 表中</li>
+ *     </ul>
+ * </p>
+ *
+ * <p><strong>注意：</strong>位于 NAT 之后的大量终端可能共用同一个来源地址，设置单个来源地址接收速率时应考虑此类场景。</p>
+ *
+ * <p><strong>说明：</strong>IMClientAdmissionConfiguration 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientAdmissionConfiguration {
+
+    /**
+     * 每秒允许接收的连接数量，如果小于等于 0，则不限制，默认为 2000
+     */
+    private volatile int acceptRate = 2000;
+
+    /**
+     * 全局令牌桶容量，即允许瞬时接收的连接数量，如果小于接收速率，则使用接收速率，默认为 4000
+     */
+    private volatile int acceptBurst = 4000;
+
+    /**
+     * 允许同时处于握手中的 IM 客户端最大数量，如果小于等于 0，则不限制，默认为 5000
+     */
+    private volatile int maxHandshakeCount = 5000;
+
+    /**
+     * 握手超时时间，单位：毫秒，超过该时间仍未发送数据的 IM 客户端不再计入握手中数量，默认为 10000 毫秒
+     */
+    private volatile int handshakeTimeout = 10000;
+
+    /**
+     * 单个来源地址每秒允许接收的连接数量，如果小于等于 0，则不限制，默认为 20
+     */
+    private volatile int addressAcceptRate = 20;
+
+    /**
+     * 单个来源地址令牌桶容量，如果小于单个来源地址接收速率，则使用该速率，默认为 100
+     */
+    private volatile int addressAcceptBurst = 100;
+
+    /**
+     * 来源地址 LRU 表容量，默认为 65536
+     */
+    private volatile int addressCapacity = 65536;
+
+    /**
+     * 获得每秒允许接收的连接数量，如果小于等于 0，则不限制，默认为 2000。
+     *
+     * @return 每秒允许接收的连接数量
+     */
+    public int getAcceptRate() {
+        return acceptRate;
+    }
+
+    /**
+     * 设置每秒允许接收的连接数量，如果小于等于 0，则不限制。
+     *
+     * @param acceptRate 每秒允许接收的连接数量
+     */
+    public void setAcceptRate(int acceptRate) {
+        this.acceptRate = acceptRate;
+    }
+
+    /**
+     * 获得全局令牌桶容量，即允许瞬时接收的连接数量，默认为 4000。
+     *
+     * @return 全局令牌桶容量
+     */
+    public int getAcceptBurst() {
+        return acceptBurst;
+    }
+
+    /**
+     * 设置全局令牌桶容量，即允许瞬时接收的连接数量，如果小于接收速率，则使用接收速率。
+     *
+     * @param acceptBurst 全局令牌桶容量
+     */
+    public void setAcceptBurst(int acceptBurst) {
+        this.acceptBurst = acceptBurst;
+    }
+
+    /**
+     * 获得允许同时处于握手中的 IM 客户端最大数量，如果小于等于 0，则不限制，默认为 5000。
+     *
+     * @return 允许同时处于握手中的 IM 客户端最大数量
+     */
+    public int getMaxHandshakeCount() {
+        return maxHandshakeCount;
+    }
+
+    /**
+     * 设置允许同时处于握手中的 IM 客户端最大数量，即已建立但尚未发送过任何数据的 IM 客户端数量，如果小于等于 0，则不限制。
+     *
+     * @param maxHandshakeCount 允许同时处于握手中的 IM 客户端最大数量
+     */
+    public void setMaxHandshakeCount(int maxHandshakeCount) {
+        this.maxHandshakeCount = maxHandshakeCount;
+    }
+
+    /**
+     * 获得握手超时时间，单位：毫秒，默认为 10000 毫秒。
+     *
+     * @return 握手超时时间
+     */
+    public int getHandshakeTimeout() {
+        return handshakeTimeout;
+    }
+
+    /**
+     * 设置握手超时时间，单位：毫秒，超过该时间仍未发送数据的 IM 客户端不再计入握手中数量。
+     *
+     * @param handshakeTimeout 握手超时时间
+     */
+    public void setHandshakeTimeout(int handshakeTimeout) {
+        this.handshakeTimeout = handshakeTimeout;
+    }
+
+    /**
+     * 获得单个来源地址每秒允许接收的连接数量，如果小于等于 0，则不限制，默认为 20。
+     *
+     * @return 单个来源地址每秒允许接收的连接数量
+     */
+    public int getAddressAcceptRate() {
+        return addressAcceptRate;
+    }
+
+    /**
+     * 设置单个来源地址每秒允许接收的连接数量，如果小于等于 0，则不限制。
+     *
+     * @param addressAcceptRate 单个来源地址每秒允许接收的连接数量
+     */
+    public void setAddressAcceptRate(int addressAcceptRate) {
+        this.addressAcceptRate = addressAcceptRate;
+    }
+
+    /**
+     * 获得单个来源地址令牌桶容量，默认为 100。
+     *
+     * @return 单个来源地址令牌桶容量
+     */
+    public int getAddressAcceptBurst() {
+        return addressAcceptBurst;
+    }
+
+    /**
+     * 设置单个来源地址令牌桶容量，如果小于单个来源地址接收速率，则使用该速率。
+     *
+     * @param addressAcceptBurst 单个来源地址令牌桶容量
+     */
+    public void setAddressAcceptBurst(int addressAcceptBurst) {
+        this.addressAcceptBurst = addressAcceptBurst;
+    }
+
+    /**
+     * 获得来源地址 LRU 表容量，默认为 65536。
+     *
+     * @return 来源地址 LRU 表容量
+     */
+    public int getAddressCapacity() {
+        return addressCapacity;
+    }
+
+    /**
+     * 设置来源地址 LRU 表容量，超出容量时将淘汰最久未接收过连接的来源地址。
+     *
+     * @param addressCapacity 来源地址 LRU 表容量
+     */
+    public void setAddressCapacity(int addressCapacity) {
+        this.addressCapacity = addressCapacity;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientAdmissionConfiguration{" +
+                "acceptRate=" + acceptRate +
+                ", acceptBurst=" + acceptBurst +
+                ", maxHandshakeCount=" + maxHandshakeCount +
+                ", handshakeTimeout=" + handshakeTimeout +
+                ", addressAcceptRate=" + addressAcceptRate +
+                ", addressAcceptBurst=" + addressAcceptBurst +
+                ", addressCapacity=" + addressCapacity +
+                '}';
+    }
+}
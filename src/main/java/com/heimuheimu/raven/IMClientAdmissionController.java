@@ -0,0 +1,386 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven;
+
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.monitor.IMClientMonitor;
+import com.heimuheimu.raven.util.LogBuildUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.net.Inet4Address;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.SocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * IMServer 接收连接时使用的准入控制器，在创建 IM 客户端之前判断是否接收该连接，具体规则请参考 {@link IMClientAdmissionConfiguration}。
+ *
+ * <p>
+ *     来源地址令牌桶保存在 4 路组相联的定长数组中，每个来源地址占用 24 字节，组内按最后接收时间淘汰，不会随来源地址数量增长产生额外的内存分配。
+ * </p>
+ *
+ * <p><strong>注意：</strong>IMClientAdmissionController 类是非线程安全的，只允许在 IMServer 接收连接的线程中使用。</p>
+ *
+ * @author heimuheimu
+ */
+class IMClientAdmissionController {
+
+    private static final Logger RAVEN_IM_CLIENT_LOG = LoggerFactory.getLogger("RAVEN_IM_CLIENT_LOG");
+
+    /**
+     * 来源地址 LRU 表每组包含的槽位数量
+     */
+    private static final int ADDRESS_WAYS = 4;
+
+    /**
+     * 连续两次清理握手中 IM 客户端的最小间隔时间，单位：纳秒
+     */
+    private static final long HANDSHAKE_PRUNE_INTERVAL = TimeUnit.MILLISECONDS.toNanos(1);
+
+    /**
+     * 连续两次打印拒绝日志的最小间隔时间，单位：纳秒
+     */
+    private static final long REJECTED_LOG_INTERVAL = TimeUnit.SECONDS.toNanos(1);
+
+    /**
+     * 全局每纳秒生成的令牌数量，如果小于等于 0，则不限制全局接收速率
+     */
+    private final double acceptTokensPerNano;
+
+    /**
+     * 全局令牌桶容量
+     */
+    private final double acceptBurst;
+
+    /**
+     * 全局令牌桶中剩余的令牌数量
+     */
+    private double acceptTokens;
+
+    /**
+     * 全局令牌桶最后补充令牌的时间，单位：纳秒
+     */
+    private long acceptRefillNanoTime;
+
+    /**
+     * 允许同时处于握手中的 IM 客户端最大数量，如果小于等于 0，则不限制
+     */
+    private final int maxHandshakeCount;
+
+    /**
+     * 握手超时时间，单位：纳秒
+     */
+    private final long handshakeTimeoutNanos;
+
+    /**
+     * 握手中的 IM 客户端队列，按接收顺序排列
+     */
+    private final ArrayDeque<HandshakingClient> handshakingQueue = new ArrayDeque<>();
+
+    /**
+     * 最后一次清理握手中 IM 客户端的时间，单位：纳秒
+     */
+    private long lastPruneNanoTime;
+
+    /**
+     * 单个来源地址每纳秒生成的令牌数量，如果小于等于 0，则不限制单个来源地址接收速率
+     */
+    private final double addressTokensPerNano;
+
+    /**
+     * 单个来源地址令牌桶容量
+     */
+    private final double addressBurst;
+
+    /**
+     * 来源地址 LRU 表中的来源地址 Key，0 表示空槽位
+     */
+    private final long[] addressKeys;
+
+    /**
+     * 来源地址 LRU 表中各来源地址剩余的令牌数量
+     */
+    private final double[] addressTokens;
+
+    /**
+     * 来源地址 LRU 表中各来源地址最后补充令牌的时间，同时作为 LRU 淘汰依据，单位：纳秒
+     */
+    private final long[] addressRefillNanoTimes;
+
+    /**
+     * 来源地址 LRU 表组数掩码
+     */
+    private final int addressSetMask;
+
+    /**
+     * 上次打印拒绝日志后因超过全局接收速率被拒绝的连接数量
+     */
+    private long rateLimitedCount = 0;
+
+    /**
+     * 上次打印拒绝日志后因握手中 IM 客户端过多被拒绝的连接数量
+     */
+    private long handshakeLimitedCount = 0;
+
+    /**
+     * 上次打印拒绝日志后因超过单个来源地址接收速率被拒绝的连接数量
+     */
+    private long addressLimitedCount = 0;
+
+    /**
+     * 最后一次打印拒绝日志的时间，单位：纳秒
+     */
+    private long lastLogNanoTime;
+
+    /**
+     * 构造一个 IMClientAdmissionController 实例。
+     *
+     * @param configuration 准入控制配置信息，不允许为 {@code null}
+     */
+    IMClientAdmissionController(IMClientAdmissionConfiguration configuration) {
+        long nanoTime = System.nanoTime();
+        int acceptRate = configuration.getAcceptRate();
+        this.acceptTokensPerNano = acceptRate > 0 ? acceptRate / 1e9 : 0;
+        this.acceptBurst = Math.max(configuration.getAcceptBurst(), Math.max(acceptRate, 1));
+        this.acceptTokens = acceptBurst;
+        this.acceptRefillNanoTime = nanoTime;
+
+        this.maxHandshakeCount = configuration.getMaxHandshakeCount();
+        this.handshakeTimeoutNanos = TimeUnit.MILLISECONDS.toNanos(Math.max(configuration.getHandshakeTimeout(), 0));
+        this.lastPruneNanoTime = nanoTime - HANDSHAKE_PRUNE_INTERVAL;
+
+        int addressAcceptRate = configuration.getAddressAcceptRate();
+        this.addressTokensPerNano = addressAcceptRate > 0 ? addressAcceptRate / 1e9 : 0;
+        this.addressBurst = Math.max(configuration.getAddressAcceptBurst(), Math.max(addressAcceptRate, 1));
+        int setCount = 1;
+        if (addressTokensPerNano > 0) {
+            int capacity = Math.min(Math.max(configuration.getAddressCapacity(), ADDRESS_WAYS), 1 << 24);
+            while (setCount * ADDRESS_WAYS < capacity) {
+                setCount <<= 1;
+            }
+            this.addressKeys = new long[setCount * ADDRESS_WAYS];
+            this.addressTokens = new double[setCount * ADDRESS_WAYS];
+            this.addressRefillNanoTimes = new long[setCount * ADDRESS_WAYS];
+        } else {
+            this.addressKeys = null;
+            this.addressTokens = null;
+            this.addressRefillNanoTimes = null;
+        }
+        this.addressSetMask = setCount - 1;
+        this.lastLogNanoTime = nanoTime;
+    }
+
+    /**
+     * 判断是否接收新建立的连接，返回 0 表示允许接收，否则返回 {@link IMClientMonitor} 中定义的拒绝代码。
+     *
+     * @param socketChannel 新建立的连接，不允许为 {@code null}
+     * @param nanoTime 当前时间，单位：纳秒
+     * @return 0 或拒绝代码
+     */
+    int admit(SocketChannel socketChannel, long nanoTime) {
+        int rejectCode = check(socketChannel, nanoTime);
+        if (rejectCode != 0) {
+            if (rejectCode == IMClientMonitor.REJECT_CODE_RATE_LIMITED) {
+                rateLimitedCount++;
+            } else if (rejectCode == IMClientMonitor.REJECT_CODE_TOO_MANY_HANDSHAKES) {
+                handshakeLimitedCount++;
+            } else {
+                addressLimitedCount++;
+            }
+            if (nanoTime - lastLogNanoTime >= REJECTED_LOG_INTERVAL) {
+                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                params.put("rateLimitedCount", rateLimitedCount);
+                params.put("handshakeLimitedCount", handshakeLimitedCount);
+                params.put("addressLimitedCount", addressLimitedCount);
+                params.put("handshakeCount", handshakingQueue.size());
+                params.put("interval", TimeUnit.NANOSECONDS.toMillis(nanoTime - lastLogNanoTime) + "ms");
+                RAVEN_IM_CLIENT_LOG.warn("IMClient fails to establish: `rejected by admission control`.{}", LogBuildUtil.build(params));
+                rateLimitedCount = 0;
+                handshakeLimitedCount = 0;
+                addressLimitedCount = 0;
+                lastLogNanoTime = nanoTime;
+            }
+        }
+        return rejectCode;
+    }
+
+    /**
+     * 在 IM 客户端创建成功后调用，将其计入握手中的 IM 客户端，直至其发送数据、关闭或握手超时。
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param nanoTime 当前时间，单位：纳秒
+     */
+    void onEstablished(IMClient client, long nanoTime) {
+        if (maxHandshakeCount > 0) {
+            handshakingQueue.addLast(new HandshakingClient(client, nanoTime));
+        }
+    }
+
+    private int check(SocketChannel socketChannel, long nanoTime) {
+        if (maxHandshakeCount > 0 && handshakingQueue.size() >= maxHandshakeCount) {
+            if (nanoTime - lastPruneNanoTime >= HANDSHAKE_PRUNE_INTERVAL) {
+                pruneHandshakingQueue(nanoTime);
+            }
+            if (handshakingQueue.size() >= maxHandshakeCount) {
+                return IMClientMonitor.REJECT_CODE_TOO_MANY_HANDSHAKES;
+            }
+        }
+
+        if (acceptTokensPerNano > 0) {
+            acceptTokens = Math.min(acceptBurst, acceptTokens + (nanoTime - acceptRefillNanoTime) * acceptTokensPerNano);
+            acceptRefillNanoTime = nanoTime;
+            if (acceptTokens < 1) {
+                return IMClientMonitor.REJECT_CODE_RATE_LIMITED;
+            }
+        }
+
+        if (addressKeys != null) {
+            long key = getAddressKey(socketChannel);
+            if (key != 0 && !tryAcquireAddressToken(key, nanoTime)) {
+                return IMClientMonitor.REJECT_CODE_ADDRESS_LIMITED;
+            }
+        }
+
+        if (acceptTokensPerNano > 0) {
+            acceptTokens -= 1;
+        }
+        return 0;
+    }
+
+    /**
+     * 移除已发送过数据、已关闭或握手超时的 IM 客户端。
+     *
+     * @param nanoTime 当前时间，单位：纳秒
+     */
+    private void pruneHandshakingQueue(long nanoTime) {
+        lastPruneNanoTime = nanoTime;
+        Iterator<HandshakingClient> iterator = handshakingQueue.iterator();
+        while (iterator.hasNext()) {
+            HandshakingClient handshakingClient = iterator.next();
+            IMClient client = handshakingClient.client;
+            if (client.hasReceived() || !client.isActive()
+                    || nanoTime - handshakingClient.establishedNanoTime >= handshakeTimeoutNanos) {
+                iterator.remove();
+            }
+        }
+    }
+
+    /**
+     * 尝试从来源地址对应的令牌桶中获取一个令牌，如果来源地址不在 LRU 表中，将淘汰所在组中最久未接收过连接的来源地址。
+     *
+     * @param key 来源地址 Key
+     * @param nanoTime 当前时间，单位：纳秒
+     * @return 是否获取成功
+     */
+    private boolean tryAcquireAddressToken(long key, long nanoTime) {
+        int base = (int) (mix(key) & addressSetMask) * ADDRESS_WAYS;
+        int victim = -1;
+        for (int index = base; index < base + ADDRESS_WAYS; index++) {
+            long slotKey = addressKeys[index];
+            if (slotKey == key) {
+                double tokens = Math.min(addressBurst,
+                        addressTokens[index] + (nanoTime - addressRefillNanoTimes[index]) * addressTokensPerNano);
+                addressRefillNanoTimes[index] = nanoTime;
+                if (tokens < 1) {
+                    addressTokens[index] = tokens;
+                    return false;
+                }
+                addressTokens[index] = tokens - 1;
+                return true;
+            }
+            if (victim < 0 || (addressKeys[victim] != 0
+                    && (slotKey == 0 || addressRefillNanoTimes[index] - addressRefillNanoTimes[victim] < 0))) {
+                victim = index;
+            }
+        }
+        addressKeys[victim] = key;
+        addressTokens[victim] = addressBurst - 1;
+        addressRefillNanoTimes[victim] = nanoTime;
+        return true;
+    }
+
+    /**
+     * 获得连接来源地址对应的 Key，IPv4 地址直接使用地址值，IPv6 地址使用 64 位散列值，如果无法获取来源地址，将会返回 0。
+     *
+     * @param socketChannel 连接
+     * @return 来源地址 Key
+     */
+    private static long getAddressKey(SocketChannel socketChannel) {
+        SocketAddress remoteAddress;
+        try {
+            remoteAddress = socketChannel.getRemoteAddress();
+        } catch (IOException e) {
+            return 0;
+        }
+        if (!(remoteAddress instanceof InetSocketAddress)) {
+            return 0;
+        }
+        InetAddress address = ((InetSocketAddress) remoteAddress).getAddress();
+        if (address == null) {
+            return 0;
+        }
+        if (address instanceof Inet4Address) {
+            return (1L << 32) | (address.hashCode() & 0xFFFFFFFFL); // Inet4Address 的散列值即为地址值
+        }
+        byte[] bytes = address.getAddress();
+        long hash = 0;
+        for (byte b : bytes) {
+            hash = (hash ^ (b & 0xFF)) * 0x100000001b3L;
+        }
+        return mix(hash) | Long.MIN_VALUE;
+    }
+
+    private static long mix(long value) {
+        value ^= value >>> 33;
+        value *= 0xff51afd7ed558ccdL;
+        value ^= value >>> 33;
+        value *= 0xc4ceb9fe1a85ec53L;
+        value ^= value >>> 33;
+        return value;
+    }
+
+    /**
+     * 握手中的 IM 客户端
+     */
+    private static class HandshakingClient {
+
+        private final IMClient client;
+
+        private final long establishedNanoTime;
+
+        private HandshakingClient(IMClient client, long establishedNanoTime) {
+            this.client = client;
+            this.establishedNanoTime = establishedNanoTime;
+        }
+    }
+}
@@ -0,0 +1,414 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven;
+
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.clients.IMClientPendingMessages;
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+import com.heimuheimu.raven.monitor.IMClientMonitor;
+import com.heimuheimu.raven.store.OfflineMessageStore;
+import com.heimuheimu.raven.util.LogBuildUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IM 客户端会话注册表，通过会话令牌关联同一终端的前后多个连接。
+ *
+ * <p>
+ *     绑定了会话令牌的 IM 客户端关闭后，其待发送字节消息（包括尚未被确认的字节消息）将以会话令牌为 Key 保留指定时间，
+ *     期间使用相同令牌重新连接的 IM 客户端可直接继承这些字节消息继续发送，无需由上游重新推送。超过保留时间的会话将由
+ *     {@link TimeoutIMClientScanner} 定期清理，其中字节消息关联的回调将收到 {@link ByteMessageFailedReasonEnum#CLOSED} 通知。
+ * </p>
+ *
+ * <p>
+ *     如果配置了离线消息存储，超过保留时间的会话（未配置保留时间时为关闭的 IM 客户端）中的字节消息将以会话令牌为接收方转入离线消息存储，
+ *     关联的回调将收到 {@link ByteMessageFailedReasonEnum#STORED} 通知，使用相同令牌重新连接时将从离线消息存储中读取并发送。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientSessionRegistry 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientSessionRegistry implements Closeable {
+
+    private static final Logger RAVEN_IM_CLIENT_LOG = LoggerFactory.getLogger("RAVEN_IM_CLIENT_LOG");
+
+    /**
+     * 会话保留时间，单位：毫秒
+     */
+    private final long timeout;
+
+    /**
+     * 离线消息存储，允许为 {@code null}
+     */
+    private final OfflineMessageStore offlineMessageStore;
+
+    /**
+     * IM 客户端绑定的会话令牌 Map，Key 为 IM 客户端唯一 ID，Value 为会话令牌
+     */
+    private final ConcurrentHashMap<String, String> tokenMap = new ConcurrentHashMap<>();
+
+    /**
+     * 会话令牌当前绑定的 IM 客户端 Map，Key 为会话令牌，Value 为最近一次绑定该令牌的 IM 客户端
+     */
+    private final ConcurrentHashMap<String, IMClient> holderMap = new ConcurrentHashMap<>();
+
+    /**
+     * 等待恢复的会话 Map，Key 为会话令牌，Value 为保留的会话
+     */
+    private final ConcurrentHashMap<String, ParkedSession> parkedSessionMap = new ConcurrentHashMap<>();
+
+    /**
+     * 构造一个 IMClientSessionRegistry 实例。
+     *
+     * @param timeout 会话保留时间，单位：毫秒，如果小于等于 0，IM 客户端关闭后其待发送字节消息将直接转入离线消息存储
+     * @param offlineMessageStore 离线消息存储，允许为 {@code null}
+     */
+    public IMClientSessionRegistry(long timeout, OfflineMessageStore offlineMessageStore) {
+        this.timeout = timeout;
+        this.offlineMessageStore = offlineMessageStore;
+    }
+
+    /**
+     * 获得会话保留时间，单位：毫秒。
+     *
+     * @return 会话保留时间
+     */
+    public long getTimeout() {
+        return timeout;
+    }
+
+    /**
+     * 为 IM 客户端绑定会话令牌，如果该 IM 客户端已绑定其它令牌，将被替换。
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param token 会话令牌，不允许为 {@code null}
+     */
+    public void bind(IMClient client, String token) {
+        bindHolder(client, token);
+    }
+
+    /**
+     * 在 IM 客户端关闭后调用，取出其待发送字节消息并保留，如果该 IM 客户端未绑定会话令牌或没有待发送字节消息，将不会有任何效果。
+     *
+     * <p>
+     *     如果该令牌已被另一个可用的 IM 客户端绑定（例如终端在旧连接被发现断开前已重新连接），字节消息将直接转移到该 IM 客户端继续发送，不再保留。
+     *     如果相同令牌已存在等待恢复的会话，旧会话中的字节消息将转入离线消息存储，未配置离线消息存储时将被丢弃。
+     * </p>
+     *
+     * @param client 已关闭的 IM 客户端，不允许为 {@code null}
+     */
+    public void park(IMClient client) {
+        String token = tokenMap.remove(client.getId());
+        if (token != null) {
+            holderMap.remove(token, client);
+            IMClientPendingMessages pendingMessages = client.detachPendingMessages();
+            if (pendingMessages.isEmpty() || handOver(token, pendingMessages)) {
+                return;
+            }
+            if (timeout <= 0) {
+                store(token, pendingMessages);
+            } else {
+                ParkedSession session = new ParkedSession(pendingMessages, System.currentTimeMillis() + timeout);
+                ParkedSession replacedSession = parkedSessionMap.put(token, session);
+                if (replacedSession != null) {
+                    store(token, replacedSession.pendingMessages);
+                }
+                // 令牌可能在保留前被新的 IM 客户端恢复，此时该 IM 客户端已错过本会话，需再次尝试转移
+                if (isHeld(token) && parkedSessionMap.remove(token, session) && !handOver(token, pendingMessages)
+                        && parkedSessionMap.putIfAbsent(token, session) != null) {
+                    store(token, pendingMessages);
+                }
+            }
+        }
+    }
+
+    /**
+     * 为新连接的 IM 客户端绑定会话令牌，并将该令牌对应的会话中保留的字节消息转移到该 IM 客户端继续发送，返回转移的字节消息数量。
+     *
+     * <p>如果该令牌没有等待恢复的会话，将从离线消息存储中读取该令牌的离线消息发送，如果均没有可发送的字节消息，将会返回 0。</p>
+     *
+     * <p>
+     *     如果该令牌仍绑定着另一个可用的 IM 客户端（旧连接尚未被发现断开），旧的 IM 客户端将被关闭，其待发送字节消息在关闭时通过
+     *     {@link #park(IMClient)} 转移到新的 IM 客户端，这部分字节消息不计入返回值。
+     * </p>
+     *
+     * @param client 新连接的 IM 客户端，不允许为 {@code null}
+     * @param token 会话令牌，不允许为 {@code null}
+     * @return 转移的字节消息数量
+     * @throws IllegalStateException 如果 IM 客户端已关闭，将会抛出此异常，此时会话仍将保留
+     */
+    public int resume(IMClient client, String token) throws IllegalStateException {
+        IMClient previousHolder = bindHolder(client, token);
+        ParkedSession session = parkedSessionMap.remove(token);
+        if (session != null && session.isExpired(System.currentTimeMillis())) {
+            expire(token, session);
+            session = null;
+        }
+        int attachedCount;
+        if (session == null) {
+            attachedCount = replay(client, token);
+        } else {
+            try {
+                attachedCount = client.attachPendingMessages(session.pendingMessages);
+            } catch (Exception e) {
+                if (parkedSessionMap.putIfAbsent(token, session) != null) {
+                    session.pendingMessages.fail(ByteMessageFailedReasonEnum.CLOSED);
+                }
+                throw e;
+            }
+        }
+        if (previousHolder != null && previousHolder != client && previousHolder.isActive()) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("id", client.getId());
+            params.put("previousId", previousHolder.getId());
+            params.put("token", token);
+            RAVEN_IM_CLIENT_LOG.info("Closing previous IMClient of the resumed session.{}", LogBuildUtil.build(params));
+            previousHolder.close(); // 关闭时将通过 park() 把待发送字节消息转移到新的 IM 客户端
+        }
+        if (session == null) {
+            return attachedCount;
+        }
+        IMClientMonitor.getInstance().onSessionResumed();
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("id", client.getId());
+        params.put("previousId", session.pendingMessages.getClient().getId());
+        params.put("attachedCount", attachedCount);
+        RAVEN_IM_CLIENT_LOG.info("IMClient session resumed.{}", LogBuildUtil.build(params));
+        return attachedCount;
+    }
+
+    /**
+     * 移除超过保留时间的会话，返回移除的会话数量。
+     *
+     * @return 移除的会话数量
+     */
+    public int removeExpired() {
+        long currentTime = System.currentTimeMillis();
+        int expiredCount = 0;
+        Iterator<Map.Entry<String, ParkedSession>> iterator = parkedSessionMap.entrySet().iterator();
+        while (iterator.hasNext()) {
+            Map.Entry<String, ParkedSession> entry = iterator.next();
+            ParkedSession session = entry.getValue();
+            if (session.isExpired(currentTime) && parkedSessionMap.remove(entry.getKey(), session)) {
+                expire(entry.getKey(), session);
+                expiredCount++;
+            }
+        }
+        return expiredCount;
+    }
+
+    /**
+     * 获得等待恢复的会话数量。
+     *
+     * @return 等待恢复的会话数量
+     */
+    public int getParkedSessionCount() {
+        return parkedSessionMap.size();
+    }
+
+    /**
+     * 结束所有等待恢复的会话，如果配置了离线消息存储，会话中的字节消息将转入离线消息存储，否则将被丢弃。
+     */
+    @Override
+    public void close() {
+        for (String token : parkedSessionMap.keySet()) {
+            ParkedSession session = parkedSessionMap.remove(token);
+            if (session != null) {
+                store(token, session.pendingMessages);
+            }
+        }
+        tokenMap.clear();
+        holderMap.clear();
+    }
+
+    /**
+     * 为 IM 客户端绑定会话令牌，并将其设置为该令牌当前绑定的 IM 客户端，返回该令牌此前绑定的 IM 客户端，可能为 {@code null}。
+     *
+     * @param client IM 客户端
+     * @param token 会话令牌
+     * @return 该令牌此前绑定的 IM 客户端，可能为 {@code null}
+     */
+    private IMClient bindHolder(IMClient client, String token) {
+        String previousToken = tokenMap.put(client.getId(), token);
+        if (previousToken != null && !previousToken.equals(token)) {
+            holderMap.remove(previousToken, client);
+        }
+        IMClient previousHolder = holderMap.put(token, client);
+        if (!client.isActive()) { // 绑定前已关闭，不会再收到关闭通知
+            tokenMap.remove(client.getId(), token);
+            holderMap.remove(token, client);
+        }
+        return previousHolder;
+    }
+
+    /**
+     * 判断会话令牌当前是否绑定着可用的 IM 客户端。
+     *
+     * @param token 会话令牌
+     * @return 是否绑定着可用的 IM 客户端
+     */
+    private boolean isHeld(String token) {
+        IMClient holder = holderMap.get(token);
+        return holder != null && holder.isActive();
+    }
+
+    /**
+     * 将已关闭的 IM 客户端中取出的待发送字节消息转移到该会话令牌当前绑定的可用 IM 客户端，转移成功返回 {@code true}，
+     * 如果没有可用的 IM 客户端或转移失败，返回 {@code false}，此时 {@code pendingMessages} 保持不变。
+     *
+     * @param token 会话令牌
+     * @param pendingMessages 待发送字节消息
+     * @return 是否转移成功
+     */
+    private boolean handOver(String token, IMClientPendingMessages pendingMessages) {
+        IMClient holder = holderMap.get(token);
+        if (holder == null || holder == pendingMessages.getClient() || !holder.isActive()) {
+            return false;
+        }
+        int attachedCount;
+        try {
+            attachedCount = holder.attachPendingMessages(pendingMessages);
+        } catch (Exception e) { // 当前绑定的 IM 客户端已关闭，由调用方保留
+            return false;
+        }
+        IMClientMonitor.getInstance().onSessionResumed();
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("id", holder.getId());
+        params.put("previousId", pendingMessages.getClient().getId());
+        params.put("attachedCount", attachedCount);
+        RAVEN_IM_CLIENT_LOG.info("IMClient session handed over.{}", LogBuildUtil.build(params));
+        return true;
+    }
+
+    private void expire(String token, ParkedSession session) {
+        IMClientMonitor.getInstance().onSessionExpired(1);
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("token", token);
+        params.put("previousId", session.pendingMessages.getClient().getId());
+        params.put("messageCount", session.pendingMessages.size());
+        RAVEN_IM_CLIENT_LOG.info("IMClient session expired.{}", LogBuildUtil.build(params));
+        store(token, session.pendingMessages);
+    }
+
+    /**
+     * 将待发送字节消息转入离线消息存储，如果没有配置离线消息存储或保存失败，字节消息关联的回调将收到
+     * {@link ByteMessageFailedReasonEnum#CLOSED} 通知。
+     *
+     * @param token 会话令牌
+     * @param pendingMessages 待发送字节消息
+     */
+    private void store(String token, IMClientPendingMessages pendingMessages) {
+        if (pendingMessages.isEmpty()) {
+            return;
+        }
+        if (offlineMessageStore != null) {
+            try {
+                offlineMessageStore.append(token, pendingMessages.getMessageList());
+                pendingMessages.fail(ByteMessageFailedReasonEnum.STORED);
+                return;
+            } catch (Exception e) {
+                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                params.put("token", token);
+                params.put("pendingMessages", pendingMessages);
+                RAVEN_IM_CLIENT_LOG.error("IMClientSessionRegistry fails to store pending messages: `" + e.getMessage() + "`."
+                        + LogBuildUtil.build(params), e);
+            }
+        }
+        pendingMessages.fail(ByteMessageFailedReasonEnum.CLOSED);
+    }
+
+    /**
+     * 从离线消息存储中读取会话令牌对应的离线消息，发送到新连接的 IM 客户端，返回发送的字节消息数量。
+     *
+     * @param client 新连接的 IM 客户端
+     * @param token 会话令牌
+     * @return 发送的字节消息数量
+     */
+    private int replay(IMClient client, String token) {
+        if (offlineMessageStore == null || offlineMessageStore.getMessageCount(token) == 0) {
+            return 0;
+        }
+        List<ByteMessage> messageList = offlineMessageStore.take(token);
+        if (messageList.isEmpty()) {
+            return 0;
+        }
+        try {
+            client.asyncSend(messageList);
+        } catch (Exception e) {
+            offlineMessageStore.append(token, messageList); // 发送失败，重新保存
+            throw e;
+        }
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("id", client.getId());
+        params.put("replayedCount", messageList.size());
+        RAVEN_IM_CLIENT_LOG.info("IMClient offline messages replayed.{}", LogBuildUtil.build(params));
+        return messageList.size();
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientSessionRegistry{" +
+                "timeout=" + timeout +
+                ", boundClientCount=" + tokenMap.size() +
+                ", boundTokenCount=" + holderMap.size() +
+                ", parkedSessionCount=" + parkedSessionMap.size() +
+                '}';
+    }
+
+    /**
+     * 等待恢复的会话。
+     */
+    private static class ParkedSession {
+
+        /**
+         * 保留的待发送字节消息
+         */
+        private final IMClientPendingMessages pendingMessages;
+
+        /**
+         * 会话过期时间
+         */
+        private final long expiredTime;
+
+        private ParkedSession(IMClientPendingMessages pendingMessages, long expiredTime) {
+            this.pendingMessages = pendingMessages;
+            this.expiredTime = expiredTime;
+        }
+
+        private boolean isExpired(long currentTime) {
+            return currentTime > expiredTime;
+        }
+    }
+}
@@ -25,9 +25,14 @@
 package com.heimuheimu.raven;
 
 import com.heimuheimu.raven.clients.*;
-import com.heimuheimu.raven.clients.support.IMClientUUIDGenerator;
+import com.heimuheimu.raven.clients.support.IMClientRandomIDGenerator;
+import com.heimuheimu.raven.cluster.IMClusterConfiguration;
+import com.heimuheimu.raven.cluster.IMClusterNode;
 import com.heimuheimu.raven.constant.BeanStatusEnum;
 import com.heimuheimu.raven.exception.RavenException;
+import com.heimuheimu.raven.facility.UnusableServiceNotifier;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitter;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitterMonitor;
 import com.heimuheimu.raven.monitor.IMClientMonitor;
 import com.heimuheimu.raven.net.SocketConfiguration;
 import com.heimuheimu.raven.util.LogBuildUtil;
@@ -41,11 +46,21 @@ import java.net.StandardSocketOptions;
 import java.nio.channels.ClosedChannelException;
 import java.nio.channels.ServerSocketChannel;
 import java.nio.channels.SocketChannel;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
 import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.Map;
+import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
 
 /**
  * IM 服务提供者，允许 IM 客户端与其建立连接进行数据通信。
@@ -76,9 +91,45 @@ public class IMServer implements Closeable {
     private final IMClientMonitor clientMonitor = IMClientMonitor.getInstance();
 
     /**
-     * 连接成功的 IM 客户端 Map，Key 为 IM 客户端唯一 ID，Value 为对应的 IM 客户端
+     * IM 客户端唯一 ID 生成器
      */
-    private final ConcurrentHashMap<String, IMClient> ESTABLISHED_CLIENT_MAP = new ConcurrentHashMap<>();
+    private final IMClientIDGenerator clientIDGenerator;
+
+    /**
+     * 可生成数字 ID 的 IM 客户端唯一 ID 生成器，如果配置的生成器不支持生成数字 ID，则为 {@code null}
+     */
+    private final IMClientNumericIDGenerator numericIDGenerator;
+
+    /**
+     * 配置的生成器不支持生成数字 ID 时，用于分配 IM 客户端数字 ID 的序号
+     */
+    private final AtomicLong numericIdSequence = new AtomicLong();
+
+    /**
+     * 连接成功的 IM 客户端注册表，Key 为 IM 客户端数字 ID
+     */
+    private final IMClientRegistry clientRegistry;
+
+    /**
+     * 连接成功的 IM 客户端 Map，Key 为 IM 客户端唯一 ID，Value 为对应的 IM 客户端，
+     * 仅在配置的生成器不支持生成数字 ID 时使用，否则为 {@code null}
+     */
+    private final ConcurrentHashMap<String, IMClient> clientIdMap;
+
+    /**
+     * 连接成功的 IM 客户端只读 Map 视图，Key 为 IM 客户端唯一 ID，Value 为对应的 IM 客户端
+     */
+    private final Map<String, IMClient> establishedClientMap = Collections.unmodifiableMap(new EstablishedClientMap());
+
+    /**
+     * IM 客户端用户索引，记录用户 ID 与其已连接的 IM 客户端之间的对应关系
+     */
+    private final IMClientUserIndex userIndex = new IMClientUserIndex();
+
+    /**
+     * 所有 IM 客户端共用的关闭通知器，避免每个连接创建一个方法引用对象
+     */
+    private final UnusableServiceNotifier<IMClient> clientClosedNotifier = this::onClientClosed;
 
     /**
      * 当前 IMServer 实例所处状态
@@ -91,10 +142,20 @@ public class IMServer implements Closeable {
     private volatile IMClientManagerList managerList = null;
 
     /**
-     * 超时 IM 客户端检测器，如果没有配置超时时间，则为 {@code null}
+     * 超时 IM 客户端检测器，同时负责释放空闲 IM 客户端的内存，总是启动
      */
     private TimeoutIMClientScanner timeoutIMClientScanner;
 
+    /**
+     * IM 客户端会话注册表，如果没有配置会话保留时间及离线消息存储，则为 {@code null}
+     */
+    private volatile IMClientSessionRegistry sessionRegistry;
+
+    /**
+     * 集群节点，如果没有配置集群节点配置信息，则为 {@code null}
+     */
+    private volatile IMClusterNode clusterNode;
+
     /**
      * IMServer 后台线程，通过监听端口与 IM 客户端建立连接
      */
@@ -119,6 +180,12 @@ public class IMServer implements Closeable {
         this.configuration = configuration;
         this.clientInterceptor = configuration.getClientInterceptor() != null ?
                 configuration.getClientInterceptor() : new IMClientInterceptorSkeleton() {};
+        this.clientIDGenerator = configuration.getClientIDGenerator() != null ?
+                configuration.getClientIDGenerator() : new IMClientRandomIDGenerator();
+        this.numericIDGenerator = clientIDGenerator instanceof IMClientNumericIDGenerator ?
+                (IMClientNumericIDGenerator) clientIDGenerator : null;
+        this.clientIdMap = numericIDGenerator == null ? new ConcurrentHashMap<>() : null;
+        this.clientRegistry = new IMClientRegistry(configuration.getPoolSize() > 0 ? configuration.getPoolSize() : 20);
     }
 
     /**
@@ -141,19 +208,27 @@ public class IMServer implements Closeable {
                     managerConfiguration = new IMClientManagerConfiguration();
                 }
 
-                managerList = new IMClientManagerList(poolSize, managerConfiguration, configuration.getClientManagerListListener());
+                managerList = new IMClientManagerList(poolSize, configuration.getMaxPoolSize(), managerConfiguration,
+                        configuration.getClientManagerListListener());
+
+                IMClusterConfiguration clusterConfiguration = configuration.getClusterConfiguration();
+                if (clusterConfiguration != null) {
+                    clusterNode = new IMClusterNode(clusterConfiguration, this);
+                    clusterNode.init();
+                }
+
+                if (configuration.getSessionResumeTimeout() > 0 || configuration.getOfflineMessageStore() != null) {
+                    sessionRegistry = new IMClientSessionRegistry(TimeUnit.MILLISECONDS.convert(
+                            configuration.getSessionResumeTimeout(), TimeUnit.SECONDS), configuration.getOfflineMessageStore());
+                }
+
+                timeoutIMClientScanner = new TimeoutIMClientScanner(this); // 未配置超时时间时仍需释放空闲 IM 客户端的内存
+                timeoutIMClientScanner.init();
 
                 imServerTask = new IMServerTask();
                 imServerTask.setName("raven-im-server");
                 imServerTask.start();
 
-                if (configuration.getClientTimeout() > 0) {
-                    timeoutIMClientScanner = new TimeoutIMClientScanner(this);
-                    timeoutIMClientScanner.init();
-                } else {
-                    timeoutIMClientScanner = null;
-                }
-
                 LinkedHashMap<String, Object> params = buildParamsMap();
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                 RAVEN_IM_CLIENT_LOG.info("Started IMServerTask.{}", LogBuildUtil.build(params));
@@ -188,14 +263,21 @@ public class IMServer implements Closeable {
                 }
 
                 int closedClientCount = 0;
-                for (String clientId : ESTABLISHED_CLIENT_MAP.keySet()) {
-                    IMClient client = ESTABLISHED_CLIENT_MAP.get(clientId);
-                    if (client != null && client.isActive()) {
+                for (IMClient client : clientRegistry) {
+                    if (client.isActive()) {
                         client.close();
                         closedClientCount++;
                     }
                 }
 
+                if (sessionRegistry != null) {
+                    sessionRegistry.close();
+                }
+
+                if (clusterNode != null) {
+                    clusterNode.close();
+                }
+
                 LinkedHashMap<String, Object> params = buildParamsMap();
                 params.put("closedClientCount", closedClientCount);
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
@@ -208,6 +290,92 @@ public class IMServer implements Closeable {
         }
     }
 
+    /**
+     * 排空关闭 IMServer，等同于调用 {@code drain(null)}。
+     *
+     * @see #drain(ByteMessage)
+     */
+    public void drain() {
+        drain(null);
+    }
+
+    /**
+     * 排空关闭 IMServer：停止接受新的 IM 客户端连接，向全部 IM 客户端发送下线通知（如果有），等待待发送字节消息写入完成后分批优雅关闭
+     * IM 客户端，最后关闭 IMServer。如果 IMServer 未启动或已关闭，调用该方法不会有任何效果。
+     *
+     * <p>
+     *     在排空期间，IM 客户端管理器继续运行，已连接的 IM 客户端仍可收发数据。每一批优先关闭待发送数据已写完的 IM 客户端，每批最多关闭
+     *     {@link IMServerConfiguration#getDrainWaveSize()} 个，批次间隔 {@link IMServerConfiguration#getDrainWaveInterval()} 毫秒，
+     *     避免 IM 客户端同时重连到其它节点；超过 {@link IMServerConfiguration#getDrainTimeout()} 秒后，剩余的 IM 客户端不再等待写入完成，
+     *     仍按批次关闭，其尚未写入的字节消息与 {@link #close()} 方法的处理方式一致。
+     * </p>
+     *
+     * <p><strong>注意：</strong>该方法将阻塞至 IMServer 关闭，耗时可能超过排空等待时间与分批关闭耗时之和。</p>
+     *
+     * @param goAwayMessage 下线通知，例如要求 IM 客户端稍后重连到其它节点，允许为 {@code null}
+     */
+    public synchronized void drain(ByteMessage goAwayMessage) {
+        if (state != BeanStatusEnum.NORMAL) {
+            return;
+        }
+        long startTime = System.currentTimeMillis();
+        long deadline = startTime + TimeUnit.MILLISECONDS.convert(Math.max(configuration.getDrainTimeout(), 0), TimeUnit.SECONDS);
+        int waveSize = configuration.getDrainWaveSize() > 0 ? configuration.getDrainWaveSize() : Integer.MAX_VALUE;
+        int waveInterval = Math.max(configuration.getDrainWaveInterval(), 1);
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("clientCount", clientRegistry.size());
+        int waveCount = 0;
+        int flushedClientCount = 0;
+        int unflushedClientCount = 0;
+        try {
+            if (imServerTask != null) {
+                imServerTask.close();
+            }
+            if (goAwayMessage != null) {
+                params.put("goAwayFailedCount", IMClient.multicast(new ArrayList<>(establishedClientMap.values()),
+                        goAwayMessage, null).size());
+            }
+            while (!clientRegistry.isEmpty()) {
+                boolean expired = System.currentTimeMillis() >= deadline;
+                List<IMClient> waveClientList = new ArrayList<>();
+                for (IMClient client : clientRegistry) {
+                    if (expired || client.getPendingByteLength() == 0) {
+                        waveClientList.add(client);
+                        if (waveClientList.size() == waveSize) {
+                            break;
+                        }
+                    }
+                }
+                for (IMClient client : waveClientList) {
+                    if (!expired || client.getPendingByteLength() == 0) {
+                        flushedClientCount++;
+                    } else {
+                        unflushedClientCount++;
+                    }
+                    client.closeGracefully();
+                }
+                if (!waveClientList.isEmpty()) {
+                    waveCount++;
+                }
+                if (!clientRegistry.isEmpty()) {
+                    Thread.sleep(waveInterval);
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            LOGGER.error("IMServer fails to drain: `interrupted`." + LogBuildUtil.build(params));
+        } catch (Exception e) {
+            LOGGER.error("IMServer fails to drain: `unexpected error`." + LogBuildUtil.build(params), e);
+        } finally {
+            close();
+        }
+        params.put("waveCount", waveCount);
+        params.put("flushedClientCount", flushedClientCount);
+        params.put("unflushedClientCount", unflushedClientCount);
+        params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+        RAVEN_IM_CLIENT_LOG.info("Drained IMServer.{}", LogBuildUtil.build(params));
+    }
+
     /**
      * 获得当前 IMServer 使用的配置信息。
      *
@@ -238,24 +406,48 @@ public class IMServer implements Closeable {
         if (state != BeanStatusEnum.NORMAL) {
             return -1;
         }
-        return ESTABLISHED_CLIENT_MAP.size();
+        return clientRegistry.size();
     }
 
     /**
      * 根据 ID 获得对应的 IM 客户端，如果该客户端不存在或已关闭，将会返回 {@code null}。
      *
-     * @param clientId IM 客户端 ID
+     * <p>
+     *     如果配置的 IM 客户端唯一 ID 生成器可生成数字 ID（例如默认的 {@link IMClientRandomIDGenerator}），将先把 ID 转换为数字 ID 后通过
+     *     {@link #getEstablishedClient(long)} 方法查找，并校验找到的 IM 客户端 ID 与 {@code clientId} 完全一致。
+     * </p>
+     *
+     * @param clientId IM 客户端 ID，允许为 {@code null}
      * @return IM 客户端，可能为 {@code null}
      */
     public IMClient getEstablishedClient(String clientId) {
-        return ESTABLISHED_CLIENT_MAP.get(clientId);
+        if (clientId == null) {
+            return null;
+        }
+        if (numericIDGenerator != null) {
+            IMClient client = clientRegistry.get(numericIDGenerator.toNumericId(clientId));
+            return client != null && client.getId().equals(clientId) ? client : null;
+        }
+        return clientIdMap.get(clientId);
+    }
+
+    /**
+     * 根据数字 ID 获得对应的 IM 客户端，如果该客户端不存在或已关闭，将会返回 {@code null}。
+     *
+     * @param numericId IM 客户端数字 ID
+     * @return IM 客户端，可能为 {@code null}
+     * @see IMClient#getNumericId()
+     */
+    public IMClient getEstablishedClient(long numericId) {
+        return clientRegistry.get(numericId);
     }
 
     /**
      * 获得当前连接成功的 IM 客户端 Map，Key 为 IM 客户端唯一 ID，Value 为对应的 IM 客户端，如果 IMServer 已关闭或未初始化，
      * 将会返回空 Map，该方法不会返回 {@code null}。
      *
-     * <p><strong>注意：</strong>返回的 Map 是只读的，不可修改。</p>
+     * <p><strong>注意：</strong>返回的 Map 是只读的，不可修改。Map 为 IM 客户端注册表的视图，遍历结果为弱一致性的，
+     * 遍历期间连接或关闭的 IM 客户端可能不会反映在结果中。</p>
      *
      * @return 当前连接成功的 IM 客户端 Map，Key 为 IM 客户端唯一 ID，Value 为对应的 IM 客户端
      */
@@ -263,7 +455,345 @@ public class IMServer implements Closeable {
         if (state != BeanStatusEnum.NORMAL) {
             return Collections.unmodifiableMap(new HashMap<>());
         }
-        return Collections.unmodifiableMap(ESTABLISHED_CLIENT_MAP);
+        return establishedClientMap;
+    }
+
+    /**
+     * 异步向多个 IM 客户端发送同一条字节消息，返回未能发送的 IM 客户端 ID 列表，该方法不会返回 {@code null}。
+     *
+     * @param clientIds IM 客户端 ID 集合，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @return 未能发送的 IM 客户端 ID 列表，包括不存在或已关闭的 IM 客户端
+     * @throws IllegalArgumentException 如果 {@code clientIds} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see #asyncSend(Collection, ByteMessage, ByteMessageCallback)
+     */
+    public List<String> asyncSend(Collection<String> clientIds, ByteMessage message) throws IllegalArgumentException {
+        return asyncSend(clientIds, message, null);
+    }
+
+    /**
+     * 异步向多个 IM 客户端发送同一条字节消息，每个 IM 客户端的发送结果将通过指定的回调进行通知，返回未能发送的 IM 客户端 ID 列表，
+     * 该方法不会返回 {@code null}。
+     *
+     * <p><strong>说明：</strong>相比逐个调用 {@link IMClient#asyncSend(ByteMessage)} 方法，每个选择器仅唤醒一次，监控信息仅更新一次。</p>
+     *
+     * @param clientIds IM 客户端 ID 集合，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，由所有 IM 客户端共享，允许为 {@code null}
+     * @return 未能发送的 IM 客户端 ID 列表，包括不存在或已关闭的 IM 客户端
+     * @throws IllegalArgumentException 如果 {@code clientIds} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see IMClient#multicast(Collection, ByteMessage, ByteMessageCallback)
+     */
+    public List<String> asyncSend(Collection<String> clientIds, ByteMessage message, ByteMessageCallback callback)
+            throws IllegalArgumentException {
+        if (clientIds == null) {
+            String errorMessage = "IMServer fails to send message: `null clientIds`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        List<String> failedClientIdList = new ArrayList<>();
+        List<IMClient> clientList = new ArrayList<>(clientIds.size());
+        for (String clientId : clientIds) {
+            IMClient client = getEstablishedClient(clientId);
+            if (client != null) {
+                clientList.add(client);
+            } else {
+                failedClientIdList.add(clientId);
+            }
+        }
+        for (IMClient failedClient : IMClient.multicast(clientList, message, callback)) {
+            failedClientIdList.add(failedClient.getId());
+        }
+        return failedClientIdList;
+    }
+
+    /**
+     * 异步向 IM 客户端发送一条字节消息，如果该 IM 客户端连接在集群中的其它节点上，将转发到该节点发送。
+     *
+     * @param clientId IM 客户端 ID，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，允许为 {@code null}
+     * @return 是否已提交发送，如果该 IM 客户端不存在、已关闭或其所在节点不可达，将会返回 {@code false}
+     * @throws IllegalArgumentException 如果 {@code clientId} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see #asyncRoute(Collection, ByteMessage, ByteMessageCallback)
+     */
+    public boolean asyncRoute(String clientId, ByteMessage message, ByteMessageCallback callback) throws IllegalArgumentException {
+        if (clientId == null) {
+            String errorMessage = "IMServer fails to route message: `null clientId`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return asyncRoute(Collections.singletonList(clientId), message, callback).isEmpty();
+    }
+
+    /**
+     * 异步向多个 IM 客户端发送同一条字节消息，连接在当前节点上的 IM 客户端直接发送，连接在集群中其它节点上的 IM 客户端按所在节点分组，
+     * 每个节点仅转发一次，返回未能发送的 IM 客户端 ID 列表，该方法不会返回 {@code null}。如果没有配置集群节点，
+     * 与 {@link #asyncSend(Collection, ByteMessage, ByteMessageCallback)} 方法的效果一致。
+     *
+     * <p>
+     *     对于转发到其它节点的 IM 客户端，回调在转发帧写入节点连接后执行，每个节点仅通知一次，回调参数中的 IM 客户端为节点连接，
+     *     目标节点上的投递结果不会回传。
+     * </p>
+     *
+     * @param clientIds IM 客户端 ID 集合，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，由所有 IM 客户端共享，允许为 {@code null}
+     * @return 未能发送的 IM 客户端 ID 列表，包括不存在、已关闭或所在节点不可达的 IM 客户端
+     * @throws IllegalArgumentException 如果 {@code clientIds} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see IMServerConfiguration#setClusterConfiguration(IMClusterConfiguration)
+     */
+    public List<String> asyncRoute(Collection<String> clientIds, ByteMessage message, ByteMessageCallback callback)
+            throws IllegalArgumentException {
+        IMClusterNode node = clusterNode;
+        if (node == null) {
+            return asyncSend(clientIds, message, callback);
+        }
+        if (clientIds == null || message == null) {
+            String errorMessage = "IMServer fails to route message: `null clientIds or message`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        List<String> failedClientIdList = new ArrayList<>();
+        List<IMClient> clientList = new ArrayList<>(clientIds.size());
+        Map<String, List<String>> remoteClientIdMap = new HashMap<>();
+        for (String clientId : clientIds) {
+            IMClient client = getEstablishedClient(clientId);
+            if (client != null) {
+                clientList.add(client);
+                continue;
+            }
+            String nodeId = clientId != null ? node.lookup(clientId) : null;
+            if (nodeId != null && !nodeId.equals(node.getNodeId())) {
+                remoteClientIdMap.computeIfAbsent(nodeId, key -> new ArrayList<>()).add(clientId);
+            } else {
+                failedClientIdList.add(clientId);
+            }
+        }
+        if (!clientList.isEmpty()) {
+            for (IMClient failedClient : IMClient.multicast(clientList, message, callback)) {
+                failedClientIdList.add(failedClient.getId());
+            }
+        }
+        for (Map.Entry<String, List<String>> entry : remoteClientIdMap.entrySet()) {
+            if (!node.forward(entry.getKey(), entry.getValue(), message, callback)) {
+                failedClientIdList.addAll(entry.getValue());
+            }
+        }
+        return failedClientIdList;
+    }
+
+    /**
+     * 获得集群节点，如果没有配置集群节点配置信息，将会返回 {@code null}。
+     *
+     * @return 集群节点，可能为 {@code null}
+     */
+    public IMClusterNode getClusterNode() {
+        return clusterNode;
+    }
+
+    /**
+     * 为 IM 客户端绑定会话令牌，绑定后该 IM 客户端关闭时，其待发送字节消息将在会话保留时间内保留，
+     * 可通过 {@link #resumeSession(IMClient, String)} 方法转移到使用相同令牌重新连接的 IM 客户端。
+     *
+     * <p>
+     *     会话令牌通常由业务在 IM 客户端完成认证后分配，如果没有配置会话保留时间及离线消息存储，调用此方法不会有任何效果。
+     * </p>
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param token 会话令牌，不允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code client} 或 {@code token} 为 {@code null}，将会抛出此异常
+     * @see IMServerConfiguration#setSessionResumeTimeout(int)
+     */
+    public void bindSession(IMClient client, String token) throws IllegalArgumentException {
+        checkSessionArguments(client, token);
+        if (sessionRegistry != null) {
+            sessionRegistry.bind(client, token);
+        }
+    }
+
+    /**
+     * 为新连接的 IM 客户端绑定会话令牌，并将该令牌对应的已关闭 IM 客户端保留的待发送字节消息转移到新的 IM 客户端继续发送，
+     * 如果会话已不在保留时间内，将从离线消息存储中读取该令牌的离线消息发送，返回转移的字节消息数量。
+     * 如果没有可恢复的消息或没有配置会话保留时间及离线消息存储，将会返回 0。
+     *
+     * @param client 新连接的 IM 客户端，不允许为 {@code null}
+     * @param token 会话令牌，不允许为 {@code null}
+     * @return 转移的字节消息数量
+     * @throws IllegalArgumentException 如果 {@code client} 或 {@code token} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果 IM 客户端已关闭，将会抛出此异常，此时会话仍将保留
+     * @see #bindSession(IMClient, String)
+     */
+    public int resumeSession(IMClient client, String token) throws IllegalArgumentException, IllegalStateException {
+        checkSessionArguments(client, token);
+        if (sessionRegistry != null) {
+            return sessionRegistry.resume(client, token);
+        }
+        return 0;
+    }
+
+    /**
+     * 为 IM 客户端绑定用户 ID，绑定后可通过 {@link #getUserClients(String)} 方法获得该用户已连接的全部 IM 客户端（设备），
+     * 或通过 {@link #asyncSendToUser(String, ByteMessage, ByteMessageCallback)} 方法向其全部 IM 客户端发送字节消息。
+     * IM 客户端关闭后将自动解除绑定。
+     *
+     * <p>
+     *     用户 ID 通常在 {@link IMClientInterceptor} 或 {@link IMClientListener} 中完成认证后绑定，如果该 IM 客户端已绑定其它用户 ID，
+     *     将被替换，同一个 IM 客户端不应在多个线程中同时绑定。
+     * </p>
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param userId 用户 ID，不允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code client} 或 {@code userId} 为 {@code null}，将会抛出此异常
+     */
+    public void bindUser(IMClient client, String userId) throws IllegalArgumentException {
+        if (client == null || userId == null) {
+            String errorMessage = "IMServer fails to bind user: `null client or userId`. `client`:`" + client + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        userIndex.bind(client, userId);
+    }
+
+    /**
+     * 获得用户已连接的 IM 客户端列表，如果该用户没有已连接的 IM 客户端，将会返回空列表，该方法不会返回 {@code null}。
+     *
+     * <p><strong>注意：</strong>返回的列表是只读的，不可修改。</p>
+     *
+     * @param userId 用户 ID，允许为 {@code null}
+     * @return 用户已连接的 IM 客户端列表
+     * @see #bindUser(IMClient, String)
+     */
+    public List<IMClient> getUserClients(String userId) {
+        return userIndex.getClients(userId);
+    }
+
+    /**
+     * 获得已绑定 IM 客户端的用户数量。
+     *
+     * @return 已绑定 IM 客户端的用户数量
+     */
+    public int getOnlineUserCount() {
+        return userIndex.getUserCount();
+    }
+
+    /**
+     * 异步向用户已连接的全部 IM 客户端发送同一条字节消息，返回已提交发送的 IM 客户端数量，如果该用户没有已连接的 IM 客户端，
+     * 将会返回 0。
+     *
+     * <p><strong>说明：</strong>与 {@link IMClient#multicast(Collection, ByteMessage, ByteMessageCallback)} 方法一致，
+     * 每个选择器仅唤醒一次，监控信息仅更新一次。</p>
+     *
+     * @param userId 用户 ID，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，由该用户的所有 IM 客户端共享，允许为 {@code null}
+     * @return 已提交发送的 IM 客户端数量
+     * @throws IllegalArgumentException 如果 {@code userId} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see #bindUser(IMClient, String)
+     */
+    public int asyncSendToUser(String userId, ByteMessage message, ByteMessageCallback callback) throws IllegalArgumentException {
+        if (userId == null || message == null) {
+            String errorMessage = "IMServer fails to send message to user: `null userId or message`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        List<IMClient> clientList = userIndex.getClients(userId);
+        if (clientList.isEmpty()) {
+            return 0;
+        }
+        return clientList.size() - IMClient.multicast(clientList, message, callback).size();
+    }
+
+    /**
+     * 异步向多个用户已连接的全部 IM 客户端发送同一条字节消息，返回未能发送的用户 ID 列表，该方法不会返回 {@code null}。
+     *
+     * <p>
+     *     全部用户的 IM 客户端合并为一次发送，每个选择器仅唤醒一次，监控信息仅更新一次。如果用户至少有一个 IM 客户端已提交发送，
+     *     该用户即视为发送成功。
+     * </p>
+     *
+     * @param userIds 用户 ID 集合，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，由所有 IM 客户端共享，允许为 {@code null}
+     * @return 未能发送的用户 ID 列表，包括没有已连接 IM 客户端的用户
+     * @throws IllegalArgumentException 如果 {@code userIds} 或 {@code message} 为 {@code null}，将会抛出此异常
+     * @see #bindUser(IMClient, String)
+     */
+    public List<String> asyncSendToUsers(Collection<String> userIds, ByteMessage message, ByteMessageCallback callback)
+            throws IllegalArgumentException {
+        if (userIds == null || message == null) {
+            String errorMessage = "IMServer fails to send message to users: `null userIds or message`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        List<String> failedUserIdList = new ArrayList<>();
+        List<IMClient> clientList = new ArrayList<>(userIds.size());
+        for (String userId : userIds) {
+            List<IMClient> userClientList = userIndex.getClients(userId);
+            if (userClientList.isEmpty()) {
+                failedUserIdList.add(userId);
+            } else {
+                clientList.addAll(userClientList);
+            }
+        }
+        if (!clientList.isEmpty()) {
+            List<IMClient> failedClientList = IMClient.multicast(clientList, message, callback);
+            if (!failedClientList.isEmpty()) {
+                Set<IMClient> failedClientSet = new HashSet<>(failedClientList);
+                Set<String> sentUserIdSet = new HashSet<>();
+                for (IMClient client : clientList) {
+                    if (!failedClientSet.contains(client)) {
+                        sentUserIdSet.add(client.getUserId());
+                    }
+                }
+                Set<String> failedUserIdSet = new HashSet<>(failedUserIdList);
+                for (String userId : userIds) {
+                    if (!sentUserIdSet.contains(userId) && failedUserIdSet.add(userId)) {
+                        failedUserIdList.add(userId);
+                    }
+                }
+            }
+        }
+        return failedUserIdList;
+    }
+
+    /**
+     * 获得待发送字节数最多的 {@code k} 个 IM 客户端，{@link IMClientHeavyHitter#getValue()} 为待发送的字节数，
+     * 该方法不会返回 {@code null}。
+     *
+     * <p><strong>说明：</strong>该方法仅读取 IO 线程维护的 Top-K 统计信息，不会遍历所有 IM 客户端，排名结果为近似值。</p>
+     *
+     * @param k 需要获取的数量
+     * @return 按待发送字节数从大到小排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopPendingByteClients(int k) {
+        return IMClientHeavyHitterMonitor.getInstance().getTopPendingByteClients(k);
+    }
+
+    /**
+     * 获得最早的待发送消息滞留时间最长的 {@code k} 个 IM 客户端，{@link IMClientHeavyHitter#getValue()} 为该消息的创建时间，
+     * 该方法不会返回 {@code null}。
+     *
+     * <p><strong>说明：</strong>该方法仅读取 IO 线程维护的 Top-K 统计信息，不会遍历所有 IM 客户端，排名结果为近似值。</p>
+     *
+     * @param k 需要获取的数量
+     * @return 按待发送消息创建时间从早到晚排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopOldestUnsentClients(int k) {
+        return IMClientHeavyHitterMonitor.getInstance().getTopOldestUnsentClients(k);
+    }
+
+    /**
+     * 获得自连接建立以来接收字节数最多的 {@code k} 个 IM 客户端，{@link IMClientHeavyHitter#getValue()} 为接收的字节数，
+     * 该方法不会返回 {@code null}。
+     *
+     * <p><strong>说明：</strong>该方法仅读取 IO 线程维护的 Top-K 统计信息，不会遍历所有 IM 客户端，排名结果为近似值。</p>
+     *
+     * @param k 需要获取的数量
+     * @return 按接收字节数从大到小排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopReceivedByteClients(int k) {
+        return IMClientHeavyHitterMonitor.getInstance().getTopReceivedByteClients(k);
     }
 
     /**
@@ -282,10 +812,45 @@ public class IMServer implements Closeable {
         return params;
     }
 
+    /**
+     * 获得 IM 客户端会话注册表，如果没有配置会话保留时间及离线消息存储，将会返回 {@code null}。
+     *
+     * @return IM 客户端会话注册表，可能为 {@code null}
+     */
+    IMClientSessionRegistry getSessionRegistry() {
+        return sessionRegistry;
+    }
+
+    private void checkSessionArguments(IMClient client, String token) throws IllegalArgumentException {
+        if (client == null || token == null) {
+            String errorMessage = "IMServer fails to bind session: `null client or token`. `client`:`" + client + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+    }
+
     private void onClientClosed(IMClient unavailableClient) {
-        String id = unavailableClient.getId();
-        if (ESTABLISHED_CLIENT_MAP.remove(id, unavailableClient)) {
+        userIndex.remove(unavailableClient);
+        IMClientSessionRegistry registry = sessionRegistry;
+        if (registry != null) {
+            try {
+                registry.park(unavailableClient);
+            } catch (Exception e) {
+                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                params.put("unavailableClient", unavailableClient);
+                LOGGER.error(LogBuildUtil.buildMethodExecuteFailedLog("IMClientSessionRegistry#park(IMClient client)",
+                        "unexpected error", params), e);
+            }
+        }
+        if (clientRegistry.remove(unavailableClient)) {
+            if (clientIdMap != null) {
+                clientIdMap.remove(unavailableClient.getId(), unavailableClient);
+            }
             clientMonitor.onClosed();
+            IMClusterNode node = clusterNode;
+            if (node != null) {
+                node.onClientClosed(unavailableClient);
+            }
             try {
                 clientInterceptor.onClosed(unavailableClient);
             } catch (Exception e) {
@@ -303,10 +868,70 @@ public class IMServer implements Closeable {
                 "configuration=" + configuration +
                 ", clientInterceptor=" + clientInterceptor +
                 ", clientMonitor=" + clientMonitor +
+                ", sessionRegistry=" + sessionRegistry +
+                ", clusterNode=" + clusterNode +
                 ", state=" + state +
                 '}';
     }
 
+    /**
+     * 连接成功的 IM 客户端只读 Map 视图，Key 为 IM 客户端唯一 ID，通过 {@link #getEstablishedClient(String)} 方法查找，
+     * 遍历时使用 IM 客户端注册表。
+     */
+    private class EstablishedClientMap extends AbstractMap<String, IMClient> {
+
+        private final Set<Entry<String, IMClient>> entrySet = new AbstractSet<Entry<String, IMClient>>() {
+
+            @Override
+            public Iterator<Entry<String, IMClient>> iterator() {
+                Iterator<IMClient> clientIterator = clientRegistry.iterator();
+                return new Iterator<Entry<String, IMClient>>() {
+
+                    @Override
+                    public boolean hasNext() {
+                        return clientIterator.hasNext();
+                    }
+
+                    @Override
+                    public Entry<String, IMClient> next() {
+                        IMClient client = clientIterator.next();
+                        return new SimpleImmutableEntry<>(client.getId(), client);
+                    }
+                };
+            }
+
+            @Override
+            public int size() {
+                return clientRegistry.size();
+            }
+        };
+
+        @Override
+        public IMClient get(Object key) {
+            return key instanceof String ? getEstablishedClient((String) key) : null;
+        }
+
+        @Override
+        public boolean containsKey(Object key) {
+            return get(key) != null;
+        }
+
+        @Override
+        public int size() {
+            return clientRegistry.size();
+        }
+
+        @Override
+        public boolean isEmpty() {
+            return clientRegistry.isEmpty();
+        }
+
+        @Override
+        public Set<Entry<String, IMClient>> entrySet() {
+            return entrySet;
+        }
+    }
+
     private class IMServerTask extends Thread {
 
         private volatile boolean isRunning = true;
@@ -317,7 +942,7 @@ public class IMServer implements Closeable {
             this.serverSocketChannel = ServerSocketChannel.open();
             this.serverSocketChannel.configureBlocking(true);
             this.serverSocketChannel.setOption(StandardSocketOptions.SO_RCVBUF, 16 * 1024); // 16 KB
-            this.serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, false);
+            this.serverSocketChannel.setOption(StandardSocketOptions.SO_REUSEADDR, true); // 排空关闭后的连接处于 TIME_WAIT 状态，允许立即重新监听
             this.serverSocketChannel.bind(new InetSocketAddress(configuration.getPort()), configuration.getBacklog()); // 监听所有地址
         }
 
@@ -328,11 +953,15 @@ public class IMServer implements Closeable {
                 socketConfiguration = SocketConfiguration.DEFAULT;
             }
 
-            IMClientIDGenerator clientIDGenerator = configuration.getClientIDGenerator();
-            if (clientIDGenerator == null) {
-                clientIDGenerator = new IMClientUUIDGenerator();
+            IMClientConfiguration clientConfiguration = configuration.getClientConfiguration();
+            if (clientConfiguration == null) {
+                clientConfiguration = new IMClientConfiguration();
             }
 
+            IMClientAdmissionConfiguration admissionConfiguration = configuration.getAdmissionConfiguration();
+            IMClientAdmissionController admissionController = admissionConfiguration != null ?
+                    new IMClientAdmissionController(admissionConfiguration) : null;
+
             SocketChannel socketChannel;
             while (isRunning) {
                 try {
@@ -349,6 +978,15 @@ public class IMServer implements Closeable {
                 }
 
                 if (socketChannel != null) {
+                    if (admissionController != null) {
+                        int rejectCode = admissionController.admit(socketChannel, System.nanoTime());
+                        if (rejectCode != 0) {
+                            clientMonitor.onRejected(rejectCode);
+                            closeSocketChannel(socketChannel);
+                            continue;
+                        }
+                    }
+
                     long startTime = System.currentTimeMillis();
                     LinkedHashMap<String, Object> params = new LinkedHashMap<>();
                     try {
@@ -361,13 +999,27 @@ public class IMServer implements Closeable {
                         if (clientInterceptor.canConnect(socketChannel)) {
                             IMClientManager manager = managerList.getIdleManager();
                             if (manager != null) {
-                                String id = clientIDGenerator.generate();
+                                long numericId;
+                                String id;
+                                if (numericIDGenerator != null) {
+                                    numericId = numericIDGenerator.generateNumericId();
+                                    id = numericIDGenerator.toId(numericId);
+                                } else {
+                                    numericId = numericIdSequence.incrementAndGet();
+                                    id = clientIDGenerator.generate();
+                                }
                                 params.put("id", id);
-                                IMClient client = new IMClient(id, socketChannel, manager.getSelector(),
+                                IMClient client = new IMClient(id, numericId, socketChannel, manager.getSelector(),
                                         configuration.getMaxWriteByteLength(), configuration.getClientListener(),
-                                        IMServer.this::onClientClosed);
-                                ESTABLISHED_CLIENT_MAP.put(id, client);
+                                        clientConfiguration, clientClosedNotifier);
+                                if (clientIdMap != null) {
+                                    clientIdMap.put(id, client);
+                                }
+                                clientRegistry.put(client);
                                 clientMonitor.onCreated();
+                                if (clusterNode != null) {
+                                    clusterNode.onClientCreated(client);
+                                }
                                 params.put("manager", manager.getName());
                                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                                 RAVEN_IM_CLIENT_LOG.info("Accepts a IMClient success.{}", LogBuildUtil.build(params));
@@ -387,6 +1039,11 @@ public class IMServer implements Closeable {
                                     RAVEN_IM_CLIENT_LOG.error("IMClient fails to establish: `register failed`." + LogBuildUtil.build(params), e);
                                     clientMonitor.onError(IMClientMonitor.ERROR_CODE_FAILS_TO_ESTABLISH);
                                     client.close();
+                                    continue;
+                                }
+                                timeoutIMClientScanner.schedule(client);
+                                if (admissionController != null) {
+                                    admissionController.onEstablished(client, System.nanoTime());
                                 }
                             } else {
                                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
@@ -25,9 +25,14 @@
 package com.heimuheimu.raven;
 
 import com.heimuheimu.raven.clients.*;
+import com.heimuheimu.raven.clients.support.IMClientSequenceIDGenerator;
+import com.heimuheimu.raven.clients.support.IMClientRandomIDGenerator;
+import com.heimuheimu.raven.cluster.IMClusterConfiguration;
 import com.heimuheimu.raven.net.SocketConfiguration;
+import com.heimuheimu.raven.store.OfflineMessageStore;
 
 import java.nio.channels.SocketChannel;
+import java.util.Arrays;
 
 /**
  * {@link IMServer} 使用的配置信息。
@@ -55,7 +60,7 @@ public class IMServerConfiguration {
     private volatile SocketConfiguration socketConfiguration = null;
 
     /**
-     * IM 客户端唯一 ID 生成器，默认为 {@code null}，如果为 {@code null}，将使用默认的 ID 生成器
+     * IM 客户端唯一 ID 生成器，默认为 {@code null}，如果为 {@code null}，将使用 {@link IMClientRandomIDGenerator}
      */
     private volatile IMClientIDGenerator clientIDGenerator = null;
 
@@ -69,16 +74,71 @@ public class IMServerConfiguration {
      */
     private volatile IMClientListener clientListener = null;
 
+    /**
+     * IMServer 创建 IM 客户端使用的扩展配置信息，默认为 {@code null}，如果为 {@code null}，将使用默认的配置信息
+     */
+    private volatile IMClientConfiguration clientConfiguration = null;
+
     /**
      * IM 客户端超时时间，单位：秒，如果小于等于 0，则不会超时，默认为 60 秒
      */
     private volatile int clientTimeout = 60;
 
+    /**
+     * IM 客户端会话保留时间，单位：秒，如果小于等于 0，则不保留会话，默认为 0
+     */
+    private volatile int sessionResumeTimeout = 0;
+
+    /**
+     * IM 客户端保活探测间隔时间，单位：秒，如果小于等于 0，则不发送保活探测帧，默认为 0
+     */
+    private volatile int keepaliveInterval = 0;
+
+    /**
+     * 允许连续未收到回复的保活探测帧数量，超过后将关闭 IM 客户端，默认为 3
+     */
+    private volatile int keepaliveProbeCount = 3;
+
+    /**
+     * IM 客户端保活探测帧，如果为 {@code null}，则不发送保活探测帧，默认为 {@code null}
+     */
+    private volatile byte[] keepaliveProbe = null;
+
+    /**
+     * IM 客户端离线消息存储，默认为 {@code null}
+     */
+    private volatile OfflineMessageStore offlineMessageStore = null;
+
+    /**
+     * 集群节点配置信息，默认为 {@code null}，即不加入集群
+     */
+    private volatile IMClusterConfiguration clusterConfiguration = null;
+
+    /**
+     * 排空关闭时等待待发送字节消息写入完成的最长时间，单位：秒，默认为 30 秒
+     */
+    private volatile int drainTimeout = 30;
+
+    /**
+     * 排空关闭时每一批关闭的 IM 客户端最大数量，默认为 500
+     */
+    private volatile int drainWaveSize = 500;
+
+    /**
+     * 排空关闭时两批关闭操作之间的间隔时间，单位：毫秒，默认为 200 毫秒
+     */
+    private volatile int drainWaveInterval = 200;
+
     /**
      * IMServer 使用 IM 客户端管理器数量，默认为 20，如果小于等 0，则使用具体实现指定的默认值
      */
     private volatile int poolSize = 20;
 
+    /**
+     * 自动调整时允许的最大 IM 客户端管理器数量，如果小于等于 {@link #poolSize}，则不自动调整，默认为 0
+     */
+    private volatile int maxPoolSize = 0;
+
     /**
      * IMServer 创建 IM 客户端管理器使用的配置信息，默认为 {@code null}，如果为 {@code null}，将使用默认的配置信息
      */
@@ -94,6 +154,11 @@ public class IMServerConfiguration {
      */
     private volatile IMClientInterceptor clientInterceptor = null;
 
+    /**
+     * 接收连接时使用的准入控制配置信息，默认为 {@code null}，即不进行准入控制
+     */
+    private volatile IMClientAdmissionConfiguration admissionConfiguration = null;
+
     /**
      * 获得 IMServer 使用的监听端口，默认为 4182。
      *
@@ -150,7 +215,7 @@ public class IMServerConfiguration {
     }
 
     /**
-     * 获得 IM 客户端唯一 ID 生成器，默认为 {@code null}，如果为 {@code null}，将使用默认的 ID 生成器。
+     * 获得 IM 客户端唯一 ID 生成器，默认为 {@code null}，如果为 {@code null}，将使用 {@link IMClientRandomIDGenerator}。
      *
      * @return IM 客户端唯一 ID 生成器
      */
@@ -161,6 +226,12 @@ public class IMServerConfiguration {
     /**
      * 设置 IM 客户端唯一 ID 生成器，允许为 {@code null}。
      *
+     * <p>
+     *     如果生成器实现了 {@link IMClientNumericIDGenerator} 接口（例如默认的 {@link IMClientRandomIDGenerator}），IMServer 仅使用数字 ID
+     *     注册表查找 IM 客户端，否则（例如 {@link com.heimuheimu.raven.clients.support.IMClientUUIDGenerator}）需额外维护一个以字符串 ID 为 Key 的索引。
+     *     {@link IMClientSequenceIDGenerator} 生成的 ID 是可预测的，如果 IM 客户端 ID 会暴露给其它终端，或被用作凭证的一部分，应使用默认的生成器。
+     * </p>
+     *
      * @param clientIDGenerator IM 客户端唯一 ID 生成器
      */
     public void setClientIDGenerator(IMClientIDGenerator clientIDGenerator) {
@@ -221,6 +292,193 @@ public class IMServerConfiguration {
         this.clientTimeout = clientTimeout;
     }
 
+    /**
+     * 获得 IM 客户端会话保留时间，单位：秒，如果小于等于 0，则不保留会话，默认为 0。
+     *
+     * @return IM 客户端会话保留时间
+     * @see IMServer#bindSession(IMClient, String)
+     */
+    public int getSessionResumeTimeout() {
+        return sessionResumeTimeout;
+    }
+
+    /**
+     * 设置 IM 客户端会话保留时间，单位：秒，如果小于等于 0，则不保留会话。
+     *
+     * <p>
+     *     绑定了会话令牌的 IM 客户端关闭后，其待发送字节消息将在该时间内保留，期间使用相同令牌重新连接的 IM 客户端可继续发送这些字节消息。
+     * </p>
+     *
+     * @param sessionResumeTimeout IM 客户端会话保留时间
+     */
+    public void setSessionResumeTimeout(int sessionResumeTimeout) {
+        this.sessionResumeTimeout = sessionResumeTimeout;
+    }
+
+    /**
+     * 获得 IM 客户端保活探测间隔时间，单位：秒，如果小于等于 0，则不发送保活探测帧，默认为 0。
+     *
+     * @return IM 客户端保活探测间隔时间
+     */
+    public int getKeepaliveInterval() {
+        return keepaliveInterval;
+    }
+
+    /**
+     * 设置 IM 客户端保活探测间隔时间，单位：秒，如果小于等于 0，则不发送保活探测帧，仅在设置了保活探测帧时有效。
+     *
+     * <p>
+     *     IM 客户端超过该时间未发送任何数据时，将向其发送保活探测帧，此后每隔该时间再次发送，直至收到 IM 客户端发送的任意数据。
+     *     连续 {@link #getKeepaliveProbeCount()} 个保活探测帧未收到回复时，将关闭该 IM 客户端。该时间应小于 NAT 设备回收空闲连接的时间，
+     *     通常也应小于 {@link #getClientTimeout()}。为避免大量同时空闲的 IM 客户端在同一时刻被探测，每个 IM 客户端的探测时间将随机延后不超过该时间的 1/4。
+     * </p>
+     *
+     * @param keepaliveInterval IM 客户端保活探测间隔时间
+     * @see TimeoutIMClientScanner
+     */
+    public void setKeepaliveInterval(int keepaliveInterval) {
+        this.keepaliveInterval = keepaliveInterval;
+    }
+
+    /**
+     * 获得允许连续未收到回复的保活探测帧数量，超过后将关闭 IM 客户端，默认为 3。
+     *
+     * @return 允许连续未收到回复的保活探测帧数量
+     */
+    public int getKeepaliveProbeCount() {
+        return keepaliveProbeCount;
+    }
+
+    /**
+     * 设置允许连续未收到回复的保活探测帧数量，超过后将关闭 IM 客户端，如果小于等于 0，则使用 1。
+     *
+     * @param keepaliveProbeCount 允许连续未收到回复的保活探测帧数量
+     */
+    public void setKeepaliveProbeCount(int keepaliveProbeCount) {
+        this.keepaliveProbeCount = keepaliveProbeCount;
+    }
+
+    /**
+     * 获得 IM 客户端保活探测帧，默认为 {@code null}。
+     *
+     * @return IM 客户端保活探测帧，可能为 {@code null}
+     */
+    public byte[] getKeepaliveProbe() {
+        return keepaliveProbe;
+    }
+
+    /**
+     * 设置 IM 客户端保活探测帧，允许为 {@code null}，如果为 {@code null} 或空数组，则不发送保活探测帧。
+     *
+     * <p>
+     *     保活探测帧在所有 IM 客户端之间共享，不会创建字节消息，IM 客户端收到后应回复任意数据，例如一个心跳帧，
+     *     配合 {@link IMClientConfiguration#setHeartbeatMatcher(IMClientHeartbeatMatcher)} 使用时，回复的心跳帧将在 Selector 线程中直接处理。
+     * </p>
+     *
+     * @param keepaliveProbe IM 客户端保活探测帧，设置后请勿修改数组内容
+     */
+    public void setKeepaliveProbe(byte[] keepaliveProbe) {
+        this.keepaliveProbe = keepaliveProbe;
+    }
+
+    /**
+     * 获得 IM 客户端离线消息存储，默认为 {@code null}。
+     *
+     * @return IM 客户端离线消息存储，可能为 {@code null}
+     */
+    public OfflineMessageStore getOfflineMessageStore() {
+        return offlineMessageStore;
+    }
+
+    /**
+     * 设置 IM 客户端离线消息存储，允许为 {@code null}，离线消息存储的启动与关闭由使用方负责。
+     *
+     * <p>
+     *     设置后，绑定了会话令牌的 IM 客户端关闭时未能送达或未被确认的字节消息，在会话保留时间结束后（未配置会话保留时间时为立即）
+     *     将以会话令牌为接收方保存到离线消息存储，使用相同令牌重新连接的 IM 客户端将从离线消息存储中读取并继续发送。
+     * </p>
+     *
+     * @param offlineMessageStore IM 客户端离线消息存储
+     * @see IMServer#resumeSession(IMClient, String)
+     */
+    public void setOfflineMessageStore(OfflineMessageStore offlineMessageStore) {
+        this.offlineMessageStore = offlineMessageStore;
+    }
+
+    /**
+     * 获得集群节点配置信息，默认为 {@code null}。
+     *
+     * @return 集群节点配置信息，可能为 {@code null}
+     */
+    public IMClusterConfiguration getClusterConfiguration() {
+        return clusterConfiguration;
+    }
+
+    /**
+     * 设置集群节点配置信息，允许为 {@code null}，设置后 IMServer 将作为集群节点启动，可通过
+     * {@link IMServer#asyncRoute(java.util.Collection, ByteMessage, ByteMessageCallback)} 方法向连接在其它节点上的 IM 客户端发送字节消息。
+     *
+     * @param clusterConfiguration 集群节点配置信息
+     */
+    public void setClusterConfiguration(IMClusterConfiguration clusterConfiguration) {
+        this.clusterConfiguration = clusterConfiguration;
+    }
+
+    /**
+     * 获得排空关闭时等待待发送字节消息写入完成的最长时间，单位：秒，默认为 30 秒。
+     *
+     * @return 排空关闭的最长等待时间
+     */
+    public int getDrainTimeout() {
+        return drainTimeout;
+    }
+
+    /**
+     * 设置排空关闭时等待待发送字节消息写入完成的最长时间，单位：秒，超过该时间后，剩余的 IM 客户端将不再等待，直接分批关闭。
+     *
+     * @param drainTimeout 排空关闭的最长等待时间
+     * @see IMServer#drain(ByteMessage)
+     */
+    public void setDrainTimeout(int drainTimeout) {
+        this.drainTimeout = drainTimeout;
+    }
+
+    /**
+     * 获得排空关闭时每一批关闭的 IM 客户端最大数量，默认为 500。
+     *
+     * @return 每一批关闭的 IM 客户端最大数量
+     */
+    public int getDrainWaveSize() {
+        return drainWaveSize;
+    }
+
+    /**
+     * 设置排空关闭时每一批关闭的 IM 客户端最大数量，如果小于等于 0，则不分批，避免被关闭的 IM 客户端同时重连到其它节点。
+     *
+     * @param drainWaveSize 每一批关闭的 IM 客户端最大数量
+     */
+    public void setDrainWaveSize(int drainWaveSize) {
+        this.drainWaveSize = drainWaveSize;
+    }
+
+    /**
+     * 获得排空关闭时两批关闭操作之间的间隔时间，单位：毫秒，默认为 200 毫秒。
+     *
+     * @return 两批关闭操作之间的间隔时间
+     */
+    public int getDrainWaveInterval() {
+        return drainWaveInterval;
+    }
+
+    /**
+     * 设置排空关闭时两批关闭操作之间的间隔时间，单位：毫秒。
+     *
+     * @param drainWaveInterval 两批关闭操作之间的间隔时间
+     */
+    public void setDrainWaveInterval(int drainWaveInterval) {
+        this.drainWaveInterval = drainWaveInterval;
+    }
+
     /**
      * 获得 IMServer 使用的 IM 客户端连接管理器数量，默认为 20，如果小于等于 0，则使用具体实现指定的默认值。
      *
@@ -239,6 +497,43 @@ public class IMServerConfiguration {
         this.poolSize = poolSize;
     }
 
+    /**
+     * 获得自动调整时允许的最大 IM 客户端管理器数量，如果小于等于 {@link #getPoolSize()}，则不自动调整，默认为 0。
+     *
+     * @return 自动调整时允许的最大 IM 客户端管理器数量
+     */
+    public int getMaxPoolSize() {
+        return maxPoolSize;
+    }
+
+    /**
+     * 设置自动调整时允许的最大 IM 客户端管理器数量，如果大于 {@link #getPoolSize()}，将根据 Selector 线程的繁忙程度在两者之间自动调整管理器数量，
+     * 也可通过 {@link IMClientManagerList#resize(int)} 方法手动调整。
+     *
+     * @param maxPoolSize 自动调整时允许的最大 IM 客户端管理器数量
+     */
+    public void setMaxPoolSize(int maxPoolSize) {
+        this.maxPoolSize = maxPoolSize;
+    }
+
+    /**
+     * 获得 IMServer 创建 IM 客户端使用的扩展配置信息，默认为 {@code null}，如果为 {@code null}，将使用默认的配置信息。
+     *
+     * @return IMServer 创建 IM 客户端使用的扩展配置信息
+     */
+    public IMClientConfiguration getClientConfiguration() {
+        return clientConfiguration;
+    }
+
+    /**
+     * 设置 IMServer 创建 IM 客户端使用的扩展配置信息，允许为 {@code null}。
+     *
+     * @param clientConfiguration IMServer 创建 IM 客户端使用的扩展配置信息
+     */
+    public void setClientConfiguration(IMClientConfiguration clientConfiguration) {
+        this.clientConfiguration = clientConfiguration;
+    }
+
     /**
      * 获得 IMServer 创建 IM 客户端管理器使用的配置信息，默认为 {@code null}，如果为 {@code null}，将使用默认的配置信息。
      *
@@ -293,6 +588,25 @@ public class IMServerConfiguration {
         this.clientInterceptor = clientInterceptor;
     }
 
+    /**
+     * 获得接收连接时使用的准入控制配置信息，默认为 {@code null}，即不进行准入控制。
+     *
+     * @return 准入控制配置信息，可能为 {@code null}
+     */
+    public IMClientAdmissionConfiguration getAdmissionConfiguration() {
+        return admissionConfiguration;
+    }
+
+    /**
+     * 设置接收连接时使用的准入控制配置信息，允许为 {@code null}，被拒绝的连接将在创建 IM 客户端之前直接关闭，
+     * 拒绝次数可通过 {@link com.heimuheimu.raven.monitor.IMClientMonitor#getRejectedCount(int)} 方法获取。
+     *
+     * @param admissionConfiguration 准入控制配置信息
+     */
+    public void setAdmissionConfiguration(IMClientAdmissionConfiguration admissionConfiguration) {
+        this.admissionConfiguration = admissionConfiguration;
+    }
+
     @Override
     public String toString() {
         return "IMServerConfiguration{" +
@@ -302,11 +616,23 @@ public class IMServerConfiguration {
                 ", clientIDGenerator=" + clientIDGenerator +
                 ", maxWriteByteLength=" + maxWriteByteLength +
                 ", clientListener=" + clientListener +
+                ", clientConfiguration=" + clientConfiguration +
                 ", clientTimeout=" + clientTimeout +
+                ", sessionResumeTimeout=" + sessionResumeTimeout +
+                ", keepaliveInterval=" + keepaliveInterval +
+                ", keepaliveProbeCount=" + keepaliveProbeCount +
+                ", keepaliveProbe=" + Arrays.toString(keepaliveProbe) +
+                ", offlineMessageStore=" + offlineMessageStore +
+                ", clusterConfiguration=" + clusterConfiguration +
+                ", drainTimeout=" + drainTimeout +
+                ", drainWaveSize=" + drainWaveSize +
+                ", drainWaveInterval=" + drainWaveInterval +
                 ", poolSize=" + poolSize +
+                ", maxPoolSize=" + maxPoolSize +
                 ", clientManagerConfiguration=" + clientManagerConfiguration +
                 ", clientManagerListListener=" + clientManagerListListener +
                 ", clientInterceptor=" + clientInterceptor +
+                ", admissionConfiguration=" + admissionConfiguration +
                 '}';
     }
 }
@@ -35,10 +35,20 @@ import org.slf4j.LoggerFactory;
 import java.io.Closeable;
 import java.util.LinkedHashMap;
 import java.util.Map;
+import java.util.concurrent.ConcurrentLinkedQueue;
 import java.util.concurrent.TimeUnit;
 
 /**
- * 超时 IM 客户端检测器，对超时的 IM 客户端执行关闭操作。
+ * 超时 IM 客户端检测器，对超时的 IM 客户端执行关闭操作，如果配置了会话保留时间，同时清理超过保留时间的 IM 客户端会话。
+ * 对于在一个扫描周期内没有活动的 IM 客户端，会释放其消息队列等空闲时不需要的内存，因此即使未配置超时时间，{@link IMServer} 也总会启动该检测器。
+ *
+ * <p>
+ *     如果配置了保活探测，新建立的 IM 客户端将加入一个刻度为 10 毫秒的时间轮，到期时向空闲的 IM 客户端发送保活探测帧，并关闭连续多次未回复的
+ *     IM 客户端，期间收到过数据的 IM 客户端按最新的到期时间重新加入时间轮，每个刻度只处理到期的 IM 客户端，无需遍历全部 IM 客户端。
+ *     每个 IM 客户端的探测时间根据其 ID 延后一个固定的随机值，避免大量同时空闲的 IM 客户端在同一时刻被探测。超时检测及内存释放仍按原扫描周期执行。
+ *     时间轮的槽位数量根据保活探测间隔时间计算，一圈可容纳最长的到期时间，定时器不会在到期前被重复处理，
+ *     检测线程只在下一个非空槽位到期或下一次扫描时唤醒，时间轮为空时不会按刻度空转。
+ * </p>
  *
  * <p><strong>说明：</strong>TimeoutIMClientScanner 类是线程安全的，可在多个线程中使用同一个实例。</p>
  *
@@ -52,6 +62,31 @@ public class TimeoutIMClientScanner implements Closeable {
 
     private static final Logger RAVEN_IM_CLIENT_TIMEOUT_LOG = LoggerFactory.getLogger("RAVEN_IM_CLIENT_TIMEOUT_LOG");
 
+    /**
+     * 保活探测结果：无需探测
+     */
+    private static final int KEEPALIVE_NONE = 0;
+
+    /**
+     * 保活探测结果：已发送保活探测帧
+     */
+    private static final int KEEPALIVE_PROBED = 1;
+
+    /**
+     * 保活探测结果：连续多次未回复或探测失败，已关闭 IM 客户端
+     */
+    private static final int KEEPALIVE_TIMEOUT = 2;
+
+    /**
+     * 保活探测时间轮的刻度，单位：毫秒
+     */
+    private static final long KEEPALIVE_TICK = 10;
+
+    /**
+     * 保活探测时间轮的最大槽位数量，必须为 2 的幂，保活探测间隔时间超过一圈（约 11 分钟）时，定时器每圈会被检查一次，在对应轮次到达前保留在槽位中
+     */
+    private static final int MAX_KEEPALIVE_WHEEL_SIZE = 1 << 16;
+
     /**
      * IM 服务提供者
      */
@@ -60,7 +95,7 @@ public class TimeoutIMClientScanner implements Closeable {
     /**
      * 超时 IM 客户端扫描任务
      */
-    private ScanTask task;
+    private volatile ScanTask task;
 
     /**
      * 当前 TimeoutIMClientScanner 实例所处状态
@@ -86,9 +121,24 @@ public class TimeoutIMClientScanner implements Closeable {
             try {
                 long clientTimeoutMills = TimeUnit.MILLISECONDS.convert(server.getConfiguration().getClientTimeout(),
                         TimeUnit.SECONDS);
-                long delay = Math.min(clientTimeoutMills / 2, 60000);
+                long delay = 60000;
+                if (clientTimeoutMills > 0) {
+                    delay = Math.min(clientTimeoutMills / 2, delay);
+                }
+                IMClientSessionRegistry sessionRegistry = server.getSessionRegistry();
+                if (sessionRegistry != null && sessionRegistry.getTimeout() > 0) {
+                    delay = Math.min(sessionRegistry.getTimeout() / 2, delay);
+                }
+
+                IMServerConfiguration configuration = server.getConfiguration();
+                byte[] keepaliveProbe = configuration.getKeepaliveProbe();
+                long keepaliveInterval = 0;
+                if (configuration.getKeepaliveInterval() > 0 && keepaliveProbe != null && keepaliveProbe.length > 0) {
+                    keepaliveInterval = TimeUnit.MILLISECONDS.convert(configuration.getKeepaliveInterval(), TimeUnit.SECONDS);
+                }
+                int keepaliveProbeCount = Math.max(configuration.getKeepaliveProbeCount(), 1);
 
-                task = new ScanTask(clientTimeoutMills, delay);
+                task = new ScanTask(clientTimeoutMills, delay, keepaliveInterval, keepaliveProbeCount, keepaliveProbe);
                 task.setName("raven-timeout-im-client-scanner");
                 task.setDaemon(true);
                 task.start();
@@ -97,6 +147,10 @@ public class TimeoutIMClientScanner implements Closeable {
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                 params.put("timeout", clientTimeoutMills + "ms");
                 params.put("delay", delay + "ms");
+                if (keepaliveInterval > 0) {
+                    params.put("keepaliveInterval", keepaliveInterval + "ms");
+                    params.put("keepaliveProbeCount", keepaliveProbeCount);
+                }
                 RAVEN_IM_CLIENT_TIMEOUT_LOG.info("Started TimeoutIMClientScanner.{}", LogBuildUtil.build(params));
             } catch (Exception e) {
                 LinkedHashMap<String, Object> params = new LinkedHashMap<>();
@@ -110,6 +164,18 @@ public class TimeoutIMClientScanner implements Closeable {
         }
     }
 
+    /**
+     * 将新建立的 IM 客户端加入保活探测时间轮，由 {@link IMServer} 在 IM 客户端注册成功后调用，未配置保活探测时不会有任何效果。
+     *
+     * @param client 新建立的 IM 客户端
+     */
+    public void schedule(IMClient client) {
+        ScanTask task = this.task;
+        if (task != null) {
+            task.schedule(client);
+        }
+    }
+
     /**
      * 关闭超时 IM 客户端检测器。
      */
@@ -143,43 +209,79 @@ public class TimeoutIMClientScanner implements Closeable {
 
         private final long delay;
 
-        public ScanTask(long timeout, long delay) {
+        /**
+         * 保活探测间隔时间，单位：毫秒，为 0 时不发送保活探测帧
+         */
+        private final long keepaliveInterval;
+
+        /**
+         * 允许连续未收到回复的保活探测帧数量
+         */
+        private final int keepaliveProbeCount;
+
+        /**
+         * 保活探测帧，所有 IM 客户端共享
+         */
+        private final byte[] keepaliveProbe;
+
+        /**
+         * 每个 IM 客户端探测时间延后的最大值（不包含），单位：毫秒
+         */
+        private final long keepaliveJitter;
+
+        /**
+         * 等待加入时间轮的 IM 客户端队列，由接收连接的线程加入，在扫描线程中取出
+         */
+        private final ConcurrentLinkedQueue<IMClient> pendingClientQueue = new ConcurrentLinkedQueue<>();
+
+        /**
+         * 保活探测时间轮，每个槽位对应一个刻度，存放到期时间落在该刻度上的定时器链表，槽位数量为 2 的幂，仅在扫描线程中访问
+         */
+        private final KeepaliveTimer[] wheel;
+
+        /**
+         * 时间轮最后一次处理的刻度，刻度值为时间戳除以 {@link #KEEPALIVE_TICK}
+         */
+        private long lastTick;
+
+        /**
+         * 上一次扫描至今发送的保活探测帧数量
+         */
+        private int probedCount = 0;
+
+        /**
+         * 上一次扫描至今因保活探测超时关闭的 IM 客户端数量
+         */
+        private int keepaliveTimeoutCount = 0;
+
+        public ScanTask(long timeout, long delay, long keepaliveInterval, int keepaliveProbeCount, byte[] keepaliveProbe) {
             this.timeout = timeout;
             this.delay = delay;
+            this.keepaliveInterval = keepaliveInterval;
+            this.keepaliveProbeCount = keepaliveProbeCount;
+            this.keepaliveProbe = keepaliveProbe;
+            this.keepaliveJitter = Math.max(keepaliveInterval / 4, 1);
+            this.wheel = keepaliveInterval > 0 ? new KeepaliveTimer[getWheelSize(keepaliveInterval + keepaliveJitter)] : null;
+            this.lastTick = System.currentTimeMillis() / KEEPALIVE_TICK;
         }
 
         @Override
         public void run() {
+            long nextScanTime = 0;
             while (isRunning) {
                 long startTime = System.currentTimeMillis();
                 try {
-                    Map<String, IMClient> clientMap = server.getEstablishedClientMap();
-                    int count = 0;
-                    int timeoutCount = 0;
-                    for (String clientId : clientMap.keySet()) {
-                        count++;
-                        IMClient client = clientMap.get(clientId);
-                        if (client != null && isTimeout(client)) {
-                            timeoutCount++;
-                            IMClientMonitor.getInstance().onError(IMClientMonitor.ERROR_CODE_TIMEOUT);
-                            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-                            try {
-                                params.put("remote", client.getSocketChannel().getRemoteAddress());
-                                params.put("local", client.getSocketChannel().getLocalAddress());
-                            } catch (Exception ignored) {}
-                            params.put("id", client.getId());
-                            RAVEN_IM_CLIENT_LOG.error("IMClient timeout.{}", LogBuildUtil.build(params));
-                            client.close();
-                        }
+                    if (wheel != null) {
+                        advance(startTime);
+                    }
+                    if (startTime >= nextScanTime) {
+                        scan(startTime);
+                        nextScanTime = startTime + delay;
                     }
-                    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-                    params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
-                    params.put("count", count);
-                    params.put("timeoutCount", timeoutCount);
-                    RAVEN_IM_CLIENT_TIMEOUT_LOG.info("TimeoutIMClientScanner scan success.{}", LogBuildUtil.build(params));
 
                     try {
-                        long sleepTime = delay - (System.currentTimeMillis() - startTime);
+                        long wakeupTime = wheel != null ? getNextAdvanceTime(nextScanTime) : nextScanTime;
+                        long sleepTime = wakeupTime - System.currentTimeMillis();
                         if (sleepTime > 0) {
                             Thread.sleep(sleepTime);
                         }
@@ -193,13 +295,265 @@ public class TimeoutIMClientScanner implements Closeable {
             }
         }
 
+        /**
+         * 扫描全部 IM 客户端，关闭超时的 IM 客户端，释放空闲 IM 客户端的内存，并清理超过保留时间的会话。
+         *
+         * @param startTime 扫描开始时间
+         */
+        private void scan(long startTime) {
+            Map<String, IMClient> clientMap = server.getEstablishedClientMap();
+            int count = 0;
+            int timeoutCount = 0;
+            int compactedCount = 0;
+            long idleTime = startTime - delay; // 在一个扫描周期内没有活动的 IM 客户端，释放其空闲时不需要的内存
+            for (IMClient client : clientMap.values()) {
+                count++;
+                if (client.getLastActiveTime() < idleTime && client.compact()) {
+                    compactedCount++;
+                }
+                if (timeout > 0 && isTimeout(client)) { // 未配置超时时间时不检查超时
+                    timeoutCount++;
+                    IMClientMonitor.getInstance().onError(IMClientMonitor.ERROR_CODE_TIMEOUT);
+                    RAVEN_IM_CLIENT_LOG.error("IMClient timeout.{}", LogBuildUtil.build(buildClientParams(client)));
+                    client.close();
+                }
+            }
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+            params.put("count", count);
+            params.put("timeoutCount", timeoutCount);
+            params.put("compactedCount", compactedCount);
+            if (wheel != null) { // 保活探测的统计数据为上一次扫描至今的累计值
+                params.put("probedCount", probedCount);
+                params.put("keepaliveTimeoutCount", keepaliveTimeoutCount);
+                probedCount = 0;
+                keepaliveTimeoutCount = 0;
+            }
+            IMClientSessionRegistry sessionRegistry = server.getSessionRegistry();
+            if (sessionRegistry != null) {
+                params.put("expiredSessionCount", sessionRegistry.removeExpired());
+            }
+            RAVEN_IM_CLIENT_TIMEOUT_LOG.info("TimeoutIMClientScanner scan success.{}", LogBuildUtil.build(params));
+        }
+
         private boolean isTimeout(IMClient client) {
             return System.currentTimeMillis() - client.getLastActiveTime() > timeout;
         }
 
+        /**
+         * 将新建立的 IM 客户端加入等待队列，在扫描线程中加入时间轮。
+         *
+         * @param client IM 客户端
+         */
+        private void schedule(IMClient client) {
+            if (wheel != null) {
+                pendingClientQueue.offer(client);
+            }
+        }
+
+        /**
+         * 将时间轮推进到当前时间所在的刻度，依次处理经过的槽位中已到期的定时器。
+         *
+         * @param currentTime 当前时间
+         */
+        private void advance(long currentTime) {
+            long currentTick = currentTime / KEEPALIVE_TICK;
+            if (currentTick - lastTick > wheel.length) { // 线程停顿超过一圈时，每个槽位只需处理一次
+                lastTick = currentTick - wheel.length;
+            }
+            IMClient client;
+            while ((client = pendingClientQueue.poll()) != null) {
+                if (client.isActive()) {
+                    add(new KeepaliveTimer(client), getKeepaliveDeadline(client));
+                }
+            }
+            while (lastTick < currentTick) {
+                lastTick++;
+                int index = (int) (lastTick & (wheel.length - 1));
+                KeepaliveTimer timer = wheel[index];
+                wheel[index] = null;
+                while (timer != null) {
+                    KeepaliveTimer next = timer.next;
+                    timer.next = null;
+                    if (timer.deadline / KEEPALIVE_TICK > lastTick) { // 到期时间在后续的轮次中
+                        timer.next = wheel[index];
+                        wheel[index] = timer;
+                    } else {
+                        expire(timer, currentTime);
+                    }
+                    timer = next;
+                }
+            }
+        }
+
+        /**
+         * 获得下一次需要推进时间轮的时间，即下一个非空槽位对应刻度的开始时间，如果在 {@code limitTime} 之前没有非空槽位，返回 {@code limitTime}。
+         * 新建立的 IM 客户端最早在保活探测间隔时间后到期，因此等待时间不超过保活探测间隔时间，等待期间加入的 IM 客户端在唤醒后加入时间轮。
+         *
+         * @param limitTime 最晚的唤醒时间
+         * @return 下一次需要推进时间轮的时间
+         */
+        private long getNextAdvanceTime(long limitTime) {
+            limitTime = Math.min(limitTime, System.currentTimeMillis() + keepaliveInterval);
+            long limitTick = Math.min(limitTime / KEEPALIVE_TICK, lastTick + wheel.length);
+            for (long tick = lastTick + 1; tick <= limitTick; tick++) {
+                if (wheel[(int) (tick & (wheel.length - 1))] != null) {
+                    return Math.min(tick * KEEPALIVE_TICK, limitTime);
+                }
+            }
+            return limitTime;
+        }
+
+        /**
+         * 处理已到期的定时器，如果 IM 客户端在此期间有数据到达，按最新的到期时间重新加入时间轮，否则发送保活探测帧或关闭该 IM 客户端。
+         *
+         * @param timer 已到期的定时器
+         * @param currentTime 当前时间
+         */
+        private void expire(KeepaliveTimer timer, long currentTime) {
+            IMClient client = timer.client;
+            if (!client.isActive()) { // 已关闭的 IM 客户端不再加入时间轮
+                return;
+            }
+            int result = keepalive(client, currentTime);
+            if (result == KEEPALIVE_TIMEOUT) {
+                keepaliveTimeoutCount++;
+                return;
+            }
+            if (result == KEEPALIVE_PROBED) {
+                probedCount++;
+            }
+            add(timer, Math.max(getKeepaliveDeadline(client), currentTime + KEEPALIVE_TICK));
+        }
+
+        /**
+         * 将定时器加入时间轮，如果到期时间所在的刻度已处理过，将在下一个刻度处理。
+         *
+         * @param timer 定时器
+         * @param deadline 到期时间
+         */
+        private void add(KeepaliveTimer timer, long deadline) {
+            long tick = Math.max(deadline / KEEPALIVE_TICK, lastTick + 1);
+            int index = (int) (tick & (wheel.length - 1));
+            timer.deadline = deadline;
+            timer.next = wheel[index];
+            wheel[index] = timer;
+        }
+
+        /**
+         * 获得 IM 客户端下一次需要发送保活探测帧的时间，空闲时间从最后一次接收到数据（尚未收到数据时为建立连接或最后一次写入）开始计算，
+         * 已有未回复的保活探测帧时从最后一次发送保活探测帧开始计算。
+         *
+         * @param client IM 客户端
+         * @return 下一次需要发送保活探测帧的时间
+         */
+        private long getKeepaliveDeadline(IMClient client) {
+            long baseTime;
+            if (client.getUnansweredProbeCount() > 0) {
+                baseTime = client.getLastProbeTime();
+            } else {
+                long lastReceivedTime = client.getLastReceivedTime();
+                baseTime = lastReceivedTime > 0 ? lastReceivedTime : client.getLastActiveTime();
+            }
+            return baseTime + keepaliveInterval + getJitter(client);
+        }
+
+        /**
+         * 对 IM 客户端执行保活探测，如果 IM 客户端已空闲超过保活探测间隔时间，发送保活探测帧，如果连续未回复的保活探测帧已达到上限，关闭该 IM 客户端。
+         *
+         * @param client IM 客户端
+         * @param currentTime 当前时间
+         * @return 保活探测结果
+         */
+        private int keepalive(IMClient client, long currentTime) {
+            if (currentTime < getKeepaliveDeadline(client)) {
+                return KEEPALIVE_NONE;
+            }
+            int unansweredProbeCount = client.getUnansweredProbeCount();
+            if (unansweredProbeCount >= keepaliveProbeCount) {
+                IMClientMonitor.getInstance().onError(IMClientMonitor.ERROR_CODE_TIMEOUT);
+                LinkedHashMap<String, Object> params = buildClientParams(client);
+                params.put("unansweredProbeCount", unansweredProbeCount);
+                params.put("lastReceivedTime", client.getLastReceivedTime());
+                RAVEN_IM_CLIENT_LOG.error("IMClient keepalive timeout.{}", LogBuildUtil.build(params));
+                client.close();
+                return KEEPALIVE_TIMEOUT;
+            }
+            try {
+                return client.probe(keepaliveProbe) ? KEEPALIVE_PROBED : KEEPALIVE_NONE;
+            } catch (Exception e) {
+                IMClientMonitor.getInstance().onError(IMClientMonitor.ERROR_CODE_TIMEOUT);
+                RAVEN_IM_CLIENT_LOG.error("IMClient fails to probe: `unexpected error`." + LogBuildUtil.build(buildClientParams(client)), e);
+                client.close();
+                return KEEPALIVE_TIMEOUT;
+            }
+        }
+
+        /**
+         * 获得 IM 客户端探测时间延后的毫秒数，同一个 IM 客户端每次计算结果相同，不同 IM 客户端均匀分布在 [0, keepaliveJitter) 范围内。
+         *
+         * @param client IM 客户端
+         * @return 探测时间延后的毫秒数
+         */
+        private long getJitter(IMClient client) {
+            long hash = client.getNumericId() != 0 ? client.getNumericId() : client.getId().hashCode();
+            hash *= 0x9E3779B97F4A7C15L;
+            return (hash >>> 1) % keepaliveJitter;
+        }
+
+        private LinkedHashMap<String, Object> buildClientParams(IMClient client) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            try {
+                params.put("remote", client.getSocketChannel().getRemoteAddress());
+                params.put("local", client.getSocketChannel().getLocalAddress());
+            } catch (Exception ignored) {}
+            params.put("id", client.getId());
+            return params;
+        }
+
         private void close() {
             this.isRunning = false;
             interrupt();
         }
     }
+
+    /**
+     * 计算保活探测时间轮的槽位数量，为可容纳最长到期时间的最小 2 的幂，不超过 {@link #MAX_KEEPALIVE_WHEEL_SIZE}。
+     *
+     * @param maxDelay 定时器到期时间距加入时间轮的最大间隔，单位：毫秒
+     * @return 时间轮的槽位数量
+     */
+    private static int getWheelSize(long maxDelay) {
+        long tickCount = maxDelay / KEEPALIVE_TICK + 2; // 加入时可能已跨过当前刻度，预留两个刻度
+        int wheelSize = 1;
+        while (wheelSize < tickCount && wheelSize < MAX_KEEPALIVE_WHEEL_SIZE) {
+            wheelSize <<= 1;
+        }
+        return wheelSize;
+    }
+
+    /**
+     * 保活探测时间轮中的定时器，每个 IM 客户端对应一个，到期后重复使用，仅在扫描线程中访问。
+     */
+    private static class KeepaliveTimer {
+
+        /**
+         * IM 客户端
+         */
+        private final IMClient client;
+
+        /**
+         * 到期时间
+         */
+        private long deadline;
+
+        /**
+         * 同一槽位中的下一个定时器
+         */
+        private KeepaliveTimer next;
+
+        private KeepaliveTimer(IMClient client) {
+            this.client = client;
+        }
+    }
 }
@@ -35,6 +35,21 @@ import java.util.Arrays;
  */
 public class ByteMessage {
 
+    /**
+     * 字节消息优先级：高，适用于实时聊天消息、踢下线通知等需要尽快送达的消息
+     */
+    public static final int PRIORITY_HIGH = 0;
+
+    /**
+     * 字节消息优先级：普通，默认使用此优先级
+     */
+    public static final int PRIORITY_NORMAL = 1;
+
+    /**
+     * 字节消息优先级：低，适用于历史消息同步等数据量大、对延迟不敏感的消息
+     */
+    public static final int PRIORITY_LOW = 2;
+
     /**
      * 字节消息 ID
      */
@@ -51,15 +66,119 @@ public class ByteMessage {
     private final long createdTime;
 
     /**
-     * 构造一个字节消息。
+     * 字节消息过期时间，如果小于等于 0，则永不过期
+     */
+    private final long expiredTime;
+
+    /**
+     * 字节消息优先级
+     */
+    private final int priority;
+
+    /**
+     * 是否允许分块写入
+     */
+    private final boolean chunked;
+
+    /**
+     * 字节消息槽位，为 {@code null} 时不参与合并
+     */
+    private final String slotKey;
+
+    /**
+     * 构造一个永不过期的字节消息。
      *
      * @param id 字节消息 ID
      * @param content 字节消息内容
      */
     public ByteMessage(String id, byte[] content) {
+        this(id, content, 0);
+    }
+
+    /**
+     * 构造一个字节消息，如果该消息在有效期内未能开始写入，将会被丢弃，并通过 {@link IMClientListener#onExpired(IMClient, String[])}
+     * 方法进行通知。
+     *
+     * @param id 字节消息 ID
+     * @param content 字节消息内容
+     * @param ttl 字节消息有效期，单位：毫秒，如果小于等于 0，则永不过期
+     */
+    public ByteMessage(String id, byte[] content, long ttl) {
+        this(id, content, ttl, PRIORITY_NORMAL);
+    }
+
+    /**
+     * 构造一个永不过期的可替换字节消息，适用于在线状态、未读数、正在输入等仅需发送最新值的场景。
+     *
+     * <p>
+     *     向同一个 IM 客户端发送槽位相同的字节消息时，如果前一条消息尚未开始写入，将会被新消息替换，新消息沿用前一条消息在队列中的位置，
+     *     被替换的消息将通过 {@link IMClientListener#onReplaced(IMClient, String[])} 方法进行通知。
+     * </p>
+     *
+     * @param id 字节消息 ID
+     * @param content 字节消息内容
+     * @param slotKey 字节消息槽位，为 {@code null} 时不参与合并
+     */
+    public ByteMessage(String id, byte[] content, String slotKey) {
+        this(id, content, 0, PRIORITY_NORMAL, false, slotKey);
+    }
+
+    /**
+     * 构造一个指定优先级的字节消息，该消息不允许分块写入。
+     *
+     * @param id 字节消息 ID
+     * @param content 字节消息内容
+     * @param ttl 字节消息有效期，单位：毫秒，如果小于等于 0，则永不过期
+     * @param priority 字节消息优先级，可选值为 {@link #PRIORITY_HIGH}、{@link #PRIORITY_NORMAL}、{@link #PRIORITY_LOW}
+     * @throws IllegalArgumentException 如果优先级不合法，将会抛出此异常
+     */
+    public ByteMessage(String id, byte[] content, long ttl, int priority) throws IllegalArgumentException {
+        this(id, content, ttl, priority, false);
+    }
+
+    /**
+     * 构造一个指定优先级的字节消息。
+     *
+     * <p>
+     *     如果允许分块写入，当消息长度超过 IM 客户端单次写入允许的最大字节数时，该消息将会按最大字节数分块写入，块与块之间可能会插入
+     *     其它消息的数据，仅当使用方的协议帧格式允许这种交错时才可开启。
+     * </p>
+     *
+     * @param id 字节消息 ID
+     * @param content 字节消息内容
+     * @param ttl 字节消息有效期，单位：毫秒，如果小于等于 0，则永不过期
+     * @param priority 字节消息优先级，可选值为 {@link #PRIORITY_HIGH}、{@link #PRIORITY_NORMAL}、{@link #PRIORITY_LOW}
+     * @param chunked 是否允许分块写入
+     * @throws IllegalArgumentException 如果优先级不合法，将会抛出此异常
+     */
+    public ByteMessage(String id, byte[] content, long ttl, int priority, boolean chunked) throws IllegalArgumentException {
+        this(id, content, ttl, priority, chunked, null);
+    }
+
+    /**
+     * 构造一个字节消息。
+     *
+     * @param id 字节消息 ID
+     * @param content 字节消息内容
+     * @param ttl 字节消息有效期，单位：毫秒，如果小于等于 0，则永不过期
+     * @param priority 字节消息优先级，可选值为 {@link #PRIORITY_HIGH}、{@link #PRIORITY_NORMAL}、{@link #PRIORITY_LOW}
+     * @param chunked 是否允许分块写入
+     * @param slotKey 字节消息槽位，为 {@code null} 时不参与合并
+     * @throws IllegalArgumentException 如果优先级不合法，将会抛出此异常
+     * @see #ByteMessage(String, byte[], String)
+     */
+    public ByteMessage(String id, byte[] content, long ttl, int priority, boolean chunked, String slotKey) throws IllegalArgumentException {
+        if (priority < PRIORITY_HIGH || priority > PRIORITY_LOW) {
+            throw new IllegalArgumentException("Create ByteMessage failed: `invalid priority`. `id`:`" + id
+                    + "`. `priority`:`" + priority + "`.");
+        }
         this.id = id;
         this.content = content;
         this.createdTime = System.currentTimeMillis();
+        this.expiredTime = ttl > 0 ? createdTime + ttl : 0;
+        this.priority = priority;
+        this.chunked = chunked;
+        this.slotKey = slotKey;
     }
 
     /**
@@ -89,12 +208,62 @@ public class ByteMessage {
         return createdTime;
     }
 
+    /**
+     * 获得字节消息过期时间，如果小于等于 0，则永不过期。
+     *
+     * @return 字节消息过期时间
+     */
+    public long getExpiredTime() {
+        return expiredTime;
+    }
+
+    /**
+     * 获得字节消息优先级。
+     *
+     * @return 字节消息优先级
+     */
+    public int getPriority() {
+        return priority;
+    }
+
+    /**
+     * 判断字节消息是否允许分块写入。
+     *
+     * @return 是否允许分块写入
+     */
+    public boolean isChunked() {
+        return chunked;
+    }
+
+    /**
+     * 获得字节消息槽位，可能为 {@code null}。
+     *
+     * @return 字节消息槽位
+     */
+    public String getSlotKey() {
+        return slotKey;
+    }
+
+    /**
+     * 判断字节消息在指定时间是否已过期。
+     *
+     * @param currentTime 当前时间
+     * @return 是否已过期
+     */
+    public boolean isExpired(long currentTime) {
+        return expiredTime > 0 && currentTime >= expiredTime;
+    }
+
     @Override
     public String toString() {
         return "ByteMessage{" +
                 "id='" + id + '\'' +
                 ", content=" + Arrays.toString(content) +
                 ", createdTime=" + createdTime +
+                ", expiredTime=" + expiredTime +
+                ", priority=" + priority +
+                ", chunked=" + chunked +
+                ", slotKey='" + slotKey + '\'' +
                 '}';
     }
 }
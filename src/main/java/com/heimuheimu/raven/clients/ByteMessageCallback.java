@@ -0,0 +1,69 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+
+/**
+ * 单条字节消息的发送结果回调，通过 {@link IMClient#asyncSend(ByteMessage, ByteMessageCallback)} 方法与字节消息关联，
+ * 每条字节消息的回调有且仅有一个方法会被执行一次。
+ *
+ * <p>
+ *     回调方法的参数中已包含 IM 客户端及字节消息，无状态的实现可在所有字节消息中共享同一个实例，避免为每条消息创建对象。
+ * </p>
+ *
+ * <p>
+ *     <strong>说明：</strong>ByteMessageCallback 的实现类必须是线程安全的。回调方法抛出的异常将被记录日志后忽略。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public interface ByteMessageCallback {
+
+    /**
+     * 当字节消息的全部字节写入完成时，将触发此事件。
+     *
+     * <p><strong>注意：</strong>该方法将在 IO 线程中执行，请勿执行耗时操作，如操作时间不可确定，建议内部采用异步方式执行。</p>
+     *
+     * <p>该方法在释放 IM 客户端的写锁后执行，方法内可以向其它 IM 客户端发送消息。</p>
+     *
+     * @param client 目标 IM 客户端，不会为 {@code null}
+     * @param message 写入完成的字节消息，不会为 {@code null}
+     */
+    void onSent(IMClient client, ByteMessage message);
+
+    /**
+     * 当字节消息未能发送时，将触发此事件。
+     *
+     * <p>
+     *     <strong>注意：</strong>该方法可能在 IO 线程、关闭 IM 客户端的线程或发送新消息的线程中执行，请勿执行耗时操作。
+     * </p>
+     *
+     * @param client 目标 IM 客户端，不会为 {@code null}
+     * @param message 未能发送的字节消息，不会为 {@code null}
+     * @param reason 未能发送的原因，不会为 {@code null}
+     */
+    void onFailed(IMClient client, ByteMessage message, ByteMessageFailedReasonEnum reason);
+}
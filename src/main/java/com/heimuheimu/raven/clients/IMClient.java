@@ -25,23 +25,34 @@
 package com.heimuheimu.raven.clients;
 
 import com.heimuheimu.raven.constant.BeanStatusEnum;
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+import com.heimuheimu.raven.exception.ByteMessageFailedException;
 import com.heimuheimu.raven.exception.RavenException;
 import com.heimuheimu.raven.facility.UnusableServiceNotifier;
 import com.heimuheimu.raven.monitor.ByteMessageMonitor;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitterRecorder;
+import com.heimuheimu.raven.monitor.IMClientManagerMonitor;
 import com.heimuheimu.raven.monitor.IMClientMonitor;
 import com.heimuheimu.raven.util.LogBuildUtil;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.io.IOException;
 import java.net.StandardSocketOptions;
 import java.nio.ByteBuffer;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
 
 /**
  * 封装与 IM 客户端建立的连接。
@@ -61,11 +72,36 @@ public class IMClient implements Closeable {
      */
     private static final ByteMessageMonitor BYTE_MESSAGE_MONITOR = ByteMessageMonitor.getInstance();
 
+    /**
+     * IM 客户端管理器信息监控器
+     */
+    private static final IMClientManagerMonitor MANAGER_MONITOR = IMClientManagerMonitor.getInstance();
+
+    /**
+     * 写入心跳响应帧时使用的空字节消息 ID 数组
+     */
+    private static final String[] EMPTY_MESSAGE_ID_ARRAY = new String[0];
+
+    /**
+     * 写入心跳响应帧时使用的空字节消息创建时间数组
+     */
+    private static final long[] EMPTY_CREATED_TIME_ARRAY = new long[0];
+
     /**
      * 当前 IM 客户端唯一 ID
      */
     private final String id;
 
+    /**
+     * 当前 IM 客户端数字 ID，用于 {@link IMClientRegistry} 查找，为 0 时表示没有数字 ID
+     */
+    private final long numericId;
+
+    /**
+     * 当前 IM 客户端绑定的用户 ID，未绑定时为 {@code null}
+     */
+    private volatile String userId = null;
+
     /**
      * IMServer 与当前 IM 客户端建立的 SocketChannel
      */
@@ -74,7 +110,12 @@ public class IMClient implements Closeable {
     /**
      * SocketChannel 选择器
      */
-    private final Selector selector;
+    private volatile Selector selector;
+
+    /**
+     * 当前 IM 客户端所属的 IM 客户端管理器，在注册后设置，用于更新该管理器的 Top-K 信息记录器，可能为 {@code null}
+     */
+    private volatile IMClientManager manager = null;
 
     /**
      * IM 客户端单次写入操作允许写入的最大字节数，如果小于等于 0，则没有限制
@@ -91,6 +132,26 @@ public class IMClient implements Closeable {
      */
     private final UnusableServiceNotifier<IMClient> unusableServiceNotifier;
 
+    /**
+     * IM 客户端确认帧解析器，允许为 {@code null}
+     */
+    private final IMClientAckParser ackParser;
+
+    /**
+     * 未确认字节消息窗口，如果未开启确认机制，则为 {@code null}，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private final IMClientAckWindow ackWindow;
+
+    /**
+     * IM 客户端心跳帧匹配器，允许为 {@code null}
+     */
+    private final IMClientHeartbeatMatcher heartbeatMatcher;
+
+    /**
+     * 识别到心跳帧后自动回复的心跳响应帧，允许为 {@code null}
+     */
+    private final byte[] heartbeatResponse;
+
     /**
      * 当前 IMClient 实例所处状态
      */
@@ -101,6 +162,21 @@ public class IMClient implements Closeable {
      */
     private volatile long lastActiveTime = System.currentTimeMillis();
 
+    /**
+     * 最后收到 IM 客户端发送的数据时间，为 0 时表示尚未收到过数据，与 {@link #lastActiveTime} 不同，写入数据时不会更新
+     */
+    private volatile long lastReceivedTime = 0;
+
+    /**
+     * 最后一次发送保活探测帧的时间，为 0 时表示尚未发送过，仅在超时 IM 客户端检测器线程中访问
+     */
+    private long lastProbeTime = 0;
+
+    /**
+     * 连续发送的保活探测帧数量，收到 IM 客户端发送的数据后重新计数，仅在超时 IM 客户端检测器线程中访问
+     */
+    private int probeCount = 0;
+
     /**
      * IM 客户端是否处于只读模式，访问此变量需先获得锁 {@link #writeLock}
      */
@@ -122,14 +198,76 @@ public class IMClient implements Closeable {
     private long[] messageCreatedTimeArray = null;
 
     /**
-     * 存放待写入的字节消息列表，访问此变量需先获得锁 {@link #writeLock}
+     * 当前正在写入的数据中关联了回调的字节消息数组，如果没有关联回调的字节消息，则为 {@code null}，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private ByteMessage[] callbackMessageArray = null;
+
+    /**
+     * 当前正在写入的数据中字节消息关联的回调数组，该数组大小、顺序与 {@link #callbackMessageArray} 一致，访问此变量需先获得锁 {@link #writeLock}
      */
-    private List<ByteMessage> messageList = new ArrayList<>();
+    private ByteMessageCallback[] callbackArray = null;
 
     /**
-     * IM 客户端写数据使用的私有锁
+     * 当前正在写入的数据总字节数，访问此变量需先获得锁 {@link #writeLock}
      */
-    private final Object writeLock = new Object();
+    private int writeBufferByteLength = 0;
+
+    /**
+     * 当前正在写入的数据已经历的写入轮次，仅写入了分块消息的一部分时，轮次将累计到该消息完成写入，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private int writeRoundCount = 0;
+
+    /**
+     * 最后一次计入 {@link #writeRoundCount} 的写入轮次编号，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private long lastWriteRound = -1;
+
+    /**
+     * 存放待写入的字节消息队列，按优先级划分通道，在首次加入字节消息时创建，空闲时可通过 {@link #compact()} 释放，
+     * 可能为 {@code null}，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private IMClientMessageQueue messageQueue = null;
+
+    /**
+     * 已提交但尚未完成写入的字节总数，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private long pendingByteLength = 0;
+
+    /**
+     * 等待当前数据写入完成后再写入的控制帧（心跳响应帧或保活探测帧），可能为 {@code null}，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private byte[] pendingControlFrame = null;
+
+    /**
+     * 当前正在写入的数据是否为控制帧，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private boolean controlFrameWriting = false;
+
+    /**
+     * 是否已通知所属 IM 客户端管理器在 Selector 线程中更新 Top-K 统计信息，访问此变量需先获得锁 {@link #writeLock}
+     */
+    private boolean heavyHitterDirty = false;
+
+    /**
+     * 下一次读取使用的字节数，由 IM 客户端管理器自适应调整，为 0 时表示尚未初始化，仅在 Selector 线程中访问
+     */
+    private int receiveSize = 0;
+
+    /**
+     * 连续读取字节数不足 {@link #receiveSize} 一半的次数，仅在 Selector 线程中访问
+     */
+    private int receiveShrinkCount = 0;
+
+    /**
+     * 最后一次设置的 Socket 接收缓冲区大小，为 0 时表示未设置，仅在 Selector 线程中访问
+     */
+    private int socketReceiveBufferSize = 0;
+
+    /**
+     * IM 客户端写数据使用的锁，即当前 IM 客户端实例自身，避免每个连接额外分配一个锁对象。{@link #close()} 方法仅在切换状态、
+     * 关闭 Socket 时持有该监视器，关闭通知及待发送字节消息的失败回调均在释放后执行，持有该锁时不会调用任何外部代码
+     */
+    private final Object writeLock = this;
 
     /**
      * 构造一个 IMClient 实例。
@@ -144,12 +282,56 @@ public class IMClient implements Closeable {
     public IMClient(String id, SocketChannel socketChannel, Selector selector,
                     int maxWriteByteLength, IMClientListener clientListener,
                     UnusableServiceNotifier<IMClient> unusableServiceNotifier) {
+        this(id, socketChannel, selector, maxWriteByteLength, clientListener, null, unusableServiceNotifier);
+    }
+
+    /**
+     * 构造一个 IMClient 实例。
+     *
+     * @param id IM 客户端唯一 ID，不允许为 {@code null}
+     * @param socketChannel 与 IM 客户端建立的 SocketChannel，不允许为 {@code null}
+     * @param selector IM 客户端使用的 SocketChannel 选择器，允许为 {@code null}
+     * @param maxWriteByteLength IM 客户端单次写入操作允许写入的最大字节数，如果小于等于 0，则没有限制
+     * @param clientListener IM 客户端事件监听器，允许为 {@code null}
+     * @param configuration IM 客户端扩展配置信息，允许为 {@code null}，如果为 {@code null}，将使用默认的配置信息
+     * @param unusableServiceNotifier IM 客户端不可用通知器，允许为 {@code null}
+     */
+    public IMClient(String id, SocketChannel socketChannel, Selector selector,
+                    int maxWriteByteLength, IMClientListener clientListener, IMClientConfiguration configuration,
+                    UnusableServiceNotifier<IMClient> unusableServiceNotifier) {
+        this(id, 0, socketChannel, selector, maxWriteByteLength, clientListener, configuration, unusableServiceNotifier);
+    }
+
+    /**
+     * 构造一个 IMClient 实例。
+     *
+     * @param id IM 客户端唯一 ID，不允许为 {@code null}
+     * @param numericId IM 客户端数字 ID，为 0 时表示没有数字 ID
+     * @param socketChannel 与 IM 客户端建立的 SocketChannel，不允许为 {@code null}
+     * @param selector IM 客户端使用的 SocketChannel 选择器，允许为 {@code null}
+     * @param maxWriteByteLength IM 客户端单次写入操作允许写入的最大字节数，如果小于等于 0，则没有限制
+     * @param clientListener IM 客户端事件监听器，允许为 {@code null}
+     * @param configuration IM 客户端扩展配置信息，允许为 {@code null}，如果为 {@code null}，将使用默认的配置信息
+     * @param unusableServiceNotifier IM 客户端不可用通知器，允许为 {@code null}
+     */
+    public IMClient(String id, long numericId, SocketChannel socketChannel, Selector selector,
+                    int maxWriteByteLength, IMClientListener clientListener, IMClientConfiguration configuration,
+                    UnusableServiceNotifier<IMClient> unusableServiceNotifier) {
+        if (configuration == null) {
+            configuration = new IMClientConfiguration();
+        }
         this.id = id;
+        this.numericId = numericId;
         this.socketChannel = socketChannel;
         this.selector = selector;
         this.maxWriteByteLength = maxWriteByteLength;
         this.clientListener = clientListener;
         this.unusableServiceNotifier = unusableServiceNotifier;
+        int ackWindowSize = configuration.getAckWindowSize();
+        this.ackWindow = ackWindowSize > 0 ? new IMClientAckWindow(ackWindowSize) : null;
+        this.ackParser = ackWindowSize > 0 ? configuration.getAckParser() : null;
+        this.heartbeatMatcher = configuration.getHeartbeatMatcher();
+        this.heartbeatResponse = heartbeatMatcher != null ? configuration.getHeartbeatResponse() : null;
     }
 
     /**
@@ -161,6 +343,108 @@ public class IMClient implements Closeable {
         return id;
     }
 
+    /**
+     * 获得当前 IM 客户端数字 ID，为 0 时表示没有数字 ID。
+     *
+     * @return 当前 IM 客户端数字 ID
+     * @see com.heimuheimu.raven.IMServer#getEstablishedClient(long)
+     */
+    public long getNumericId() {
+        return numericId;
+    }
+
+    /**
+     * 获得当前 IM 客户端绑定的用户 ID，如果未绑定，将会返回 {@code null}。
+     *
+     * @return 当前 IM 客户端绑定的用户 ID，可能为 {@code null}
+     * @see com.heimuheimu.raven.IMServer#bindUser(IMClient, String)
+     */
+    public String getUserId() {
+        return userId;
+    }
+
+    /**
+     * 设置当前 IM 客户端绑定的用户 ID，由 {@link IMClientUserIndex} 调用。
+     *
+     * @param userId 用户 ID
+     */
+    void setUserId(String userId) {
+        this.userId = userId;
+    }
+
+    /**
+     * 获得下一次读取使用的字节数，首次调用时使用初始值，该方法仅允许在 Selector 线程中调用。
+     *
+     * @param initialSize 初始读取字节数
+     * @param minSize 允许的最小字节数
+     * @param maxSize 允许的最大字节数
+     * @return 下一次读取使用的字节数
+     */
+    int getReceiveSize(int initialSize, int minSize, int maxSize) {
+        if (receiveSize == 0) {
+            receiveSize = normalizeReceiveSize(initialSize, minSize, maxSize);
+        }
+        return receiveSize;
+    }
+
+    /**
+     * 根据本次就绪事件中读取的字节数调整下一次读取使用的字节数，该方法仅允许在 Selector 线程中调用。
+     *
+     * <p>
+     *     读满时立即扩大到可容纳本次数据的 2 倍，连续 {@code 4} 次读取不足当前值一半时缩小一半，避免偶发的小数据包导致频繁调整。
+     * </p>
+     *
+     * @param readBytes 本次就绪事件中读取的字节数
+     * @param filled 本次读取是否已读满
+     * @param minSize 允许的最小字节数
+     * @param maxSize 允许的最大字节数
+     * @return 调整后下一次读取使用的字节数
+     */
+    int adaptReceiveSize(int readBytes, boolean filled, int minSize, int maxSize) {
+        int current = getReceiveSize(readBytes, minSize, maxSize);
+        int target = normalizeReceiveSize(filled ? readBytes << 1 : readBytes, minSize, maxSize);
+        if (target > current) {
+            receiveSize = target;
+            receiveShrinkCount = 0;
+        } else if (target <= current >> 1) {
+            if (++receiveShrinkCount >= 4) {
+                receiveSize = Math.max(current >> 1, normalizeReceiveSize(minSize, minSize, maxSize));
+                receiveShrinkCount = 0;
+            }
+        } else {
+            receiveShrinkCount = 0;
+        }
+        return receiveSize;
+    }
+
+    /**
+     * 获得最后一次设置的 Socket 接收缓冲区大小，为 0 时表示未设置，该方法仅允许在 Selector 线程中调用。
+     *
+     * @return 最后一次设置的 Socket 接收缓冲区大小
+     */
+    int getSocketReceiveBufferSize() {
+        return socketReceiveBufferSize;
+    }
+
+    /**
+     * 设置当前 IM 客户端的 Socket 接收缓冲区大小，该方法仅允许在 Selector 线程中调用。
+     *
+     * @param socketReceiveBufferSize Socket 接收缓冲区大小
+     * @throws IOException 如果设置失败，将会抛出此异常
+     */
+    void setSocketReceiveBufferSize(int socketReceiveBufferSize) throws IOException {
+        socketChannel.setOption(StandardSocketOptions.SO_RCVBUF, socketReceiveBufferSize);
+        this.socketReceiveBufferSize = socketReceiveBufferSize;
+    }
+
+    /**
+     * 将读取字节数向上取整为 2 的幂次，并限制在允许的范围内。
+     */
+    private static int normalizeReceiveSize(int size, int minSize, int maxSize) {
+        int normalized = size <= 1 ? 1 : Integer.highestOneBit(Math.min(size, 1 << 30) - 1) << 1;
+        return Math.max(Math.min(normalized, maxSize), minSize);
+    }
+
     /**
      * 获得 IMServer 与当前 IM 客户端建立的 SocketChannel。
      *
@@ -179,6 +463,35 @@ public class IMClient implements Closeable {
         return lastActiveTime;
     }
 
+    /**
+     * 判断是否已收到过 IM 客户端发送的数据，未收到过数据的 IM 客户端视为仍在握手中。
+     *
+     * @return 是否已收到过 IM 客户端发送的数据
+     */
+    public boolean hasReceived() {
+        return lastReceivedTime > 0;
+    }
+
+    /**
+     * 获得最后收到 IM 客户端发送的数据时间，为 0 时表示尚未收到过数据，与 {@link #getLastActiveTime()} 不同，向 IM 客户端写入数据时不会更新。
+     *
+     * @return 最后收到 IM 客户端发送的数据时间
+     */
+    public long getLastReceivedTime() {
+        return lastReceivedTime;
+    }
+
+    /**
+     * 获得已提交但尚未完成写入的字节总数，包括正在写入的数据中尚未写完的部分。
+     *
+     * @return 尚未完成写入的字节总数
+     */
+    public long getPendingByteLength() {
+        synchronized (writeLock) {
+            return pendingByteLength;
+        }
+    }
+
     /**
      * 判断当前 IM 客户端是否可用。
      *
@@ -189,63 +502,543 @@ public class IMClient implements Closeable {
     }
 
     /**
-     * 接收 IM 客户端发送的数据。
+     * 接收 IM 客户端发送的数据。
+     *
+     * @param buffer IM 客户端发送的数据，不允许为 {@code null}
+     */
+    public void receive(ByteBuffer buffer) {
+        long currentTime = System.currentTimeMillis();
+        lastActiveTime = currentTime;
+        lastReceivedTime = currentTime;
+        IMClientManager manager = this.manager;
+        if (manager != null && IMClientManager.isSelectorThread(manager.getSelector())) { // 仅在所属管理器的 Selector 线程中统计
+            manager.getHeavyHitterRecorder().onReceived(id, buffer.remaining());
+        }
+        if (ackParser != null) {
+            String[] ackIds = ackParser.parse(this, buffer);
+            if (ackIds != null && ackIds.length > 0) {
+                acknowledge(ackIds);
+            }
+            if (!buffer.hasRemaining()) { // 全部为确认帧
+                return;
+            }
+        }
+        if (clientListener != null) {
+            clientListener.onReceived(this, buffer);
+        }
+    }
+
+    /**
+     * 识别并消费 IM 客户端发送的数据开头连续的心跳帧，返回识别到的心跳帧数量，如果未设置心跳帧匹配器，将会返回 0。
+     *
+     * <p>
+     *     识别到心跳帧时更新最后活跃时间，{@code buffer} 的 position 将移动到最后一个心跳帧之后，剩余的数据仍需交由
+     *     {@link #receive(ByteBuffer)} 处理。该方法由 {@link IMClientManager} 在 Selector 线程中调用。
+     * </p>
+     *
+     * @param buffer IM 客户端发送的数据，不允许为 {@code null}
+     * @return 识别到的心跳帧数量
+     */
+    int receiveHeartbeat(ByteBuffer buffer) {
+        if (heartbeatMatcher == null) {
+            return 0;
+        }
+        int heartbeatCount = 0;
+        while (buffer.hasRemaining()) {
+            int heartbeatLength = heartbeatMatcher.match(this, buffer);
+            if (heartbeatLength <= 0 || heartbeatLength > buffer.remaining()) {
+                break;
+            }
+            buffer.position(buffer.position() + heartbeatLength);
+            heartbeatCount++;
+        }
+        if (heartbeatCount > 0) {
+            long currentTime = System.currentTimeMillis();
+            lastActiveTime = currentTime;
+            lastReceivedTime = currentTime;
+        }
+        return heartbeatCount;
+    }
+
+    /**
+     * 回复心跳响应帧，返回在 Selector 线程中直接写入的字节数，如果未设置心跳响应帧、当前 IM 客户端已关闭或已有等待写入的心跳响应帧，将会返回 -1。
+     *
+     * <p>
+     *     没有正在写入的数据时直接写入 SocketChannel，如果 Socket 发送缓冲区已满，剩余部分作为正在写入的数据，在下一次可写事件中继续写入；
+     *     否则等待当前数据写入完成后优先写入，此时返回 0。该方法由 {@link IMClientManager} 在 Selector 线程中调用，关注写事件时无需唤醒选择器。
+     * </p>
+     *
+     * @return 直接写入的字节数，-1 表示未回复
+     * @throws IOException 如果写入失败，将会抛出此异常
+     */
+    int respondHeartbeat() throws IOException {
+        if (heartbeatResponse == null) {
+            return -1;
+        }
+        return writeControlFrame(heartbeatResponse, false);
+    }
+
+    /**
+     * 获得最后一次发送保活探测帧的时间，为 0 时表示尚未发送过。
+     *
+     * @return 最后一次发送保活探测帧的时间
+     */
+    public long getLastProbeTime() {
+        return lastProbeTime;
+    }
+
+    /**
+     * 获得已发送但尚未收到回复的保活探测帧数量，在最后一次发送保活探测帧之后收到 IM 客户端发送的任意数据，均视为已回复。
+     *
+     * @return 尚未收到回复的保活探测帧数量
+     */
+    public int getUnansweredProbeCount() {
+        return lastReceivedTime > lastProbeTime ? 0 : probeCount;
+    }
+
+    /**
+     * 向 IM 客户端发送保活探测帧，并记录发送时间，用于检测被 NAT 设备等中间网络设备静默断开的连接。
+     *
+     * <p>
+     *     保活探测帧与心跳响应帧一样不会创建字节消息，也不进入待写入的字节消息队列：没有正在写入的数据时直接写入，
+     *     否则在当前数据写入完成后优先写入。如果已有等待写入的控制帧，本次探测帧将被忽略，但仍计入发送次数。
+     * </p>
+     *
+     * <p><strong>注意：</strong>该方法通常由 {@link com.heimuheimu.raven.TimeoutIMClientScanner} 在同一个线程中调用。</p>
+     *
+     * @param probe 保活探测帧，不允许为 {@code null}，调用方应预先创建并重复使用
+     * @return 保活探测帧是否已写入或等待写入
+     * @throws IOException 如果写入失败，将会抛出此异常
+     */
+    public boolean probe(byte[] probe) throws IOException {
+        long currentTime = System.currentTimeMillis();
+        if (lastReceivedTime > lastProbeTime) { // 上一次探测后已收到数据，重新计数
+            probeCount = 0;
+        }
+        probeCount++;
+        lastProbeTime = currentTime;
+        return writeControlFrame(probe, true) >= 0;
+    }
+
+    /**
+     * 写入控制帧，返回直接写入的字节数，如果当前 IM 客户端已关闭或已有等待写入的控制帧，将会返回 -1。心跳响应帧优先于保活探测帧，
+     * 等待写入的保活探测帧将被心跳响应帧替换，此时 IM 客户端已发送了数据，无需再探测。
+     *
+     * @param frame 控制帧
+     * @param wakeup 关注写事件时是否唤醒选择器，仅在 Selector 线程中调用时允许为 {@code false}
+     * @return 直接写入的字节数，0 表示等待当前数据写入完成后写入，-1 表示未写入
+     * @throws IOException 如果写入失败，将会抛出此异常
+     */
+    private int writeControlFrame(byte[] frame, boolean wakeup) throws IOException {
+        synchronized (writeLock) {
+            if (state != BeanStatusEnum.NORMAL) {
+                return -1;
+            }
+            if (pendingControlFrame != null) {
+                if (frame == heartbeatResponse && pendingControlFrame != heartbeatResponse) {
+                    pendingControlFrame = frame;
+                    return 0;
+                }
+                return -1;
+            }
+            if (writeBuffer != null) { // 正在写入的数据不允许被打断，此时已关注写事件
+                pendingControlFrame = frame;
+                return 0;
+            }
+            ByteBuffer frameBuffer = ByteBuffer.wrap(frame);
+            int writeBytes = socketChannel.write(frameBuffer);
+            if (frameBuffer.hasRemaining()) { // Socket 发送缓冲区已满，等待下一次可写事件
+                setControlFrameWriteBuffer(frameBuffer);
+                setReadonly(false, wakeup);
+            }
+            return writeBytes;
+        }
+    }
+
+    /**
+     * 将控制帧设置为正在写入的数据，控制帧不计入已提交但尚未完成写入的字节总数，调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @param frameBuffer 控制帧数据缓存
+     */
+    private void setControlFrameWriteBuffer(ByteBuffer frameBuffer) {
+        writeBuffer = frameBuffer;
+        writeBufferByteLength = 0;
+        messageIdArray = EMPTY_MESSAGE_ID_ARRAY;
+        messageCreatedTimeArray = EMPTY_CREATED_TIME_ARRAY;
+        controlFrameWriting = true;
+    }
+
+    /**
+     * 确认 IM 客户端已收到指定的字节消息，将其从未确认字节消息窗口中移除，如果未开启确认机制，调用此方法不会有任何效果。
+     *
+     * <p>
+     *     如果窗口因已满而暂停写入，确认后将恢复写入。不在窗口中的字节消息 ID 将被忽略。
+     * </p>
+     *
+     * @param ids 被确认的字节消息 ID 数组，允许为 {@code null}
+     * @see IMClientConfiguration#setAckWindowSize(int)
+     */
+    public void acknowledge(String... ids) {
+        if (ackWindow == null || ids == null || ids.length == 0) {
+            return;
+        }
+        String[] acknowledgedIdArray = new String[ids.length];
+        int acknowledgedCount = 0;
+        synchronized (writeLock) {
+            for (String messageId : ids) {
+                if (messageId != null && ackWindow.acknowledge(messageId)) {
+                    acknowledgedIdArray[acknowledgedCount++] = messageId;
+                }
+            }
+            if (acknowledgedCount > 0 && isActive()) {
+                enableWrite(acknowledgedIdArray[0], true);
+            }
+        }
+        if (acknowledgedCount > 0) {
+            BYTE_MESSAGE_MONITOR.onAcknowledged(acknowledgedCount);
+            if (clientListener != null) {
+                clientListener.onAcknowledged(this, acknowledgedCount == ids.length ? acknowledgedIdArray
+                        : Arrays.copyOf(acknowledgedIdArray, acknowledgedCount));
+            }
+        }
+    }
+
+    /**
+     * 按写入顺序获得已开始写入但尚未被确认的字节消息列表，如果未开启确认机制，将会返回空列表，该方法不会返回 {@code null}。
+     *
+     * <p>
+     *     IM 客户端关闭后，窗口中的字节消息仍会保留，可在 IM 客户端重新连接后通过 {@link #asyncSend(Collection)} 方法重新发送到新的连接。
+     * </p>
+     *
+     * @param remove 是否同时清空未确认字节消息窗口
+     * @return 尚未被确认的字节消息列表
+     */
+    public List<ByteMessage> getUnacknowledgedMessages(boolean remove) {
+        if (ackWindow == null) {
+            return new ArrayList<>();
+        }
+        synchronized (writeLock) {
+            return ackWindow.getMessageList(remove);
+        }
+    }
+
+    /**
+     * 从已关闭的 IM 客户端中取出全部待发送字节消息，包括尚未写入的字节消息，以及开启确认机制时已写入但尚未被确认的字节消息，
+     * 取出后这些字节消息关联的回调将不会再收到当前 IM 客户端的通知，该方法不会返回 {@code null}。
+     *
+     * <p>
+     *     该方法通常在 {@link UnusableServiceNotifier#onClosed(Object)} 通知中调用，此时字节消息关联的回调尚未被通知发送失败。
+     *     未开启确认机制时，关闭时正在写入的字节消息无法确定是否已被接收，不会被取出。
+     * </p>
+     *
+     * @return 待发送字节消息
+     * @throws IllegalStateException 如果当前 IM 客户端尚未关闭，将会抛出此异常
+     * @see #attachPendingMessages(IMClientPendingMessages)
+     */
+    public IMClientPendingMessages detachPendingMessages() throws IllegalStateException {
+        List<ByteMessage> messageList = new ArrayList<>();
+        List<ByteMessageCallback> callbackList = new ArrayList<>();
+        synchronized (writeLock) {
+            if (state != BeanStatusEnum.CLOSED) {
+                String errorMessage = "IMClient fails to detach pending messages: `illegal state`. `client`:`" + toString() + "`.";
+                LOGGER.error(errorMessage);
+                throw new IllegalStateException(errorMessage);
+            }
+            if (ackWindow != null) {
+                for (ByteMessage message : ackWindow.getMessageList(true)) {
+                    messageList.add(message);
+                    callbackList.add(removeWritingCallback(message));
+                }
+            }
+            if (messageQueue != null) {
+                messageQueue.clear(messageList, callbackList);
+            }
+            pendingByteLength = 0;
+            onPendingChanged();
+        }
+        return new IMClientPendingMessages(this, messageList, callbackList);
+    }
+
+    /**
+     * 将从其它 IM 客户端中取出的待发送字节消息加入当前 IM 客户端的发送队列，字节消息及其关联的回调保持不变，无需重新编码，
+     * 返回加入的字节消息数量。
+     *
+     * <p>
+     *     字节消息按原先的写入顺序排在当前 IM 客户端已提交的字节消息之后，已过期的字节消息仍会按原先的过期时间处理。
+     *     加入成功后 {@code pendingMessages} 将被清空；如果加入失败，{@code pendingMessages} 保持不变，可由调用方继续处理。
+     * </p>
+     *
+     * @param pendingMessages 待发送字节消息，不允许为 {@code null}
+     * @return 加入的字节消息数量
+     * @throws IllegalArgumentException 如果 {@code pendingMessages} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
+     * @see #detachPendingMessages()
+     */
+    public int attachPendingMessages(IMClientPendingMessages pendingMessages) throws IllegalArgumentException, IllegalStateException, RavenException {
+        if (pendingMessages == null) {
+            BYTE_MESSAGE_MONITOR.onError();
+            String errorMessage = "IMClient fails to attach pending messages: `null pendingMessages`. `client`:`" + toString() + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        if (pendingMessages.isEmpty()) {
+            return 0;
+        }
+
+        List<ByteMessage> messageList = pendingMessages.getMessageList();
+        List<ByteMessageCallback> callbackList = pendingMessages.getCallbackList();
+        List<ByteMessage> replacedMessageList = null;
+        List<ByteMessageCallback> replacedCallbackList = null;
+        synchronized (writeLock) {
+            String firstMessageId = messageList.get(0).getId();
+            checkState(firstMessageId);
+            for (int i = 0; i < messageList.size(); i++) {
+                ByteMessage message = messageList.get(i);
+                pendingByteLength += message.getContent().length;
+                ByteMessage replacedMessage = getMessageQueue().add(message, callbackList.get(i));
+                if (replacedMessage != null) {
+                    pendingByteLength -= replacedMessage.getContent().length;
+                    if (replacedMessageList == null) {
+                        replacedMessageList = new ArrayList<>();
+                        replacedCallbackList = new ArrayList<>();
+                    }
+                    replacedMessageList.add(replacedMessage);
+                    replacedCallbackList.add(messageQueue.getReplacedCallback());
+                }
+            }
+            onPendingChanged();
+            enableWrite(firstMessageId, true);
+        }
+
+        int attachedCount = messageList.size();
+        pendingMessages.clear();
+        if (replacedMessageList != null) {
+            notifyReplaced(replacedMessageList, replacedCallbackList);
+        }
+        return attachedCount;
+    }
+
+    /**
+     * 异步向 IM 客户端发送一条字节消息，发送成功后，将通过 {@link IMClientListener#onSent(IMClient, String[])} 方法进行通知。
+     *
+     * <p>
+     *     字节消息将按 {@link ByteMessage#getPriority()} 进入不同的优先级通道，各通道之间按权重轮流写入，同一通道内的字节消息按提交顺序写入。
+     *     如果设置了 {@link ByteMessage#getSlotKey()}，将会替换相同槽位且尚未开始写入的字节消息。
+     * </p>
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code message} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
+     */
+    public void asyncSend(ByteMessage message) throws IllegalArgumentException, IllegalStateException, RavenException {
+        asyncSend(message, null);
+    }
+
+    /**
+     * 异步向 IM 客户端发送一条字节消息，并返回该消息对应的 {@code CompletableFuture}。
+     *
+     * <p>
+     *     当字节消息的全部字节写入完成时，{@code CompletableFuture} 将在 IO 线程中正常完成；如果字节消息未能发送，将以
+     *     {@link ByteMessageFailedException} 异常完成，可通过 {@link ByteMessageFailedException#getReason()} 获得原因。
+     * </p>
+     *
+     * <p>
+     *     <strong>注意：</strong>通过非 Async 方法注册的后续操作将在 IO 线程中执行，请勿执行耗时操作。{@code CompletableFuture}
+     *     总是在释放当前 IM 客户端的写锁后完成，后续操作中可以向其它 IM 客户端发送消息或关闭 IM 客户端。
+     * </p>
+     *
+     * <p>
+     *     每次调用都会创建一个新的 {@code CompletableFuture}（同时作为该消息的回调，仅分配一个对象），由于调用方会持有返回的实例，
+     *     该对象无法被池化复用。如对分配开销敏感，可使用 {@link #asyncSend(ByteMessage, ByteMessageCallback)} 方法并共享回调实例。
+     * </p>
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     * @return 字节消息对应的 {@code CompletableFuture}，不会为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code message} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
+     */
+    public CompletableFuture<Void> asyncSendWithFuture(ByteMessage message) throws IllegalArgumentException, IllegalStateException, RavenException {
+        ByteMessageFuture future = new ByteMessageFuture();
+        asyncSend(message, future);
+        return future;
+    }
+
+    /**
+     * 异步向 IM 客户端发送一条字节消息，发送结果将通过指定的回调进行通知，同时也会通知 {@link IMClientListener}。
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code message} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
+     * @see #asyncSend(ByteMessage)
+     */
+    public void asyncSend(ByteMessage message, ByteMessageCallback callback) throws IllegalArgumentException, IllegalStateException, RavenException {
+        if (message == null) {
+            BYTE_MESSAGE_MONITOR.onError();
+            String errorMessage = "IMClient fails to send message: `null ByteMessage`. `client`:`" + toString() + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+
+        ByteMessage replacedMessage;
+        ByteMessageCallback replacedCallback;
+        synchronized (writeLock) {
+            checkState(message.getId());
+            replacedMessage = getMessageQueue().add(message, callback);
+            replacedCallback = messageQueue.getReplacedCallback();
+            pendingByteLength += message.getContent().length;
+            if (replacedMessage != null) {
+                pendingByteLength -= replacedMessage.getContent().length;
+            }
+            onPendingChanged();
+            enableWrite(message.getId(), true);
+        }
+
+        BYTE_MESSAGE_MONITOR.onCreated(message.getContent().length);
+        if (replacedMessage != null) {
+            notifyReplaced(Collections.singletonList(replacedMessage), Collections.singletonList(replacedCallback));
+        }
+    }
+
+    /**
+     * 异步向 IM 客户端发送多条字节消息，与逐条调用 {@link #asyncSend(ByteMessage)} 方法的效果一致，但整批消息仅需获取一次写锁、
+     * 切换一次关注事件并更新一次监控信息，适用于离线消息同步等场景。
      *
-     * @param buffer IM 客户端发送的数据，不允许为 {@code null}
+     * @param messages 字节消息集合，不允许为 {@code null}，也不允许包含 {@code null} 元素
+     * @throws IllegalArgumentException 如果 {@code messages} 为 {@code null} 或包含 {@code null} 元素，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
      */
-    public void receive(ByteBuffer buffer) {
-        lastActiveTime = System.currentTimeMillis();
-        if (clientListener != null) {
-            clientListener.onReceived(this, buffer);
-        }
+    public void asyncSend(Collection<ByteMessage> messages) throws IllegalArgumentException, IllegalStateException, RavenException {
+        asyncSend(messages, null);
     }
 
     /**
-     * 异步向 IM 客户端发送一条字节消息，发送成功后，将通过 {@link IMClientListener#onSent(IMClient, String[])} 方法进行通知。
+     * 异步向 IM 客户端发送多条字节消息，每条字节消息的发送结果将通过指定的回调进行通知。
      *
-     * @param message 字节消息，不允许为 {@code null}
-     * @throws IllegalArgumentException 如果 {@code message} 为 {@code null}，将会抛出此异常
+     * @param messages 字节消息集合，不允许为 {@code null}，也不允许包含 {@code null} 元素
+     * @param callback 字节消息发送结果回调，由整批消息共享，允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code messages} 为 {@code null} 或包含 {@code null} 元素，将会抛出此异常
      * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
      * @throws RavenException 如果在发送过程中发生其它未知错误，将会抛出此异常
+     * @see #asyncSend(Collection)
      */
-    public void asyncSend(ByteMessage message) throws IllegalArgumentException, IllegalStateException, RavenException {
-        if (message == null) {
+    public void asyncSend(Collection<ByteMessage> messages, ByteMessageCallback callback) throws IllegalArgumentException, IllegalStateException, RavenException {
+        if (messages == null || messages.contains(null)) {
             BYTE_MESSAGE_MONITOR.onError();
-            String errorMessage = "IMClient fails to send message: `null ByteMessage`. `client`:`" + toString() + "`.";
+            String errorMessage = "IMClient fails to send messages: `null ByteMessage`. `client`:`" + toString() + "`.";
             LOGGER.error(errorMessage);
             throw new IllegalArgumentException(errorMessage);
         }
-        if (state != BeanStatusEnum.NORMAL) {
-            BYTE_MESSAGE_MONITOR.onError();
-            String errorMessage = "IMClient fails to send message: `illegal state`. `messageId`:`" + message.getId() +
-                    "`. `client`:`" + toString() + "`.";
-            LOGGER.error(errorMessage);
-            throw new IllegalStateException(errorMessage);
+        if (messages.isEmpty()) {
+            return;
         }
 
+        long totalByteLength = 0;
+        int maxByteLength = 0;
+        List<ByteMessage> replacedMessageList = null;
+        List<ByteMessageCallback> replacedCallbackList = null;
         synchronized (writeLock) {
-            messageList.add(message);
-            try {
-                setReadonly(false);
-            } catch (Exception e) {
-                BYTE_MESSAGE_MONITOR.onError();
-                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-                try {
-                    params.put("remote", socketChannel.getRemoteAddress());
-                    params.put("local", socketChannel.getLocalAddress());
-                } catch (Exception ignored) {}
-                params.put("id", getId());
-                RAVEN_IM_CLIENT_LOG.error("IMClient fails to set readonly." + LogBuildUtil.build(params), e);
-                close();
-
-                String errorMessage = "IMClient fails to send message: `set readonly failed`. `messageId`:`" + message.getId() +
-                        "`. `client`:`" + toString() + "`.";
-                LOGGER.error(errorMessage, e);
-                throw new RavenException(errorMessage, e);
+            String firstMessageId = messages.iterator().next().getId();
+            checkState(firstMessageId);
+            for (ByteMessage message : messages) {
+                int byteLength = message.getContent().length;
+                totalByteLength += byteLength;
+                maxByteLength = Math.max(maxByteLength, byteLength);
+                pendingByteLength += byteLength;
+                ByteMessage replacedMessage = getMessageQueue().add(message, callback);
+                if (replacedMessage != null) {
+                    pendingByteLength -= replacedMessage.getContent().length;
+                    if (replacedMessageList == null) {
+                        replacedMessageList = new ArrayList<>();
+                        replacedCallbackList = new ArrayList<>();
+                    }
+                    replacedMessageList.add(replacedMessage);
+                    replacedCallbackList.add(messageQueue.getReplacedCallback());
+                }
             }
+            onPendingChanged();
+            enableWrite(firstMessageId, true);
         }
 
-        BYTE_MESSAGE_MONITOR.onCreated(message.getContent().length);
+        BYTE_MESSAGE_MONITOR.onCreated(messages.size(), totalByteLength, maxByteLength);
+        if (replacedMessageList != null) {
+            notifyReplaced(replacedMessageList, replacedCallbackList);
+        }
+    }
+
+    /**
+     * 异步向多个 IM 客户端发送同一条字节消息，每个 IM 客户端仅需获取一次写锁、切换一次关注事件，每个选择器仅唤醒一次，
+     * 整批发送仅更新一次监控信息，返回未能发送的 IM 客户端列表，该方法不会返回 {@code null}。
+     *
+     * <p>
+     *     未初始化或已关闭的 IM 客户端将被跳过，不会抛出异常，也不会中断对其它 IM 客户端的发送。
+     * </p>
+     *
+     * @param clients IM 客户端集合，不允许为 {@code null}，{@code null} 元素将被视为未能发送
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息发送结果回调，由所有 IM 客户端共享，允许为 {@code null}
+     * @return 未能发送的 IM 客户端列表
+     * @throws IllegalArgumentException 如果 {@code clients} 或 {@code message} 为 {@code null}，将会抛出此异常
+     */
+    public static List<IMClient> multicast(Collection<IMClient> clients, ByteMessage message, ByteMessageCallback callback)
+            throws IllegalArgumentException {
+        if (clients == null || message == null) {
+            BYTE_MESSAGE_MONITOR.onError();
+            String errorMessage = "IMClient fails to multicast message: `null clients or message`. `message`:`" + message + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        List<IMClient> failedClientList = new ArrayList<>();
+        Set<Selector> wakeupSelectorSet = Collections.newSetFromMap(new IdentityHashMap<>()); // 同一 Selector 只唤醒一次
+        int byteLength = message.getContent().length;
+        int sentCount = 0;
+        for (IMClient client : clients) {
+            if (client == null) {
+                failedClientList.add(null);
+                continue;
+            }
+            ByteMessage replacedMessage;
+            ByteMessageCallback replacedCallback;
+            synchronized (client.writeLock) {
+                if (client.state != BeanStatusEnum.NORMAL) {
+                    failedClientList.add(client);
+                    continue;
+                }
+                replacedMessage = client.getMessageQueue().add(message, callback);
+                replacedCallback = client.messageQueue.getReplacedCallback();
+                client.pendingByteLength += byteLength;
+                if (replacedMessage != null) {
+                    client.pendingByteLength -= replacedMessage.getContent().length;
+                }
+                client.onPendingChanged();
+                try {
+                    client.enableWrite(message.getId(), false);
+                } catch (Exception e) { // 已在 enableWrite 中记录日志并关闭该 IM 客户端
+                    failedClientList.add(client);
+                    continue;
+                }
+            }
+            sentCount++;
+            Selector selector = client.selector;
+            if (selector != null && !IMClientManager.isSelectorThread(selector)) { // 在 Selector 线程中调用时，本轮处理结束后即会写入，无需唤醒
+                wakeupSelectorSet.add(selector);
+            }
+            if (replacedMessage != null) {
+                client.notifyReplaced(Collections.singletonList(replacedMessage), Collections.singletonList(replacedCallback));
+            }
+        }
+        for (Selector selector : wakeupSelectorSet) {
+            selector.wakeup();
+        }
+        if (sentCount > 0) {
+            BYTE_MESSAGE_MONITOR.onCreated(sentCount, (long) sentCount * byteLength, byteLength);
+        }
+        return failedClientList;
     }
 
     /**
@@ -254,17 +1047,52 @@ public class IMClient implements Closeable {
      * @return 向 IM 客户端发送的数据缓存
      */
     public ByteBuffer getBufferForWrite() {
+        return getBufferForWrite(-1, false);
+    }
+
+    /**
+     * 获得向 IM 客户端发送的数据缓存，并将本次写入计入当前数据经历的写入轮次，有可能返回 {@code null}。
+     *
+     * <p>
+     *     同一轮次中多次调用只计入一次，由 {@link IMClientManager} 在每轮 select 中写入前调用。
+     * </p>
+     *
+     * @param round 写入轮次编号
+     * @return 向 IM 客户端发送的数据缓存
+     */
+    ByteBuffer getBufferForWrite(long round) {
+        return getBufferForWrite(round, true);
+    }
+
+    /**
+     * 获得向 IM 客户端发送的数据缓存，有可能返回 {@code null}。构建数据时丢弃的过期字节消息将在释放锁 {@link #writeLock} 后通知。
+     *
+     * @param round 写入轮次编号
+     * @param countRound 是否将本次写入计入当前数据经历的写入轮次
+     * @return 向 IM 客户端发送的数据缓存
+     */
+    private ByteBuffer getBufferForWrite(long round, boolean countRound) {
+        ByteBuffer buffer;
+        IMClientPendingMessages expiredMessages = null;
         synchronized (writeLock) {
             if (writeBuffer == null) {
-                buildByteBufferForWrite();
+                expiredMessages = buildByteBufferForWrite();
                 if (maxWriteByteLength > 0) {
-                    if (writeBuffer != null && writeBuffer.remaining() > maxWriteByteLength) {
+                    if (writeBuffer != null && writeBuffer.remaining() > maxWriteByteLength) { // 不允许分块写入的大消息，仍需按最大字节数多次写入
                         writeBuffer.limit(maxWriteByteLength);
                     }
                 }
             }
-            return writeBuffer;
+            buffer = writeBuffer;
+            if (countRound && buffer != null && !controlFrameWriting && round != lastWriteRound) {
+                lastWriteRound = round;
+                writeRoundCount++;
+            }
         }
+        if (expiredMessages != null) {
+            notifyExpired(expiredMessages);
+        }
+        return buffer;
     }
 
     /**
@@ -272,9 +1100,11 @@ public class IMClient implements Closeable {
      */
     public void afterWrite() {
         lastActiveTime = System.currentTimeMillis();
+        ByteMessage[] sentCallbackMessageArray = null;
+        ByteMessageCallback[] sentCallbackArray = null;
         synchronized (writeLock) {
             if (writeBuffer == null) {
-                if (messageList.isEmpty()) { // 没有新的字节消息，将 IMClient 切换为只读模式
+                if (!hasWritableMessage()) { // 没有可写入的字节消息，将 IMClient 切换为只读模式
                     setReadonly(true);
                 }
             } else if (writeBuffer.remaining() == 0) {
@@ -284,12 +1114,27 @@ public class IMClient implements Closeable {
                     }
                     messageCreatedTimeArray = null;
 
-                    if (clientListener != null) {
+                    if (messageIdArray.length > 0) { // 仅写入了分块消息的一部分时，轮次累计到该消息完成写入
+                        MANAGER_MONITOR.onMessageWritten(messageIdArray.length, Math.max(writeRoundCount, 1));
+                        writeRoundCount = 0;
+                        lastWriteRound = -1;
+                    }
+                    if (clientListener != null && messageIdArray.length > 0) { // 仅写入了分块消息的一部分时，无需通知
                         clientListener.onSent(this, messageIdArray);
                     }
                     messageIdArray = null;
+                    if (callbackArray != null) { // 在释放锁后通知，回调（包括 CompletableFuture 的后续操作）中可安全地操作其它 IM 客户端
+                        sentCallbackMessageArray = callbackMessageArray;
+                        sentCallbackArray = callbackArray;
+                        callbackMessageArray = null;
+                        callbackArray = null;
+                    }
+                    pendingByteLength -= writeBufferByteLength;
                     writeBuffer = null;
-                    if (messageList.isEmpty()) { // 并且没有新的字节消息，将 IMClient 切换为只读模式
+                    writeBufferByteLength = 0;
+                    controlFrameWriting = false;
+                    onPendingChanged();
+                    if (!hasWritableMessage()) { // 并且没有可写入的字节消息，将 IMClient 切换为只读模式
                         setReadonly(true);
                     }
                 } else {
@@ -298,57 +1143,414 @@ public class IMClient implements Closeable {
                 }
             }
         }
+        if (sentCallbackArray != null) {
+            for (int i = 0; i < sentCallbackArray.length; i++) {
+                if (sentCallbackArray[i] == null) { // 已随待发送字节消息转移到其它 IM 客户端
+                    continue;
+                }
+                try {
+                    sentCallbackArray[i].onSent(this, sentCallbackMessageArray[i]);
+                } catch (Exception e) {
+                    LOGGER.error("IMClient fails to notify sent message: `unexpected error`. `messageId`:`"
+                            + sentCallbackMessageArray[i].getId() + "`. `client`:`" + toString() + "`.", e);
+                }
+            }
+        }
     }
 
-    private void buildByteBufferForWrite() {
+    /**
+     * 构建下一次写入的数据缓存，并丢弃已过期的字节消息，返回丢弃的过期字节消息，如果没有过期的字节消息，将会返回 {@code null}，
+     * 调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @return 丢弃的过期字节消息，可能为 {@code null}
+     */
+    private IMClientPendingMessages buildByteBufferForWrite() {
         synchronized (writeLock) {
-            if (!messageList.isEmpty()) {
-                if (messageList.size() == 1) {
-                    ByteMessage message = messageList.get(0);
-                    messageIdArray = new String[] {message.getId()};
-                    messageCreatedTimeArray = new long[] {message.getCreatedTime()};
-                    writeBuffer = ByteBuffer.wrap(message.getContent());
-                } else {
-                    messageIdArray = new String[messageList.size()];
-                    messageCreatedTimeArray = new long[messageList.size()];
-
-                    int byteLength = 0;
-                    for (int i = 0; i < messageList.size(); i++) {
-                        ByteMessage message = messageList.get(i);
+            if (pendingControlFrame != null) { // 控制帧优先写入，分块消息的各个分块之间允许插入其它数据
+                setControlFrameWriteBuffer(ByteBuffer.wrap(pendingControlFrame));
+                pendingControlFrame = null;
+                return null;
+            }
+            IMClientMessageQueue messageQueue = this.messageQueue; // 回调中可能关闭 IM 客户端并释放队列
+            if (messageQueue != null && !messageQueue.isEmpty()) {
+                int maxMessageCount = ackWindow != null ? ackWindow.remainingCapacity() : Integer.MAX_VALUE;
+                writeBuffer = messageQueue.poll(maxWriteByteLength, maxMessageCount, System.currentTimeMillis());
+                if (writeBuffer != null) {
+                    writeBufferByteLength = writeBuffer.remaining();
+                    List<ByteMessage> polledMessageList = messageQueue.getPolledMessageList();
+                    List<ByteMessageCallback> polledCallbackList = messageQueue.getPolledCallbackList();
+                    messageIdArray = new String[polledMessageList.size()];
+                    messageCreatedTimeArray = new long[polledMessageList.size()];
+                    int callbackCount = 0;
+                    for (int i = 0; i < polledMessageList.size(); i++) {
+                        ByteMessage message = polledMessageList.get(i);
                         messageIdArray[i] = message.getId();
                         messageCreatedTimeArray[i] = message.getCreatedTime();
-                        byteLength += message.getContent().length;
+                        if (polledCallbackList.get(i) != null) {
+                            callbackCount++;
+                        }
+                        if (ackWindow != null && (ackParser == null || ackParser.isAckRequired(message))) {
+                            ackWindow.add(message); // 开始写入即进入窗口，连接中断时正在写入的字节消息也可重新发送
+                        }
                     }
+                    if (callbackCount > 0) {
+                        callbackMessageArray = new ByteMessage[callbackCount];
+                        callbackArray = new ByteMessageCallback[callbackCount];
+                        int callbackIndex = 0;
+                        for (int i = 0; i < polledCallbackList.size(); i++) {
+                            ByteMessageCallback callback = polledCallbackList.get(i);
+                            if (callback != null) {
+                                callbackMessageArray[callbackIndex] = polledMessageList.get(i);
+                                callbackArray[callbackIndex++] = callback;
+                            }
+                        }
+                    }
+                }
 
-                    byte[] mergedContent = new byte[byteLength];
-                    int offset = 0;
-                    for (ByteMessage message : messageList) {
-                        byte[] content = message.getContent();
-                        System.arraycopy(content, 0, mergedContent, offset, content.length);
-                        offset += content.length;
+                List<ByteMessage> expiredMessageList = messageQueue.getExpiredMessageList();
+                if (!expiredMessageList.isEmpty()) {
+                    for (ByteMessage message : expiredMessageList) {
+                        pendingByteLength -= message.getContent().length;
                     }
+                    onPendingChanged();
+                    BYTE_MESSAGE_MONITOR.onExpired(expiredMessageList.size());
+                    // 队列中的列表会被下一次 poll 复用，复制后在释放锁后通知
+                    return new IMClientPendingMessages(this, new ArrayList<>(expiredMessageList),
+                            new ArrayList<>(messageQueue.getExpiredCallbackList()));
+                }
+            }
+            return null;
+        }
+    }
+
+    /**
+     * 通知监听器及字节消息关联的回调字节消息已过期，调用此方法时不应持有锁 {@link #writeLock}。
+     *
+     * @param expiredMessages 丢弃的过期字节消息
+     */
+    private void notifyExpired(IMClientPendingMessages expiredMessages) {
+        if (clientListener != null) {
+            List<ByteMessage> expiredMessageList = expiredMessages.getMessageList();
+            String[] expiredIdArray = new String[expiredMessageList.size()];
+            for (int i = 0; i < expiredIdArray.length; i++) {
+                expiredIdArray[i] = expiredMessageList.get(i).getId();
+            }
+            try {
+                clientListener.onExpired(this, expiredIdArray);
+            } catch (Exception e) {
+                LOGGER.error("IMClient fails to notify expired message: `unexpected error`. `messageIds`:`"
+                        + Arrays.toString(expiredIdArray) + "`. `client`:`" + toString() + "`.", e);
+            }
+        }
+        expiredMessages.fail(ByteMessageFailedReasonEnum.EXPIRED);
+    }
+
+    /**
+     * 在待发送数据发生变化后调用此方法，更新 Top-K 统计信息，调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * <p>
+     *     在所属管理器的 Selector 线程中直接更新，在其它线程中仅通知管理器在下一轮 select 中更新，同一轮中的多次变化只通知一次。
+     * </p>
+     */
+    private void onPendingChanged() {
+        IMClientManager manager = this.manager;
+        if (manager == null) { // 尚未注册，注册时将统一更新
+            return;
+        }
+        if (IMClientManager.isSelectorThread(manager.getSelector())) {
+            manager.getHeavyHitterRecorder().onPendingChanged(id, pendingByteLength, getOldestPendingCreatedTime());
+        } else if (!heavyHitterDirty) {
+            heavyHitterDirty = true;
+            manager.markHeavyHitterDirty(this);
+        }
+    }
+
+    /**
+     * 获得最早的待发送消息创建时间，包括正在写入的字节消息，如果没有待发送的字节消息，将会返回 0，调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @return 最早的待发送消息创建时间
+     */
+    private long getOldestPendingCreatedTime() {
+        long oldestCreatedTime = messageQueue != null ? messageQueue.getOldestCreatedTime() : 0;
+        if (messageCreatedTimeArray != null) {
+            for (long messageCreatedTime : messageCreatedTimeArray) {
+                if (oldestCreatedTime == 0 || messageCreatedTime < oldestCreatedTime) {
+                    oldestCreatedTime = messageCreatedTime;
+                }
+            }
+        }
+        return oldestCreatedTime;
+    }
+
+    /**
+     * 设置当前 IM 客户端所属的 IM 客户端管理器，并通知该管理器更新 Top-K 统计信息，由 {@link IMClientManager} 在注册后调用。
+     *
+     * @param manager IM 客户端管理器
+     */
+    void attachManager(IMClientManager manager) {
+        synchronized (writeLock) {
+            this.manager = manager;
+            heavyHitterDirty = true; // 原管理器中尚未处理的通知将被忽略
+            manager.markHeavyHitterDirty(this);
+        }
+    }
+
+    /**
+     * 在所属管理器的 Selector 线程中更新 Top-K 统计信息，如果当前 IM 客户端已关闭，将移除其全部统计信息。
+     *
+     * @param owner 处理通知的 IM 客户端管理器，如果已不是当前 IM 客户端所属的管理器，将忽略本次通知
+     */
+    void flushHeavyHitter(IMClientManager owner) {
+        synchronized (writeLock) {
+            if (manager != owner) { // 已迁移至其它管理器
+                return;
+            }
+            heavyHitterDirty = false;
+            IMClientHeavyHitterRecorder recorder = owner.getHeavyHitterRecorder();
+            if (state != BeanStatusEnum.NORMAL) {
+                recorder.onClosed(id);
+            } else {
+                recorder.onPendingChanged(id, pendingByteLength, getOldestPendingCreatedTime());
+            }
+        }
+    }
+
+    /**
+     * 通知字节消息关联的回调该消息未能发送，回调抛出的异常将被记录日志后忽略。
+     *
+     * @param message 未能发送的字节消息
+     * @param callback 字节消息关联的回调
+     * @param reason 未能发送的原因
+     */
+    void notifyFailed(ByteMessage message, ByteMessageCallback callback, ByteMessageFailedReasonEnum reason) {
+        try {
+            callback.onFailed(this, message, reason);
+        } catch (Exception e) {
+            LOGGER.error("IMClient fails to notify failed message: `unexpected error`. `messageId`:`" + message.getId()
+                    + "`. `reason`:`" + reason + "`. `client`:`" + toString() + "`.", e);
+        }
+    }
+
+    /**
+     * 在 IM 客户端关闭后，通知所有尚未完成写入的字节消息关联的回调。
+     */
+    private void failPendingMessages() {
+        List<ByteMessage> messageList = new ArrayList<>();
+        List<ByteMessageCallback> callbackList = new ArrayList<>();
+        synchronized (writeLock) {
+            if (callbackArray != null) {
+                for (int i = 0; i < callbackArray.length; i++) {
+                    messageList.add(callbackMessageArray[i]);
+                    callbackList.add(callbackArray[i]);
+                }
+                callbackMessageArray = null;
+                callbackArray = null;
+            }
+            if (messageQueue != null) {
+                messageQueue.clear(messageList, callbackList);
+                messageQueue = null;
+            }
+            pendingByteLength = 0;
+        }
+        for (int i = 0; i < callbackList.size(); i++) {
+            ByteMessageCallback callback = callbackList.get(i);
+            if (callback != null) {
+                notifyFailed(messageList.get(i), callback, ByteMessageFailedReasonEnum.CLOSED);
+            }
+        }
+    }
+
+    /**
+     * 从正在写入的数据中移除指定字节消息关联的回调并返回，如果该字节消息没有关联回调，将会返回 {@code null}，
+     * 调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @param message 字节消息
+     * @return 字节消息关联的回调，可能为 {@code null}
+     */
+    private ByteMessageCallback removeWritingCallback(ByteMessage message) {
+        if (callbackArray != null) {
+            for (int i = 0; i < callbackArray.length; i++) {
+                if (callbackMessageArray[i] == message) {
+                    ByteMessageCallback callback = callbackArray[i];
+                    callbackArray[i] = null;
+                    return callback;
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * 检查当前 IM 客户端是否允许发送字节消息，调用此方法需先获得锁 {@link #writeLock}，在锁内判断，保证关闭时已入队的字节消息都能收到通知。
+     *
+     * @param messageId 字节消息 ID，用于记录日志
+     * @throws IllegalStateException 如果当前 IM 客户端未初始化或已关闭，将会抛出此异常
+     */
+    private void checkState(String messageId) throws IllegalStateException {
+        if (state != BeanStatusEnum.NORMAL) {
+            BYTE_MESSAGE_MONITOR.onError();
+            String errorMessage = "IMClient fails to send message: `illegal state`. `messageId`:`" + messageId +
+                    "`. `client`:`" + toString() + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+    }
+
+    /**
+     * 判断是否存在可写入的字节消息或等待写入的控制帧，如果开启了确认机制且未确认字节消息窗口已满，仅在有等待写入的控制帧时返回 {@code true}，
+     * 调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @return 是否存在可写入的数据
+     */
+    private boolean hasWritableMessage() {
+        return pendingControlFrame != null || messageQueue != null && !messageQueue.isEmpty() && (ackWindow == null || !ackWindow.isFull());
+    }
+
+    /**
+     * 获得待写入的字节消息队列，如果尚未创建，将会创建一个新的队列，调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @return 待写入的字节消息队列
+     */
+    private IMClientMessageQueue getMessageQueue() {
+        if (messageQueue == null) {
+            messageQueue = new IMClientMessageQueue();
+        }
+        return messageQueue;
+    }
+
+    /**
+     * 如果当前 IM 客户端没有正在写入或待写入的字节消息，释放待写入的字节消息队列，下次发送时重新创建。
+     *
+     * <p>
+     *     空闲连接仅保留必要的状态，用于降低大量空闲长连接占用的内存，通常由 {@link com.heimuheimu.raven.TimeoutIMClientScanner}
+     *     对一段时间内没有活动的 IM 客户端调用。
+     * </p>
+     *
+     * @return 是否释放了待写入的字节消息队列
+     */
+    public boolean compact() {
+        synchronized (writeLock) {
+            if (messageQueue != null && messageQueue.isEmpty() && writeBuffer == null) {
+                messageQueue = null;
+                return true;
+            }
+            return false;
+        }
+    }
 
-                    writeBuffer = ByteBuffer.wrap(mergedContent);
+    /**
+     * 将当前 IM 客户端迁移至指定的 IM 客户端管理器，迁移后保持当前关注的事件不变，并取消在原 Selector 中的注册。
+     *
+     * <p><strong>注意：</strong>该方法只允许在原 IM 客户端管理器的 Selector 线程中调用，保证迁移时当前 IM 客户端不在读写过程中。</p>
+     *
+     * @param target 目标 IM 客户端管理器，不允许为 {@code null}
+     * @return 是否迁移成功，如果当前 IM 客户端已关闭，将会返回 {@code false}
+     * @throws IllegalStateException 如果目标 IM 客户端管理器不可用，将会抛出此异常
+     * @throws IOException 如果在注册过程中发生 IO 错误，将会抛出此异常
+     */
+    boolean migrate(IMClientManager target) throws IllegalStateException, IOException {
+        synchronized (writeLock) {
+            if (state != BeanStatusEnum.NORMAL) {
+                return false;
+            }
+            Selector targetSelector = target.getSelector();
+            if (targetSelector == null) {
+                throw new IllegalStateException("IMClient fails to migrate: `invalid target selector`. `client`:`" + toString() + "`.");
+            }
+            Selector prevSelector = selector;
+            IMClientManager prevManager = manager;
+            if (prevManager != null) { // 在原管理器的 Selector 线程中移除统计信息，注册后由目标管理器重新统计
+                prevManager.getHeavyHitterRecorder().onClosed(id);
+            }
+            target.register(this, readonly ? SelectionKey.OP_READ : SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+            selector = targetSelector;
+            if (prevSelector != null) {
+                SelectionKey prevSelectionKey = socketChannel.keyFor(prevSelector);
+                if (prevSelectionKey != null) {
+                    prevSelectionKey.cancel();
                 }
-                messageList = new ArrayList<>();
+            }
+            return true;
+        }
+    }
+
+    /**
+     * 在新的字节消息加入队列或窗口中的字节消息被确认后，关注写事件，如果操作失败，将会关闭当前 IM 客户端，调用此方法需先获得锁 {@link #writeLock}。
+     *
+     * @param messageId 字节消息 ID，用于记录日志
+     * @param wakeup 是否唤醒选择器
+     * @throws RavenException 如果关注写事件失败，将会抛出此异常
+     */
+    private void enableWrite(String messageId, boolean wakeup) throws RavenException {
+        if (writeBuffer == null && !hasWritableMessage()) { // 未确认字节消息窗口已满，等待确认后再写入
+            return;
+        }
+        try {
+            setReadonly(false, wakeup);
+        } catch (Exception e) {
+            BYTE_MESSAGE_MONITOR.onError();
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            try {
+                params.put("remote", socketChannel.getRemoteAddress());
+                params.put("local", socketChannel.getLocalAddress());
+            } catch (Exception ignored) {}
+            params.put("id", getId());
+            RAVEN_IM_CLIENT_LOG.error("IMClient fails to set readonly." + LogBuildUtil.build(params), e);
+            close();
+
+            String errorMessage = "IMClient fails to send message: `set readonly failed`. `messageId`:`" + messageId +
+                    "`. `client`:`" + toString() + "`.";
+            LOGGER.error(errorMessage, e);
+            throw new RavenException(errorMessage, e);
+        }
+    }
+
+    /**
+     * 通知字节消息被相同槽位的新消息替换。
+     *
+     * @param replacedMessageList 被替换的字节消息列表
+     * @param replacedCallbackList 被替换的字节消息关联的回调列表，与 {@code replacedMessageList} 一一对应，元素可能为 {@code null}
+     */
+    private void notifyReplaced(List<ByteMessage> replacedMessageList, List<ByteMessageCallback> replacedCallbackList) {
+        BYTE_MESSAGE_MONITOR.onReplaced(replacedMessageList.size());
+        if (clientListener != null) {
+            String[] replacedIdArray = new String[replacedMessageList.size()];
+            for (int i = 0; i < replacedIdArray.length; i++) {
+                replacedIdArray[i] = replacedMessageList.get(i).getId();
+            }
+            try {
+                clientListener.onReplaced(this, replacedIdArray);
+            } catch (Exception e) {
+                LOGGER.error("IMClient fails to notify replaced message: `unexpected error`. `messageIds`:`"
+                        + Arrays.toString(replacedIdArray) + "`. `client`:`" + toString() + "`.", e);
+            }
+        }
+        for (int i = 0; i < replacedCallbackList.size(); i++) {
+            ByteMessageCallback callback = replacedCallbackList.get(i);
+            if (callback != null) {
+                notifyFailed(replacedMessageList.get(i), callback, ByteMessageFailedReasonEnum.REPLACED);
             }
         }
     }
 
     private void setReadonly(boolean readonly) {
+        setReadonly(readonly, true);
+    }
+
+    private void setReadonly(boolean readonly, boolean wakeup) {
         synchronized (writeLock) {
             if (isActive() && this.readonly != readonly) {
                 if (!readonly) {
-                    interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE);
+                    interestOps(SelectionKey.OP_READ | SelectionKey.OP_WRITE, wakeup);
                 } else {
-                    interestOps(SelectionKey.OP_READ);
+                    interestOps(SelectionKey.OP_READ, wakeup);
                 }
                 this.readonly = readonly;
             }
         }
     }
 
-    private void interestOps(int ops) {
+    private void interestOps(int ops, boolean wakeup) {
         if (selector == null || !selector.isOpen()) {
             String errorMessage = "IMClient fails to interest operations: `invalid selector`. `client`:`"
                     + toString() + "`.";
@@ -365,7 +1567,9 @@ public class IMClient implements Closeable {
         }
         try {
             selectionKey.interestOps(ops);
-            selector.wakeup();
+            if (wakeup && !IMClientManager.isSelectorThread(selector)) { // 在选择器线程中发送（例如在 onReceived 中回复），无需额外的唤醒系统调用
+                selector.wakeup();
+            }
         } catch (Exception e) {
             String errorMessage = "IMClient fails to interest operations: `unexpected error`. `client`:`"
                     + toString() + "`.";
@@ -374,9 +1578,28 @@ public class IMClient implements Closeable {
         }
     }
 
+    /**
+     * 关闭当前 IM 客户端，立即丢弃 Socket 发送缓冲区中尚未发出的数据并发送 RST，避免产生 TIME_WAIT 状态的连接。
+     * 如果当前 IM 客户端已关闭，调用该方法不会有任何效果。
+     */
     @Override
-    public synchronized void close() {
-        if (state != BeanStatusEnum.CLOSED) {
+    public void close() {
+        close(false);
+    }
+
+    /**
+     * 优雅关闭当前 IM 客户端，Socket 发送缓冲区中已写入的数据将由操作系统继续发送，发送完成后以 FIN 正常断开连接，
+     * 尚未写入 Socket 的字节消息与 {@link #close()} 方法的处理方式一致。如果当前 IM 客户端已关闭，调用该方法不会有任何效果。
+     */
+    public void closeGracefully() {
+        close(true);
+    }
+
+    private void close(boolean graceful) {
+        synchronized (writeLock) {
+            if (state == BeanStatusEnum.CLOSED) {
+                return;
+            }
             long startTime = System.currentTimeMillis();
             state = BeanStatusEnum.CLOSED;
             LinkedHashMap<String, Object> params = new LinkedHashMap<>();
@@ -399,17 +1622,37 @@ public class IMClient implements Closeable {
                 }
 
                 socketChannel.configureBlocking(true);
-                socketChannel.setOption(StandardSocketOptions.SO_LINGER, 0); // avoid TIME_WAIT being a problem
+                if (!graceful) {
+                    socketChannel.setOption(StandardSocketOptions.SO_LINGER, 0); // avoid TIME_WAIT being a problem
+                }
                 socketChannel.close();
+                params.put("graceful", graceful);
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                 RAVEN_IM_CLIENT_LOG.info("Closed IMClient.{}", LogBuildUtil.build(params));
             } catch (Exception e) {
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                 RAVEN_IM_CLIENT_LOG.error("IMClient fails to close: `unexpected error`." + LogBuildUtil.build(params), e);
                 IMClientMonitor.getInstance().onError(IMClientMonitor.ERROR_CODE_FAILS_TO_CLOSE);
-            } finally {
-                if (unusableServiceNotifier != null) {
-                    unusableServiceNotifier.onClosed(this);
+            }
+        }
+        // 释放锁后再通知，通知中可能会获取其它 IM 客户端的写锁，持有当前锁时执行可能导致死锁，也会阻塞 Selector 线程
+        try {
+            if (unusableServiceNotifier != null) { // 先通知，允许在通知中通过 detachPendingMessages() 方法取出待发送字节消息
+                unusableServiceNotifier.onClosed(this);
+            }
+        } finally {
+            failPendingMessages();
+            IMClientManager manager = this.manager;
+            if (manager != null) {
+                if (IMClientManager.isSelectorThread(manager.getSelector())) {
+                    manager.getHeavyHitterRecorder().onClosed(id);
+                } else {
+                    synchronized (writeLock) {
+                        if (!heavyHitterDirty) {
+                            heavyHitterDirty = true;
+                            manager.markHeavyHitterDirty(this);
+                        }
+                    }
                 }
             }
         }
@@ -419,6 +1662,8 @@ public class IMClient implements Closeable {
     public String toString() {
         return "IMClient{" +
                 "id='" + id + '\'' +
+                ", numericId=" + numericId +
+                ", userId='" + userId + '\'' +
                 ", socketChannel=" + socketChannel +
                 ", selector=" + selector +
                 ", maxWriteByteLength=" + maxWriteByteLength +
@@ -426,7 +1671,25 @@ public class IMClient implements Closeable {
                 ", unusableServiceNotifier=" + unusableServiceNotifier +
                 ", state=" + state +
                 ", lastActiveTime=" + lastActiveTime +
+                ", lastReceivedTime=" + lastReceivedTime +
                 ", readonly=" + readonly +
                 '}';
     }
+
+    /**
+     * 通过 {@link #asyncSendWithFuture(ByteMessage)} 方法发送字节消息时使用的回调，同时作为返回给调用方的 {@code CompletableFuture}。
+     */
+    private static class ByteMessageFuture extends CompletableFuture<Void> implements ByteMessageCallback {
+
+        @Override
+        public void onSent(IMClient client, ByteMessage message) {
+            complete(null);
+        }
+
+        @Override
+        public void onFailed(IMClient client, ByteMessage message, ByteMessageFailedReasonEnum reason) {
+            completeExceptionally(new ByteMessageFailedException("ByteMessage is not sent: `" + reason + "`. `messageId`:`"
+                    + message.getId() + "`. `client`:`" + client + "`.", reason));
+        }
+    }
 }
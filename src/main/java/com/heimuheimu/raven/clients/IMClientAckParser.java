@@ -0,0 +1,65 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import java.nio.ByteBuffer;
+
+/**
+ * IM 客户端确认帧解析器，用于开启确认机制后，从 IM 客户端发送的数据中识别确认帧，并判断字节消息是否需要确认。
+ *
+ * <p>
+ *     <strong>说明：</strong>IMClientAckParser 的实现类必须是线程安全的。
+ * </p>
+ *
+ * @author heimuheimu
+ * @see IMClientConfiguration#setAckWindowSize(int)
+ */
+public interface IMClientAckParser {
+
+    /**
+     * 判断字节消息是否需要 IM 客户端确认，不需要确认的字节消息在写入完成后即视为送达，不会占用未确认窗口。
+     *
+     * @param message 字节消息，不会为 {@code null}
+     * @return 是否需要确认
+     */
+    boolean isAckRequired(ByteMessage message);
+
+    /**
+     * 从 IM 客户端发送的数据中解析确认帧，返回被确认的字节消息 ID 数组，允许返回 {@code null}。
+     *
+     * <p>
+     *     该方法在 {@link IMClientListener#onReceived(IMClient, ByteBuffer)} 之前执行，解析器应从 {@code buffer} 的当前位置开始读取完整的确认帧，
+     *     并将 position 移动到已消费数据之后，剩余的数据将交由 {@link IMClientListener} 处理。如果确认帧可能被拆分在多次读取中，
+     *     应由使用方在自己的协议解码中识别确认帧，并调用 {@link IMClient#acknowledge(String...)} 方法。
+     * </p>
+     *
+     * <p><strong>注意：</strong>该方法将在 IO 线程中执行，请勿执行耗时操作。</p>
+     *
+     * @param client 接收到数据的 IM 客户端，不会为 {@code null}
+     * @param buffer 接收到的数据，不会为 {@code null}
+     * @return 被确认的字节消息 ID 数组，可能为 {@code null}
+     */
+    String[] parse(IMClient client, ByteBuffer buffer);
+}
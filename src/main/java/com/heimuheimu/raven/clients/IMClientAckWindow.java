@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IM 客户端未确认字节消息窗口，使用定长环形数组按写入顺序保存已开始写入但尚未被确认的字节消息引用。
+ *
+ * <p>
+ *     允许乱序确认，被确认的位置置空，窗口起始位置在首个字节消息被确认后向后移动，因此窗口占用的长度为最早的未确认消息到最新的消息之间的跨度。
+ *     数组在首次使用时创建，每个 IM 客户端占用的内存不超过 {@code capacity} 个引用。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientAckWindow 类是非线程安全的，由 {@link IMClient} 在持有写锁时访问。</p>
+ *
+ * @author heimuheimu
+ */
+class IMClientAckWindow {
+
+    /**
+     * 窗口容量
+     */
+    private final int capacity;
+
+    /**
+     * 环形数组，在首次使用时创建
+     */
+    private ByteMessage[] messages = null;
+
+    /**
+     * 窗口起始位置
+     */
+    private int head = 0;
+
+    /**
+     * 窗口占用的长度，包含已确认但尚未移出窗口的空位
+     */
+    private int span = 0;
+
+    /**
+     * 窗口中尚未确认的字节消息数量
+     */
+    private int size = 0;
+
+    /**
+     * 构造一个 IMClientAckWindow 实例。
+     *
+     * @param capacity 窗口容量，应大于 0
+     */
+    IMClientAckWindow(int capacity) {
+        this.capacity = capacity;
+    }
+
+    /**
+     * 获得窗口中剩余的可用位置数量。
+     *
+     * @return 剩余的可用位置数量
+     */
+    int remainingCapacity() {
+        return capacity - span;
+    }
+
+    /**
+     * 判断窗口是否已满。
+     *
+     * @return 窗口是否已满
+     */
+    boolean isFull() {
+        return span == capacity;
+    }
+
+    /**
+     * 将字节消息加入窗口末尾，调用此方法前需确保窗口未满。
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     */
+    void add(ByteMessage message) {
+        if (messages == null) {
+            messages = new ByteMessage[capacity];
+        }
+        messages[(head + span) % capacity] = message;
+        span++;
+        size++;
+    }
+
+    /**
+     * 确认指定 ID 的字节消息，返回是否确认成功，如果窗口中不存在该字节消息，将会返回 {@code false}。
+     *
+     * @param messageId 字节消息 ID
+     * @return 是否确认成功
+     */
+    boolean acknowledge(String messageId) {
+        for (int i = 0; i < span; i++) {
+            int index = (head + i) % capacity;
+            ByteMessage message = messages[index];
+            if (message != null && message.getId().equals(messageId)) {
+                messages[index] = null;
+                size--;
+                while (span > 0 && messages[head] == null) {
+                    head = (head + 1) % capacity;
+                    span--;
+                }
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * 按写入顺序获得窗口中尚未确认的字节消息列表，如果 {@code remove} 为 {@code true}，将同时清空窗口。
+     *
+     * @param remove 是否清空窗口
+     * @return 尚未确认的字节消息列表，不会为 {@code null}
+     */
+    List<ByteMessage> getMessageList(boolean remove) {
+        List<ByteMessage> messageList = new ArrayList<>(size);
+        for (int i = 0; i < span; i++) {
+            int index = (head + i) % capacity;
+            if (messages[index] != null) {
+                messageList.add(messages[index]);
+                if (remove) {
+                    messages[index] = null;
+                }
+            }
+        }
+        if (remove) {
+            head = 0;
+            span = 0;
+            size = 0;
+        }
+        return messageList;
+    }
+
+    /**
+     * 获得窗口中尚未确认的字节消息数量。
+     *
+     * @return 尚未确认的字节消息数量
+     */
+    int size() {
+        return size;
+    }
+}
@@ -0,0 +1,157 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import java.util.Arrays;
+
+/**
+ * {@link IMClient} 使用的扩展配置信息，用于开启可选的客户端特性，默认配置下所有可选特性均为关闭状态。
+ *
+ * <p><strong>说明：</strong>IMClientConfiguration 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientConfiguration {
+
+    /**
+     * 未确认字节消息窗口大小，如果小于等于 0，则不开启确认机制，默认为 0
+     */
+    private volatile int ackWindowSize = 0;
+
+    /**
+     * IM 客户端确认帧解析器，默认为 {@code null}
+     */
+    private volatile IMClientAckParser ackParser = null;
+
+    /**
+     * IM 客户端心跳帧匹配器，如果为 {@code null}，则不在 Selector 线程中识别心跳帧，默认为 {@code null}
+     */
+    private volatile IMClientHeartbeatMatcher heartbeatMatcher = null;
+
+    /**
+     * 识别到心跳帧后自动回复的心跳响应帧，如果为 {@code null}，则不自动回复，默认为 {@code null}
+     */
+    private volatile byte[] heartbeatResponse = null;
+
+    /**
+     * 获得未确认字节消息窗口大小，如果小于等于 0，则不开启确认机制，默认为 0。
+     *
+     * @return 未确认字节消息窗口大小
+     */
+    public int getAckWindowSize() {
+        return ackWindowSize;
+    }
+
+    /**
+     * 设置未确认字节消息窗口大小，如果小于等于 0，则不开启确认机制。
+     *
+     * <p>
+     *     开启后，每个 IM 客户端最多允许 {@code ackWindowSize} 条字节消息已开始写入但尚未被确认，窗口已满时将暂停写入，
+     *     直至收到确认。窗口仅保存字节消息的引用，在首次使用时创建。
+     * </p>
+     *
+     * @param ackWindowSize 未确认字节消息窗口大小
+     */
+    public void setAckWindowSize(int ackWindowSize) {
+        this.ackWindowSize = ackWindowSize;
+    }
+
+    /**
+     * 获得 IM 客户端确认帧解析器，默认为 {@code null}。
+     *
+     * @return IM 客户端确认帧解析器，可能为 {@code null}
+     */
+    public IMClientAckParser getAckParser() {
+        return ackParser;
+    }
+
+    /**
+     * 设置 IM 客户端确认帧解析器，允许为 {@code null}，如果为 {@code null}，需由使用方调用 {@link IMClient#acknowledge(String...)}
+     * 方法进行确认。
+     *
+     * @param ackParser IM 客户端确认帧解析器
+     */
+    public void setAckParser(IMClientAckParser ackParser) {
+        this.ackParser = ackParser;
+    }
+
+    /**
+     * 获得 IM 客户端心跳帧匹配器，默认为 {@code null}。
+     *
+     * @return IM 客户端心跳帧匹配器，可能为 {@code null}
+     */
+    public IMClientHeartbeatMatcher getHeartbeatMatcher() {
+        return heartbeatMatcher;
+    }
+
+    /**
+     * 设置 IM 客户端心跳帧匹配器，允许为 {@code null}，如果为 {@code null}，心跳帧将与其它数据一样交由 {@link IMClientListener} 处理。
+     *
+     * <p>
+     *     设置后，IM 客户端管理器在 Selector 线程中识别每次读取的数据开头连续的心跳帧，更新 IM 客户端最后活跃时间后直接丢弃，
+     *     不会通知 {@link IMClientListener}，也不计入 IM 客户端接收数据的 Top-K 统计。
+     * </p>
+     *
+     * @param heartbeatMatcher IM 客户端心跳帧匹配器
+     * @see com.heimuheimu.raven.clients.support.IMClientFixedHeartbeatMatcher
+     */
+    public void setHeartbeatMatcher(IMClientHeartbeatMatcher heartbeatMatcher) {
+        this.heartbeatMatcher = heartbeatMatcher;
+    }
+
+    /**
+     * 获得识别到心跳帧后自动回复的心跳响应帧，默认为 {@code null}。
+     *
+     * @return 心跳响应帧，可能为 {@code null}
+     */
+    public byte[] getHeartbeatResponse() {
+        return heartbeatResponse;
+    }
+
+    /**
+     * 设置识别到心跳帧后自动回复的心跳响应帧，允许为 {@code null}，如果为 {@code null}，则不自动回复，仅在设置了心跳帧匹配器时有效。
+     *
+     * <p>
+     *     同一次读取中的多个心跳帧仅回复一次。心跳响应帧在所有 IM 客户端之间共享，不会为每次回复创建字节消息，也不进入待写入的字节消息队列：
+     *     没有正在写入的数据时在 Selector 线程中直接写入，否则在当前数据写入完成后优先写入。心跳响应帧不会通知
+     *     {@link IMClientListener#onSent(IMClient, String[])}，也不计入字节消息相关的监控数据。
+     * </p>
+     *
+     * @param heartbeatResponse 心跳响应帧，设置后请勿修改数组内容
+     */
+    public void setHeartbeatResponse(byte[] heartbeatResponse) {
+        this.heartbeatResponse = heartbeatResponse;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientConfiguration{" +
+                "ackWindowSize=" + ackWindowSize +
+                ", ackParser=" + ackParser +
+                ", heartbeatMatcher=" + heartbeatMatcher +
+                ", heartbeatResponse=" + Arrays.toString(heartbeatResponse) +
+                '}';
+    }
+}
@@ -0,0 +1,58 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients;
+
+import java.nio.ByteBuffer;
+
+/**
+ * IM 客户端心跳帧匹配器，用于在 Selector 线程中直接识别 IM 客户端发送的心跳帧，心跳帧不会交由 {@link IMClientListener} 处理。
+ *
+ * <p>
+ *     <strong>说明：</strong>IMClientHeartbeatMatcher 的实现类必须是线程安全的。
+ * </p>
+ *
+ * @author heimuheimu
+ * @see IMClientConfiguration#setHeartbeatMatcher(IMClientHeartbeatMatcher)
+ */
+public interface IMClientHeartbeatMatcher {
+
+    /**
+     * 判断 {@code buffer} 当前位置开始的数据是否为一个完整的心跳帧，如果是，返回心跳帧的字节数，否则返回 0。
+     *
+     * <p>
+     *     该方法在 {@link IMClientAckParser} 与 {@link IMClientListener#onReceived(IMClient, ByteBuffer)} 之前执行，
+     *     实现类不应修改 {@code buffer} 的 position 与 limit。每次读取的数据中仅识别开头连续的心跳帧，遇到第一个非心跳帧时停止，
+     *     剩余的数据将交由后续流程处理。
+     * </p>
+     *
+     * <p><strong>注意：</strong>该方法将在 IO 线程中执行，请勿执行耗时操作。</p>
+     *
+     * @param client 接收到数据的 IM 客户端，不会为 {@code null}
+     * @param buffer 接收到的数据，不会为 {@code null}，剩余字节数大于 0
+     * @return 心跳帧的字节数，如果不是心跳帧，返回 0
+     */
+    int match(IMClient client, ByteBuffer buffer);
+}
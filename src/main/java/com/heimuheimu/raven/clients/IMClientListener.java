@@ -42,6 +42,10 @@ public interface IMClientListener {
      *
      * <p><strong>注意：</strong>该方法将在 IO 线程中执行，请勿执行耗时操作，如操作时间不可确定，建议内部采用异步方式执行。</p>
      * <p><strong>说明：</strong>如果该方法在执行过程中抛出异常，该 IM 客户端会被关闭，不允许其继续通信。</p>
+     * <p>
+     *     <strong>说明：</strong>如果设置了 {@link IMClientManagerConfiguration#setCpuList(String)} 并绑定成功，{@code buffer} 为直接内存，
+     *     不支持 {@code array()} 方法。
+     * </p>
      *
      * @param client 接收到数据的 IM 客户端，不允许为 {@code null}
      * @param buffer 接收到的数据，不允许为 {@code null}
@@ -58,4 +62,38 @@ public interface IMClientListener {
      * @param ids 发送成功的字节消息 ID 数组，不会为 {@code null} 或空数组
      */
     void onSent(IMClient client, String[] ids);
+
+    /**
+     * 当字节消息在开始写入前已过期，被丢弃时，将触发此事件。
+     *
+     * <p><strong>注意：</strong>该方法将在 IO 线程中执行，请勿执行耗时操作，如操作时间不可确定，建议内部采用异步方式执行。</p>
+     * <p><strong>说明：</strong>该方法在释放 IM 客户端的写锁后执行，抛出的异常仅记录日志，不影响过期字节消息关联的回调收到通知。</p>
+     *
+     * @param client 目标 IM 客户端，不允许为 {@code null}
+     * @param ids 已过期的字节消息 ID 数组，不会为 {@code null} 或空数组
+     * @see ByteMessage#getExpiredTime()
+     */
+    void onExpired(IMClient client, String[] ids);
+
+    /**
+     * 当待写入的字节消息在开始写入前被相同槽位的新消息替换，不再发送时，将触发此事件。
+     *
+     * <p><strong>注意：</strong>该方法将在调用 {@link IMClient#asyncSend(ByteMessage)} 方法的线程中执行，请勿执行耗时操作。</p>
+     *
+     * @param client 目标 IM 客户端，不允许为 {@code null}
+     * @param ids 被替换的字节消息 ID 数组，不会为 {@code null} 或空数组
+     * @see ByteMessage#getSlotKey()
+     */
+    void onReplaced(IMClient client, String[] ids);
+
+    /**
+     * 当开启确认机制后，字节消息被 IM 客户端确认时，将触发此事件。
+     *
+     * <p><strong>注意：</strong>该方法将在调用 {@link IMClient#acknowledge(String...)} 方法的线程中执行，通常为 IO 线程，请勿执行耗时操作。</p>
+     *
+     * @param client 目标 IM 客户端，不允许为 {@code null}
+     * @param ids 被确认的字节消息 ID 数组，不会为 {@code null} 或空数组
+     * @see IMClientConfiguration#setAckWindowSize(int)
+     */
+    void onAcknowledged(IMClient client, String[] ids);
 }
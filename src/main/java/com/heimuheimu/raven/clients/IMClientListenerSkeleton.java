@@ -46,4 +46,19 @@ public abstract class IMClientListenerSkeleton implements IMClientListener {
     public void onSent(IMClient client, String[] ids) {
         // do nothing
     }
+
+    @Override
+    public void onExpired(IMClient client, String[] ids) {
+        // do nothing
+    }
+
+    @Override
+    public void onReplaced(IMClient client, String[] ids) {
+        // do nothing
+    }
+
+    @Override
+    public void onAcknowledged(IMClient client, String[] ids) {
+        // do nothing
+    }
 }
@@ -29,7 +29,10 @@ import com.heimuheimu.naivemonitor.monitor.SocketMonitor;
 import com.heimuheimu.raven.constant.BeanStatusEnum;
 import com.heimuheimu.raven.exception.RavenException;
 import com.heimuheimu.raven.exception.RejectedRegisterException;
+import com.heimuheimu.raven.facility.CpuAffinity;
 import com.heimuheimu.raven.facility.UnusableServiceNotifier;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitterMonitor;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitterRecorder;
 import com.heimuheimu.raven.monitor.IMClientManagerMonitor;
 import com.heimuheimu.raven.util.LogBuildUtil;
 import org.slf4j.Logger;
@@ -39,11 +42,19 @@ import java.io.Closeable;
 import java.io.IOException;
 import java.nio.ByteBuffer;
 import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.IllegalSelectorException;
 import java.nio.channels.SelectionKey;
 import java.nio.channels.Selector;
 import java.nio.channels.SocketChannel;
+import java.nio.channels.spi.SelectorProvider;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Supplier;
 
 /**
  * IM 客户端管理器。
@@ -65,6 +76,11 @@ public class IMClientManager implements Closeable {
      */
     private static final IMClientManagerMonitor MANAGER_MONITOR = IMClientManagerMonitor.getInstance();
 
+    /**
+     * 开启 Socket 接收缓冲区调整时允许设置的最小值
+     */
+    private static final int MIN_SOCKET_RECEIVE_BUFFER_SIZE = 4 * 1024;
+
     /**
      * IM 客户端管理器名称
      */
@@ -75,6 +91,11 @@ public class IMClientManager implements Closeable {
      */
     private final IMClientManagerConfiguration configuration;
 
+    /**
+     * Selector 线程绑定的 CPU，如果小于 0，则不绑定
+     */
+    private final int cpu;
+
     /**
      * IMClientManager 后台线程
      */
@@ -85,6 +106,21 @@ public class IMClientManager implements Closeable {
      */
     private volatile BeanStatusEnum state = BeanStatusEnum.UNINITIALIZED;
 
+    /**
+     * 当前 IMClientManager 是否正在退役，退役中的 IMClientManager 不再接受新的 IM 客户端注册
+     */
+    private volatile boolean retiring = false;
+
+    /**
+     * 当前 IMClientManager 使用的 IM 客户端 Top-K 信息记录器，仅在 Selector 线程中更新
+     */
+    private final IMClientHeavyHitterRecorder heavyHitterRecorder = new IMClientHeavyHitterRecorder();
+
+    /**
+     * 在其它线程中发生待发送数据变化或关闭、等待在 Selector 线程中更新 Top-K 统计信息的 IM 客户端队列
+     */
+    private final ConcurrentLinkedQueue<IMClient> heavyHitterDirtyQueue = new ConcurrentLinkedQueue<>();
+
     /**
      * 构造一个 IMClientManager 实例。
      *
@@ -92,8 +128,21 @@ public class IMClientManager implements Closeable {
      * @param configuration IM 客户端管理器使用的配置信息，不允许为 {@code null}
      */
     public IMClientManager(String name, IMClientManagerConfiguration configuration) {
+        this(name, configuration, -1);
+    }
+
+    /**
+     * 构造一个 IMClientManager 实例，Selector 线程启动后将绑定到指定的 CPU 上，绑定成功后在该线程中分配直接内存作为接收缓存。
+     *
+     * @param name IM 客户端管理器名称，不允许为 {@code null}
+     * @param configuration IM 客户端管理器使用的配置信息，不允许为 {@code null}
+     * @param cpu Selector 线程绑定的 CPU，如果小于 0，则不绑定
+     * @see com.heimuheimu.raven.facility.CpuAffinity#bindCurrentThread(int)
+     */
+    public IMClientManager(String name, IMClientManagerConfiguration configuration, int cpu) {
         this.name = name;
         this.configuration = configuration;
+        this.cpu = cpu;
     }
 
     /**
@@ -108,6 +157,7 @@ public class IMClientManager implements Closeable {
             LinkedHashMap<String, Object> params = buildParamsMap();
             params.put("configuration", configuration);
             try {
+                IMClientHeavyHitterMonitor.getInstance().register(heavyHitterRecorder);
                 imClientManagerTask = new IMClientManagerTask();
                 imClientManagerTask.setName(name);
                 imClientManagerTask.start();
@@ -140,6 +190,8 @@ public class IMClientManager implements Closeable {
                 if (imClientManagerTask != null) {
                     imClientManagerTask.close();
                 }
+                IMClientHeavyHitterMonitor.getInstance().unregister(heavyHitterRecorder);
+                heavyHitterDirtyQueue.clear();
 
                 params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
                 RAVEN_IM_CLIENT_MANAGER_LOG.info("Stopped IMClientManager.{}", LogBuildUtil.build(params));
@@ -173,6 +225,15 @@ public class IMClientManager implements Closeable {
         return name;
     }
 
+    /**
+     * 获得当前 IM 客户端管理器 Selector 线程绑定的 CPU，如果未绑定，将会返回 -1。
+     *
+     * @return Selector 线程绑定的 CPU
+     */
+    public int getCpu() {
+        return cpu;
+    }
+
     /**
      * 获得当前 IM 客户端管理器使用的 Selector，如果客户端管理器已关闭或未初始化，将会返回 {@code null}。
      *
@@ -197,16 +258,72 @@ public class IMClientManager implements Closeable {
         return imClientManagerTask.getCount();
     }
 
+    /**
+     * 获得当前 IM 客户端管理器处理就绪事件累计耗费的时间，单位：纳秒，可通过相邻两次调用的差值计算 Selector 线程的繁忙程度。
+     * 如果客户端管理器已关闭或未初始化，将会返回 0。
+     *
+     * @return 处理就绪事件累计耗费的时间
+     */
+    public long getBusyNanoTime() {
+        IMClientManagerTask task = imClientManagerTask;
+        return task != null ? task.busyNanoTime : 0;
+    }
+
+    /**
+     * 退役当前 IM 客户端管理器：不再接受新的 IM 客户端注册，在 Selector 线程中将管理的 IM 客户端逐个迁移至 {@code targetSupplier}
+     * 提供的 IM 客户端管理器后关闭当前管理器。迁移不会中断连接，IM 客户端关注的事件及待发送的字节消息保持不变。
+     *
+     * <p>
+     *     迁移时不检查目标管理器的容量限制。如果 {@code targetSupplier} 未提供可用的管理器或迁移失败，对应的 IM 客户端将被关闭。
+     *     该方法将阻塞至迁移完成，如果当前 IM 客户端管理器未初始化或已关闭，将直接返回 0。
+     * </p>
+     *
+     * @param targetSupplier 目标 IM 客户端管理器提供者，每迁移一个 IM 客户端调用一次，不允许为 {@code null}
+     * @return 迁移成功的 IM 客户端数量
+     */
+    public int retire(Supplier<IMClientManager> targetSupplier) {
+        IMClientManagerTask task;
+        MigrationRequest request = new MigrationRequest(targetSupplier);
+        synchronized (this) {
+            if (state != BeanStatusEnum.NORMAL || retiring) {
+                return 0;
+            }
+            task = imClientManagerTask;
+            synchronized (task) { // 与 IMClientManagerTask#register(IMClient, int) 互斥，保证迁移开始后不会再有新注册的 IM 客户端
+                retiring = true;
+            }
+            task.migrationRequest = request;
+            task.selector.wakeup();
+        }
+        long startTime = System.currentTimeMillis();
+        try {
+            while (!request.latch.await(100, TimeUnit.MILLISECONDS)) {
+                if (!task.isAlive()) {
+                    break;
+                }
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+        LinkedHashMap<String, Object> params = buildParamsMap();
+        params.put("migratedCount", request.migratedCount);
+        params.put("failedCount", request.failedCount);
+        params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+        RAVEN_IM_CLIENT_MANAGER_LOG.info("Retired IMClientManager.{}", LogBuildUtil.build(params));
+        close();
+        return request.migratedCount;
+    }
+
     /**
      * 将 IMClient 注册到当前 IM 客户端管理器中。
      *
      * @param client IM 客户端，不允许为 {@code null}
-     * @throws IllegalStateException 如果当前 IM 客户端管理器未初始化或已关闭，将会抛出此异常
+     * @throws IllegalStateException 如果当前 IM 客户端管理器未初始化、已关闭或正在退役，将会抛出此异常
      * @throws RejectedRegisterException 如果注册的 IMClient 数量已达到上限，将会抛出此异常
      * @throws RavenException 如果在注册过程中发生其它未知错误，将会抛出此异常
      */
     public void register(IMClient client) throws IllegalStateException, RavenException {
-        if (state != BeanStatusEnum.NORMAL) {
+        if (state != BeanStatusEnum.NORMAL || retiring) {
             LinkedHashMap<String, Object> params = buildParamsMap();
             params.put("client", client);
             String errorMessage = "IMClient fails to register: `illegal state`." + LogBuildUtil.build(params);
@@ -228,7 +345,8 @@ public class IMClientManager implements Closeable {
         }
 
         try {
-            imClientManagerTask.register(client);
+            imClientManagerTask.register(client, SelectionKey.OP_READ);
+            client.attachManager(this);
         } catch (Exception e) {
             LinkedHashMap<String, Object> params = buildParamsMap();
             params.put("client", client);
@@ -239,6 +357,51 @@ public class IMClientManager implements Closeable {
         }
     }
 
+    /**
+     * 将从其它 IM 客户端管理器迁移而来的 IMClient 注册到当前 IM 客户端管理器中，不检查容量限制，仅供 {@link IMClient} 迁移时使用。
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param ops IM 客户端当前关注的事件
+     * @throws IllegalStateException 如果当前 IM 客户端管理器未初始化、已关闭或正在退役，将会抛出此异常
+     * @throws IOException 如果在注册过程中发生 IO 错误，将会抛出此异常
+     */
+    void register(IMClient client, int ops) throws IllegalStateException, IOException {
+        if (state != BeanStatusEnum.NORMAL) {
+            throw new IllegalStateException("IMClient fails to migrate: `illegal state`." + LogBuildUtil.build(buildParamsMap()));
+        }
+        imClientManagerTask.register(client, ops);
+        client.attachManager(this);
+    }
+
+    /**
+     * 获得当前 IMClientManager 使用的 IM 客户端 Top-K 信息记录器。
+     *
+     * @return IM 客户端 Top-K 信息记录器
+     */
+    IMClientHeavyHitterRecorder getHeavyHitterRecorder() {
+        return heavyHitterRecorder;
+    }
+
+    /**
+     * 通知当前 IMClientManager 在 Selector 线程的下一轮 select 中更新 IM 客户端的 Top-K 统计信息。
+     *
+     * @param client IM 客户端
+     */
+    void markHeavyHitterDirty(IMClient client) {
+        heavyHitterDirtyQueue.offer(client);
+    }
+
+    /**
+     * 判断当前线程是否为使用该选择器的 IM 客户端管理器线程。在该线程中修改关注的事件，将在下一次 select 前生效，无需唤醒选择器。
+     *
+     * @param selector 选择器
+     * @return 当前线程是否为使用该选择器的 IM 客户端管理器线程
+     */
+    static boolean isSelectorThread(Selector selector) {
+        Thread thread = Thread.currentThread();
+        return thread instanceof IMClientManagerTask && ((IMClientManagerTask) thread).selector == selector;
+    }
+
     private LinkedHashMap<String, Object> buildParamsMap() {
         LinkedHashMap<String, Object> params = new LinkedHashMap<>();
         params.put("name", name);
@@ -264,9 +427,84 @@ public class IMClientManager implements Closeable {
         private volatile boolean isPausing = false;
 
         /**
-         * 接收 IM 客户端发送的数据使用的字节缓存
+         * 接收 IM 客户端发送的数据使用的字节缓存，在 Selector 线程绑定 CPU 后分配
+         */
+        private ByteBuffer buffer;
+
+        /**
+         * 处理就绪事件累计耗费的时间，单位：纳秒，仅由当前线程写入
+         */
+        private volatile long busyNanoTime = 0;
+
+        /**
+         * 等待执行的迁移请求，由 Selector 线程在下一次 select 之前执行
+         */
+        private volatile MigrationRequest migrationRequest = null;
+
+        /**
+         * 基于数组实现的已选择键集合，如果当前 JDK 不允许替换，则为 {@code null}，使用选择器原有的已选择键集合
+         */
+        private final IMClientSelectedKeySet selectedKeySet;
+
+        /**
+         * 本轮 select 中可读的 IM 客户端数量，仅在 Selector 线程中访问
+         */
+        private int readableCount = 0;
+
+        /**
+         * 本轮 select 中可写的 IM 客户端数量，仅在 Selector 线程中访问
+         */
+        private int writableCount = 0;
+
+        /**
+         * 本轮 select 中写入不完整的次数，仅在 Selector 线程中访问
+         */
+        private int partialWriteCount = 0;
+
+        /**
+         * 本轮 select 中识别到的心跳帧数量，仅在 Selector 线程中访问
+         */
+        private int heartbeatCount = 0;
+
+        /**
+         * 本轮 select 中回复的心跳响应帧数量，仅在 Selector 线程中访问
+         */
+        private int heartbeatResponseCount = 0;
+
+        /**
+         * select 轮次编号，用于统计字节消息经历的写入轮次，仅在 Selector 线程中访问
          */
-        private final ByteBuffer buffer;
+        private long selectRound = 0;
+
+        /**
+         * 本轮 select 中单个 IM 客户端允许的最大写入次数，仅在 Selector 线程中访问
+         */
+        private int writeSpinCount = 1;
+
+        /**
+         * 本轮 select 中单个 IM 客户端允许的最大写入时间，单位：纳秒，仅在 Selector 线程中访问
+         */
+        private long writeSpinNanoTime = 0;
+
+        /**
+         * 本轮 select 中每个 IM 客户端的初始读取字节数，仅在 Selector 线程中访问
+         */
+        private int initialReceiveSize = 0;
+
+        /**
+         * 本轮 select 中自适应调整允许的最小读取字节数，仅在 Selector 线程中访问
+         */
+        private int minReceiveSize = 0;
+
+        /**
+         * 本轮 select 中自适应调整允许的最大读取字节数，如果小于等于 0，则不进行自适应调整，仅在 Selector 线程中访问
+         */
+        private int maxReceiveSize = 0;
+
+        /**
+         * 本轮 select 中是否设置 IM 客户端的 Socket 接收缓冲区大小，仅在 Selector 线程中访问
+         */
+        private boolean socketReceiveBufferTuning = false;
 
         /**
          * 构造一个 IMClientManagerTask 实例。
@@ -274,12 +512,56 @@ public class IMClientManager implements Closeable {
          * @throws IOException 如果 SocketChannel 选择器创建失败，将会抛出此异常
          */
         public IMClientManagerTask() throws IOException {
-            this.selector = Selector.open();
-            int receiveBufferSize = configuration.getReceiveBufferSize();
-            if (receiveBufferSize <= 0) {
-                receiveBufferSize = 32 * 1024;
+            this.selector = openSelector();
+            IMClientSelectedKeySet selectedKeySet = null;
+            try {
+                selectedKeySet = IMClientSelectedKeySet.install(selector);
+            } catch (Throwable e) {
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("selector", selector.getClass().getName());
+                params.put("reason", e.toString());
+                params.put("hint", "JDK 9+ requires `--add-opens java.base/sun.nio.ch=ALL-UNNAMED`");
+                RAVEN_IM_CLIENT_MANAGER_LOG.warn("IMClientManager fails to install selected-key set: `use default selected-key set`.{}",
+                        LogBuildUtil.build(params));
             }
-            this.buffer = ByteBuffer.allocate(receiveBufferSize);
+            this.selectedKeySet = selectedKeySet;
+        }
+
+        /**
+         * 使用配置的 SelectorProvider 创建 Selector，如果未配置、创建失败或创建的 Selector 无法注册 JDK 默认实现的 SocketChannel，
+         * 将使用 JDK 默认实现创建。
+         *
+         * <p>
+         *     IMServer 接收的 SocketChannel 均由 JDK 默认的 SelectorProvider 创建，只能注册到同一实现体系的 Selector 上，
+         *     因此创建后会注册一个未连接的 SocketChannel 进行校验，避免 Selector 创建成功后每个 IM 客户端注册时均抛出 {@link IllegalSelectorException}。
+         * </p>
+         *
+         * @return Selector
+         * @throws IOException 如果使用 JDK 默认实现创建 Selector 失败，将会抛出此异常
+         */
+        private Selector openSelector() throws IOException {
+            String selectorProvider = configuration.getSelectorProvider();
+            if (selectorProvider != null && !selectorProvider.isEmpty()) {
+                try {
+                    SelectorProvider provider = (SelectorProvider) Class.forName(selectorProvider).getConstructor().newInstance();
+                    Selector selector = provider.openSelector();
+                    try (SocketChannel probeChannel = SocketChannel.open()) {
+                        probeChannel.configureBlocking(false);
+                        probeChannel.register(selector, 0).cancel();
+                    } catch (Throwable e) {
+                        selector.close();
+                        throw e;
+                    }
+                    selector.selectNow(); // 移除已取消的校验 SelectionKey
+                    return selector;
+                } catch (Throwable e) {
+                    LinkedHashMap<String, Object> params = buildParamsMap();
+                    params.put("selectorProvider", selectorProvider);
+                    params.put("fallback", SelectorProvider.provider().getClass().getName());
+                    LOGGER.error("IMClientManager fails to open selector: `unavailable selector provider`." + LogBuildUtil.build(params), e);
+                }
+            }
+            return Selector.open();
         }
 
         /**
@@ -296,13 +578,16 @@ public class IMClientManager implements Closeable {
             }
         }
 
-        public synchronized void register(IMClient client) throws IOException {
+        public synchronized void register(IMClient client, int ops) throws IOException {
+            if (retiring) {
+                throw new IllegalStateException("IMClient fails to register: `retiring manager`." + LogBuildUtil.build(buildParamsMap()));
+            }
             try {
                 isPausing = true;
                 selector.wakeup();
                 SocketChannel socketChannel = client.getSocketChannel();
                 socketChannel.configureBlocking(false);
-                socketChannel.register(selector, SelectionKey.OP_READ, client);
+                socketChannel.register(selector, ops, client);
             } finally {
                 isPausing = false;
             }
@@ -312,78 +597,86 @@ public class IMClientManager implements Closeable {
         public void run() {
             SocketMonitor socketMonitor = MANAGER_MONITOR.getSocketMonitor();
             ExecutionMonitor executionMonitor = MANAGER_MONITOR.getExecutionMonitor();
+            boolean isBound = cpu >= 0 && CpuAffinity.bindCurrentThread(cpu);
+            if (isBound) {
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("cpu", cpu);
+                RAVEN_IM_CLIENT_MANAGER_LOG.info("IMClientManager has been bound to cpu.{}", LogBuildUtil.build(params));
+            }
+            int receiveBufferSize = configuration.getReceiveBufferSize();
+            if (receiveBufferSize <= 0) {
+                receiveBufferSize = 32 * 1024;
+            }
+            if (configuration.getMinReceiveBufferSize() > 0 && configuration.getMaxReceiveBufferSize() > configuration.getMinReceiveBufferSize()) {
+                receiveBufferSize = Math.max(receiveBufferSize, configuration.getMaxReceiveBufferSize());
+            }
+            if (isBound) { // 直接缓存由当前线程分配并清零，按照 Linux 首次访问分配策略，内存页位于绑定 CPU 所在的 NUMA 节点上
+                buffer = ByteBuffer.allocateDirect(receiveBufferSize);
+            } else {
+                buffer = ByteBuffer.allocate(receiveBufferSize);
+            }
 
             while (isRunning) {
                 if (!isPausing) {
+                    MigrationRequest request = migrationRequest;
+                    if (request != null) {
+                        migrationRequest = null;
+                        migrate(request);
+                    }
                     try {
                         int readyChannels = selector.select();
+                        IMClient dirtyClient;
+                        while ((dirtyClient = heavyHitterDirtyQueue.poll()) != null) {
+                            dirtyClient.flushHeavyHitter(IMClientManager.this);
+                        }
                         if (readyChannels == 0) { // 如果无可用 channel，进入下一次循环
                             continue;
                         }
                         long startNanoTime = System.nanoTime();
+                        selectRound++;
+                        writeSpinCount = Math.max(configuration.getWriteSpinCount(), 1);
+                        writeSpinNanoTime = Math.max(configuration.getWriteSpinTime(), 0) * 1000L;
+                        updateReceiveSize();
                         try {
-                            Iterator<SelectionKey> selectionKeyIterator = selector.selectedKeys().iterator();
-                            while (selectionKeyIterator.hasNext()) {
-                                SelectionKey selectionKey = selectionKeyIterator.next();
-                                SocketChannel channel = (SocketChannel) selectionKey.channel();
-                                IMClient client = (IMClient) selectionKey.attachment();
-                                try {
-                                    if (selectionKey.isValid() && selectionKey.isWritable()) {
-                                        MANAGER_MONITOR.incrementWritableClient();
-                                        ByteBuffer writeBuffer = client.getBufferForWrite();
-                                        if (writeBuffer != null && writeBuffer.remaining() > 0) {
-                                            int writeBytes = channel.write(writeBuffer);
-                                            if (writeBytes > 0) {
-                                                socketMonitor.onWritten(writeBytes);
-                                            }
-                                        }
-                                        client.afterWrite();
-                                    }
-                                    
-                                    if (selectionKey.isValid() && selectionKey.isReadable()) {
-                                        MANAGER_MONITOR.incrementReadableClient();
-                                        buffer.clear();
-                                        int readBytes;
-                                        do {
-                                            readBytes = channel.read(buffer);
-                                            if (readBytes > 0) {
-                                                socketMonitor.onRead(readBytes);
-                                            }
-                                        } while (buffer.remaining() > 0 && readBytes > 0);
-
-                                        if (buffer.position() > 0) {
-                                            buffer.flip();
-                                            client.receive(buffer);
-                                        }
-
-                                        if (readBytes == -1) {
-                                            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-                                            try {
-                                                params.put("remote", channel.getRemoteAddress());
-                                                params.put("local", channel.getLocalAddress());
-                                            } catch (Exception ignored) {}
-                                            params.put("id", client.getId());
-                                            params.put("manager", IMClientManager.this.getName());
-                                            RAVEN_IM_CLIENT_LOG.info("IMClient has reached end-of-stream.{}", LogBuildUtil.build(params));
-                                            client.close();
-                                        }
-                                    }
-                                } catch (Exception e) {
-                                    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
-                                    try {
-                                        params.put("remote", client.getSocketChannel().getRemoteAddress());
-                                        params.put("local", client.getSocketChannel().getLocalAddress());
-                                    } catch (Exception ignored) {}
-                                    params.put("id", client.getId());
-                                    params.put("manager", IMClientManager.this.getName());
-                                    RAVEN_IM_CLIENT_LOG.error("IMClient fails to communicate: `unexpected error`." + LogBuildUtil.build(params), e);
-                                    executionMonitor.onError(IMClientManagerMonitor.ERROR_CODE_FAILS_TO_COMMUNICATE);
-                                    client.close();
+                            if (selectedKeySet != null) {
+                                SelectionKey[] selectedKeys = selectedKeySet.keys;
+                                int selectedKeyCount = selectedKeySet.size;
+                                for (int i = 0; i < selectedKeyCount; i++) {
+                                    processSelectedKey(selectedKeys[i], socketMonitor, executionMonitor);
+                                }
+                            } else {
+                                Iterator<SelectionKey> selectionKeyIterator = selector.selectedKeys().iterator();
+                                while (selectionKeyIterator.hasNext()) {
+                                    processSelectedKey(selectionKeyIterator.next(), socketMonitor, executionMonitor);
+                                    selectionKeyIterator.remove();
                                 }
-                                selectionKeyIterator.remove();
                             }
                         } finally {
+                            if (selectedKeySet != null) {
+                                selectedKeySet.reset();
+                            }
+                            if (readableCount > 0) { // 每轮 select 合并更新一次全局计数器
+                                MANAGER_MONITOR.addReadableClient(readableCount);
+                                readableCount = 0;
+                            }
+                            if (writableCount > 0) {
+                                MANAGER_MONITOR.addWritableClient(writableCount);
+                                writableCount = 0;
+                            }
+                            if (partialWriteCount > 0) {
+                                MANAGER_MONITOR.addPartialWrite(partialWriteCount);
+                                partialWriteCount = 0;
+                            }
+                            if (heartbeatCount > 0) {
+                                MANAGER_MONITOR.addHeartbeat(heartbeatCount);
+                                heartbeatCount = 0;
+                            }
+                            if (heartbeatResponseCount > 0) {
+                                MANAGER_MONITOR.addHeartbeatResponse(heartbeatResponseCount);
+                                heartbeatResponseCount = 0;
+                            }
                             executionMonitor.onExecuted(startNanoTime);
+                            busyNanoTime += System.nanoTime() - startNanoTime;
                         }
                     } catch (ClosedSelectorException e) {
                         break; // break while loop anyway
@@ -401,9 +694,251 @@ public class IMClientManager implements Closeable {
             IMClientManager.this.close(); // make sure close IMClientManager
         }
 
+        /**
+         * 处理一个已选择键对应的 IM 客户端读写事件，如果处理过程中出现异常，将会关闭该 IM 客户端。
+         *
+         * @param selectionKey 已选择键
+         * @param socketMonitor IM 客户端 Socket 信息监控器
+         * @param executionMonitor IM 客户端管理器执行信息监控器
+         */
+        private void processSelectedKey(SelectionKey selectionKey, SocketMonitor socketMonitor, ExecutionMonitor executionMonitor) {
+            SocketChannel channel = (SocketChannel) selectionKey.channel();
+            IMClient client = (IMClient) selectionKey.attachment();
+            try {
+                if (selectionKey.isValid() && selectionKey.isWritable()) {
+                    writableCount++;
+                    write(selectionKey, channel, client, socketMonitor);
+                }
+                
+                if (selectionKey.isValid() && selectionKey.isReadable()) {
+                    readableCount++;
+                    int readBytes = read(channel, client, socketMonitor);
+
+                    if (buffer.position() > 0) {
+                        buffer.flip();
+                        int receivedHeartbeatCount = client.receiveHeartbeat(buffer);
+                        if (receivedHeartbeatCount > 0) { // 心跳帧在 Selector 线程中直接回复，不通知 IMClientListener
+                            heartbeatCount += receivedHeartbeatCount;
+                            int writeBytes = client.respondHeartbeat();
+                            if (writeBytes >= 0) {
+                                heartbeatResponseCount++;
+                                if (writeBytes > 0) {
+                                    socketMonitor.onWritten(writeBytes);
+                                }
+                            }
+                        }
+                        if (buffer.hasRemaining()) {
+                            client.receive(buffer);
+                        }
+                    }
+
+                    if (readBytes == -1) {
+                        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                        try {
+                            params.put("remote", channel.getRemoteAddress());
+                            params.put("local", channel.getLocalAddress());
+                        } catch (Exception ignored) {}
+                        params.put("id", client.getId());
+                        params.put("manager", IMClientManager.this.getName());
+                        RAVEN_IM_CLIENT_LOG.info("IMClient has reached end-of-stream.{}", LogBuildUtil.build(params));
+                        client.close();
+                    }
+                }
+            } catch (Exception e) {
+                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                try {
+                    params.put("remote", client.getSocketChannel().getRemoteAddress());
+                    params.put("local", client.getSocketChannel().getLocalAddress());
+                } catch (Exception ignored) {}
+                params.put("id", client.getId());
+                params.put("manager", IMClientManager.this.getName());
+                RAVEN_IM_CLIENT_LOG.error("IMClient fails to communicate: `unexpected error`." + LogBuildUtil.build(params), e);
+                executionMonitor.onError(IMClientManagerMonitor.ERROR_CODE_FAILS_TO_COMMUNICATE);
+                client.close();
+            }
+        }
+
+        /**
+         * 根据当前配置更新本轮 select 使用的读取字节数范围，最大值不超过共享读取缓存的容量，配置不满足自适应调整条件时关闭自适应调整。
+         */
+        private void updateReceiveSize() {
+            int minSize = configuration.getMinReceiveBufferSize();
+            int maxSize = Math.min(configuration.getMaxReceiveBufferSize(), buffer.capacity());
+            if (minSize > 0 && maxSize > minSize) {
+                int initialSize = configuration.getReceiveBufferSize();
+                initialReceiveSize = initialSize > 0 ? initialSize : 32 * 1024;
+                minReceiveSize = minSize;
+                maxReceiveSize = maxSize;
+                socketReceiveBufferTuning = configuration.isSocketReceiveBufferTuning();
+            } else {
+                maxReceiveSize = 0;
+                socketReceiveBufferTuning = false;
+            }
+        }
+
+        /**
+         * 从 IM 客户端读取数据至共享的读取缓存，返回最后一次读取操作的返回值。
+         *
+         * <p>
+         *     读取不足本次允许的字节数时数据已读尽，再次读取只会返回 0，多一次系统调用，因此不再继续读取。开启自适应调整时，
+         *     本次允许的字节数为该 IM 客户端的预测值，读满时立即扩大 4 倍继续读取，直至达到缓存容量；缓存被填满时，剩余数据将在下一轮
+         *     select 中继续读取，不会饿死同一轮中的其它 IM 客户端。
+         * </p>
+         *
+         * @param channel IM 客户端使用的 SocketChannel
+         * @param client IM 客户端
+         * @param socketMonitor IM 客户端 Socket 信息监控器
+         * @return 最后一次读取操作的返回值，-1 表示已到达流末尾
+         * @throws IOException 如果读取失败，将会抛出此异常
+         */
+        private int read(SocketChannel channel, IMClient client, SocketMonitor socketMonitor) throws IOException {
+            buffer.clear();
+            if (maxReceiveSize <= 0) {
+                int readBytes = channel.read(buffer);
+                if (readBytes > 0) {
+                    socketMonitor.onRead(readBytes);
+                }
+                return readBytes;
+            }
+            int receiveSize = client.getReceiveSize(initialReceiveSize, minReceiveSize, maxReceiveSize);
+            buffer.limit(receiveSize);
+            int readBytes;
+            while (true) {
+                readBytes = channel.read(buffer);
+                if (readBytes > 0) {
+                    socketMonitor.onRead(readBytes);
+                }
+                if (readBytes <= 0 || buffer.hasRemaining() || buffer.limit() == buffer.capacity()) {
+                    break;
+                }
+                buffer.limit((int) Math.min((long) buffer.limit() << 2, buffer.capacity()));
+            }
+            if (buffer.position() > 0) {
+                int adaptedSize = client.adaptReceiveSize(buffer.position(), !buffer.hasRemaining(), minReceiveSize, maxReceiveSize);
+                if (socketReceiveBufferTuning) {
+                    int socketReceiveBufferSize = Math.max(adaptedSize << 1, MIN_SOCKET_RECEIVE_BUFFER_SIZE);
+                    if (socketReceiveBufferSize != client.getSocketReceiveBufferSize()) {
+                        client.setSocketReceiveBufferSize(socketReceiveBufferSize);
+                    }
+                }
+            }
+            return readBytes;
+        }
+
+        /**
+         * 在本轮 select 中向 IM 客户端连续写入数据，直至 Socket 发送缓冲区已满、没有待写入的数据，或者达到最大写入次数、最大写入时间。
+         *
+         * @param selectionKey 已选择键
+         * @param channel IM 客户端使用的 SocketChannel
+         * @param client IM 客户端
+         * @param socketMonitor IM 客户端 Socket 信息监控器
+         * @throws IOException 如果写入失败，将会抛出此异常
+         */
+        private void write(SelectionKey selectionKey, SocketChannel channel, IMClient client, SocketMonitor socketMonitor) throws IOException {
+            int spinCount = writeSpinCount;
+            long deadline = writeSpinNanoTime > 0 ? System.nanoTime() + writeSpinNanoTime : 0;
+            while (true) {
+                ByteBuffer writeBuffer = client.getBufferForWrite(selectRound);
+                boolean isPartial = false;
+                if (writeBuffer != null && writeBuffer.remaining() > 0) {
+                    int writeBytes = channel.write(writeBuffer);
+                    if (writeBytes > 0) {
+                        socketMonitor.onWritten(writeBytes);
+                    }
+                    isPartial = writeBuffer.remaining() > 0;
+                }
+                client.afterWrite();
+                if (writeBuffer == null) { // 没有待写入的数据
+                    return;
+                }
+                if (isPartial) { // Socket 发送缓冲区已满，等待下一次可写事件
+                    partialWriteCount++;
+                    return;
+                }
+                if (--spinCount <= 0 || !selectionKey.isValid() || (deadline > 0 && System.nanoTime() - deadline >= 0)) {
+                    return;
+                }
+            }
+        }
+
+        /**
+         * 在 Selector 线程中执行迁移请求，此时当前管理器中的 IM 客户端均不在读写过程中。
+         *
+         * @param request 迁移请求
+         */
+        private void migrate(MigrationRequest request) {
+            List<SelectionKey> selectionKeyList;
+            synchronized (this) {
+                selectionKeyList = new ArrayList<>(selector.keys());
+            }
+            try {
+                for (SelectionKey selectionKey : selectionKeyList) {
+                    if (!selectionKey.isValid()) {
+                        continue;
+                    }
+                    IMClient client = (IMClient) selectionKey.attachment();
+                    IMClientManager target = null;
+                    try {
+                        target = request.targetSupplier.get();
+                        if (target != null && target != IMClientManager.this) {
+                            if (client.migrate(target)) {
+                                request.migratedCount++;
+                            }
+                            continue;
+                        }
+                    } catch (Exception e) {
+                        LinkedHashMap<String, Object> params = buildParamsMap();
+                        params.put("id", client.getId());
+                        params.put("target", target != null ? target.getName() : null);
+                        RAVEN_IM_CLIENT_LOG.error("IMClient fails to migrate: `unexpected error`." + LogBuildUtil.build(params), e);
+                        request.failedCount++;
+                        client.close();
+                        continue;
+                    }
+                    LinkedHashMap<String, Object> params = buildParamsMap();
+                    params.put("id", client.getId());
+                    RAVEN_IM_CLIENT_LOG.error("IMClient fails to migrate: `no available IMClientManager`.{}", LogBuildUtil.build(params));
+                    request.failedCount++;
+                    client.close();
+                }
+            } finally {
+                request.latch.countDown();
+            }
+        }
+
         public void close() throws IOException {
             this.isRunning = false;
             selector.close();
         }
     }
+
+    /**
+     * IM 客户端迁移请求
+     */
+    private static class MigrationRequest {
+
+        /**
+         * 目标 IM 客户端管理器提供者
+         */
+        private final Supplier<IMClientManager> targetSupplier;
+
+        /**
+         * 迁移完成后释放的锁存器
+         */
+        private final CountDownLatch latch = new CountDownLatch(1);
+
+        /**
+         * 迁移成功的 IM 客户端数量，在锁存器释放后读取
+         */
+        private int migratedCount = 0;
+
+        /**
+         * 迁移失败的 IM 客户端数量，在锁存器释放后读取
+         */
+        private int failedCount = 0;
+
+        private MigrationRequest(Supplier<IMClientManager> targetSupplier) {
+            this.targetSupplier = targetSupplier;
+        }
+    }
 }
@@ -41,15 +41,55 @@ public class IMClientManagerConfiguration {
     private volatile int capacity = -1;
 
     /**
-     * 接收 IM 客户端发送数据使用的字节缓存大小，默认为 32 KB，如果小于等于 0，则使用具体实现指定的默认值
+     * 接收 IM 客户端发送数据使用的字节缓存大小，默认为 32 KB，如果小于等于 0，则使用具体实现指定的默认值，开启自适应调整时，作为每个 IM 客户端的初始读取字节数
      */
     private volatile int receiveBufferSize = 32 * 1024;
 
+    /**
+     * 自适应调整时单次读取允许的最小字节数，默认为 0，如果小于等于 0 或不小于 {@link #maxReceiveBufferSize}，则不进行自适应调整
+     */
+    private volatile int minReceiveBufferSize = 0;
+
+    /**
+     * 自适应调整时单次读取允许的最大字节数，默认为 0，如果小于等于 0 或不大于 {@link #minReceiveBufferSize}，则不进行自适应调整
+     */
+    private volatile int maxReceiveBufferSize = 0;
+
+    /**
+     * 是否根据自适应调整的读取字节数设置每个 IM 客户端的 Socket 接收缓冲区大小（SO_RCVBUF），默认为 {@code false}
+     */
+    private volatile boolean socketReceiveBufferTuning = false;
+
     /**
      * IMClientManager 不可用通知器，默认为 {@code null}
      */
     private volatile UnusableServiceNotifier<IMClientManager> unusableServiceNotifier = null;
 
+    /**
+     * IM 客户端管理器 Selector 线程绑定的 CPU 列表，格式与 taskset 命令一致，例如 "0-7,16-23"，默认为 {@code null}，即不绑定
+     */
+    private volatile String cpuList = null;
+
+    /**
+     * 绑定的 CPU 分布在多个 NUMA 节点上时，是否优先将新的 IM 客户端分配给与接收连接线程位于同一节点的管理器，默认为 {@code false}
+     */
+    private volatile boolean numaPreferred = false;
+
+    /**
+     * IM 客户端管理器创建 Selector 使用的 SelectorProvider 实现类名称，默认为 {@code null}，即使用 JDK 默认实现
+     */
+    private volatile String selectorProvider = null;
+
+    /**
+     * 每轮 select 中单个 IM 客户端允许的最大写入次数，如果小于等于 0，则每轮仅写入一次，默认为 16
+     */
+    private volatile int writeSpinCount = 16;
+
+    /**
+     * 每轮 select 中单个 IM 客户端允许的最大写入时间，单位：微秒，如果小于等于 0，则仅受最大写入次数限制，默认为 200 微秒
+     */
+    private volatile int writeSpinTime = 200;
+
     /**
      * 获得可管理的最大 IM 客户端数量，如果小于等于 0 ，则没有数量限制，默认为 -1。
      *
@@ -86,6 +126,72 @@ public class IMClientManagerConfiguration {
         this.receiveBufferSize = receiveBufferSize;
     }
 
+    /**
+     * 获得自适应调整时单次读取允许的最小字节数，默认为 0，如果小于等于 0 或不小于最大字节数，则不进行自适应调整。
+     *
+     * @return 自适应调整时单次读取允许的最小字节数
+     */
+    public int getMinReceiveBufferSize() {
+        return minReceiveBufferSize;
+    }
+
+    /**
+     * 设置自适应调整时单次读取允许的最小字节数，如果小于等于 0 或不小于最大字节数，则不进行自适应调整。
+     *
+     * @param minReceiveBufferSize 自适应调整时单次读取允许的最小字节数
+     */
+    public void setMinReceiveBufferSize(int minReceiveBufferSize) {
+        this.minReceiveBufferSize = minReceiveBufferSize;
+    }
+
+    /**
+     * 获得自适应调整时单次读取允许的最大字节数，默认为 0，如果小于等于 0 或不大于最小字节数，则不进行自适应调整。
+     *
+     * @return 自适应调整时单次读取允许的最大字节数
+     */
+    public int getMaxReceiveBufferSize() {
+        return maxReceiveBufferSize;
+    }
+
+    /**
+     * 设置自适应调整时单次读取允许的最大字节数，如果小于等于 0 或不大于最小字节数，则不进行自适应调整。
+     *
+     * <p>
+     *     开启自适应调整后，IM 客户端管理器根据每个 IM 客户端最近的读取字节数，在最小值与最大值之间按 2 的幂次选择下一次读取的字节数：
+     *     读满时立即扩大，连续多次读取不足一半时逐级缩小。管理器共享的读取缓存按最大值分配，每个管理器仅分配一个。
+     *     自适应调整默认关闭，需同时设置最小值与最大值后开启，未开启时共享读取缓存按 {@link #getReceiveBufferSize()} 分配。
+     *     读取缓存在 Selector 线程启动时分配，运行中修改最大值时，单次读取的字节数不会超过已分配的缓存大小。
+     * </p>
+     *
+     * @param maxReceiveBufferSize 自适应调整时单次读取允许的最大字节数
+     */
+    public void setMaxReceiveBufferSize(int maxReceiveBufferSize) {
+        this.maxReceiveBufferSize = maxReceiveBufferSize;
+    }
+
+    /**
+     * 判断是否根据自适应调整的读取字节数设置每个 IM 客户端的 Socket 接收缓冲区大小（SO_RCVBUF），默认为 {@code false}。
+     *
+     * @return 是否设置每个 IM 客户端的 Socket 接收缓冲区大小
+     */
+    public boolean isSocketReceiveBufferTuning() {
+        return socketReceiveBufferTuning;
+    }
+
+    /**
+     * 设置是否根据自适应调整的读取字节数设置每个 IM 客户端的 Socket 接收缓冲区大小（SO_RCVBUF），仅在开启自适应调整时有效。
+     *
+     * <p>
+     *     开启后，读取字节数发生变化时，Socket 接收缓冲区将被设置为读取字节数的 2 倍（不小于 4 KB），使仅发送心跳的 IM 客户端占用更少的内核内存。
+     *     注意：连接建立后 TCP 窗口缩放因子已确定，增大接收缓冲区的效果受限于监听 Socket 的接收缓冲区设置。
+     * </p>
+     *
+     * @param socketReceiveBufferTuning 是否设置每个 IM 客户端的 Socket 接收缓冲区大小
+     */
+    public void setSocketReceiveBufferTuning(boolean socketReceiveBufferTuning) {
+        this.socketReceiveBufferTuning = socketReceiveBufferTuning;
+    }
+
     /**
      * 获得 IMClientManager 不可用通知器，默认为 {@code null}。
      *
@@ -104,12 +210,136 @@ public class IMClientManagerConfiguration {
         this.unusableServiceNotifier = unusableServiceNotifier;
     }
 
+    /**
+     * 获得 IM 客户端管理器 Selector 线程绑定的 CPU 列表，默认为 {@code null}，即不绑定。
+     *
+     * @return CPU 列表，可能为 {@code null}
+     */
+    public String getCpuList() {
+        return cpuList;
+    }
+
+    /**
+     * 设置 IM 客户端管理器 Selector 线程绑定的 CPU 列表，格式与 taskset 命令一致，例如 "0-7,16-23"，允许为 {@code null}。
+     *
+     * <p>
+     *     设置后，{@link IMClientManagerList} 中第 N 个管理器的 Selector 线程将绑定到列表中第 N % size 个 CPU 上，绑定通过执行 taskset 命令完成，
+     *     每个 Selector 线程启动时会创建一个子进程。绑定成功后，接收缓存将改为在该线程中分配的直接内存，按照 Linux 首次访问分配策略位于该 CPU
+     *     所在的 NUMA 节点上，此时 {@link IMClientListener#onReceived(IMClient, java.nio.ByteBuffer)} 收到的缓存不支持 {@code array()} 方法。
+     *     仅在 Linux 系统中有效，绑定失败时将记录错误日志，Selector 线程继续以不绑定的方式运行，接收缓存仍为堆内存。
+     * </p>
+     *
+     * @param cpuList CPU 列表，允许为 {@code null}
+     */
+    public void setCpuList(String cpuList) {
+        this.cpuList = cpuList;
+    }
+
+    /**
+     * 判断绑定的 CPU 分布在多个 NUMA 节点上时，是否优先将新的 IM 客户端分配给与接收连接线程位于同一节点的管理器，默认为 {@code false}。
+     *
+     * @return 是否优先分配给与接收连接线程位于同一节点的管理器
+     */
+    public boolean isNumaPreferred() {
+        return numaPreferred;
+    }
+
+    /**
+     * 设置绑定的 CPU 分布在多个 NUMA 节点上时，是否优先将新的 IM 客户端分配给与接收连接线程位于同一节点的管理器，仅在设置了 CPU 列表时有效。
+     *
+     * <p>
+     *     IMServer 仅有一个接收连接线程，其所在节点由调度器决定，并不是处理该连接网卡中断的节点，仅当接收连接线程被绑定到网卡所在节点的 CPU 上
+     *     （例如通过 taskset 启动 JVM）时，开启后才能减少跨节点访问。接收连接线程所在的节点每秒最多读取一次，在此期间新的 IM 客户端均优先分配给该节点，
+     *     只要其 IM 客户端数量与最空闲的管理器相差不大。
+     * </p>
+     *
+     * @param numaPreferred 是否优先分配给与接收连接线程位于同一节点的管理器
+     */
+    public void setNumaPreferred(boolean numaPreferred) {
+        this.numaPreferred = numaPreferred;
+    }
+
+    /**
+     * 获得 IM 客户端管理器创建 Selector 使用的 SelectorProvider 实现类名称，默认为 {@code null}，即使用 JDK 默认实现。
+     *
+     * @return SelectorProvider 实现类名称，可能为 {@code null}
+     */
+    public String getSelectorProvider() {
+        return selectorProvider;
+    }
+
+    /**
+     * 设置 IM 客户端管理器创建 Selector 使用的 SelectorProvider 实现类名称，该类必须提供无参构造函数，允许为 {@code null}。
+     *
+     * <p>
+     *     IM 客户端的 SocketChannel 由 JDK 默认的 SelectorProvider 创建，因此只能选择与其兼容的实现，例如 Linux 中 JDK 自带的
+     *     {@code sun.nio.ch.EPollSelectorProvider}、{@code sun.nio.ch.PollSelectorProvider}（JDK 9 及以上版本需通过
+     *     {@code --add-exports java.base/sun.nio.ch=ALL-UNNAMED} 开放访问）。如需使用第三方实现替换全部 Channel，应通过系统属性
+     *     {@code java.nio.channels.spi.SelectorProvider} 进行全局设置。如果指定的实现无法加载、创建 Selector 失败或创建的 Selector
+     *     无法注册 JDK 默认实现的 SocketChannel（创建时注册一个未连接的 SocketChannel 进行校验），将记录错误日志并使用 JDK 默认实现。
+     * </p>
+     *
+     * @param selectorProvider SelectorProvider 实现类名称，允许为 {@code null}
+     */
+    public void setSelectorProvider(String selectorProvider) {
+        this.selectorProvider = selectorProvider;
+    }
+
+    /**
+     * 获得每轮 select 中单个 IM 客户端允许的最大写入次数，如果小于等于 0，则每轮仅写入一次，默认为 16。
+     *
+     * @return 每轮 select 中单个 IM 客户端允许的最大写入次数
+     */
+    public int getWriteSpinCount() {
+        return writeSpinCount;
+    }
+
+    /**
+     * 设置每轮 select 中单个 IM 客户端允许的最大写入次数，如果小于等于 0，则每轮仅写入一次。
+     *
+     * <p>
+     *     每次写入的字节数不超过 IM 客户端单次写入操作允许写入的最大字节数，当 Socket 发送缓冲区已满（写入不完整）、没有待写入的数据，
+     *     或者达到最大写入次数、最大写入时间时，将停止写入，等待下一轮 select。
+     * </p>
+     *
+     * @param writeSpinCount 每轮 select 中单个 IM 客户端允许的最大写入次数
+     */
+    public void setWriteSpinCount(int writeSpinCount) {
+        this.writeSpinCount = writeSpinCount;
+    }
+
+    /**
+     * 获得每轮 select 中单个 IM 客户端允许的最大写入时间，单位：微秒，如果小于等于 0，则仅受最大写入次数限制，默认为 200 微秒。
+     *
+     * @return 每轮 select 中单个 IM 客户端允许的最大写入时间，单位：微秒
+     */
+    public int getWriteSpinTime() {
+        return writeSpinTime;
+    }
+
+    /**
+     * 设置每轮 select 中单个 IM 客户端允许的最大写入时间，单位：微秒，如果小于等于 0，则仅受最大写入次数限制。
+     *
+     * @param writeSpinTime 每轮 select 中单个 IM 客户端允许的最大写入时间，单位：微秒
+     */
+    public void setWriteSpinTime(int writeSpinTime) {
+        this.writeSpinTime = writeSpinTime;
+    }
+
     @Override
     public String toString() {
         return "IMClientManagerConfiguration{" +
                 "capacity=" + capacity +
                 ", receiveBufferSize=" + receiveBufferSize +
+                ", minReceiveBufferSize=" + minReceiveBufferSize +
+                ", maxReceiveBufferSize=" + maxReceiveBufferSize +
+                ", socketReceiveBufferTuning=" + socketReceiveBufferTuning +
                 ", unusableServiceNotifier=" + unusableServiceNotifier +
+                ", cpuList='" + cpuList + '\'' +
+                ", numaPreferred=" + numaPreferred +
+                ", selectorProvider='" + selectorProvider + '\'' +
+                ", writeSpinCount=" + writeSpinCount +
+                ", writeSpinTime=" + writeSpinTime +
                 '}';
     }
 }
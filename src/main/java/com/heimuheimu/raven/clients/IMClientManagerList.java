@@ -25,6 +25,7 @@
 package com.heimuheimu.raven.clients;
 
 import com.heimuheimu.raven.constant.BeanStatusEnum;
+import com.heimuheimu.raven.facility.CpuAffinity;
 import com.heimuheimu.raven.facility.Methods;
 import com.heimuheimu.raven.facility.UnusableServiceNotifier;
 import com.heimuheimu.raven.util.LogBuildUtil;
@@ -32,12 +33,20 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
 import java.util.LinkedHashMap;
+import java.util.List;
 import java.util.concurrent.CopyOnWriteArrayList;
 
 /**
  * IM 客户端管理器列表，提供自动恢复功能。
  *
+ * <p>
+ *     运行期间可通过 {@link #resize(int)} 方法调整 IM 客户端管理器数量：扩容时创建新的管理器，缩容时将退役管理器中的 IM 客户端迁移至其它管理器后
+ *     再关闭，迁移不会中断连接。如果设置了最大管理器数量，将根据 Selector 线程的繁忙程度在初始数量与最大数量之间自动调整。
+ * </p>
+ *
  * <p><strong>说明：</strong>IMClientManagerList 类是线程安全的，可在多个线程中使用同一个实例。</p>
  */
 public class IMClientManagerList implements Closeable {
@@ -46,16 +55,77 @@ public class IMClientManagerList implements Closeable {
     
     private static final Logger LOGGER = LoggerFactory.getLogger(IMClientManagerList.class);
 
+    /**
+     * 自动调整管理器数量的检查周期，单位：毫秒
+     */
+    private static final long RESIZE_CHECK_INTERVAL = 10000;
+
+    /**
+     * Selector 线程平均繁忙比例达到该值时扩容
+     */
+    private static final double GROW_BUSY_RATIO = 0.75;
+
+    /**
+     * Selector 线程平均繁忙比例低于该值，且减少一个管理器后仍低于 {@link #TARGET_BUSY_RATIO} 时缩容
+     */
+    private static final double SHRINK_BUSY_RATIO = 0.25;
+
+    /**
+     * 扩容后期望达到的 Selector 线程平均繁忙比例
+     */
+    private static final double TARGET_BUSY_RATIO = 0.5;
+
+    /**
+     * 优先选择本地 NUMA 节点上的管理器时，允许其 IM 客户端数量超出最空闲管理器的最小差值
+     */
+    private static final int NUMA_IMBALANCE_TOLERANCE = 16;
+
+    /**
+     * 调用线程所在 NUMA 节点的缓存有效时间，单位：毫秒
+     */
+    private static final long NUMA_NODE_CACHE_MILLIS = 1000;
+
     /**
      * IM 客户端管理器数量
      */
-    private final int poolSize;
+    private volatile int poolSize;
+
+    /**
+     * 自动调整时允许的最小管理器数量，即初始管理器数量
+     */
+    private final int minPoolSize;
+
+    /**
+     * 自动调整时允许的最大管理器数量，如果小于等于 {@link #minPoolSize}，则不自动调整
+     */
+    private final int maxPoolSize;
 
     /**
      * IM 客户端管理器使用的配置信息
      */
     private final IMClientManagerConfiguration managerConfiguration;
 
+    /**
+     * 管理器 Selector 线程绑定的 CPU 列表，第 N 个管理器绑定到第 N % length 个 CPU 上，如果为空数组，则不绑定
+     */
+    private final int[] cpus;
+
+    /**
+     * 各 CPU 所在的 NUMA 节点，数组下标为 CPU 编号
+     */
+    private final int[] cpuNodes;
+
+    /**
+     * 绑定的 CPU 分布在多个 NUMA 节点上且开启了 {@link IMClientManagerConfiguration#isNumaPreferred()}，如果为 {@code true}，
+     * 分配 IM 客户端时优先选择与调用线程位于同一节点的管理器
+     */
+    private final boolean numaAware;
+
+    /**
+     * 最近一次获得的调用线程所在 NUMA 节点，读取 CPU 编号需访问 procfs，在有效时间内复用，可能为 {@code null}
+     */
+    private volatile CallerNode callerNode = null;
+
     /**
      * IM 客户端管理器列表事件监听器，可能为 {@code null}
      */
@@ -71,6 +141,16 @@ public class IMClientManagerList implements Closeable {
      */
     private final Object managerListUpdateLock = new Object();
 
+    /**
+     * 调整管理器数量及恢复管理器时使用的私有锁，两者互斥，保证恢复任务不会写入已被移除的位置
+     */
+    private final Object resizeLock = new Object();
+
+    /**
+     * 自动调整管理器数量任务，如果不自动调整，则为 {@code null}
+     */
+    private volatile ResizeTask resizeTask = null;
+
     /**
      * IM 客户端管理器恢复任务是否运行，访问该变量需使用锁 {@link #rescueTaskLock}
      */
@@ -96,8 +176,35 @@ public class IMClientManagerList implements Closeable {
      */
     public IMClientManagerList(int poolSize, IMClientManagerConfiguration managerConfiguration,
                                IMClientManagerListListener managerListListener) throws IllegalStateException {
+        this(poolSize, 0, managerConfiguration, managerListListener);
+    }
+
+    /**
+     * 构造一个 IM 客户端管理器列表，如果 {@code maxPoolSize} 大于 {@code poolSize}，将根据 Selector 线程的繁忙程度在两者之间自动调整管理器数量。
+     *
+     * @param poolSize IM 客户端管理器数量，不允许小于等于 0
+     * @param maxPoolSize 自动调整时允许的最大管理器数量，如果小于等于 {@code poolSize}，则不自动调整
+     * @param managerConfiguration IM 客户端管理器使用的配置信息，不允许为 {@code null}
+     * @param managerListListener IM 客户端管理器列表事件监听器，允许为 {@code null}
+     * @throws IllegalArgumentException 如果配置的 CPU 列表格式不正确，将会抛出此异常
+     * @throws IllegalStateException 如果所有的 IM 客户端管理器均不可用，将会抛出此异常
+     */
+    public IMClientManagerList(int poolSize, int maxPoolSize, IMClientManagerConfiguration managerConfiguration,
+                               IMClientManagerListListener managerListListener) throws IllegalStateException {
         this.poolSize = poolSize;
+        this.minPoolSize = poolSize;
+        this.maxPoolSize = maxPoolSize;
         this.managerConfiguration = managerConfiguration;
+        this.cpus = CpuAffinity.parseCpuList(managerConfiguration.getCpuList());
+        this.cpuNodes = cpus.length > 0 ? CpuAffinity.getNumaNodes() : new int[0];
+        boolean isMultipleNodes = false;
+        for (int cpu : cpus) {
+            if (getNumaNode(cpu) != getNumaNode(cpus[0])) {
+                isMultipleNodes = true;
+                break;
+            }
+        }
+        this.numaAware = isMultipleNodes && managerConfiguration.isNumaPreferred();
         UnusableServiceNotifier<IMClientManager> prevUnusableServiceNotifier = managerConfiguration.getUnusableServiceNotifier();
         managerConfiguration.setUnusableServiceNotifier(manager -> {
             removeUnavailableClient(manager);
@@ -112,7 +219,7 @@ public class IMClientManagerList implements Closeable {
         boolean isNeedStartRescueTask = false;
         for (int i = 0; i < poolSize; i++) {
             String name = getManagerName(i);
-            boolean isSuccess = create(-1, name);
+            boolean isSuccess = create(-1, name, getManagerCpu(i));
             if (isSuccess) {
                 hasAvailableManager = true;
                 Methods.invokeIfNotNull("IMClientManagerListListener#onCreated(String name)", buildParamsMap(name),
@@ -135,36 +242,60 @@ public class IMClientManagerList implements Closeable {
         if (isNeedStartRescueTask) {
             startRescueTask();
         }
+
+        if (maxPoolSize > poolSize) {
+            resizeTask = new ResizeTask();
+            resizeTask.setName("raven-manager-resize-task");
+            resizeTask.setDaemon(true);
+            resizeTask.start();
+        }
     }
 
     /**
      * 获得一个空闲的 IM 客户端管理器，如果当前无可用管理器，将返回 {@code null}。
      *
+     * <p>
+     *     如果管理器绑定的 CPU 分布在多个 NUMA 节点上，并且开启了 {@link IMClientManagerConfiguration#isNumaPreferred()}，
+     *     将优先返回与调用线程最近一次运行所在 CPU 位于同一节点的管理器，只要其 IM 客户端数量与最空闲的管理器相差不大。
+     *     调用线程所在的节点由调度器决定，并不代表处理该连接网卡中断的节点，每秒最多读取一次，避免每次接收连接都访问 procfs。
+     * </p>
+     *
      * @return IM 客户端管理器，可能为 {@code null}
      */
     public IMClientManager getIdleManager() {
         if (state != BeanStatusEnum.NORMAL) { // 如果已关闭，直接返回 null
             return null;
         }
+        int preferredNode = numaAware ? getCallerNode() : -1;
         int minimumIMClientCount = Integer.MAX_VALUE;
         IMClientManager idleManager = null;
-        for (int i = 0; i < poolSize; i++) { // 寻找最空闲的 Manager 后返回（并发情况下，不一定精准）
-            IMClientManager manager = managerList.get(i);
+        int minimumLocalIMClientCount = Integer.MAX_VALUE;
+        IMClientManager idleLocalManager = null;
+        for (IMClientManager manager : managerList) { // 寻找最空闲的 Manager 后返回（并发情况下，不一定精准）
             if (manager != null && manager.isActive()) {
                 int imClientCount = manager.getClientCount();
                 if (imClientCount >= 0 && imClientCount < minimumIMClientCount) {
                     minimumIMClientCount = imClientCount;
                     idleManager = manager;
                 }
+                if (preferredNode >= 0 && imClientCount >= 0 && imClientCount < minimumLocalIMClientCount
+                        && getNumaNode(manager.getCpu()) == preferredNode) {
+                    minimumLocalIMClientCount = imClientCount;
+                    idleLocalManager = manager;
+                }
             }
         }
+        if (idleLocalManager != null && minimumLocalIMClientCount - minimumIMClientCount
+                <= Math.max(NUMA_IMBALANCE_TOLERANCE, minimumIMClientCount / 8)) {
+            return idleLocalManager;
+        }
         return idleManager;
     }
 
     /**
-     * 获得配置的 IM 客户端管理器数量。
+     * 获得当前的 IM 客户端管理器数量，运行期间可通过 {@link #resize(int)} 方法或自动调整改变。
      *
-     * @return 配置的 IM 客户端管理器数量
+     * @return 当前的 IM 客户端管理器数量
      */
     public int getPoolSize() {
         return poolSize;
@@ -183,7 +314,75 @@ public class IMClientManagerList implements Closeable {
         if (state != BeanStatusEnum.NORMAL) { // 已关闭
             return null;
         }
-        return managerList.get(index);
+        try {
+            return managerList.get(index);
+        } catch (IndexOutOfBoundsException e) { // 并发缩容
+            return null;
+        }
+    }
+
+    /**
+     * 调整 IM 客户端管理器数量。扩容时在列表末尾创建新的管理器；缩容时先将列表末尾的管理器移出列表，不再分配新的 IM 客户端，
+     * 再将其管理的 IM 客户端迁移至剩余的管理器中最空闲的一个，迁移完成后关闭退役的管理器。该方法将阻塞至调整完成。
+     *
+     * @param newPoolSize 调整后的 IM 客户端管理器数量，不允许小于等于 0
+     * @return 缩容时迁移的 IM 客户端数量，扩容时为 0
+     * @throws IllegalArgumentException 如果 {@code newPoolSize} 小于等于 0，将会抛出此异常
+     * @throws IllegalStateException 如果 IM 客户端管理器列表已关闭，将会抛出此异常
+     */
+    public int resize(int newPoolSize) throws IllegalArgumentException, IllegalStateException {
+        if (newPoolSize <= 0) {
+            LinkedHashMap<String, Object> params = buildParamsMap(null);
+            params.put("newPoolSize", newPoolSize);
+            String errorMessage = "IMClientManagerList fails to resize: `invalid pool size`." + LogBuildUtil.build(params);
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        synchronized (resizeLock) {
+            if (state != BeanStatusEnum.NORMAL) {
+                LinkedHashMap<String, Object> params = buildParamsMap(null);
+                params.put("newPoolSize", newPoolSize);
+                String errorMessage = "IMClientManagerList fails to resize: `illegal state`." + LogBuildUtil.build(params);
+                LOGGER.error(errorMessage);
+                throw new IllegalStateException(errorMessage);
+            }
+            long startTime = System.currentTimeMillis();
+            int prevPoolSize = poolSize;
+            boolean isNeedStartRescueTask = false;
+            while (managerList.size() < newPoolSize) {
+                String name = getManagerName(managerList.size());
+                if (create(-1, name, getManagerCpu(managerList.size()))) {
+                    Methods.invokeIfNotNull("IMClientManagerListListener#onCreated(String name)", buildParamsMap(name),
+                            managerListListener, () -> managerListListener.onCreated(name));
+                } else {
+                    isNeedStartRescueTask = true;
+                }
+            }
+            List<IMClientManager> retiringManagerList = new ArrayList<>();
+            synchronized (managerListUpdateLock) {
+                while (managerList.size() > newPoolSize) {
+                    IMClientManager retiringManager = managerList.remove(managerList.size() - 1);
+                    if (retiringManager != null) {
+                        retiringManagerList.add(retiringManager);
+                    }
+                }
+            }
+            poolSize = newPoolSize;
+            int migratedCount = 0;
+            for (IMClientManager retiringManager : retiringManagerList) {
+                migratedCount += retiringManager.retire(this::getIdleManager);
+            }
+
+            LinkedHashMap<String, Object> params = buildParamsMap(null);
+            params.put("prevPoolSize", prevPoolSize);
+            params.put("migratedCount", migratedCount);
+            params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+            RAVEN_IM_CLIENT_MANAGER_LOG.info("Resized IMClientManagerList.{}", LogBuildUtil.build(params));
+            if (isNeedStartRescueTask) {
+                startRescueTask();
+            }
+            return migratedCount;
+        }
     }
 
     @Override
@@ -191,6 +390,9 @@ public class IMClientManagerList implements Closeable {
         if (state != BeanStatusEnum.CLOSED) {
             long startTime = System.currentTimeMillis();
             state = BeanStatusEnum.CLOSED;
+            if (resizeTask != null) {
+                resizeTask.interrupt();
+            }
             for (IMClientManager manager : managerList) {
                 if (manager != null) {
                     manager.close();
@@ -213,17 +415,56 @@ public class IMClientManagerList implements Closeable {
         return "raven-im-client-manager-" + index;
     }
 
+    /**
+     * 获得指定位置的 IM 客户端管理器 Selector 线程绑定的 CPU，如果不绑定，将会返回 -1。
+     *
+     * @param position IM 客户端管理器在列表中的位置
+     * @return 绑定的 CPU
+     */
+    private int getManagerCpu(int position) {
+        return cpus.length > 0 ? cpus[position % cpus.length] : -1;
+    }
+
+    /**
+     * 获得指定 CPU 所在的 NUMA 节点，如果无法确定，将会返回 -1。
+     *
+     * @param cpu CPU 编号
+     * @return NUMA 节点编号
+     */
+    private int getNumaNode(int cpu) {
+        return cpu >= 0 && cpu < cpuNodes.length ? cpuNodes[cpu] : -1;
+    }
+
+    /**
+     * 获得调用线程最近一次运行所在 CPU 的 NUMA 节点，同一线程在 {@link #NUMA_NODE_CACHE_MILLIS} 毫秒内复用上次读取的结果，
+     * 如果无法确定，将会返回 -1。
+     *
+     * @return NUMA 节点编号
+     */
+    private int getCallerNode() {
+        long currentTime = System.currentTimeMillis();
+        Thread thread = Thread.currentThread();
+        CallerNode cached = callerNode;
+        if (cached != null && cached.thread == thread && currentTime - cached.time < NUMA_NODE_CACHE_MILLIS) {
+            return cached.node;
+        }
+        int node = getNumaNode(CpuAffinity.getCurrentCpu());
+        callerNode = new CallerNode(thread, node, currentTime);
+        return node;
+    }
+
     /**
      * 创建一个 IM 客户端管理器。
      *
      * @param index IM 客户端管理器在列表中的索引位置
      * @param name IM 客户端管理器名称
+     * @param cpu IM 客户端管理器 Selector 线程绑定的 CPU，如果小于 0，则不绑定
      * @return 是否创建成功
      */
-    private boolean create(int index, String name) {
+    private boolean create(int index, String name, int cpu) {
         IMClientManager manager = null;
         try {
-            manager = new IMClientManager(name, managerConfiguration);
+            manager = new IMClientManager(name, managerConfiguration, cpu);
             manager.init();
         } catch (Exception ignored) {}
 
@@ -302,17 +543,19 @@ public class IMClientManagerList implements Closeable {
                             try {
                                 while (state == BeanStatusEnum.NORMAL) {
                                     boolean hasRecovered = true;
-                                    for (int i = 0; i < poolSize; i++) {
-                                        if (managerList.get(i) == null) {
-                                            String managerName = getManagerName(i);
-                                            boolean isSuccess = create(i, managerName);
-                                            if (isSuccess) {
-                                                RAVEN_IM_CLIENT_MANAGER_LOG.info("Rescue `IMClientManager` success.{}", LogBuildUtil.build(buildParamsMap(managerName)));
-                                                Methods.invokeIfNotNull("IMClientManagerListListener#onRecovered(String name)", buildParamsMap(managerName),
-                                                        managerListListener, () -> managerListListener.onRecovered(managerName));
-                                            } else {
-                                                hasRecovered = false;
-                                                RAVEN_IM_CLIENT_MANAGER_LOG.error("Rescue `IMClientManager` failed. {}", LogBuildUtil.build(buildParamsMap(managerName)));
+                                    synchronized (resizeLock) {
+                                        for (int i = 0; i < managerList.size(); i++) {
+                                            if (managerList.get(i) == null) {
+                                                String managerName = getManagerName(i);
+                                                boolean isSuccess = create(i, managerName, getManagerCpu(i));
+                                                if (isSuccess) {
+                                                    RAVEN_IM_CLIENT_MANAGER_LOG.info("Rescue `IMClientManager` success.{}", LogBuildUtil.build(buildParamsMap(managerName)));
+                                                    Methods.invokeIfNotNull("IMClientManagerListListener#onRecovered(String name)", buildParamsMap(managerName),
+                                                            managerListListener, () -> managerListListener.onRecovered(managerName));
+                                                } else {
+                                                    hasRecovered = false;
+                                                    RAVEN_IM_CLIENT_MANAGER_LOG.error("Rescue `IMClientManager` failed. {}", LogBuildUtil.build(buildParamsMap(managerName)));
+                                                }
                                             }
                                         }
                                     }
@@ -348,4 +591,100 @@ public class IMClientManagerList implements Closeable {
             }
         }
     }
+
+    /**
+     * 自动调整管理器数量任务，定期计算各 Selector 线程处理就绪事件耗费时间占比的平均值，过高时扩容，过低时逐个缩容。
+     */
+    private class ResizeTask extends Thread {
+
+        /**
+         * 上一次采集的各管理器处理就绪事件累计耗费的时间，单位：纳秒
+         */
+        private IdentityHashMap<IMClientManager, Long> lastBusyNanoTimeMap = new IdentityHashMap<>();
+
+        @Override
+        public void run() {
+            long lastNanoTime = System.nanoTime();
+            while (state == BeanStatusEnum.NORMAL) {
+                try {
+                    Thread.sleep(RESIZE_CHECK_INTERVAL);
+                } catch (InterruptedException e) {
+                    break;
+                }
+                try {
+                    long nanoTime = System.nanoTime();
+                    long intervalNanoTime = nanoTime - lastNanoTime;
+                    lastNanoTime = nanoTime;
+                    IdentityHashMap<IMClientManager, Long> busyNanoTimeMap = new IdentityHashMap<>();
+                    long totalBusyNanoTime = 0;
+                    int sampleCount = 0;
+                    for (IMClientManager manager : managerList) {
+                        if (manager != null && manager.isActive()) {
+                            long busyNanoTime = manager.getBusyNanoTime();
+                            busyNanoTimeMap.put(manager, busyNanoTime);
+                            Long lastBusyNanoTime = lastBusyNanoTimeMap.get(manager);
+                            if (lastBusyNanoTime != null) {
+                                totalBusyNanoTime += busyNanoTime - lastBusyNanoTime;
+                                sampleCount++;
+                            }
+                        }
+                    }
+                    lastBusyNanoTimeMap = busyNanoTimeMap;
+                    if (sampleCount == 0 || intervalNanoTime <= 0) {
+                        continue;
+                    }
+
+                    double busyRatio = (double) totalBusyNanoTime / sampleCount / intervalNanoTime;
+                    int currentPoolSize = poolSize;
+                    int newPoolSize = currentPoolSize;
+                    if (busyRatio >= GROW_BUSY_RATIO && currentPoolSize < maxPoolSize) {
+                        newPoolSize = Math.min(maxPoolSize, (int) Math.ceil(currentPoolSize * busyRatio / TARGET_BUSY_RATIO));
+                    } else if (busyRatio < SHRINK_BUSY_RATIO && currentPoolSize > minPoolSize
+                            && busyRatio * currentPoolSize / (currentPoolSize - 1) < TARGET_BUSY_RATIO) {
+                        newPoolSize = currentPoolSize - 1;
+                    }
+                    if (newPoolSize != currentPoolSize) {
+                        LinkedHashMap<String, Object> params = buildParamsMap(null);
+                        params.put("busyRatio", String.format("%.2f", busyRatio));
+                        params.put("newPoolSize", newPoolSize);
+                        RAVEN_IM_CLIENT_MANAGER_LOG.info("Resizing IMClientManagerList automatically.{}", LogBuildUtil.build(params));
+                        resize(newPoolSize);
+                        lastBusyNanoTimeMap = new IdentityHashMap<>(); // 调整期间的耗时不计入下一周期
+                        lastNanoTime = System.nanoTime();
+                    }
+                } catch (Exception e) {
+                    if (state == BeanStatusEnum.NORMAL) {
+                        LOGGER.error("IMClientManagerList fails to resize automatically: `unexpected error`." + LogBuildUtil.build(buildParamsMap(null)), e);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 调用线程所在 NUMA 节点的缓存。
+     */
+    private static class CallerNode {
+
+        /**
+         * 调用线程
+         */
+        private final Thread thread;
+
+        /**
+         * NUMA 节点编号，无法确定时为 -1
+         */
+        private final int node;
+
+        /**
+         * 读取时间
+         */
+        private final long time;
+
+        private CallerNode(Thread thread, int node, long time) {
+            this.thread = thread;
+            this.node = node;
+            this.time = time;
+        }
+    }
 }
@@ -0,0 +1,470 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * IM 客户端待写入的字节消息队列，按字节消息优先级分为多个通道，通过加权轮询的方式从各通道中选取字节消息组成下一批待写入的数据，
+ * 避免大量低优先级的数据阻塞高优先级的字节消息。
+ *
+ * <p>
+ *     每一批数据的字节数不超过 IM 客户端单次写入操作允许写入的最大字节数，允许分块写入的字节消息将会按该字节数进行切分，
+ *     不允许分块写入的字节消息如果超过该字节数，将会单独组成一批数据。
+ * </p>
+ *
+ * <p>
+ *     设置了槽位的字节消息在开始写入前，如果有相同槽位的新消息加入，将会被新消息替换，新消息沿用其在队列中的位置及优先级通道。
+ * </p>
+ *
+ * <p>
+ *     队列中的每个字节消息可关联一个 {@link ByteMessageCallback}，队列内部用于保存关联关系的节点对象会被回收复用。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientMessageQueue 类是非线程安全的，由 {@link IMClient} 在持有写锁时访问。</p>
+ *
+ * @author heimuheimu
+ */
+class IMClientMessageQueue {
+
+    /**
+     * 优先级通道数量
+     */
+    private static final int LANE_COUNT = ByteMessage.PRIORITY_LOW + 1;
+
+    /**
+     * 各优先级通道的权重，下标为字节消息优先级
+     */
+    private static final int[] LANE_WEIGHTS = {4, 2, 1};
+
+    /**
+     * 按平滑加权轮询算法生成的通道调度序列
+     */
+    private static final int[] SCHEDULE = buildSchedule();
+
+    /**
+     * 可回收复用的节点最大数量
+     */
+    private static final int MAX_FREE_ENTRY_COUNT = 32;
+
+    /**
+     * 各优先级通道，在首次使用时创建
+     */
+    @SuppressWarnings({"unchecked", "rawtypes"})
+    private final ArrayDeque<Entry>[] lanes = new ArrayDeque[LANE_COUNT];
+
+    /**
+     * 各优先级通道中首个字节消息已取出的字节数，仅在分块写入时大于 0
+     */
+    private final int[] headOffsets = new int[LANE_COUNT];
+
+    /**
+     * 当前调度序列位置
+     */
+    private int schedulePosition = 0;
+
+    /**
+     * 队列中的字节消息数量
+     */
+    private int size = 0;
+
+    /**
+     * 字节消息槽位与该槽位尚未开始写入的节点映射表，在首次使用时创建
+     */
+    private Map<String, Entry> slotMap = null;
+
+    /**
+     * 可回收复用的节点
+     */
+    private Entry freeEntry = null;
+
+    /**
+     * 可回收复用的节点数量
+     */
+    private int freeEntryCount = 0;
+
+    /**
+     * 最后一次添加时被替换的字节消息关联的回调，可能为 {@code null}
+     */
+    private ByteMessageCallback replacedCallback = null;
+
+    /**
+     * 最后一批数据中已完整取出的字节消息列表，在下一次取出时清空
+     */
+    private final List<ByteMessage> polledMessageList = new ArrayList<>();
+
+    /**
+     * 最后一批数据中已完整取出的字节消息关联的回调列表，与 {@link #polledMessageList} 一一对应，元素可能为 {@code null}
+     */
+    private final List<ByteMessageCallback> polledCallbackList = new ArrayList<>();
+
+    /**
+     * 最后一次取出时被丢弃的过期字节消息列表，在下一次取出时清空
+     */
+    private final List<ByteMessage> expiredMessageList = new ArrayList<>();
+
+    /**
+     * 最后一次取出时被丢弃的过期字节消息关联的回调列表，与 {@link #expiredMessageList} 一一对应，元素可能为 {@code null}
+     */
+    private final List<ByteMessageCallback> expiredCallbackList = new ArrayList<>();
+
+    /**
+     * 组成一批数据的字节消息片段，仅在单次取出过程中使用
+     */
+    private final List<ByteMessage> partMessageList = new ArrayList<>();
+
+    /**
+     * 组成一批数据的字节消息片段起始位置，与 {@link #partMessageList} 一一对应
+     */
+    private int[] partOffsets = new int[8];
+
+    /**
+     * 组成一批数据的字节消息片段长度，与 {@link #partMessageList} 一一对应
+     */
+    private int[] partLengths = new int[8];
+
+    /**
+     * 将字节消息添加到对应优先级通道的末尾，如果队列中存在相同槽位且尚未开始写入的字节消息，则替换该消息，并将其返回，
+     * 被替换的字节消息关联的回调可通过 {@link #getReplacedCallback()} 获得。
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 字节消息关联的回调，允许为 {@code null}
+     * @return 被替换的字节消息，可能为 {@code null}
+     */
+    ByteMessage add(ByteMessage message, ByteMessageCallback callback) {
+        replacedCallback = null;
+        String slotKey = message.getSlotKey();
+        if (slotKey != null && slotMap != null) {
+            Entry slotEntry = slotMap.get(slotKey);
+            if (slotEntry != null) {
+                ByteMessage replacedMessage = slotEntry.message;
+                replacedCallback = slotEntry.callback;
+                slotEntry.message = message;
+                slotEntry.callback = callback;
+                return replacedMessage;
+            }
+        }
+        Entry entry = newEntry(message, callback);
+        if (slotKey != null) {
+            if (slotMap == null) {
+                slotMap = new HashMap<>();
+            }
+            slotMap.put(slotKey, entry);
+        }
+        int priority = message.getPriority();
+        ArrayDeque<Entry> lane = lanes[priority];
+        if (lane == null) {
+            lane = new ArrayDeque<>();
+            lanes[priority] = lane;
+        }
+        lane.addLast(entry);
+        size++;
+        return null;
+    }
+
+    /**
+     * 获得最后一次添加时被替换的字节消息关联的回调，可能为 {@code null}。
+     *
+     * @return 被替换的字节消息关联的回调
+     */
+    ByteMessageCallback getReplacedCallback() {
+        return replacedCallback;
+    }
+
+    /**
+     * 判断队列是否为空，部分写入的字节消息在全部取出前仍在队列中。
+     *
+     * @return 队列是否为空
+     */
+    boolean isEmpty() {
+        return size == 0;
+    }
+
+    /**
+     * 获得队列中最早的字节消息创建时间，如果队列为空，则返回 0。
+     *
+     * @return 最早的字节消息创建时间
+     */
+    long getOldestCreatedTime() {
+        long oldestCreatedTime = 0;
+        for (ArrayDeque<Entry> lane : lanes) {
+            if (lane != null && !lane.isEmpty()) {
+                long createdTime = lane.peekFirst().message.getCreatedTime();
+                if (oldestCreatedTime == 0 || createdTime < oldestCreatedTime) {
+                    oldestCreatedTime = createdTime;
+                }
+            }
+        }
+        return oldestCreatedTime;
+    }
+
+    /**
+     * 按加权轮询的方式取出下一批待写入的数据，尚未开始写入的过期字节消息将会被丢弃，如果没有可写入的数据，将会返回 {@code null}。
+     *
+     * <p>
+     *     本批数据中已完整取出的字节消息可通过 {@link #getPolledMessageList()} 获得，被丢弃的过期字节消息可通过
+     *     {@link #getExpiredMessageList()} 获得。
+     * </p>
+     *
+     * @param maxByteLength 本批数据允许的最大字节数，如果小于等于 0，则没有限制
+     * @param maxMessageCount 本批数据允许完整取出的最大字节消息数量，如果小于等于 0，则不会取出任何数据
+     * @param currentTime 当前时间，用于判断字节消息是否过期
+     * @return 下一批待写入的数据，可能为 {@code null}
+     */
+    ByteBuffer poll(int maxByteLength, int maxMessageCount, long currentTime) {
+        polledMessageList.clear();
+        polledCallbackList.clear();
+        expiredMessageList.clear();
+        expiredCallbackList.clear();
+        partMessageList.clear();
+        int budget = maxByteLength > 0 ? maxByteLength : Integer.MAX_VALUE;
+        int byteLength = 0;
+        int skippedLanes = 0; // 本批数据中已跳过的通道位图，这些通道的首个字节消息无法放入本批数据
+        while (size > 0 && byteLength < budget && polledMessageList.size() < maxMessageCount) {
+            int priority = nextLane(skippedLanes);
+            if (priority < 0) {
+                break;
+            }
+            ArrayDeque<Entry> lane = lanes[priority];
+            Entry entry = lane.peekFirst();
+            ByteMessage message = entry.message;
+            int offset = headOffsets[priority];
+            if (offset == 0 && message.isExpired(currentTime)) {
+                removeSlot(message);
+                lane.pollFirst();
+                size--;
+                expiredMessageList.add(message);
+                expiredCallbackList.add(entry.callback);
+                recycle(entry);
+                continue;
+            }
+            int remaining = message.getContent().length - offset;
+            int partLength;
+            if (remaining <= budget - byteLength) {
+                partLength = remaining;
+            } else if (message.isChunked()) {
+                partLength = budget - byteLength;
+            } else if (byteLength == 0) {
+                partLength = remaining; // 超过单批字节数且不允许分块，单独组成一批数据
+            } else {
+                skippedLanes |= 1 << priority;
+                continue;
+            }
+
+            if (offset == 0) { // 开始写入后，该槽位不再允许替换
+                removeSlot(message);
+            }
+            addPart(message, offset, partLength);
+            byteLength += partLength;
+
+            if (partLength == remaining) {
+                lane.pollFirst();
+                size--;
+                headOffsets[priority] = 0;
+                polledMessageList.add(message);
+                polledCallbackList.add(entry.callback);
+                recycle(entry);
+            } else {
+                headOffsets[priority] = offset + partLength;
+            }
+            if (partLength > budget) {
+                break;
+            }
+        }
+
+        int partCount = partMessageList.size();
+        ByteBuffer buffer = null;
+        if (partCount == 1) {
+            buffer = ByteBuffer.wrap(partMessageList.get(0).getContent(), partOffsets[0], partLengths[0]).slice();
+        } else if (partCount > 1) {
+            byte[] mergedContent = new byte[byteLength];
+            int position = 0;
+            for (int i = 0; i < partCount; i++) {
+                System.arraycopy(partMessageList.get(i).getContent(), partOffsets[i], mergedContent, position, partLengths[i]);
+                position += partLengths[i];
+            }
+            buffer = ByteBuffer.wrap(mergedContent);
+        }
+        partMessageList.clear();
+        return buffer;
+    }
+
+    /**
+     * 获得最后一批数据中已完整取出的字节消息列表，该列表在下一次取出时将会被清空。
+     *
+     * @return 已完整取出的字节消息列表
+     */
+    List<ByteMessage> getPolledMessageList() {
+        return polledMessageList;
+    }
+
+    /**
+     * 获得最后一批数据中已完整取出的字节消息关联的回调列表，与 {@link #getPolledMessageList()} 一一对应，元素可能为 {@code null}。
+     *
+     * @return 已完整取出的字节消息关联的回调列表
+     */
+    List<ByteMessageCallback> getPolledCallbackList() {
+        return polledCallbackList;
+    }
+
+    /**
+     * 获得最后一次取出时被丢弃的过期字节消息列表，该列表在下一次取出时将会被清空。
+     *
+     * @return 被丢弃的过期字节消息列表
+     */
+    List<ByteMessage> getExpiredMessageList() {
+        return expiredMessageList;
+    }
+
+    /**
+     * 获得最后一次取出时被丢弃的过期字节消息关联的回调列表，与 {@link #getExpiredMessageList()} 一一对应，元素可能为 {@code null}。
+     *
+     * @return 被丢弃的过期字节消息关联的回调列表
+     */
+    List<ByteMessageCallback> getExpiredCallbackList() {
+        return expiredCallbackList;
+    }
+
+    /**
+     * 移除队列中的全部字节消息，包括已部分取出的分块消息，并将其及关联的回调按顺序添加到指定列表中。
+     *
+     * @param messageList 用于存放被移除的字节消息列表，不允许为 {@code null}
+     * @param callbackList 用于存放被移除的字节消息关联的回调列表，不允许为 {@code null}
+     */
+    void clear(List<ByteMessage> messageList, List<ByteMessageCallback> callbackList) {
+        for (int i = 0; i < LANE_COUNT; i++) {
+            ArrayDeque<Entry> lane = lanes[i];
+            if (lane != null) {
+                Entry entry;
+                while ((entry = lane.pollFirst()) != null) {
+                    messageList.add(entry.message);
+                    callbackList.add(entry.callback);
+                    recycle(entry);
+                }
+            }
+            headOffsets[i] = 0;
+        }
+        size = 0;
+        slotMap = null;
+    }
+
+    private void removeSlot(ByteMessage message) {
+        if (message.getSlotKey() != null) {
+            slotMap.remove(message.getSlotKey());
+        }
+    }
+
+    private void addPart(ByteMessage message, int offset, int length) {
+        int index = partMessageList.size();
+        if (index == partOffsets.length) {
+            partOffsets = Arrays.copyOf(partOffsets, index * 2);
+            partLengths = Arrays.copyOf(partLengths, index * 2);
+        }
+        partMessageList.add(message);
+        partOffsets[index] = offset;
+        partLengths[index] = length;
+    }
+
+    private Entry newEntry(ByteMessage message, ByteMessageCallback callback) {
+        Entry entry = freeEntry;
+        if (entry != null) {
+            freeEntry = entry.next;
+            freeEntryCount--;
+            entry.next = null;
+        } else {
+            entry = new Entry();
+        }
+        entry.message = message;
+        entry.callback = callback;
+        return entry;
+    }
+
+    private void recycle(Entry entry) {
+        entry.message = null;
+        entry.callback = null;
+        if (freeEntryCount < MAX_FREE_ENTRY_COUNT) {
+            entry.next = freeEntry;
+            freeEntry = entry;
+            freeEntryCount++;
+        }
+    }
+
+    /**
+     * 按调度序列找到下一个非空且未被跳过的优先级通道，如果不存在，则返回 -1。
+     *
+     * @param skippedLanes 需要跳过的通道位图
+     * @return 优先级通道下标，可能为 -1
+     */
+    private int nextLane(int skippedLanes) {
+        for (int i = 0; i < SCHEDULE.length; i++) {
+            int priority = SCHEDULE[schedulePosition];
+            schedulePosition = (schedulePosition + 1) % SCHEDULE.length;
+            ArrayDeque<Entry> lane = lanes[priority];
+            if ((skippedLanes & (1 << priority)) == 0 && lane != null && !lane.isEmpty()) {
+                return priority;
+            }
+        }
+        return -1;
+    }
+
+    private static int[] buildSchedule() {
+        int totalWeight = 0;
+        for (int weight : LANE_WEIGHTS) {
+            totalWeight += weight;
+        }
+        int[] schedule = new int[totalWeight];
+        int[] currentWeights = new int[LANE_COUNT];
+        for (int i = 0; i < totalWeight; i++) {
+            int selected = 0;
+            for (int j = 0; j < LANE_COUNT; j++) {
+                currentWeights[j] += LANE_WEIGHTS[j];
+                if (currentWeights[j] > currentWeights[selected]) {
+                    selected = j;
+                }
+            }
+            currentWeights[selected] -= totalWeight;
+            schedule[i] = selected;
+        }
+        return schedule;
+    }
+
+    /**
+     * 队列节点，保存字节消息及其关联的回调，取出后回收复用。
+     */
+    private static class Entry {
+
+        private ByteMessage message;
+
+        private ByteMessageCallback callback;
+
+        private Entry next;
+    }
+}
@@ -0,0 +1,71 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients;
+
+/**
+ * 可生成数字 ID 的 IM 客户端唯一 ID 生成器，字符串形式的 ID 中包含数字 ID，可从中解析出数字 ID。
+ *
+ * <p>
+ *     IMServer 使用数字 ID 作为 IM 客户端注册表的 Key，通过字符串 ID 查找 IM 客户端时，先将其转换为数字 ID，找到后再校验完整的字符串 ID，
+ *     不需要额外维护字符串 ID 索引。字符串 ID 中可以包含数字 ID 以外的随机部分，使其无法被推算。
+ * </p>
+ *
+ * <p>
+ *     <strong>说明：</strong>IMClientNumericIDGenerator 的实现类必须是线程安全的。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public interface IMClientNumericIDGenerator extends IMClientIDGenerator {
+
+    /**
+     * 生成一个 IM 客户端数字 ID，在当前生成器内唯一，必须大于 0。
+     *
+     * @return 数字 ID
+     */
+    long generateNumericId();
+
+    /**
+     * 将数字 ID 转换为字符串形式的 IM 客户端唯一 ID，每个数字 ID 仅会被转换一次，返回的 ID 可以包含随机部分。
+     *
+     * @param numericId 数字 ID
+     * @return 字符串形式的 IM 客户端唯一 ID
+     */
+    String toId(long numericId);
+
+    /**
+     * 将字符串形式的 IM 客户端唯一 ID 转换为数字 ID，如果该 ID 不是由当前生成器生成的，将会返回 0。
+     *
+     * @param id 字符串形式的 IM 客户端唯一 ID，允许为 {@code null}
+     * @return 数字 ID，不是由当前生成器生成时返回 0
+     */
+    long toNumericId(String id);
+
+    @Override
+    default String generate() {
+        return toId(generateNumericId());
+    }
+}
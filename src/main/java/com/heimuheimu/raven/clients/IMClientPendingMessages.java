@@ -0,0 +1,153 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients;
+
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * 从已关闭的 IM 客户端中取出的待发送字节消息，包括尚未写入的字节消息以及已写入但尚未被确认的字节消息，
+ * 可通过 {@link IMClient#attachPendingMessages(IMClientPendingMessages)} 方法转移到新的 IM 客户端继续发送，无需重新编码。
+ *
+ * <p>
+ *     字节消息关联的回调将随字节消息一起转移，如果最终未能转移，需调用 {@link #fail(ByteMessageFailedReasonEnum)} 方法通知回调。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientPendingMessages 类是非线程安全的，不允许多个线程使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientPendingMessages {
+
+    /**
+     * 字节消息原先所属的 IM 客户端
+     */
+    private final IMClient client;
+
+    /**
+     * 待发送的字节消息列表，按原先的写入顺序排列
+     */
+    private final List<ByteMessage> messageList;
+
+    /**
+     * 字节消息关联的回调列表，与 {@link #messageList} 一一对应，元素可能为 {@code null}
+     */
+    private final List<ByteMessageCallback> callbackList;
+
+    /**
+     * 构造一个 IMClientPendingMessages 实例。
+     *
+     * @param client 字节消息原先所属的 IM 客户端
+     * @param messageList 待发送的字节消息列表
+     * @param callbackList 字节消息关联的回调列表，与 {@code messageList} 一一对应
+     */
+    IMClientPendingMessages(IMClient client, List<ByteMessage> messageList, List<ByteMessageCallback> callbackList) {
+        this.client = client;
+        this.messageList = messageList;
+        this.callbackList = callbackList;
+    }
+
+    /**
+     * 获得字节消息原先所属的 IM 客户端。
+     *
+     * @return 字节消息原先所属的 IM 客户端
+     */
+    public IMClient getClient() {
+        return client;
+    }
+
+    /**
+     * 获得待发送的字节消息数量。
+     *
+     * @return 待发送的字节消息数量
+     */
+    public int size() {
+        return messageList.size();
+    }
+
+    /**
+     * 判断是否没有待发送的字节消息。
+     *
+     * @return 是否没有待发送的字节消息
+     */
+    public boolean isEmpty() {
+        return messageList.isEmpty();
+    }
+
+    /**
+     * 获得待发送的字节消息列表，按原先的写入顺序排列，该方法不会返回 {@code null}。
+     *
+     * <p><strong>注意：</strong>返回的列表是只读的，不可修改。</p>
+     *
+     * @return 待发送的字节消息列表
+     */
+    public List<ByteMessage> getMessageList() {
+        return Collections.unmodifiableList(messageList);
+    }
+
+    /**
+     * 通知所有字节消息关联的回调该消息未能发送，并清空当前实例。
+     *
+     * @param reason 未能发送的原因，不允许为 {@code null}
+     */
+    public void fail(ByteMessageFailedReasonEnum reason) {
+        for (int i = 0; i < callbackList.size(); i++) {
+            ByteMessageCallback callback = callbackList.get(i);
+            if (callback != null) {
+                client.notifyFailed(messageList.get(i), callback, reason);
+            }
+        }
+        messageList.clear();
+        callbackList.clear();
+    }
+
+    /**
+     * 获得字节消息关联的回调列表，与 {@link #getMessageList()} 一一对应，元素可能为 {@code null}。
+     *
+     * @return 字节消息关联的回调列表
+     */
+    List<ByteMessageCallback> getCallbackList() {
+        return callbackList;
+    }
+
+    /**
+     * 清空当前实例，在字节消息转移到新的 IM 客户端后调用。
+     */
+    void clear() {
+        messageList.clear();
+        callbackList.clear();
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientPendingMessages{" +
+                "clientId='" + client.getId() + '\'' +
+                ", size=" + messageList.size() +
+                '}';
+    }
+}
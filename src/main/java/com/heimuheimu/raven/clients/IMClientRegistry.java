@@ -0,0 +1,392 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients;
+
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+import java.util.concurrent.locks.StampedLock;
+
+/**
+ * IM 客户端注册表，以 IM 客户端数字 ID（{@link IMClient#getNumericId()}）作为 Key，按分片保存连接成功的 IM 客户端。
+ *
+ * <p>
+ *     每个分片为一个以 long 值为 Key 的开放寻址哈希表，采用线性探测，删除时回移后续元素，不使用删除标记，查找时不产生装箱对象，
+ *     也不需要计算字符串哈希值。分片数量通常与 IM 客户端管理器数量一致，查找操作优先使用 {@link StampedLock} 的乐观读，
+ *     不同分片的写操作互不影响。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientRegistry 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientRegistry implements Iterable<IMClient> {
+
+    /**
+     * 分片数组，长度为 2 的幂
+     */
+    private final Shard[] shards;
+
+    /**
+     * 计算分片索引使用的掩码
+     */
+    private final int shardMask;
+
+    /**
+     * 构造一个 IMClientRegistry 实例。
+     *
+     * @param shardCount 分片数量，将向上取整为 2 的幂，小于等于 0 时使用 1 个分片
+     */
+    public IMClientRegistry(int shardCount) {
+        int capacity = shardCount > 1 ? Integer.highestOneBit(shardCount - 1) << 1 : 1;
+        this.shards = new Shard[capacity];
+        for (int i = 0; i < capacity; i++) {
+            shards[i] = new Shard();
+        }
+        this.shardMask = capacity - 1;
+    }
+
+    /**
+     * 注册一个 IM 客户端，如果已存在相同数字 ID 的 IM 客户端，将会覆盖。
+     *
+     * @param client IM 客户端，不允许为 {@code null}，数字 ID 必须大于 0
+     * @throws IllegalArgumentException 如果 {@code client} 为 {@code null} 或数字 ID 小于等于 0，将会抛出此异常
+     */
+    public void put(IMClient client) throws IllegalArgumentException {
+        if (client == null || client.getNumericId() <= 0) {
+            throw new IllegalArgumentException("IMClientRegistry fails to put: `invalid numeric id`. `client`:`" + client + "`.");
+        }
+        long hash = hash(client.getNumericId());
+        shardOf(hash).put(client.getNumericId(), hash, client);
+    }
+
+    /**
+     * 移除一个 IM 客户端，仅在其数字 ID 对应的 IM 客户端为同一个实例时移除。
+     *
+     * @param client IM 客户端，允许为 {@code null}
+     * @return 是否移除成功
+     */
+    public boolean remove(IMClient client) {
+        if (client == null || client.getNumericId() <= 0) {
+            return false;
+        }
+        long hash = hash(client.getNumericId());
+        return shardOf(hash).remove(client.getNumericId(), hash, client);
+    }
+
+    /**
+     * 根据数字 ID 获得对应的 IM 客户端，如果不存在，将会返回 {@code null}。
+     *
+     * @param numericId IM 客户端数字 ID
+     * @return IM 客户端，可能为 {@code null}
+     */
+    public IMClient get(long numericId) {
+        if (numericId <= 0) {
+            return null;
+        }
+        long hash = hash(numericId);
+        return shardOf(hash).get(numericId, hash);
+    }
+
+    /**
+     * 获得已注册的 IM 客户端数量。
+     *
+     * @return 已注册的 IM 客户端数量
+     */
+    public int size() {
+        int size = 0;
+        for (Shard shard : shards) {
+            size += shard.size;
+        }
+        return size;
+    }
+
+    /**
+     * 判断注册表是否为空。
+     *
+     * @return 注册表是否为空
+     */
+    public boolean isEmpty() {
+        for (Shard shard : shards) {
+            if (shard.size > 0) {
+                return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+     * 获得已注册 IM 客户端的迭代器，每个分片在开始遍历时获取快照，遍历期间注册或移除的 IM 客户端可能不会反映在结果中，
+     * 迭代器不支持移除操作。
+     *
+     * @return 已注册 IM 客户端的迭代器
+     */
+    @Override
+    public Iterator<IMClient> iterator() {
+        return new Iterator<IMClient>() {
+
+            private int shardIndex = 0;
+
+            private IMClient[] snapshot = new IMClient[0];
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                while (index >= snapshot.length) {
+                    if (shardIndex >= shards.length) {
+                        return false;
+                    }
+                    snapshot = shards[shardIndex++].snapshot();
+                    index = 0;
+                }
+                return true;
+            }
+
+            @Override
+            public IMClient next() {
+                if (!hasNext()) {
+                    throw new NoSuchElementException();
+                }
+                return snapshot[index++];
+            }
+        };
+    }
+
+    private Shard shardOf(long hash) {
+        return shards[(int) (hash >>> 32) & shardMask];
+    }
+
+    /**
+     * 计算数字 ID 的哈希值，连续的数字 ID 将均匀分布到不同的分片及槽位中。
+     *
+     * @param numericId 数字 ID
+     * @return 哈希值
+     */
+    private static long hash(long numericId) {
+        long hash = numericId;
+        hash ^= hash >>> 33; // MurmurHash3 fmix64
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        return hash;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientRegistry{" +
+                "shardCount=" + shards.length +
+                ", size=" + size() +
+                '}';
+    }
+
+    /**
+     * 注册表分片，写操作需先获得写锁，读操作优先使用乐观读。
+     */
+    private static class Shard {
+
+        /**
+         * 扩容前允许的最大负载因子
+         */
+        private static final double LOAD_FACTOR = 0.5;
+
+        private final StampedLock lock = new StampedLock();
+
+        /**
+         * 当前使用的哈希表，扩容时替换
+         */
+        private volatile Table table = new Table(64);
+
+        /**
+         * 已注册的 IM 客户端数量，仅在持有写锁时修改
+         */
+        private volatile int size = 0;
+
+        private IMClient get(long key, long hash) {
+            long stamp = lock.tryOptimisticRead();
+            if (stamp != 0) {
+                IMClient client = table.get(key, hash);
+                if (lock.validate(stamp)) {
+                    return client;
+                }
+            }
+            stamp = lock.readLock();
+            try {
+                return table.get(key, hash);
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+
+        private void put(long key, long hash, IMClient client) {
+            long stamp = lock.writeLock();
+            try {
+                Table current = table;
+                if (size + 1 > current.capacity() * LOAD_FACTOR) {
+                    current = current.resize(current.capacity() << 1);
+                    table = current;
+                }
+                if (current.put(key, hash, client)) {
+                    size++;
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private boolean remove(long key, long hash, IMClient client) {
+            long stamp = lock.writeLock();
+            try {
+                if (table.remove(key, hash, client)) {
+                    size--;
+                    return true;
+                }
+                return false;
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+        }
+
+        private IMClient[] snapshot() {
+            long stamp = lock.readLock();
+            try {
+                IMClient[] snapshot = new IMClient[size];
+                int index = 0;
+                for (IMClient client : table.values) {
+                    if (client != null) {
+                        snapshot[index++] = client;
+                    }
+                }
+                return snapshot;
+            } finally {
+                lock.unlockRead(stamp);
+            }
+        }
+    }
+
+    /**
+     * 以 IM 客户端数字 ID 为 Key 的开放寻址哈希表，槽位中仅保存 IM 客户端，通过 {@link IMClient#getNumericId()} 比较 Key，
+     * 查找命中时不需要额外读取 Key 数组，{@code null} 表示空槽位，非线程安全，由所在分片负责同步。
+     */
+    private static class Table {
+
+        private final IMClient[] values;
+
+        private Table(int capacity) {
+            this.values = new IMClient[capacity];
+        }
+
+        private int capacity() {
+            return values.length;
+        }
+
+        /**
+         * 获得 Key 对应的 IM 客户端，在并发修改时可能返回不一致的结果，由分片通过乐观读锁校验后重试。
+         */
+        private IMClient get(long key, long hash) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            for (int i = 0; i <= mask; i++) {
+                IMClient current = values[slot];
+                if (current == null) {
+                    return null;
+                } else if (current.getNumericId() == key) {
+                    return current;
+                }
+                slot = (slot + 1) & mask;
+            }
+            return null;
+        }
+
+        private boolean put(long key, long hash, IMClient client) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                IMClient current = values[slot];
+                if (current == null || current.getNumericId() == key) {
+                    values[slot] = client;
+                    return current == null;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private boolean remove(long key, long hash, IMClient client) {
+            int mask = values.length - 1;
+            int slot = (int) hash & mask;
+            while (true) {
+                IMClient current = values[slot];
+                if (current == null) {
+                    return false;
+                } else if (current.getNumericId() == key) {
+                    if (current != client) {
+                        return false;
+                    }
+                    removeSlot(slot);
+                    return true;
+                }
+                slot = (slot + 1) & mask;
+            }
+        }
+
+        private Table resize(int newCapacity) {
+            Table newTable = new Table(newCapacity);
+            for (IMClient client : values) {
+                if (client != null) {
+                    newTable.put(client.getNumericId(), hash(client.getNumericId()), client);
+                }
+            }
+            return newTable;
+        }
+
+        /**
+         * 清空指定槽位，并将后续探测链中的元素回移，保证线性探测的查找不会提前中断。
+         *
+         * @param slot 被清空的槽位
+         */
+        private void removeSlot(int slot) {
+            int mask = values.length - 1;
+            int emptySlot = slot;
+            int current = (slot + 1) & mask;
+            while (true) {
+                IMClient client = values[current];
+                if (client == null) {
+                    break;
+                }
+                int idealSlot = (int) hash(client.getNumericId()) & mask;
+                // 当理想槽位不在 (emptySlot, current] 区间内时，该元素可以回移到空槽位
+                boolean movable = emptySlot <= current ? (idealSlot <= emptySlot || idealSlot > current)
+                        : (idealSlot <= emptySlot && idealSlot > current);
+                if (movable) {
+                    values[emptySlot] = client;
+                    emptySlot = current;
+                }
+                current = (current + 1) & mask;
+            }
+            values[emptySlot] = null;
+        }
+    }
+}
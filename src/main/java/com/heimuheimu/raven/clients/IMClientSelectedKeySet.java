@@ -0,0 +1,142 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import java.lang.reflect.Field;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.NoSuchElementException;
+
+/**
+ * 基于数组实现的已选择键集合，用于替换 JDK 选择器内部基于 HashSet 实现的已选择键集合，在 select 后按下标遍历，
+ * 避免每轮 select 创建迭代器以及 HashSet 节点的内存分配。
+ *
+ * <p>
+ *     JDK 选择器在 select 时仅调用 {@link #add(SelectionKey)} 及 {@link #contains(Object)} 方法，同一次 select 中每个 SelectionKey
+ *     最多出现一次，因此 {@link #contains(Object)} 方法始终返回 {@code false}，由调用方在每轮处理完成后调用 {@link #reset()} 清空集合。
+ * </p>
+ *
+ * <p>
+ *     替换操作通过反射修改 {@code sun.nio.ch.SelectorImpl} 的私有字段实现，JDK 9 及以上版本需通过
+ *     {@code --add-opens java.base/sun.nio.ch=ALL-UNNAMED} 开放访问，替换失败时调用方应继续使用选择器原有的已选择键集合。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientSelectedKeySet 类是非线程安全的，仅允许在选择器线程中访问。</p>
+ *
+ * @author heimuheimu
+ */
+final class IMClientSelectedKeySet extends AbstractSet<SelectionKey> {
+
+    /**
+     * 已选择键数组，下标小于 {@link #size} 的元素有效
+     */
+    SelectionKey[] keys = new SelectionKey[1024];
+
+    /**
+     * 已选择键数量
+     */
+    int size = 0;
+
+    @Override
+    public boolean add(SelectionKey key) {
+        if (key == null) {
+            return false;
+        }
+        if (size == keys.length) {
+            keys = Arrays.copyOf(keys, size << 1);
+        }
+        keys[size++] = key;
+        return true;
+    }
+
+    @Override
+    public boolean contains(Object o) {
+        return false;
+    }
+
+    @Override
+    public boolean remove(Object o) {
+        return false;
+    }
+
+    @Override
+    public int size() {
+        return size;
+    }
+
+    @Override
+    public Iterator<SelectionKey> iterator() {
+        return new Iterator<SelectionKey>() {
+
+            private int index = 0;
+
+            @Override
+            public boolean hasNext() {
+                return index < size;
+            }
+
+            @Override
+            public SelectionKey next() {
+                if (index >= size) {
+                    throw new NoSuchElementException();
+                }
+                return keys[index++];
+            }
+        };
+    }
+
+    /**
+     * 清空已选择键集合，释放对 SelectionKey 的引用。
+     */
+    void reset() {
+        Arrays.fill(keys, 0, size, null);
+        size = 0;
+    }
+
+    /**
+     * 将选择器内部的已选择键集合替换为 IMClientSelectedKeySet，如果替换失败，将会抛出异常，选择器保持原有的已选择键集合。
+     *
+     * @param selector 新创建的、尚未执行 select 的选择器
+     * @return 替换后的已选择键集合
+     * @throws Exception 如果选择器不是 JDK 实现或反射访问被拒绝，将会抛出此异常
+     */
+    static IMClientSelectedKeySet install(Selector selector) throws Exception {
+        Class<?> selectorImplClass = Class.forName("sun.nio.ch.SelectorImpl", false, ClassLoader.getSystemClassLoader());
+        if (!selectorImplClass.isInstance(selector)) {
+            throw new IllegalStateException("Unsupported selector: `" + selector.getClass().getName() + "`.");
+        }
+        Field selectedKeysField = selectorImplClass.getDeclaredField("selectedKeys");
+        Field publicSelectedKeysField = selectorImplClass.getDeclaredField("publicSelectedKeys");
+        selectedKeysField.setAccessible(true);
+        publicSelectedKeysField.setAccessible(true);
+        IMClientSelectedKeySet selectedKeySet = new IMClientSelectedKeySet();
+        selectedKeysField.set(selector, selectedKeySet);
+        publicSelectedKeysField.set(selector, selectedKeySet);
+        return selectedKeySet;
+    }
+}
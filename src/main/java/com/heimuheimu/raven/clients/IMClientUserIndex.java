@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IM 客户端用户索引，记录业务用户 ID 与该用户已连接的 IM 客户端（设备）之间的一对多关系。
+ *
+ * <p>
+ *     用户仅有一个 IM 客户端时，索引中直接保存该 IM 客户端，有多个 IM 客户端时保存一个 IM 客户端数组，数组在修改时整体替换，
+ *     读取时不需要加锁，也不会产生额外的集合对象。IM 客户端关闭后应调用 {@link #remove(IMClient)} 方法将其从索引中移除，
+ *     用户的全部 IM 客户端移除后，该用户也将从索引中移除。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientUserIndex 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientUserIndex {
+
+    /**
+     * 用户 IM 客户端 Map，Key 为用户 ID，Value 为 {@link IMClient} 或长度大于 1 的 {@link IMClient} 数组
+     */
+    private final ConcurrentHashMap<String, Object> userClientMap = new ConcurrentHashMap<>();
+
+    /**
+     * 为 IM 客户端绑定用户 ID，如果该 IM 客户端已绑定其它用户 ID，将被替换。如果 IM 客户端在绑定前已关闭，将不会加入索引。
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @param userId 用户 ID，不允许为 {@code null}
+     */
+    public void bind(IMClient client, String userId) {
+        String previousUserId = client.getUserId();
+        if (previousUserId != null && !previousUserId.equals(userId)) {
+            userClientMap.computeIfPresent(previousUserId, (key, value) -> removeClient(value, client));
+        }
+        client.setUserId(userId);
+        userClientMap.compute(userId, (key, value) -> addClient(value, client));
+        if (!client.isActive()) { // 绑定前已关闭，不会再收到关闭通知
+            remove(client);
+        }
+    }
+
+    /**
+     * 将 IM 客户端从其绑定的用户中移除，通常在 IM 客户端关闭后调用，如果该 IM 客户端未绑定用户 ID，将不会有任何效果。
+     *
+     * @param client IM 客户端，不允许为 {@code null}
+     * @return 是否移除成功
+     */
+    public boolean remove(IMClient client) {
+        String userId = client.getUserId();
+        if (userId == null) {
+            return false;
+        }
+        boolean[] removed = new boolean[1];
+        userClientMap.computeIfPresent(userId, (key, value) -> {
+            Object newValue = removeClient(value, client);
+            removed[0] = newValue != value;
+            return newValue;
+        });
+        return removed[0];
+    }
+
+    /**
+     * 获得用户已连接的 IM 客户端列表，如果该用户没有已连接的 IM 客户端，将会返回空列表，该方法不会返回 {@code null}。
+     *
+     * <p><strong>注意：</strong>返回的列表是只读的，不可修改。</p>
+     *
+     * @param userId 用户 ID，允许为 {@code null}
+     * @return 用户已连接的 IM 客户端列表
+     */
+    public List<IMClient> getClients(String userId) {
+        Object value = userId != null ? userClientMap.get(userId) : null;
+        if (value == null) {
+            return Collections.emptyList();
+        } else if (value instanceof IMClient) {
+            return Collections.singletonList((IMClient) value);
+        } else {
+            return Collections.unmodifiableList(Arrays.asList((IMClient[]) value));
+        }
+    }
+
+    /**
+     * 获得已连接 IM 客户端的用户数量。
+     *
+     * @return 已连接 IM 客户端的用户数量
+     */
+    public int getUserCount() {
+        return userClientMap.size();
+    }
+
+    private static Object addClient(Object value, IMClient client) {
+        if (value == null) {
+            return client;
+        } else if (value instanceof IMClient) {
+            return value == client ? value : new IMClient[]{(IMClient) value, client};
+        } else {
+            IMClient[] clients = (IMClient[]) value;
+            for (IMClient existClient : clients) {
+                if (existClient == client) {
+                    return value;
+                }
+            }
+            IMClient[] newClients = Arrays.copyOf(clients, clients.length + 1);
+            newClients[clients.length] = client;
+            return newClients;
+        }
+    }
+
+    private static Object removeClient(Object value, IMClient client) {
+        if (value instanceof IMClient) {
+            return value == client ? null : value;
+        }
+        IMClient[] clients = (IMClient[]) value;
+        for (int i = 0; i < clients.length; i++) {
+            if (clients[i] == client) {
+                if (clients.length == 2) {
+                    return clients[1 - i];
+                }
+                IMClient[] newClients = new IMClient[clients.length - 1];
+                System.arraycopy(clients, 0, newClients, 0, i);
+                System.arraycopy(clients, i + 1, newClients, i, clients.length - i - 1);
+                return newClients;
+            }
+        }
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientUserIndex{" +
+                "userCount=" + userClientMap.size() +
+                '}';
+    }
+}
@@ -0,0 +1,82 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients.support;
+
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.clients.IMClientHeartbeatMatcher;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * 固定内容的 IM 客户端心跳帧匹配器，IM 客户端发送的数据与指定的字节数组完全一致时，识别为一个心跳帧。
+ *
+ * <p><strong>说明：</strong>IMClientFixedHeartbeatMatcher 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientFixedHeartbeatMatcher implements IMClientHeartbeatMatcher {
+
+    /**
+     * 心跳帧内容
+     */
+    private final byte[] heartbeat;
+
+    /**
+     * 构造一个 IMClientFixedHeartbeatMatcher 实例。
+     *
+     * @param heartbeat 心跳帧内容，不允许为 {@code null} 或空数组
+     * @throws IllegalArgumentException 如果心跳帧内容为 {@code null} 或空数组，将会抛出此异常
+     */
+    public IMClientFixedHeartbeatMatcher(byte[] heartbeat) throws IllegalArgumentException {
+        if (heartbeat == null || heartbeat.length == 0) {
+            throw new IllegalArgumentException("Create IMClientFixedHeartbeatMatcher failed: `heartbeat could not be empty`. `heartbeat`:`"
+                    + Arrays.toString(heartbeat) + "`.");
+        }
+        this.heartbeat = heartbeat.clone();
+    }
+
+    @Override
+    public int match(IMClient client, ByteBuffer buffer) {
+        if (buffer.remaining() < heartbeat.length) {
+            return 0;
+        }
+        int position = buffer.position();
+        for (int i = 0; i < heartbeat.length; i++) {
+            if (buffer.get(position + i) != heartbeat[i]) {
+                return 0;
+            }
+        }
+        return heartbeat.length;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientFixedHeartbeatMatcher{" +
+                "heartbeat=" + Arrays.toString(heartbeat) +
+                '}';
+    }
+}
@@ -0,0 +1,136 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients.support;
+
+import com.heimuheimu.raven.clients.IMClientNumericIDGenerator;
+
+import java.security.NoSuchAlgorithmException;
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IM 客户端唯一 ID 生成器，使用 "序号 + 随机数" 的方式生成客户端唯一 ID，数字 ID 为当前生成器内自增的序号，IMServer 默认使用该生成器。
+ *
+ * <p>
+ *     字符串形式的 ID 由 16 位十六进制序号与 16 位十六进制随机数组成，长度为 32 个字符，与 {@link IMClientUUIDGenerator} 生成的 ID 格式一致。
+ *     序号保证同一生成器内的 ID 唯一，随机数由 {@link SecureRandom} 生成，得知一个 ID 后无法推算出其它 IM 客户端的 ID。
+ *     IMServer 通过 ID 查找 IM 客户端时，先解析出序号在数字 ID 注册表中查找，再比较完整的 ID，不需要额外维护字符串 ID 索引。
+ * </p>
+ *
+ * <p>
+ *     每个生成器使用独立的 {@link SecureRandom} 实例（优先使用 SHA1PRNG 算法），不会与 {@link java.util.UUID#randomUUID()} 等共享全局随机数生成器的调用竞争锁。
+ *     不同 IMServer 生成的 ID 仅在序号与随机数均相同时重复，集群环境下客户端 ID 重复的概率可以忽略。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientRandomIDGenerator 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientRandomIDGenerator implements IMClientNumericIDGenerator {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 字符串形式的 ID 长度
+     */
+    private static final int ID_LENGTH = 32;
+
+    /**
+     * 生成 ID 随机部分使用的随机数生成器
+     */
+    private final SecureRandom random;
+
+    /**
+     * 最后一次生成的序号
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 构造一个 IMClientRandomIDGenerator 实例。
+     */
+    public IMClientRandomIDGenerator() {
+        SecureRandom random;
+        try {
+            random = SecureRandom.getInstance("SHA1PRNG");
+        } catch (NoSuchAlgorithmException e) {
+            random = new SecureRandom();
+        }
+        this.random = random;
+    }
+
+    @Override
+    public long generateNumericId() {
+        return sequence.incrementAndGet();
+    }
+
+    /**
+     * 将数字 ID 转换为字符串形式的 IM 客户端唯一 ID，随机部分每次调用均重新生成，因此同一数字 ID 每次转换的结果不同。
+     *
+     * @param numericId 数字 ID
+     * @return 字符串形式的 IM 客户端唯一 ID
+     */
+    @Override
+    public String toId(long numericId) {
+        char[] id = new char[ID_LENGTH];
+        writeHex(id, 0, numericId);
+        writeHex(id, ID_LENGTH / 2, random.nextLong());
+        return new String(id);
+    }
+
+    @Override
+    public long toNumericId(String id) {
+        if (id == null || id.length() != ID_LENGTH) {
+            return 0;
+        }
+        long numericId = 0;
+        for (int i = 0; i < ID_LENGTH / 2; i++) {
+            char c = id.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return 0;
+            }
+            numericId = numericId << 4 | digit;
+        }
+        return numericId > 0 ? numericId : 0;
+    }
+
+    private static void writeHex(char[] dest, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            dest[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientRandomIDGenerator{" +
+                "sequence=" + sequence.get() +
+                '}';
+    }
+}
@@ -0,0 +1,151 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.clients.support;
+
+import com.heimuheimu.raven.clients.IMClientNumericIDGenerator;
+
+import java.security.SecureRandom;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * IM 客户端唯一 ID 生成器，使用 "节点 ID + 序号" 的方式生成客户端唯一 ID，数字 ID 为当前生成器内自增的序号。
+ *
+ * <p>
+ *     字符串形式的 ID 由 16 位十六进制节点 ID 与 16 位十六进制序号组成，长度为 32 个字符，与 {@link IMClientRandomIDGenerator}
+ *     生成的 ID 格式一致。节点 ID 默认在创建生成器时随机生成，不同生成器节点 ID 相同的概率约为 n²/2^65，保证集群环境下的客户端 ID 唯一。
+ *     相比 {@link IMClientRandomIDGenerator}，生成 ID 时不需要访问 {@link SecureRandom}，仅执行一次原子自增操作。
+ * </p>
+ *
+ * <p>
+ *     同一节点生成的 ID 是连续的，得知一个 ID 即可推算出其它 IM 客户端的 ID，因此该生成器不是默认的 ID 生成器，需通过
+ *     {@link com.heimuheimu.raven.IMServerConfiguration#setClientIDGenerator(com.heimuheimu.raven.clients.IMClientIDGenerator)} 显式开启。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientSequenceIDGenerator 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientSequenceIDGenerator implements IMClientNumericIDGenerator {
+
+    private static final char[] HEX_DIGITS = "0123456789abcdef".toCharArray();
+
+    /**
+     * 字符串形式的 ID 长度
+     */
+    private static final int ID_LENGTH = 32;
+
+    /**
+     * 节点 ID
+     */
+    private final long nodeId;
+
+    /**
+     * 节点 ID 对应的 16 位十六进制字符串，作为字符串形式 ID 的前缀
+     */
+    private final String nodePrefix;
+
+    /**
+     * 最后一次生成的序号
+     */
+    private final AtomicLong sequence = new AtomicLong();
+
+    /**
+     * 构造一个 IMClientSequenceIDGenerator 实例，节点 ID 随机生成。
+     */
+    public IMClientSequenceIDGenerator() {
+        this(new SecureRandom().nextLong());
+    }
+
+    /**
+     * 构造一个 IMClientSequenceIDGenerator 实例。
+     *
+     * @param nodeId 节点 ID，集群中的每个 IMServer 必须使用不同的节点 ID
+     */
+    public IMClientSequenceIDGenerator(long nodeId) {
+        this.nodeId = nodeId;
+        char[] prefix = new char[ID_LENGTH / 2];
+        writeHex(prefix, 0, nodeId);
+        this.nodePrefix = new String(prefix);
+    }
+
+    /**
+     * 获得节点 ID。
+     *
+     * @return 节点 ID
+     */
+    public long getNodeId() {
+        return nodeId;
+    }
+
+    @Override
+    public long generateNumericId() {
+        return sequence.incrementAndGet();
+    }
+
+    @Override
+    public String toId(long numericId) {
+        char[] id = new char[ID_LENGTH];
+        nodePrefix.getChars(0, nodePrefix.length(), id, 0);
+        writeHex(id, ID_LENGTH / 2, numericId);
+        return new String(id);
+    }
+
+    @Override
+    public long toNumericId(String id) {
+        if (id == null || id.length() != ID_LENGTH || !id.startsWith(nodePrefix)) {
+            return 0;
+        }
+        long numericId = 0;
+        for (int i = ID_LENGTH / 2; i < ID_LENGTH; i++) {
+            char c = id.charAt(i);
+            int digit;
+            if (c >= '0' && c <= '9') {
+                digit = c - '0';
+            } else if (c >= 'a' && c <= 'f') {
+                digit = c - 'a' + 10;
+            } else {
+                return 0;
+            }
+            numericId = numericId << 4 | digit;
+        }
+        return numericId > 0 ? numericId : 0;
+    }
+
+    private static void writeHex(char[] dest, int offset, long value) {
+        for (int i = offset + 15; i >= offset; i--) {
+            dest[i] = HEX_DIGITS[(int) value & 0xF];
+            value >>>= 4;
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientSequenceIDGenerator{" +
+                "nodeId=" + nodePrefix +
+                ", sequence=" + sequence.get() +
+                '}';
+    }
+}
@@ -0,0 +1,63 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster;
+
+/**
+ * IM 客户端所在节点目录，记录每个 IM 客户端连接的 raven 节点，用于将字节消息转发到 IM 客户端所在的节点。
+ *
+ * <p>
+ *     <strong>说明：</strong>IMClientDirectory 的实现类必须是线程安全的。生产环境通常使用 Redis 等共享存储实现，
+ *     {@link com.heimuheimu.raven.cluster.support.InMemoryIMClientDirectory} 仅适用于单进程内的多个节点。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public interface IMClientDirectory {
+
+    /**
+     * 在 IM 客户端连接到指定节点后调用此方法进行登记。
+     *
+     * @param clientId IM 客户端 ID，不会为 {@code null}
+     * @param nodeId 节点 ID，不会为 {@code null}
+     */
+    void register(String clientId, String nodeId);
+
+    /**
+     * 在 IM 客户端从指定节点断开后调用此方法取消登记，如果该 IM 客户端已登记到其它节点，不应移除。
+     *
+     * @param clientId IM 客户端 ID，不会为 {@code null}
+     * @param nodeId 节点 ID，不会为 {@code null}
+     */
+    void unregister(String clientId, String nodeId);
+
+    /**
+     * 获得 IM 客户端连接的节点 ID，如果该 IM 客户端未登记，将会返回 {@code null}。
+     *
+     * @param clientId IM 客户端 ID，不会为 {@code null}
+     * @return 节点 ID，可能为 {@code null}
+     */
+    String lookup(String clientId);
+}
@@ -0,0 +1,240 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster;
+
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * {@link IMClusterNode} 使用的配置信息。
+ *
+ * <p><strong>说明：</strong>IMClusterConfiguration 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClusterConfiguration {
+
+    /**
+     * 当前节点 ID，在集群中必须唯一，默认为 {@code null}，必须设置
+     */
+    private volatile String nodeId = null;
+
+    /**
+     * 当前节点接收其它节点转发消息使用的监听端口，默认为 4183
+     */
+    private volatile int port = 4183;
+
+    /**
+     * 集群中所有节点的地址 Map，Key 为节点 ID，Value 为节点地址，格式为 host:port，允许包含当前节点
+     */
+    private volatile Map<String, String> nodeAddressMap = Collections.emptyMap();
+
+    /**
+     * IM 客户端所在节点目录，默认为 {@code null}，必须设置
+     */
+    private volatile IMClientDirectory clientDirectory = null;
+
+    /**
+     * 节点连接单次写入操作允许写入的最大字节数，同一节点的多条转发消息将合并写入，默认为 64 KB
+     */
+    private volatile int maxWriteByteLength = 64 * 1024;
+
+    /**
+     * 节点连接的重连间隔，单位：毫秒，默认为 3000 毫秒
+     */
+    private volatile int reconnectInterval = 3000;
+
+    /**
+     * 建立节点连接的超时时间，单位：毫秒，默认为 3000 毫秒
+     */
+    private volatile int connectTimeout = 3000;
+
+    /**
+     * 在线状态复制周期，单位：毫秒，默认为 100 毫秒，仅在使用 {@link ReplicatedIMClientDirectory} 时有效
+     */
+    private volatile int gossipInterval = 100;
+
+    /**
+     * 获得当前节点 ID。
+     *
+     * @return 当前节点 ID
+     */
+    public String getNodeId() {
+        return nodeId;
+    }
+
+    /**
+     * 设置当前节点 ID，在集群中必须唯一。
+     *
+     * @param nodeId 当前节点 ID
+     */
+    public void setNodeId(String nodeId) {
+        this.nodeId = nodeId;
+    }
+
+    /**
+     * 获得当前节点接收其它节点转发消息使用的监听端口，默认为 4183。
+     *
+     * @return 监听端口
+     */
+    public int getPort() {
+        return port;
+    }
+
+    /**
+     * 设置当前节点接收其它节点转发消息使用的监听端口。
+     *
+     * @param port 监听端口
+     */
+    public void setPort(int port) {
+        this.port = port;
+    }
+
+    /**
+     * 获得集群中所有节点的地址 Map，Key 为节点 ID，Value 为节点地址，格式为 host:port，该方法不会返回 {@code null}。
+     *
+     * @return 集群中所有节点的地址 Map
+     */
+    public Map<String, String> getNodeAddressMap() {
+        return nodeAddressMap;
+    }
+
+    /**
+     * 设置集群中所有节点的地址 Map，Key 为节点 ID，Value 为节点地址，格式为 host:port，允许包含当前节点，当前节点将被忽略。
+     *
+     * @param nodeAddressMap 集群中所有节点的地址 Map，允许为 {@code null}
+     */
+    public void setNodeAddressMap(Map<String, String> nodeAddressMap) {
+        this.nodeAddressMap = nodeAddressMap != null ? Collections.unmodifiableMap(new HashMap<>(nodeAddressMap))
+                : Collections.<String, String>emptyMap();
+    }
+
+    /**
+     * 获得 IM 客户端所在节点目录。
+     *
+     * @return IM 客户端所在节点目录
+     */
+    public IMClientDirectory getClientDirectory() {
+        return clientDirectory;
+    }
+
+    /**
+     * 设置 IM 客户端所在节点目录，集群中的所有节点必须使用同一份目录数据，或使用 {@link ReplicatedIMClientDirectory} 在节点间复制。
+     *
+     * @param clientDirectory IM 客户端所在节点目录
+     */
+    public void setClientDirectory(IMClientDirectory clientDirectory) {
+        this.clientDirectory = clientDirectory;
+    }
+
+    /**
+     * 获得节点连接单次写入操作允许写入的最大字节数，默认为 64 KB。
+     *
+     * @return 节点连接单次写入操作允许写入的最大字节数
+     */
+    public int getMaxWriteByteLength() {
+        return maxWriteByteLength;
+    }
+
+    /**
+     * 设置节点连接单次写入操作允许写入的最大字节数，发往同一节点的多条转发消息将在该长度内合并为一次写入。
+     *
+     * @param maxWriteByteLength 节点连接单次写入操作允许写入的最大字节数
+     */
+    public void setMaxWriteByteLength(int maxWriteByteLength) {
+        this.maxWriteByteLength = maxWriteByteLength;
+    }
+
+    /**
+     * 获得节点连接的重连间隔，单位：毫秒，默认为 3000 毫秒。
+     *
+     * @return 节点连接的重连间隔
+     */
+    public int getReconnectInterval() {
+        return reconnectInterval;
+    }
+
+    /**
+     * 设置节点连接的重连间隔，单位：毫秒。
+     *
+     * @param reconnectInterval 节点连接的重连间隔
+     */
+    public void setReconnectInterval(int reconnectInterval) {
+        this.reconnectInterval = reconnectInterval;
+    }
+
+    /**
+     * 获得建立节点连接的超时时间，单位：毫秒，默认为 3000 毫秒。
+     *
+     * @return 建立节点连接的超时时间
+     */
+    public int getConnectTimeout() {
+        return connectTimeout;
+    }
+
+    /**
+     * 设置建立节点连接的超时时间，单位：毫秒。
+     *
+     * @param connectTimeout 建立节点连接的超时时间
+     */
+    public void setConnectTimeout(int connectTimeout) {
+        this.connectTimeout = connectTimeout;
+    }
+
+    /**
+     * 获得在线状态复制周期，单位：毫秒，默认为 100 毫秒。
+     *
+     * @return 在线状态复制周期
+     */
+    public int getGossipInterval() {
+        return gossipInterval;
+    }
+
+    /**
+     * 设置在线状态复制周期，单位：毫秒，仅在使用 {@link ReplicatedIMClientDirectory} 时有效。周期内的登记变化将合并为一批发送，
+     * 周期越长，批量越大，其它节点上的查找结果滞后时间也越长。
+     *
+     * @param gossipInterval 在线状态复制周期
+     */
+    public void setGossipInterval(int gossipInterval) {
+        this.gossipInterval = gossipInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClusterConfiguration{" +
+                "nodeId='" + nodeId + '\'' +
+                ", port=" + port +
+                ", nodeAddressMap=" + nodeAddressMap +
+                ", clientDirectory=" + clientDirectory +
+                ", maxWriteByteLength=" + maxWriteByteLength +
+                ", reconnectInterval=" + reconnectInterval +
+                ", connectTimeout=" + connectTimeout +
+                ", gossipInterval=" + gossipInterval +
+                '}';
+    }
+}
@@ -0,0 +1,276 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster;
+
+import com.heimuheimu.raven.clients.ByteMessage;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * 节点间帧编解码器，帧由 int 类型的帧长度（不包含自身的 4 个字节）、byte 类型的帧类型及帧内容组成，整数均为大端序。
+ *
+ * <p>消息帧（帧类型为 1）包含一条字节消息及其在目标节点上的全部接收方，帧内容格式如下：</p>
+ *
+ * <pre>
+ * long   字节消息剩余有效期，单位：毫秒，如果小于等于 0，则永不过期
+ * byte   字节消息优先级
+ * byte   是否允许分块写入，1 为允许
+ * short  槽位长度，-1 表示没有槽位，后跟槽位 UTF-8 字节
+ * short  字节消息 ID 长度，-1 表示 ID 为 {@code null}，后跟 ID UTF-8 字节
+ * int    接收方数量，后跟每个接收方的 short 长度及 IM 客户端 ID UTF-8 字节
+ * byte[] 字节消息内容，直至帧结束
+ * </pre>
+ *
+ * <p>在线状态帧（帧类型为 2）的帧内容为 {@link ReplicatedIMClientDirectory} 产生的复制数据，由其自行解析。</p>
+ *
+ * @author heimuheimu
+ */
+final class IMClusterFrameCodec {
+
+    /**
+     * 帧类型：消息帧
+     */
+    static final byte TYPE_MESSAGE = 1;
+
+    /**
+     * 帧类型：在线状态帧
+     */
+    static final byte TYPE_PRESENCE = 2;
+
+    /**
+     * 帧长度字段占用的字节数
+     */
+    static final int LENGTH_FIELD_BYTES = 4;
+
+    /**
+     * 消息帧长度允许的最小值，即所有固定长度字段的字节数之和
+     */
+    static final int MIN_MESSAGE_FRAME_LENGTH = 1 + 8 + 1 + 1 + 2 + 2 + 4;
+
+    /**
+     * 帧长度允许的最大值，超过该值的帧视为数据损坏
+     */
+    static final int MAX_FRAME_LENGTH = 64 * 1024 * 1024;
+
+    private IMClusterFrameCodec() {
+        // private constructor
+    }
+
+    /**
+     * 将字节消息及接收方编码为消息帧，返回的字节数组包含帧长度字段。
+     *
+     * @param message 字节消息，不允许为 {@code null}
+     * @param clientIds 接收方 IM 客户端 ID 列表，不允许为 {@code null} 或包含 {@code null} 元素
+     * @param currentTime 当前时间，用于计算剩余有效期
+     * @return 转发帧
+     * @throws IllegalArgumentException 如果帧长度超过 {@link #MAX_FRAME_LENGTH}，将会抛出此异常
+     */
+    static byte[] encode(ByteMessage message, Collection<String> clientIds, long currentTime) throws IllegalArgumentException {
+        byte[] slotKeyBytes = message.getSlotKey() != null ? message.getSlotKey().getBytes(StandardCharsets.UTF_8) : null;
+        byte[] idBytes = message.getId() != null ? message.getId().getBytes(StandardCharsets.UTF_8) : null;
+        List<byte[]> clientIdBytesList = new ArrayList<>(clientIds.size());
+        long frameLength = MIN_MESSAGE_FRAME_LENGTH + message.getContent().length;
+        frameLength += slotKeyBytes != null ? slotKeyBytes.length : 0;
+        frameLength += idBytes != null ? idBytes.length : 0;
+        for (String clientId : clientIds) {
+            byte[] clientIdBytes = clientId.getBytes(StandardCharsets.UTF_8);
+            clientIdBytesList.add(clientIdBytes);
+            frameLength += 2 + clientIdBytes.length;
+        }
+        if (!isShortLength(slotKeyBytes) || !isShortLength(idBytes) || !clientIdBytesList.stream().allMatch(IMClusterFrameCodec::isShortLength)) {
+            throw new IllegalArgumentException("Encode cluster frame failed: `string too long`. `message`:`" + message + "`.");
+        }
+        if (frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Encode cluster frame failed: `frame too large`. `frameLength`:`"
+                    + frameLength + "`. `message`:`" + message + "`.");
+        }
+        long ttl = 0;
+        if (message.getExpiredTime() > 0) {
+            ttl = Math.max(message.getExpiredTime() - currentTime, 1); // 已过期的消息由目标节点丢弃
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_FIELD_BYTES + (int) frameLength);
+        buffer.putInt((int) frameLength);
+        buffer.put(TYPE_MESSAGE);
+        buffer.putLong(ttl);
+        buffer.put((byte) message.getPriority());
+        buffer.put((byte) (message.isChunked() ? 1 : 0));
+        putBytes(buffer, slotKeyBytes);
+        putBytes(buffer, idBytes);
+        buffer.putInt(clientIdBytesList.size());
+        for (byte[] clientIdBytes : clientIdBytesList) {
+            putBytes(buffer, clientIdBytes);
+        }
+        buffer.put(message.getContent());
+        return buffer.array();
+    }
+
+    /**
+     * 将复制数据编码为在线状态帧，返回的字节数组包含帧长度字段。
+     *
+     * @param data 复制数据，不允许为 {@code null}
+     * @return 在线状态帧
+     * @throws IllegalArgumentException 如果帧长度超过 {@link #MAX_FRAME_LENGTH}，将会抛出此异常
+     */
+    static byte[] encodePresence(byte[] data) throws IllegalArgumentException {
+        int frameLength = 1 + data.length;
+        if (frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalArgumentException("Encode cluster frame failed: `frame too large`. `frameLength`:`"
+                    + frameLength + "`.");
+        }
+        ByteBuffer buffer = ByteBuffer.allocate(LENGTH_FIELD_BYTES + frameLength);
+        buffer.putInt(frameLength);
+        buffer.put(TYPE_PRESENCE);
+        buffer.put(data);
+        return buffer.array();
+    }
+
+    /**
+     * 校验帧长度，返回该帧长度。
+     *
+     * @param frameLength 帧长度
+     * @return 帧长度
+     * @throws IllegalStateException 如果帧长度不合法，将会抛出此异常
+     */
+    static int checkFrameLength(int frameLength) throws IllegalStateException {
+        if (frameLength < 1 || frameLength > MAX_FRAME_LENGTH) {
+            throw new IllegalStateException("Decode cluster frame failed: `invalid frame length`. `frameLength`:`"
+                    + frameLength + "`.");
+        }
+        return frameLength;
+    }
+
+    /**
+     * 解码一个完整的帧，{@code buffer} 的当前位置必须为帧长度字段，解码完成后当前位置将移动到帧结束位置。
+     *
+     * @param buffer 包含完整帧的数据，不允许为 {@code null}
+     * @return 解码后的帧
+     * @throws IllegalStateException 如果帧数据不合法，将会抛出此异常
+     */
+    static IMClusterFrame decode(ByteBuffer buffer) throws IllegalStateException {
+        int frameLength = checkFrameLength(buffer.getInt());
+        int frameEnd = buffer.position() + frameLength;
+        try {
+            byte type = buffer.get();
+            if (type == TYPE_PRESENCE) {
+                byte[] data = new byte[frameEnd - buffer.position()];
+                buffer.get(data);
+                return new IMClusterFrame(type, null, null, data);
+            } else if (type != TYPE_MESSAGE) {
+                throw new IllegalStateException("Decode cluster frame failed: `unsupported type`. `type`:`"
+                        + type + "`.");
+            }
+            long ttl = buffer.getLong();
+            int priority = buffer.get();
+            boolean chunked = buffer.get() == 1;
+            String slotKey = getString(buffer);
+            String id = getString(buffer);
+            int clientCount = buffer.getInt();
+            if (clientCount < 0 || clientCount > frameLength / 2) {
+                throw new IllegalStateException("Decode cluster frame failed: `invalid client count`. `clientCount`:`"
+                        + clientCount + "`.");
+            }
+            List<String> clientIdList = new ArrayList<>(clientCount);
+            for (int i = 0; i < clientCount; i++) {
+                clientIdList.add(getString(buffer));
+            }
+            byte[] content = new byte[frameEnd - buffer.position()];
+            buffer.get(content);
+            return new IMClusterFrame(type, clientIdList, new ByteMessage(id, content, ttl, priority, chunked, slotKey), null);
+        } catch (IllegalStateException e) {
+            throw e;
+        } catch (RuntimeException e) { // BufferUnderflowException、NegativeArraySizeException、IllegalArgumentException
+            throw new IllegalStateException("Decode cluster frame failed: `malformed frame`. `frameLength`:`"
+                    + frameLength + "`.", e);
+        }
+    }
+
+    private static boolean isShortLength(byte[] bytes) {
+        return bytes == null || bytes.length <= Short.MAX_VALUE;
+    }
+
+    private static void putBytes(ByteBuffer buffer, byte[] bytes) {
+        if (bytes != null) {
+            buffer.putShort((short) bytes.length);
+            buffer.put(bytes);
+        } else {
+            buffer.putShort((short) -1);
+        }
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort();
+        if (length < 0) {
+            return null;
+        }
+        String value;
+        if (buffer.hasArray()) {
+            value = new String(buffer.array(), buffer.arrayOffset() + buffer.position(), length, StandardCharsets.UTF_8);
+            buffer.position(buffer.position() + length);
+        } else { // Selector 线程绑定 CPU 后，接收缓存为直接内存
+            byte[] bytes = new byte[length];
+            buffer.get(bytes);
+            value = new String(bytes, StandardCharsets.UTF_8);
+        }
+        return value;
+    }
+
+    /**
+     * 解码后的帧。
+     */
+    static class IMClusterFrame {
+
+        /**
+         * 帧类型
+         */
+        final byte type;
+
+        /**
+         * 接收方 IM 客户端 ID 列表，仅消息帧不为 {@code null}
+         */
+        final List<String> clientIdList;
+
+        /**
+         * 需要转发的字节消息，仅消息帧不为 {@code null}
+         */
+        final ByteMessage message;
+
+        /**
+         * 复制数据，仅在线状态帧不为 {@code null}
+         */
+        final byte[] presenceData;
+
+        IMClusterFrame(byte type, List<String> clientIdList, ByteMessage message, byte[] presenceData) {
+            this.type = type;
+            this.clientIdList = clientIdList;
+            this.message = message;
+            this.presenceData = presenceData;
+        }
+    }
+}
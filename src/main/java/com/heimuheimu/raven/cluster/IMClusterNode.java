@@ -0,0 +1,714 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster;
+
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.clients.*;
+import com.heimuheimu.raven.constant.BeanStatusEnum;
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+import com.heimuheimu.raven.exception.RavenException;
+import com.heimuheimu.raven.util.LogBuildUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * raven 集群节点，将字节消息转发到连接在其它 raven 节点上的 IM 客户端。
+ *
+ * <p>
+ *     每个节点与集群中的其它节点各建立一条持久 TCP 连接，用于发送转发帧，连接断开后由后台线程定期重连。节点连接复用 {@link IMClient} 及
+ *     {@link IMClientManager} 的 NIO 模型：发往同一节点的转发帧进入该连接的待发送队列，按优先级调度，并在单次写入最大字节数内合并写入，
+ *     因此发往同一节点的多条消息会自动批量发送；发往同一节点的多个接收方只编码为一个转发帧。
+ * </p>
+ *
+ * <p>
+ *     IM 客户端连接建立或关闭时，将通过 {@link IMClientDirectory} 登记或取消登记其所在节点，发送方据此查找接收方所在的节点。
+ *     如果使用 {@link ReplicatedIMClientDirectory}，本节点的登记变化将按复制周期批量发送给其它节点，新建立的节点连接上先发送全量信息，
+ *     来自某节点的连接全部断开后，该节点登记的 IM 客户端将被移除。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClusterNode 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClusterNode implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(IMClusterNode.class);
+
+    private static final Logger RAVEN_IM_CLUSTER_LOG = LoggerFactory.getLogger("RAVEN_IM_CLUSTER_LOG");
+
+    /**
+     * 节点连接 ID 前缀
+     */
+    private static final String LINK_ID_PREFIX = "raven-cluster-link-";
+
+    /**
+     * 当前节点使用的配置信息
+     */
+    private final IMClusterConfiguration configuration;
+
+    /**
+     * 当前节点所在的 IMServer，用于将收到的转发帧投递给本地 IM 客户端
+     */
+    private final IMServer server;
+
+    /**
+     * 发往其它节点的连接 Map，Key 为节点 ID，Value 为对应的节点连接
+     */
+    private final ConcurrentHashMap<String, IMClient> OUTBOUND_LINK_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 其它节点连入的连接 Map，Key 为节点连接 ID，Value 为对应的节点连接
+     */
+    private final ConcurrentHashMap<String, IMClient> INBOUND_LINK_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 其它节点连入的连接对应的节点 Map，Key 为节点连接 ID，Value 为通过在线状态帧获知的来源节点 ID
+     */
+    private final ConcurrentHashMap<String, String> INBOUND_NODE_MAP = new ConcurrentHashMap<>();
+
+    /**
+     * 可在节点间复制的 IM 客户端所在节点目录，如果未使用，则为 {@code null}
+     */
+    private final ReplicatedIMClientDirectory replicatedDirectory;
+
+    /**
+     * 在线状态复制使用的私有锁，保证新建立的节点连接上全量信息先于增量变化发送
+     */
+    private final Object gossipLock = new Object();
+
+    /**
+     * 当前 IMClusterNode 实例所处状态
+     */
+    private volatile BeanStatusEnum state = BeanStatusEnum.UNINITIALIZED;
+
+    /**
+     * 节点连接管理器
+     */
+    private IMClientManager linkManager;
+
+    /**
+     * 接收其它节点连接的后台线程
+     */
+    private LinkAcceptTask linkAcceptTask;
+
+    /**
+     * 建立、重连节点连接的后台线程
+     */
+    private LinkConnectTask linkConnectTask;
+
+    /**
+     * 在线状态复制后台线程，如果未使用 {@link ReplicatedIMClientDirectory}，则为 {@code null}
+     */
+    private GossipTask gossipTask;
+
+    /**
+     * 构造一个 IMClusterNode 实例。
+     *
+     * @param configuration 当前节点使用的配置信息，不允许为 {@code null}
+     * @param server 当前节点所在的 IMServer，不允许为 {@code null}
+     */
+    public IMClusterNode(IMClusterConfiguration configuration, IMServer server) {
+        this.configuration = configuration;
+        this.server = server;
+        this.replicatedDirectory = configuration.getClientDirectory() instanceof ReplicatedIMClientDirectory ?
+                (ReplicatedIMClientDirectory) configuration.getClientDirectory() : null;
+    }
+
+    /**
+     * 启动 IMClusterNode，如果 IMClusterNode 已经启动过一次，调用该方法不会有任何效果。
+     *
+     * @throws RavenException 如果 IMClusterNode 启动失败，将会抛出此异常
+     */
+    public synchronized void init() throws RavenException {
+        if (state == BeanStatusEnum.UNINITIALIZED) {
+            long startTime = System.currentTimeMillis();
+            state = BeanStatusEnum.NORMAL;
+            LinkedHashMap<String, Object> params = buildParamsMap();
+            if (configuration.getNodeId() == null || configuration.getClientDirectory() == null) {
+                String errorMessage = "IMClusterNode fails to start: `null nodeId or clientDirectory`." + LogBuildUtil.build(params);
+                LOGGER.error(errorMessage);
+                close();
+                throw new RavenException(errorMessage);
+            }
+            try {
+                linkManager = new IMClientManager("raven-im-cluster-link-manager", new IMClientManagerConfiguration());
+                linkManager.init();
+
+                linkAcceptTask = new LinkAcceptTask();
+                linkAcceptTask.setName("raven-im-cluster-accept");
+                linkAcceptTask.setDaemon(true);
+                linkAcceptTask.start();
+
+                linkConnectTask = new LinkConnectTask();
+                linkConnectTask.setName("raven-im-cluster-connect");
+                linkConnectTask.setDaemon(true);
+                linkConnectTask.start();
+
+                if (replicatedDirectory != null) {
+                    gossipTask = new GossipTask();
+                    gossipTask.setName("raven-im-cluster-gossip");
+                    gossipTask.setDaemon(true);
+                    gossipTask.start();
+                }
+
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                RAVEN_IM_CLUSTER_LOG.info("Started IMClusterNode.{}", LogBuildUtil.build(params));
+            } catch (Exception e) {
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                String errorMessage = "IMClusterNode fails to start: `unexpected error`." + LogBuildUtil.build(params);
+                LOGGER.error(errorMessage, e);
+                close();
+                throw new RavenException(errorMessage, e);
+            }
+        }
+    }
+
+    /**
+     * 关闭 IMClusterNode，关闭全部节点连接，尚未写入的转发帧将以 {@link ByteMessageFailedReasonEnum#CLOSED} 原因通知发送失败。
+     * 如果 IMClusterNode 已经关闭，调用该方法不会有任何效果。
+     */
+    @Override
+    public synchronized void close() {
+        if (state != BeanStatusEnum.CLOSED) {
+            long startTime = System.currentTimeMillis();
+            state = BeanStatusEnum.CLOSED;
+            try {
+                if (gossipTask != null) {
+                    gossipTask.close();
+                }
+                if (linkConnectTask != null) {
+                    linkConnectTask.close();
+                }
+                if (linkAcceptTask != null) {
+                    linkAcceptTask.close();
+                }
+                for (IMClient link : OUTBOUND_LINK_MAP.values()) {
+                    link.close();
+                }
+                for (IMClient link : INBOUND_LINK_MAP.values()) {
+                    link.close();
+                }
+                if (linkManager != null) {
+                    linkManager.close();
+                }
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                RAVEN_IM_CLUSTER_LOG.info("Stopped IMClusterNode.{}", LogBuildUtil.build(params));
+            } catch (Exception e) {
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                LOGGER.error("IMClusterNode fails to stop: `unexpected error`." + LogBuildUtil.build(params), e);
+            }
+        }
+    }
+
+    /**
+     * 获得当前节点 ID。
+     *
+     * @return 当前节点 ID
+     */
+    public String getNodeId() {
+        return configuration.getNodeId();
+    }
+
+    /**
+     * 获得当前可用的发往其它节点的连接数量。
+     *
+     * @return 可用的节点连接数量
+     */
+    public int getActiveLinkCount() {
+        int count = 0;
+        for (IMClient link : OUTBOUND_LINK_MAP.values()) {
+            if (link.isActive()) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+     * 在本地 IM 客户端连接建立后调用此方法，将其登记到 IM 客户端所在节点目录。
+     *
+     * @param client 本地 IM 客户端，不允许为 {@code null}
+     */
+    public void onClientCreated(IMClient client) {
+        try {
+            configuration.getClientDirectory().register(client.getId(), configuration.getNodeId());
+        } catch (Exception e) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("client", client);
+            params.put("nodeId", configuration.getNodeId());
+            LOGGER.error(LogBuildUtil.buildMethodExecuteFailedLog("IMClientDirectory#register(String clientId, String nodeId)",
+                    "unexpected error", params), e);
+        }
+    }
+
+    /**
+     * 在本地 IM 客户端关闭后调用此方法，将其从 IM 客户端所在节点目录中移除。
+     *
+     * @param client 本地 IM 客户端，不允许为 {@code null}
+     */
+    public void onClientClosed(IMClient client) {
+        try {
+            configuration.getClientDirectory().unregister(client.getId(), configuration.getNodeId());
+        } catch (Exception e) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("client", client);
+            params.put("nodeId", configuration.getNodeId());
+            LOGGER.error(LogBuildUtil.buildMethodExecuteFailedLog("IMClientDirectory#unregister(String clientId, String nodeId)",
+                    "unexpected error", params), e);
+        }
+    }
+
+    /**
+     * 获得 IM 客户端所在的节点 ID，如果该 IM 客户端未登记或查找失败，将会返回 {@code null}。
+     *
+     * @param clientId IM 客户端 ID，不允许为 {@code null}
+     * @return 节点 ID，可能为 {@code null}
+     */
+    public String lookup(String clientId) {
+        try {
+            return configuration.getClientDirectory().lookup(clientId);
+        } catch (Exception e) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("clientId", clientId);
+            LOGGER.error(LogBuildUtil.buildMethodExecuteFailedLog("IMClientDirectory#lookup(String clientId)",
+                    "unexpected error", params), e);
+            return null;
+        }
+    }
+
+    /**
+     * 将字节消息转发给连接在指定节点上的多个 IM 客户端，全部接收方编码为一个转发帧，通过该节点的连接异步发送。
+     *
+     * <p>
+     *     如果指定了回调，转发帧写入节点连接后将通过 {@link ByteMessageCallback#onSent(IMClient, ByteMessage)} 方法通知，
+     *     未能写入时将通过 {@link ByteMessageCallback#onFailed(IMClient, ByteMessage, ByteMessageFailedReasonEnum)} 方法通知，
+     *     回调参数中的 IM 客户端为节点连接，字节消息为原始字节消息，每个转发帧仅通知一次。目标节点上的投递结果不会回传。
+     * </p>
+     *
+     * <p>
+     *     转发帧中的有效期为编码时的剩余有效期，转发帧在节点连接中等待写入的时间不计入目标节点上的有效期。
+     * </p>
+     *
+     * @param nodeId 目标节点 ID，不允许为 {@code null}
+     * @param clientIds 目标节点上的 IM 客户端 ID 集合，不允许为 {@code null}、空集合或包含 {@code null} 元素
+     * @param message 字节消息，不允许为 {@code null}
+     * @param callback 转发帧发送结果回调，允许为 {@code null}
+     * @return 是否已提交到节点连接，如果没有可用的节点连接或转发帧过大，将会返回 {@code false}
+     */
+    public boolean forward(String nodeId, Collection<String> clientIds, ByteMessage message, ByteMessageCallback callback) {
+        IMClient link = OUTBOUND_LINK_MAP.get(nodeId);
+        if (link == null || !link.isActive()) {
+            return false;
+        }
+        try {
+            long currentTime = System.currentTimeMillis();
+            long ttl = message.getExpiredTime() > 0 ? Math.max(message.getExpiredTime() - currentTime, 1) : 0;
+            ByteMessage frameMessage = new ByteMessage(message.getId(), IMClusterFrameCodec.encode(message, clientIds, currentTime),
+                    ttl, message.getPriority(), false); // 转发帧不允许分块，避免与其它转发帧交错
+            link.asyncSend(frameMessage, callback != null ? new ForwardCallback(message, callback) : null);
+            return true;
+        } catch (Exception e) { // IllegalArgumentException、IllegalStateException 已记录日志
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("nodeId", nodeId);
+            params.put("clientCount", clientIds.size());
+            params.put("message", message);
+            RAVEN_IM_CLUSTER_LOG.error("IMClusterNode fails to forward message: `" + e.getMessage() + "`." + LogBuildUtil.build(params));
+            return false;
+        }
+    }
+
+    /**
+     * 当前 IMClusterNode 是否可用。
+     *
+     * @return 当前 IMClusterNode 是否可用
+     */
+    public boolean isActive() {
+        return state == BeanStatusEnum.NORMAL;
+    }
+
+    /**
+     * 处理收到的帧：消息帧投递给本地 IM 客户端，已断开的 IM 客户端将被忽略；在线状态帧应用到 IM 客户端所在节点目录。
+     *
+     * @param link 收到该帧的节点连接，不允许为 {@code null}
+     * @param frame 解码后的帧，不允许为 {@code null}
+     * @throws IllegalArgumentException 如果在线状态帧中的复制数据不合法，将会抛出此异常
+     */
+    private void deliver(IMClient link, IMClusterFrameCodec.IMClusterFrame frame) throws IllegalArgumentException {
+        if (frame.type == IMClusterFrameCodec.TYPE_PRESENCE) {
+            if (replicatedDirectory != null) {
+                String sourceNodeId = replicatedDirectory.apply(frame.presenceData);
+                if (!sourceNodeId.equals(INBOUND_NODE_MAP.put(link.getId(), sourceNodeId))) {
+                    LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                    params.put("sourceNodeId", sourceNodeId);
+                    params.put("link", link);
+                    RAVEN_IM_CLUSTER_LOG.info("Inbound cluster link has been identified.{}", LogBuildUtil.build(params));
+                }
+            }
+            return;
+        }
+        List<IMClient> clientList = new ArrayList<>(frame.clientIdList.size());
+        for (String clientId : frame.clientIdList) {
+            IMClient client = clientId != null ? server.getEstablishedClient(clientId) : null;
+            if (client != null) {
+                clientList.add(client);
+            }
+        }
+        if (!clientList.isEmpty()) {
+            IMClient.multicast(clientList, frame.message, null);
+        }
+    }
+
+    private void onOutboundLinkClosed(IMClient link) {
+        String nodeId = link.getId().substring(LINK_ID_PREFIX.length());
+        if (OUTBOUND_LINK_MAP.remove(nodeId, link)) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("nodeId", nodeId);
+            params.put("link", link);
+            RAVEN_IM_CLUSTER_LOG.info("Outbound cluster link has been closed.{}", LogBuildUtil.build(params));
+        }
+    }
+
+    private void onInboundLinkClosed(IMClient link) {
+        if (INBOUND_LINK_MAP.remove(link.getId(), link)) {
+            String sourceNodeId = INBOUND_NODE_MAP.remove(link.getId());
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("sourceNodeId", sourceNodeId);
+            params.put("link", link);
+            RAVEN_IM_CLUSTER_LOG.info("Inbound cluster link has been closed.{}", LogBuildUtil.build(params));
+            if (sourceNodeId != null && replicatedDirectory != null && !INBOUND_NODE_MAP.containsValue(sourceNodeId)) {
+                try {
+                    replicatedDirectory.removeNode(sourceNodeId);
+                } catch (Exception e) {
+                    LOGGER.error(LogBuildUtil.buildMethodExecuteFailedLog("ReplicatedIMClientDirectory#removeNode(String nodeId)",
+                            "unexpected error", params), e);
+                }
+            }
+        }
+    }
+
+    /**
+     * 通过节点连接发送在线状态复制数据，调用此方法需先获得锁 {@link #gossipLock}。
+     *
+     * @param link 节点连接，不允许为 {@code null}
+     * @param frameList 在线状态帧列表，不允许为 {@code null}
+     */
+    private void sendPresence(IMClient link, List<byte[]> frameList) {
+        try {
+            for (byte[] frame : frameList) { // 使用高优先级且不分块，保证同一连接上的在线状态帧按顺序写入
+                link.asyncSend(new ByteMessage("raven-cluster-presence", frame, 0, ByteMessage.PRIORITY_HIGH, false));
+            }
+        } catch (Exception e) { // 节点连接已关闭，重连后将重新发送全量信息
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("link", link);
+            RAVEN_IM_CLUSTER_LOG.error("IMClusterNode fails to send presence: `" + e.getMessage() + "`." + LogBuildUtil.build(params));
+        }
+    }
+
+    private static List<byte[]> encodePresence(List<byte[]> dataList) {
+        List<byte[]> frameList = new ArrayList<>(dataList.size());
+        for (byte[] data : dataList) {
+            frameList.add(IMClusterFrameCodec.encodePresence(data));
+        }
+        return frameList;
+    }
+
+    private LinkedHashMap<String, Object> buildParamsMap() {
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("configuration", configuration);
+        params.put("state", state);
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClusterNode{" +
+                "configuration=" + configuration +
+                ", outboundLinkCount=" + OUTBOUND_LINK_MAP.size() +
+                ", inboundLinkCount=" + INBOUND_LINK_MAP.size() +
+                ", state=" + state +
+                '}';
+    }
+
+    /**
+     * 转发帧发送结果回调，将节点连接上的转发帧结果映射回原始字节消息。
+     */
+    private static class ForwardCallback implements ByteMessageCallback {
+
+        private final ByteMessage message;
+
+        private final ByteMessageCallback callback;
+
+        private ForwardCallback(ByteMessage message, ByteMessageCallback callback) {
+            this.message = message;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSent(IMClient link, ByteMessage frameMessage) {
+            callback.onSent(link, message);
+        }
+
+        @Override
+        public void onFailed(IMClient link, ByteMessage frameMessage, ByteMessageFailedReasonEnum reason) {
+            callback.onFailed(link, message, reason);
+        }
+    }
+
+    /**
+     * 节点连接转发帧解码器，每条连入的节点连接使用一个实例，仅在该连接所在的 IO 线程中执行。
+     */
+    private class FrameDecoder extends IMClientListenerSkeleton {
+
+        /**
+         * 尚未接收完整的转发帧，容量为该帧的完整长度；帧长度字段尚未接收完整时，容量为帧长度字段的字节数
+         */
+        private ByteBuffer cumulation = null;
+
+        @Override
+        public void onReceived(IMClient link, ByteBuffer buffer) {
+            while (buffer.hasRemaining()) {
+                if (cumulation == null) {
+                    if (buffer.remaining() >= IMClusterFrameCodec.LENGTH_FIELD_BYTES) {
+                        int frameLength = IMClusterFrameCodec.checkFrameLength(buffer.getInt(buffer.position()));
+                        int frameEnd = buffer.position() + IMClusterFrameCodec.LENGTH_FIELD_BYTES + frameLength;
+                        if (frameEnd <= buffer.limit()) { // 完整的转发帧直接从读缓存中解码
+                            int limit = buffer.limit();
+                            buffer.limit(frameEnd);
+                            deliver(link, IMClusterFrameCodec.decode(buffer));
+                            buffer.limit(limit);
+                            continue;
+                        }
+                        cumulation = ByteBuffer.allocate(IMClusterFrameCodec.LENGTH_FIELD_BYTES + frameLength);
+                    } else {
+                        cumulation = ByteBuffer.allocate(IMClusterFrameCodec.LENGTH_FIELD_BYTES);
+                    }
+                }
+                int length = Math.min(cumulation.remaining(), buffer.remaining());
+                int limit = buffer.limit();
+                buffer.limit(buffer.position() + length);
+                cumulation.put(buffer);
+                buffer.limit(limit);
+                if (!cumulation.hasRemaining()) {
+                    if (cumulation.capacity() == IMClusterFrameCodec.LENGTH_FIELD_BYTES) { // 帧长度字段接收完成
+                        int frameLength = IMClusterFrameCodec.checkFrameLength(cumulation.getInt(0));
+                        cumulation = ByteBuffer.allocate(IMClusterFrameCodec.LENGTH_FIELD_BYTES + frameLength);
+                        cumulation.putInt(frameLength);
+                    } else {
+                        cumulation.flip();
+                        deliver(link, IMClusterFrameCodec.decode(cumulation));
+                        cumulation = null;
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * 接收其它节点连接的后台线程。
+     */
+    private class LinkAcceptTask extends Thread {
+
+        private volatile boolean isRunning = true;
+
+        private final ServerSocketChannel serverSocketChannel;
+
+        private LinkAcceptTask() throws IOException {
+            this.serverSocketChannel = ServerSocketChannel.open();
+            this.serverSocketChannel.configureBlocking(true);
+            this.serverSocketChannel.bind(new InetSocketAddress(configuration.getPort()));
+        }
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                SocketChannel socketChannel;
+                try {
+                    socketChannel = serverSocketChannel.accept();
+                } catch (ClosedChannelException ignored) { // serverSocketChannel is closed
+                    break;
+                } catch (Exception e) {
+                    LOGGER.error("IMClusterNode fails to accept link: `unexpected error`." + LogBuildUtil.build(buildParamsMap()), e);
+                    try {
+                        Thread.sleep(500);
+                    } catch (InterruptedException ignored) {}
+                    continue;
+                }
+                LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+                try {
+                    String id = "raven-cluster-inbound-" + socketChannel.getRemoteAddress();
+                    params.put("id", id);
+                    socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                    IMClient link = new IMClient(id, socketChannel, linkManager.getSelector(), 0, new FrameDecoder(),
+                            IMClusterNode.this::onInboundLinkClosed);
+                    INBOUND_LINK_MAP.put(id, link);
+                    linkManager.register(link);
+                    RAVEN_IM_CLUSTER_LOG.info("Accepts a cluster link success.{}", LogBuildUtil.build(params));
+                } catch (Exception e) {
+                    RAVEN_IM_CLUSTER_LOG.error("IMClusterNode fails to accept link: `register failed`." + LogBuildUtil.build(params), e);
+                    IMClient link = params.containsKey("id") ? INBOUND_LINK_MAP.get(String.valueOf(params.get("id"))) : null;
+                    if (link != null) {
+                        link.close();
+                    } else {
+                        try {
+                            socketChannel.close();
+                        } catch (Exception ignored) {}
+                    }
+                }
+            }
+        }
+
+        private void close() throws IOException {
+            this.isRunning = false;
+            serverSocketChannel.close();
+        }
+    }
+
+    /**
+     * 建立、重连发往其它节点的连接的后台线程。
+     */
+    private class LinkConnectTask extends Thread {
+
+        private volatile boolean isRunning = true;
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                for (Map.Entry<String, String> entry : configuration.getNodeAddressMap().entrySet()) {
+                    String nodeId = entry.getKey();
+                    if (!isRunning) {
+                        break;
+                    }
+                    if (nodeId.equals(configuration.getNodeId())) {
+                        continue;
+                    }
+                    IMClient link = OUTBOUND_LINK_MAP.get(nodeId);
+                    if (link == null || !link.isActive()) {
+                        connect(nodeId, entry.getValue());
+                    }
+                }
+                try {
+                    Thread.sleep(Math.max(configuration.getReconnectInterval(), 100));
+                } catch (InterruptedException ignored) {}
+            }
+        }
+
+        private void connect(String nodeId, String address) {
+            LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+            params.put("nodeId", nodeId);
+            params.put("address", address);
+            SocketChannel socketChannel = null;
+            try {
+                int index = address.lastIndexOf(':');
+                InetSocketAddress socketAddress = new InetSocketAddress(address.substring(0, index),
+                        Integer.parseInt(address.substring(index + 1)));
+                socketChannel = SocketChannel.open();
+                socketChannel.socket().connect(socketAddress, configuration.getConnectTimeout());
+                socketChannel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+                IMClient link = new IMClient(LINK_ID_PREFIX + nodeId, socketChannel, linkManager.getSelector(),
+                        configuration.getMaxWriteByteLength(), null, IMClusterNode.this::onOutboundLinkClosed);
+                try {
+                    linkManager.register(link);
+                } catch (Exception e) {
+                    link.close();
+                    throw e;
+                }
+                synchronized (gossipLock) {
+                    OUTBOUND_LINK_MAP.put(nodeId, link);
+                    if (replicatedDirectory != null) {
+                        sendPresence(link, encodePresence(replicatedDirectory.snapshot()));
+                    }
+                }
+                RAVEN_IM_CLUSTER_LOG.info("Connects to cluster node success.{}", LogBuildUtil.build(params));
+            } catch (Exception e) {
+                RAVEN_IM_CLUSTER_LOG.error("IMClusterNode fails to connect node: `" + e.getMessage() + "`." + LogBuildUtil.build(params));
+                if (socketChannel != null) {
+                    try {
+                        socketChannel.close();
+                    } catch (Exception ignored) {}
+                }
+            }
+        }
+
+        private void close() {
+            this.isRunning = false;
+            this.interrupt();
+        }
+    }
+
+    /**
+     * 在线状态复制后台线程，按复制周期将本节点的登记变化批量发送给其它节点。
+     */
+    private class GossipTask extends Thread {
+
+        private volatile boolean isRunning = true;
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                try {
+                    Thread.sleep(Math.max(configuration.getGossipInterval(), 1));
+                } catch (InterruptedException ignored) {}
+                try {
+                    synchronized (gossipLock) {
+                        List<byte[]> dataList = replicatedDirectory.pollChanges();
+                        if (!dataList.isEmpty()) {
+                            List<byte[]> frameList = encodePresence(dataList);
+                            for (IMClient link : OUTBOUND_LINK_MAP.values()) {
+                                if (link.isActive()) {
+                                    sendPresence(link, frameList);
+                                }
+                            }
+                        }
+                    }
+                } catch (Exception e) {
+                    LOGGER.error("IMClusterNode fails to gossip: `unexpected error`." + LogBuildUtil.build(buildParamsMap()), e);
+                }
+            }
+        }
+
+        private void close() {
+            this.isRunning = false;
+            this.interrupt();
+        }
+    }
+}
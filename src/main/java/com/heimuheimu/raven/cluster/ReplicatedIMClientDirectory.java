@@ -0,0 +1,77 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster;
+
+import java.util.List;
+
+/**
+ * 可在节点间复制的 IM 客户端所在节点目录，每个节点仅负责登记连接在本节点上的 IM 客户端，并将登记变化复制到其它节点，
+ * 查找操作只读取本地数据，无需访问外部存储。
+ *
+ * <p>
+ *     {@link IMClusterNode} 定期调用 {@link #pollChanges()} 获取本节点的登记变化，通过节点连接发送给其它节点；在与其它节点建立连接后，
+ *     先通过 {@link #snapshot()} 发送本节点的全部登记信息。其它节点收到后调用 {@link #apply(byte[])} 更新本地数据，
+ *     同一条节点连接上的复制数据按发送顺序应用。
+ * </p>
+ *
+ * <p>
+ *     <strong>说明：</strong>ReplicatedIMClientDirectory 的实现类必须是线程安全的。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public interface ReplicatedIMClientDirectory extends IMClientDirectory {
+
+    /**
+     * 获取并清空自上次调用以来本节点的登记变化，返回的每个元素为一份复制数据，如果没有变化，将会返回空列表，该方法不会返回 {@code null}。
+     *
+     * @return 复制数据列表
+     */
+    List<byte[]> pollChanges();
+
+    /**
+     * 获得本节点全部登记信息的复制数据，其它节点应用后将替换该节点原有的全部登记信息，该方法不会返回 {@code null}。
+     *
+     * @return 复制数据列表
+     */
+    List<byte[]> snapshot();
+
+    /**
+     * 应用其它节点发送的复制数据，返回该数据来源的节点 ID。
+     *
+     * @param data 复制数据，不允许为 {@code null}
+     * @return 来源节点 ID
+     * @throws IllegalArgumentException 如果复制数据不合法，将会抛出此异常
+     */
+    String apply(byte[] data) throws IllegalArgumentException;
+
+    /**
+     * 移除登记在指定节点上的全部 IM 客户端，在与该节点的连接全部断开后调用。
+     *
+     * @param nodeId 节点 ID，不允许为 {@code null}
+     */
+    void removeNode(String nodeId);
+}
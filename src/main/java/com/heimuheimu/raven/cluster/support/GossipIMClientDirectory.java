@@ -0,0 +1,426 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster.support;
+
+import com.heimuheimu.raven.cluster.ReplicatedIMClientDirectory;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.locks.StampedLock;
+import java.util.zip.DataFormatException;
+import java.util.zip.Deflater;
+import java.util.zip.Inflater;
+
+/**
+ * 基于增量复制的 IM 客户端所在节点目录，每个节点在本地维护集群中全部 IM 客户端所在节点的查找表，查找操作为本地内存读取。
+ *
+ * <p>
+ *     本节点的登记变化在内存中按 IM 客户端合并（同一 IM 客户端在一个复制周期内仅保留最后一次变化），由 {@link com.heimuheimu.raven.cluster.IMClusterNode}
+ *     按复制周期批量取出，使用 Deflate 压缩后发送给其它节点。其它节点仅接受来源节点对其自身登记信息的修改，
+ *     因此 IM 客户端重连到其它节点时，旧节点延迟到达的移除操作不会覆盖新节点的登记信息。
+ * </p>
+ *
+ * <p>
+ *     查找表保存在堆外内存中，每个 IM 客户端占用一个 8 字节的槽位，只保存 IM 客户端 ID 的 56 位指纹及节点序号，最多支持 256 个节点，
+ *     查找时使用乐观读锁，无竞争时不产生任何锁开销。本节点登记的 IM 客户端 ID 另外保存在堆内，用于生成全量复制数据。
+ * </p>
+ *
+ * <p><strong>说明：</strong>GossipIMClientDirectory 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class GossipIMClientDirectory implements ReplicatedIMClientDirectory {
+
+    /**
+     * 复制数据类型：增量变化
+     */
+    private static final byte KIND_CHANGES = 1;
+
+    /**
+     * 复制数据类型：全量信息，应用前将移除来源节点原有的全部登记信息
+     */
+    private static final byte KIND_SNAPSHOT = 2;
+
+    /**
+     * 单份复制数据最多包含的 IM 客户端数量
+     */
+    private static final int MAX_ENTRIES_PER_DATA = 64 * 1024;
+
+    /**
+     * 当前节点 ID
+     */
+    private final String nodeId;
+
+    /**
+     * 节点 ID 数组，元素索引为查找表中使用的节点序号，仅在获得写锁 {@link #lock} 后通过复制替换
+     */
+    private volatile String[] nodeIds = new String[0];
+
+    /**
+     * 节点序号 Map，Key 为节点 ID，Value 为节点序号，访问此变量需先获得锁 {@link #lock}
+     */
+    private final Map<String, Integer> nodeIndexMap = new HashMap<>();
+
+    /**
+     * IM 客户端所在节点查找表，访问此变量需先获得锁 {@link #lock}，查找时允许使用乐观读锁
+     */
+    private final OffHeapPresenceTable table = new OffHeapPresenceTable(1024);
+
+    /**
+     * 本节点登记的 IM 客户端 ID 集合，访问此变量需先获得锁 {@link #lock}
+     */
+    private final Set<String> localClientIdSet = new HashSet<>();
+
+    /**
+     * 本节点尚未取出的登记变化，Key 为 IM 客户端 ID，Value 为 {@code true} 表示登记，{@code false} 表示取消登记，
+     * 访问此变量需先获得锁 {@link #lock}
+     */
+    private HashMap<String, Boolean> pendingChangeMap = new HashMap<>();
+
+    /**
+     * 查找表读写锁
+     */
+    private final StampedLock lock = new StampedLock();
+
+    /**
+     * 构造一个 GossipIMClientDirectory 实例。
+     *
+     * @param nodeId 当前节点 ID，必须与 {@link com.heimuheimu.raven.cluster.IMClusterConfiguration#getNodeId()} 一致，不允许为 {@code null}
+     */
+    public GossipIMClientDirectory(String nodeId) {
+        this.nodeId = nodeId;
+        getNodeIndex(nodeId);
+    }
+
+    @Override
+    public void register(String clientId, String nodeId) {
+        long stamp = lock.writeLock();
+        try {
+            table.put(OffHeapPresenceTable.fingerprint(clientId), getNodeIndex(nodeId));
+            if (this.nodeId.equals(nodeId)) {
+                localClientIdSet.add(clientId);
+                pendingChangeMap.put(clientId, Boolean.TRUE);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public void unregister(String clientId, String nodeId) {
+        long stamp = lock.writeLock();
+        try {
+            table.remove(OffHeapPresenceTable.fingerprint(clientId), getNodeIndex(nodeId));
+            if (this.nodeId.equals(nodeId) && localClientIdSet.remove(clientId)) {
+                pendingChangeMap.put(clientId, Boolean.FALSE);
+            }
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    @Override
+    public String lookup(String clientId) {
+        long fingerprint = OffHeapPresenceTable.fingerprint(clientId);
+        long stamp = lock.tryOptimisticRead();
+        if (stamp != 0) {
+            int nodeIndex = table.get(fingerprint);
+            String[] nodeIds = this.nodeIds;
+            String nodeId = nodeIndex >= 0 && nodeIndex < nodeIds.length ? nodeIds[nodeIndex] : null;
+            if (lock.validate(stamp)) {
+                return nodeId;
+            }
+        }
+        stamp = lock.readLock();
+        try {
+            int nodeIndex = table.get(fingerprint);
+            return nodeIndex >= 0 ? nodeIds[nodeIndex] : null;
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    @Override
+    public List<byte[]> pollChanges() {
+        HashMap<String, Boolean> changeMap;
+        long stamp = lock.writeLock();
+        try {
+            if (pendingChangeMap.isEmpty()) {
+                return Collections.emptyList();
+            }
+            changeMap = pendingChangeMap;
+            pendingChangeMap = new HashMap<>();
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+        List<byte[]> dataList = new ArrayList<>();
+        List<String> clientIdList = new ArrayList<>(Math.min(changeMap.size(), MAX_ENTRIES_PER_DATA));
+        List<Boolean> registeredList = new ArrayList<>(Math.min(changeMap.size(), MAX_ENTRIES_PER_DATA));
+        for (Map.Entry<String, Boolean> entry : changeMap.entrySet()) {
+            clientIdList.add(entry.getKey());
+            registeredList.add(entry.getValue());
+            if (clientIdList.size() == MAX_ENTRIES_PER_DATA) {
+                dataList.add(encode(KIND_CHANGES, clientIdList, registeredList));
+                clientIdList.clear();
+                registeredList.clear();
+            }
+        }
+        if (!clientIdList.isEmpty()) {
+            dataList.add(encode(KIND_CHANGES, clientIdList, registeredList));
+        }
+        return dataList;
+    }
+
+    @Override
+    public List<byte[]> snapshot() {
+        List<String> clientIdList;
+        long stamp = lock.readLock();
+        try {
+            clientIdList = new ArrayList<>(localClientIdSet);
+        } finally {
+            lock.unlockRead(stamp);
+        }
+        List<byte[]> dataList = new ArrayList<>();
+        int index = 0;
+        do { // 即使没有登记的 IM 客户端，也需要发送全量信息，清除其它节点上的旧数据
+            List<String> subList = clientIdList.subList(index, Math.min(index + MAX_ENTRIES_PER_DATA, clientIdList.size()));
+            dataList.add(encode(index == 0 ? KIND_SNAPSHOT : KIND_CHANGES, subList,
+                    Collections.nCopies(subList.size(), Boolean.TRUE)));
+            index += MAX_ENTRIES_PER_DATA;
+        } while (index < clientIdList.size());
+        return dataList;
+    }
+
+    @Override
+    public String apply(byte[] data) throws IllegalArgumentException {
+        ByteBuffer buffer;
+        try {
+            buffer = ByteBuffer.wrap(decompress(data));
+        } catch (Exception e) {
+            throw new IllegalArgumentException("GossipIMClientDirectory fails to apply data: `invalid data`. `length`:`"
+                    + data.length + "`.", e);
+        }
+        try {
+            byte kind = buffer.get();
+            String sourceNodeId = getString(buffer);
+            int count = buffer.getInt();
+            long stamp = lock.writeLock();
+            try {
+                int sourceNodeIndex = getNodeIndex(sourceNodeId);
+                if (kind == KIND_SNAPSHOT) {
+                    table.removeAll(sourceNodeIndex);
+                }
+                for (int i = 0; i < count; i++) {
+                    boolean registered = buffer.get() == 1;
+                    long fingerprint = OffHeapPresenceTable.fingerprint(getString(buffer));
+                    if (registered) {
+                        table.put(fingerprint, sourceNodeIndex);
+                    } else {
+                        table.remove(fingerprint, sourceNodeIndex);
+                    }
+                }
+            } finally {
+                lock.unlockWrite(stamp);
+            }
+            return sourceNodeId;
+        } catch (RuntimeException e) {
+            throw new IllegalArgumentException("GossipIMClientDirectory fails to apply data: `malformed data`. `length`:`"
+                    + data.length + "`.", e);
+        }
+    }
+
+    @Override
+    public void removeNode(String nodeId) {
+        if (this.nodeId.equals(nodeId)) {
+            return;
+        }
+        long stamp = lock.writeLock();
+        try {
+            table.removeAll(getNodeIndex(nodeId));
+        } finally {
+            lock.unlockWrite(stamp);
+        }
+    }
+
+    /**
+     * 获得已登记的 IM 客户端总数，包括其它节点上的 IM 客户端。
+     *
+     * @return 已登记的 IM 客户端总数
+     */
+    public int size() {
+        long stamp = lock.readLock();
+        try {
+            return table.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 获得本节点登记的 IM 客户端数量。
+     *
+     * @return 本节点登记的 IM 客户端数量
+     */
+    public int getLocalClientCount() {
+        long stamp = lock.readLock();
+        try {
+            return localClientIdSet.size();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 获得查找表占用的堆外内存字节数。
+     *
+     * @return 查找表占用的堆外内存字节数
+     */
+    public long getTableByteLength() {
+        long stamp = lock.readLock();
+        try {
+            return table.getByteLength();
+        } finally {
+            lock.unlockRead(stamp);
+        }
+    }
+
+    /**
+     * 获得节点序号，如果该节点首次出现，将为其分配新的序号，调用此方法需先获得写锁 {@link #lock}。
+     *
+     * @param nodeId 节点 ID
+     * @return 节点序号
+     * @throws IllegalStateException 如果节点数量超过 256 个，将会抛出此异常
+     */
+    private int getNodeIndex(String nodeId) {
+        Integer nodeIndex = nodeIndexMap.get(nodeId);
+        if (nodeIndex == null) {
+            nodeIndex = nodeIds.length;
+            if (nodeIndex > OffHeapPresenceTable.MAX_NODE_INDEX) {
+                throw new IllegalStateException("GossipIMClientDirectory fails to add node: `too many nodes`. `nodeId`:`"
+                        + nodeId + "`. `maxNodeCount`:`" + (OffHeapPresenceTable.MAX_NODE_INDEX + 1) + "`.");
+            }
+            String[] newNodeIds = Arrays.copyOf(nodeIds, nodeIndex + 1);
+            newNodeIds[nodeIndex] = nodeId;
+            nodeIds = newNodeIds;
+            nodeIndexMap.put(nodeId, nodeIndex);
+        }
+        return nodeIndex;
+    }
+
+    private byte[] encode(byte kind, List<String> clientIdList, List<Boolean> registeredList) {
+        ByteArrayOutputStream outputStream = new ByteArrayOutputStream(64 + clientIdList.size() * 40);
+        outputStream.write(kind);
+        putString(outputStream, nodeId);
+        int count = clientIdList.size();
+        outputStream.write(count >>> 24);
+        outputStream.write(count >>> 16);
+        outputStream.write(count >>> 8);
+        outputStream.write(count);
+        for (int i = 0; i < count; i++) {
+            outputStream.write(registeredList.get(i) ? 1 : 0);
+            putString(outputStream, clientIdList.get(i));
+        }
+        return compress(outputStream.toByteArray());
+    }
+
+    /**
+     * 压缩复制数据，返回的字节数组由 4 字节的原始长度及 Deflate 压缩数据组成。
+     */
+    private static byte[] compress(byte[] raw) {
+        Deflater deflater = new Deflater(Deflater.BEST_SPEED, true);
+        try {
+            deflater.setInput(raw);
+            deflater.finish();
+            ByteArrayOutputStream outputStream = new ByteArrayOutputStream(raw.length / 2 + 64);
+            outputStream.write(raw.length >>> 24);
+            outputStream.write(raw.length >>> 16);
+            outputStream.write(raw.length >>> 8);
+            outputStream.write(raw.length);
+            byte[] chunk = new byte[8192];
+            while (!deflater.finished()) {
+                int length = deflater.deflate(chunk);
+                outputStream.write(chunk, 0, length);
+            }
+            return outputStream.toByteArray();
+        } finally {
+            deflater.end();
+        }
+    }
+
+    private static byte[] decompress(byte[] data) throws DataFormatException {
+        int rawLength = ByteBuffer.wrap(data).getInt();
+        if (rawLength < 0 || rawLength > 256 * 1024 * 1024) {
+            throw new DataFormatException("invalid raw length: " + rawLength);
+        }
+        Inflater inflater = new Inflater(true);
+        try {
+            inflater.setInput(data, 4, data.length - 4);
+            byte[] raw = new byte[rawLength];
+            int offset = 0;
+            while (offset < rawLength) {
+                int length = inflater.inflate(raw, offset, rawLength - offset);
+                if (length == 0 && (inflater.finished() || inflater.needsInput() || inflater.needsDictionary())) {
+                    throw new DataFormatException("truncated data: " + offset + "/" + rawLength);
+                }
+                offset += length;
+            }
+            return raw;
+        } finally {
+            inflater.end();
+        }
+    }
+
+    private static void putString(ByteArrayOutputStream outputStream, String value) {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        outputStream.write(bytes.length >>> 8);
+        outputStream.write(bytes.length);
+        outputStream.write(bytes, 0, bytes.length);
+    }
+
+    private static String getString(ByteBuffer buffer) {
+        int length = buffer.getShort() & 0xFFFF;
+        String value = new String(buffer.array(), buffer.position(), length, StandardCharsets.UTF_8);
+        buffer.position(buffer.position() + length);
+        return value;
+    }
+
+    @Override
+    public String toString() {
+        return "GossipIMClientDirectory{" +
+                "nodeId='" + nodeId + '\'' +
+                ", table=" + table +
+                '}';
+    }
+}
@@ -0,0 +1,76 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster.support;
+
+import com.heimuheimu.raven.cluster.IMClientDirectory;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * 基于内存的 IM 客户端所在节点目录，仅适用于同一进程内运行多个 raven 节点的场景，例如测试环境。
+ *
+ * <p><strong>说明：</strong>InMemoryIMClientDirectory 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class InMemoryIMClientDirectory implements IMClientDirectory {
+
+    /**
+     * IM 客户端所在节点 Map，Key 为 IM 客户端 ID，Value 为节点 ID
+     */
+    private final ConcurrentHashMap<String, String> nodeMap = new ConcurrentHashMap<>();
+
+    @Override
+    public void register(String clientId, String nodeId) {
+        nodeMap.put(clientId, nodeId);
+    }
+
+    @Override
+    public void unregister(String clientId, String nodeId) {
+        nodeMap.remove(clientId, nodeId);
+    }
+
+    @Override
+    public String lookup(String clientId) {
+        return nodeMap.get(clientId);
+    }
+
+    /**
+     * 获得已登记的 IM 客户端数量。
+     *
+     * @return 已登记的 IM 客户端数量
+     */
+    public int size() {
+        return nodeMap.size();
+    }
+
+    @Override
+    public String toString() {
+        return "InMemoryIMClientDirectory{" +
+                "size=" + nodeMap.size() +
+                '}';
+    }
+}
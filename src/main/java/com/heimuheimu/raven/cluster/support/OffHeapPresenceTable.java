@@ -0,0 +1,287 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.cluster.support;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.LongBuffer;
+
+/**
+ * 堆外开放寻址哈希表，记录 IM 客户端 ID 指纹与节点序号的对应关系，采用线性探测，删除时回移后续元素，不使用删除标记。
+ *
+ * <p>
+ *     每个槽位为一个 8 字节对齐的 long 值：高 56 位为指纹，低 8 位为节点序号，0 表示空槽位，因此最多支持 256 个节点。
+ *     表中只保存指纹而不保存 IM 客户端 ID，按 0.75 的负载因子计算，一百万个 IM 客户端约占用 16 MB 堆外内存且不产生 GC 压力，
+ *     不同 IM 客户端 ID 指纹相同的概率约为 n²/2^57，可忽略不计。
+ * </p>
+ *
+ * <p><strong>注意：</strong>OffHeapPresenceTable 类是非线程安全的，由使用方负责同步。</p>
+ *
+ * @author heimuheimu
+ */
+class OffHeapPresenceTable {
+
+    /**
+     * 允许的最大节点序号
+     */
+    static final int MAX_NODE_INDEX = 0xFF;
+
+    /**
+     * 槽位中指纹部分的掩码
+     */
+    private static final long FINGERPRINT_MASK = ~((long) MAX_NODE_INDEX);
+
+    /**
+     * 扩容前允许的最大负载因子
+     */
+    private static final double LOAD_FACTOR = 0.75;
+
+    /**
+     * 槽位数据，容量为槽位数量乘以 8
+     */
+    private volatile LongBuffer buffer;
+
+    /**
+     * 槽位数量，必须为 2 的幂
+     */
+    private int capacity;
+
+    /**
+     * 已使用的槽位数量
+     */
+    private int size = 0;
+
+    /**
+     * 构造一个 OffHeapPresenceTable 实例。
+     *
+     * @param initialCapacity 初始槽位数量，将向上取整为 2 的幂
+     */
+    OffHeapPresenceTable(int initialCapacity) {
+        this.capacity = Integer.highestOneBit(Math.max(initialCapacity - 1, 15)) << 1;
+        this.buffer = allocate(capacity);
+    }
+
+    /**
+     * 计算 IM 客户端 ID 的指纹，仅高 56 位有效，该方法不会返回低 8 位以外全部为 0 的值。
+     *
+     * @param clientId IM 客户端 ID，不允许为 {@code null}
+     * @return 指纹
+     */
+    static long fingerprint(String clientId) {
+        int length = clientId.length();
+        long hash = length * 0x9e3779b97f4a7c15L;
+        int i = 0;
+        for (; i + 4 <= length; i += 4) { // 每次合并 4 个字符，缩短乘法依赖链
+            long word = clientId.charAt(i) | (long) clientId.charAt(i + 1) << 16
+                    | (long) clientId.charAt(i + 2) << 32 | (long) clientId.charAt(i + 3) << 48;
+            hash = Long.rotateLeft(hash ^ (word * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+        for (; i < length; i++) {
+            hash = Long.rotateLeft(hash ^ (clientId.charAt(i) * 0x87c37b91114253d5L), 31) * 0x4cf5ad432745937fL;
+        }
+        hash ^= hash >>> 33; // MurmurHash3 fmix64，使全部位充分混合
+        hash *= 0xff51afd7ed558ccdL;
+        hash ^= hash >>> 33;
+        hash *= 0xc4ceb9fe1a85ec53L;
+        hash ^= hash >>> 33;
+        hash &= FINGERPRINT_MASK;
+        return hash != 0 ? hash : MAX_NODE_INDEX + 1;
+    }
+
+    /**
+     * 获得指纹对应的节点序号，如果不存在，将会返回 -1。
+     *
+     * <p>该方法仅读取内存，在并发修改时可能返回不一致的结果，使用方可通过乐观读锁校验后重试。</p>
+     *
+     * @param fingerprint 指纹
+     * @return 节点序号
+     */
+    int get(long fingerprint) {
+        LongBuffer buffer = this.buffer;
+        int mask = buffer.capacity() - 1;
+        int slot = indexOf(fingerprint, mask);
+        for (int i = 0; i <= mask; i++) {
+            long current = buffer.get(slot);
+            if ((current & FINGERPRINT_MASK) == fingerprint) {
+                return (int) current & MAX_NODE_INDEX;
+            } else if (current == 0) {
+                return -1;
+            }
+            slot = (slot + 1) & mask;
+        }
+        return -1;
+    }
+
+    /**
+     * 设置指纹对应的节点序号，如果已存在，将会覆盖。
+     *
+     * @param fingerprint 指纹
+     * @param nodeIndex 节点序号，取值范围为 0 至 {@link #MAX_NODE_INDEX}
+     */
+    void put(long fingerprint, int nodeIndex) {
+        if (size + 1 > capacity * LOAD_FACTOR) {
+            resize(capacity << 1);
+        }
+        int mask = capacity - 1;
+        int slot = indexOf(fingerprint, mask);
+        while (true) {
+            long current = buffer.get(slot);
+            if (current == 0 || (current & FINGERPRINT_MASK) == fingerprint) {
+                buffer.put(slot, fingerprint | nodeIndex);
+                if (current == 0) {
+                    size++;
+                }
+                return;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * 移除指纹，如果 {@code nodeIndex} 大于等于 0，仅在指纹对应的节点序号与其相同时移除。
+     *
+     * @param fingerprint 指纹
+     * @param nodeIndex 期望的节点序号，小于 0 表示不校验
+     * @return 是否移除成功
+     */
+    boolean remove(long fingerprint, int nodeIndex) {
+        int mask = capacity - 1;
+        int slot = indexOf(fingerprint, mask);
+        while (true) {
+            long current = buffer.get(slot);
+            if (current == 0) {
+                return false;
+            } else if ((current & FINGERPRINT_MASK) == fingerprint) {
+                if (nodeIndex >= 0 && ((int) current & MAX_NODE_INDEX) != nodeIndex) {
+                    return false;
+                }
+                removeSlot(slot);
+                size--;
+                return true;
+            }
+            slot = (slot + 1) & mask;
+        }
+    }
+
+    /**
+     * 移除节点序号为 {@code nodeIndex} 的全部指纹，返回移除的数量。
+     *
+     * @param nodeIndex 节点序号
+     * @return 移除的数量
+     */
+    int removeAll(int nodeIndex) {
+        LongBuffer oldBuffer = buffer;
+        int oldSize = size;
+        buffer = allocate(capacity);
+        size = 0;
+        copyFrom(oldBuffer, nodeIndex);
+        return oldSize - size;
+    }
+
+    /**
+     * 获得已使用的槽位数量。
+     *
+     * @return 已使用的槽位数量
+     */
+    int size() {
+        return size;
+    }
+
+    /**
+     * 获得占用的堆外内存字节数。
+     *
+     * @return 占用的堆外内存字节数
+     */
+    long getByteLength() {
+        return (long) capacity * 8;
+    }
+
+    private static LongBuffer allocate(int capacity) {
+        return ByteBuffer.allocateDirect(capacity * 8).order(ByteOrder.nativeOrder()).asLongBuffer();
+    }
+
+    private static int indexOf(long fingerprint, int mask) {
+        return (int) (fingerprint >>> 8) & mask;
+    }
+
+    private void resize(int newCapacity) {
+        LongBuffer oldBuffer = buffer;
+        capacity = newCapacity;
+        buffer = allocate(newCapacity);
+        size = 0;
+        copyFrom(oldBuffer, -1);
+    }
+
+    /**
+     * 将旧槽位数据中的指纹复制到当前槽位数据中。
+     *
+     * @param oldBuffer 旧槽位数据
+     * @param excludedNodeIndex 不复制的节点序号，小于 0 表示全部复制
+     */
+    private void copyFrom(LongBuffer oldBuffer, int excludedNodeIndex) {
+        for (int slot = 0; slot < oldBuffer.capacity(); slot++) {
+            long current = oldBuffer.get(slot);
+            if (current != 0 && ((int) current & MAX_NODE_INDEX) != excludedNodeIndex) {
+                put(current & FINGERPRINT_MASK, (int) current & MAX_NODE_INDEX);
+            }
+        }
+    }
+
+    /**
+     * 清空指定槽位，并将后续探测链中的元素回移，保证线性探测的查找不会提前中断。
+     *
+     * @param slot 被清空的槽位
+     */
+    private void removeSlot(int slot) {
+        int mask = capacity - 1;
+        int emptySlot = slot;
+        int current = (slot + 1) & mask;
+        while (true) {
+            long value = buffer.get(current);
+            if (value == 0) {
+                break;
+            }
+            int idealSlot = indexOf(value, mask);
+            // 当理想槽位不在 (emptySlot, current] 区间内时，该元素可以回移到空槽位
+            boolean movable = emptySlot <= current ? (idealSlot <= emptySlot || idealSlot > current)
+                    : (idealSlot <= emptySlot && idealSlot > current);
+            if (movable) {
+                buffer.put(emptySlot, value);
+                emptySlot = current;
+            }
+            current = (current + 1) & mask;
+        }
+        buffer.put(emptySlot, 0);
+    }
+
+    @Override
+    public String toString() {
+        return "OffHeapPresenceTable{" +
+                "capacity=" + capacity +
+                ", size=" + size +
+                '}';
+    }
+}
@@ -0,0 +1,53 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.constant;
+
+/**
+ * 字节消息未能发送的原因枚举类。
+ *
+ * @author heimuheimu
+ */
+public enum ByteMessageFailedReasonEnum {
+
+    /**
+     * IM 客户端已关闭。
+     */
+    CLOSED,
+
+    /**
+     * 字节消息在开始写入前已过期。
+     */
+    EXPIRED,
+
+    /**
+     * 字节消息在开始写入前被相同槽位的新消息替换。
+     */
+    REPLACED,
+
+    /**
+     * IM 客户端已关闭，字节消息已转入离线消息存储，将在 IM 客户端使用相同会话令牌重新连接后发送。
+     */
+    STORED
+}
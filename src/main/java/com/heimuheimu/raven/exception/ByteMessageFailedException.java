@@ -0,0 +1,56 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.exception;
+
+import com.heimuheimu.raven.constant.ByteMessageFailedReasonEnum;
+
+/**
+ * 当字节消息未能发送到 IM 客户端时，将使用此异常完成对应的 {@link java.util.concurrent.CompletableFuture}。
+ *
+ * @author heimuheimu
+ */
+public class ByteMessageFailedException extends RavenException {
+
+    private static final long serialVersionUID = -2311468416829925162L;
+
+    /**
+     * 字节消息未能发送的原因
+     */
+    private final ByteMessageFailedReasonEnum reason;
+
+    public ByteMessageFailedException(String message, ByteMessageFailedReasonEnum reason) {
+        super(message);
+        this.reason = reason;
+    }
+
+    /**
+     * 获得字节消息未能发送的原因。
+     *
+     * @return 字节消息未能发送的原因
+     */
+    public ByteMessageFailedReasonEnum getReason() {
+        return reason;
+    }
+}
@@ -0,0 +1,246 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.facility;
+
+import com.heimuheimu.raven.util.LogBuildUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Linux 线程 CPU 亲和性工具类，通过 procfs、sysfs 及 {@code taskset} 命令实现，不依赖本地库。
+ *
+ * <p>
+ *     线程绑定通过 {@code /proc/thread-self} 获得当前线程的 TID 后执行 {@code taskset -p -c cpu tid} 完成，要求 Linux 内核版本不低于 3.17，
+ *     且系统中已安装 util-linux。在非 Linux 系统或不满足条件时，相关方法将返回失败结果，不会抛出异常。
+ * </p>
+ *
+ * <p><strong>说明：</strong>CpuAffinity 类是线程安全的，可在多个线程中使用。</p>
+ *
+ * @author heimuheimu
+ */
+public class CpuAffinity {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(CpuAffinity.class);
+
+    /**
+     * 指向当前线程 procfs 目录的符号链接，内容格式为 {@code pid/task/tid}
+     */
+    private static final Path THREAD_SELF_PATH = Paths.get("/proc/thread-self");
+
+    /**
+     * 当前线程状态文件，第 39 个字段为线程最近一次运行所在的 CPU
+     */
+    private static final File THREAD_SELF_STAT_FILE = new File("/proc/thread-self/stat");
+
+    /**
+     * CPU 信息所在目录
+     */
+    private static final File CPU_DIRECTORY = new File("/sys/devices/system/cpu");
+
+    /**
+     * 执行 taskset 命令的超时时间，单位：毫秒
+     */
+    private static final long TASKSET_TIMEOUT = 5000;
+
+    private CpuAffinity() {
+        // private constructor
+    }
+
+    /**
+     * 解析 Linux CPU 列表格式的字符串，例如 {@code "0-3,8,10-11"}，返回的 CPU 编号按出现顺序排列，该方法不会返回 {@code null}。
+     *
+     * @param cpuList CPU 列表，允许为 {@code null} 或空字符串，此时返回空数组
+     * @return CPU 编号数组
+     * @throws IllegalArgumentException 如果 CPU 列表格式不正确，将会抛出此异常
+     */
+    public static int[] parseCpuList(String cpuList) throws IllegalArgumentException {
+        if (cpuList == null || cpuList.trim().isEmpty()) {
+            return new int[0];
+        }
+        int[] cpus = new int[16];
+        int count = 0;
+        try {
+            for (String part : cpuList.split(",")) {
+                part = part.trim();
+                int separatorIndex = part.indexOf('-');
+                int from = Integer.parseInt(separatorIndex < 0 ? part : part.substring(0, separatorIndex).trim());
+                int to = separatorIndex < 0 ? from : Integer.parseInt(part.substring(separatorIndex + 1).trim());
+                if (from < 0 || to < from) {
+                    throw new IllegalArgumentException("invalid range: " + part);
+                }
+                for (int cpu = from; cpu <= to; cpu++) {
+                    if (count == cpus.length) {
+                        cpus = Arrays.copyOf(cpus, count * 2);
+                    }
+                    cpus[count++] = cpu;
+                }
+            }
+        } catch (IllegalArgumentException e) {
+            String errorMessage = "Cpu list fails to parse: `" + e.getMessage() + "`. `cpuList`:`" + cpuList + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage, e);
+        }
+        return Arrays.copyOf(cpus, count);
+    }
+
+    /**
+     * 获得当前线程的 Linux 线程 ID（TID），如果无法获取，将会返回 -1。
+     *
+     * @return 当前线程的 Linux 线程 ID
+     */
+    public static int getCurrentThreadId() {
+        try {
+            String path = Files.readSymbolicLink(THREAD_SELF_PATH).toString();
+            return Integer.parseInt(path.substring(path.lastIndexOf('/') + 1));
+        } catch (Exception e) {
+            return -1;
+        }
+    }
+
+    /**
+     * 将当前线程绑定到指定的 CPU 上，绑定成功后，当前线程只会在该 CPU 上运行，其后首次访问的内存将优先分配在该 CPU 所在的 NUMA 节点上。
+     *
+     * @param cpu CPU 编号
+     * @return 是否绑定成功
+     */
+    public static boolean bindCurrentThread(int cpu) {
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("thread", Thread.currentThread().getName());
+        params.put("cpu", cpu);
+        int tid = getCurrentThreadId();
+        if (tid < 0) {
+            LOGGER.error("Thread fails to bind to cpu: `unknown thread id`.{}", LogBuildUtil.build(params));
+            return false;
+        }
+        params.put("tid", tid);
+        try {
+            Process process = new ProcessBuilder("taskset", "-p", "-c", String.valueOf(cpu), String.valueOf(tid))
+                    .redirectErrorStream(true).start();
+            String output = read(process.getInputStream()).trim();
+            if (!process.waitFor(TASKSET_TIMEOUT, TimeUnit.MILLISECONDS)) {
+                process.destroyForcibly();
+                LOGGER.error("Thread fails to bind to cpu: `taskset timeout`.{}", LogBuildUtil.build(params));
+                return false;
+            }
+            if (process.exitValue() != 0) {
+                params.put("exitValue", process.exitValue());
+                params.put("output", output);
+                LOGGER.error("Thread fails to bind to cpu: `taskset failed`.{}", LogBuildUtil.build(params));
+                return false;
+            }
+            return true;
+        } catch (Exception e) {
+            LOGGER.error("Thread fails to bind to cpu: `unexpected error`." + LogBuildUtil.build(params), e);
+            return false;
+        }
+    }
+
+    /**
+     * 获得当前线程最近一次运行所在的 CPU，如果无法获取，将会返回 -1。
+     *
+     * @return 当前线程最近一次运行所在的 CPU
+     */
+    public static int getCurrentCpu() {
+        byte[] bytes = new byte[512];
+        int length = 0;
+        try (FileInputStream in = new FileInputStream(THREAD_SELF_STAT_FILE)) {
+            int readBytes;
+            while (length < bytes.length && (readBytes = in.read(bytes, length, bytes.length - length)) > 0) {
+                length += readBytes;
+            }
+        } catch (Exception e) {
+            return -1;
+        }
+        int index = length - 1;
+        while (index >= 0 && bytes[index] != ')') { // 线程名称中可能包含空格，从名称结束位置开始计算字段
+            index--;
+        }
+        if (index < 0) {
+            return -1;
+        }
+        int field = 2;
+        int value = -1;
+        for (index++; index < length; index++) {
+            byte b = bytes[index];
+            if (b == ' ') {
+                if (field == 39) {
+                    return value;
+                }
+                field++;
+                value = -1;
+            } else if (field == 39 && b >= '0' && b <= '9') {
+                value = (value < 0 ? 0 : value * 10) + (b - '0');
+            }
+        }
+        return field == 39 ? value : -1;
+    }
+
+    /**
+     * 获得各 CPU 所在的 NUMA 节点，数组下标为 CPU 编号，值为节点编号，无法确定所在节点的 CPU 对应的值为 0，该方法不会返回 {@code null}。
+     *
+     * @return CPU 所在的 NUMA 节点数组
+     */
+    public static int[] getNumaNodes() {
+        int[] nodes = new int[0];
+        File[] cpuDirectories = CPU_DIRECTORY.listFiles((dir, name) -> name.matches("cpu\\d+"));
+        if (cpuDirectories == null) {
+            return nodes;
+        }
+        for (File cpuDirectory : cpuDirectories) {
+            int cpu = Integer.parseInt(cpuDirectory.getName().substring(3));
+            if (cpu >= nodes.length) {
+                nodes = Arrays.copyOf(nodes, cpu + 1);
+            }
+            String[] nodeNames = cpuDirectory.list((dir, name) -> name.matches("node\\d+"));
+            if (nodeNames != null && nodeNames.length > 0) {
+                nodes[cpu] = Integer.parseInt(nodeNames[0].substring(4));
+            }
+        }
+        return nodes;
+    }
+
+    private static String read(InputStream in) throws Exception {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        byte[] buffer = new byte[256];
+        int readBytes;
+        while ((readBytes = in.read(buffer)) > 0) {
+            out.write(buffer, 0, readBytes);
+        }
+        return new String(out.toByteArray(), StandardCharsets.UTF_8);
+    }
+}
@@ -74,6 +74,21 @@ public class ByteMessageMonitor {
      */
     private volatile long maxDelayedMills = 0;
 
+    /**
+     * IMClient 因过期被丢弃的消息总数
+     */
+    private final AtomicLong expiredCount = new AtomicLong();
+
+    /**
+     * IMClient 因被相同槽位的新消息替换而未发送的消息总数
+     */
+    private final AtomicLong replacedCount = new AtomicLong();
+
+    /**
+     * IMClient 已被 IM 客户端确认的消息总数
+     */
+    private final AtomicLong acknowledgedCount = new AtomicLong();
+
     /**
      * 在 IMClient 发送一条字节消息时进行监控。
      *
@@ -87,6 +102,21 @@ public class ByteMessageMonitor {
         }
     }
 
+    /**
+     * 在 IMClient 批量发送字节消息时进行监控。
+     *
+     * @param messageCount 消息数量
+     * @param byteLength 消息字节总长度
+     * @param maxMessageByteLength 单条消息最大字节长度
+     */
+    public void onCreated(int messageCount, long byteLength, int maxMessageByteLength) {
+        MonitorUtil.safeAdd(count, messageCount);
+        MonitorUtil.safeAdd(totalByteLength, byteLength);
+        if (maxMessageByteLength > maxByteLength) {
+            maxByteLength = maxMessageByteLength;
+        }
+    }
+
     /**
      * 在 IMClient 发送一条字节消息失败时进行监控。
      */
@@ -107,6 +137,33 @@ public class ByteMessageMonitor {
         }
     }
 
+    /**
+     * 在 IMClient 丢弃已过期的字节消息时进行监控。
+     *
+     * @param count 丢弃的消息数量
+     */
+    public void onExpired(int count) {
+        MonitorUtil.safeAdd(expiredCount, count);
+    }
+
+    /**
+     * 在 IMClient 待写入的字节消息被相同槽位的新消息替换时进行监控。
+     *
+     * @param count 被替换的消息数量
+     */
+    public void onReplaced(int count) {
+        MonitorUtil.safeAdd(replacedCount, count);
+    }
+
+    /**
+     * 在 IMClient 发送的字节消息被 IM 客户端确认时进行监控。
+     *
+     * @param count 被确认的消息数量
+     */
+    public void onAcknowledged(int count) {
+        MonitorUtil.safeAdd(acknowledgedCount, count);
+    }
+
     private ByteMessageMonitor() {
         // private constructor
     }
@@ -188,6 +245,33 @@ public class ByteMessageMonitor {
         maxDelayedMills = 0;
     }
 
+    /**
+     * 获得 IMClient 因过期被丢弃的消息总数。
+     *
+     * @return IMClient 因过期被丢弃的消息总数
+     */
+    public long getExpiredCount() {
+        return expiredCount.get();
+    }
+
+    /**
+     * 获得 IMClient 因被相同槽位的新消息替换而未发送的消息总数。
+     *
+     * @return IMClient 因被相同槽位的新消息替换而未发送的消息总数
+     */
+    public long getReplacedCount() {
+        return replacedCount.get();
+    }
+
+    /**
+     * 获得 IMClient 已被 IM 客户端确认的消息总数。
+     *
+     * @return IMClient 已被 IM 客户端确认的消息总数
+     */
+    public long getAcknowledgedCount() {
+        return acknowledgedCount.get();
+    }
+
     /**
      * 获得字节消息信息监控器，该方法不会返回 {@code null}。
      *
@@ -207,6 +291,9 @@ public class ByteMessageMonitor {
                 ", sentCount=" + sentCount +
                 ", totalDelayedMills=" + totalDelayedMills +
                 ", maxDelayedMills=" + maxDelayedMills +
+                ", expiredCount=" + expiredCount +
+                ", replacedCount=" + replacedCount +
+                ", acknowledgedCount=" + acknowledgedCount +
                 '}';
     }
 }
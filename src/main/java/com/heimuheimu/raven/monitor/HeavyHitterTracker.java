@@ -0,0 +1,221 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+
+/**
+ * 有界的 Top-K 统计器，基于 Space-Saving 算法实现，用于在海量 IM 客户端中找出数值最大（或最小）的少数客户端。
+ *
+ * <p>
+ *     统计器支持两种更新方式：
+ *     <ul>
+ *         <li>{@link #add(String, long)} 累加方式，适用于流量等累计值，表满时淘汰当前最小项，新项继承其计数作为误差上限</li>
+ *         <li>{@link #update(String, long)} 覆盖方式，适用于待发送字节数等瞬时值，表满时仅当新值优于当前最差项时才会替换</li>
+ *     </ul>
+ *     统计器内部按 Key 的哈希值分为多个分段，每个分段使用独立的锁和定长数组，更新操作不会产生对象分配。
+ * </p>
+ *
+ * <p><strong>说明：</strong>HeavyHitterTracker 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class HeavyHitterTracker {
+
+    /**
+     * 分段数组，长度为 2 的幂
+     */
+    private final Segment[] segments;
+
+    /**
+     * 数值是否越小越靠前
+     */
+    private final boolean ascending;
+
+    /**
+     * 构造一个 HeavyHitterTracker 实例。
+     *
+     * @param segmentCount 分段数量，将会调整为不小于该值的 2 的幂
+     * @param segmentCapacity 每个分段最多记录的 Key 数量，不允许小于等于 0
+     * @param ascending 数值是否越小越靠前，例如最早的待发送消息创建时间
+     */
+    public HeavyHitterTracker(int segmentCount, int segmentCapacity, boolean ascending) {
+        int size = 1;
+        while (size < segmentCount) {
+            size <<= 1;
+        }
+        this.segments = new Segment[size];
+        for (int i = 0; i < size; i++) {
+            segments[i] = new Segment(segmentCapacity);
+        }
+        this.ascending = ascending;
+    }
+
+    /**
+     * 为指定 Key 累加数值。
+     *
+     * @param key Key，不允许为 {@code null}
+     * @param delta 累加值，应大于 0
+     */
+    public void add(String key, long delta) {
+        segmentFor(key).add(key, delta);
+    }
+
+    /**
+     * 使用新的数值覆盖指定 Key 的当前值。
+     *
+     * @param key Key，不允许为 {@code null}
+     * @param value 新的数值
+     */
+    public void update(String key, long value) {
+        segmentFor(key).update(key, value, ascending);
+    }
+
+    /**
+     * 移除指定 Key 的统计信息。
+     *
+     * @param key Key，不允许为 {@code null}
+     */
+    public void remove(String key) {
+        segmentFor(key).remove(key);
+    }
+
+    /**
+     * 获得排名前 {@code k} 的统计项，该方法不会返回 {@code null}。
+     *
+     * @param k 需要获取的数量
+     * @return 排名前 {@code k} 的统计项列表，按排名先后排序
+     */
+    public List<IMClientHeavyHitter> top(int k) {
+        List<IMClientHeavyHitter> hitterList = new ArrayList<>();
+        if (k <= 0) {
+            return hitterList;
+        }
+        for (Segment segment : segments) {
+            segment.copyTo(hitterList);
+        }
+        Comparator<IMClientHeavyHitter> comparator = Comparator.comparingLong(IMClientHeavyHitter::getValue);
+        hitterList.sort(ascending ? comparator : comparator.reversed());
+        return hitterList.size() > k ? new ArrayList<>(hitterList.subList(0, k)) : hitterList;
+    }
+
+    private Segment segmentFor(String key) {
+        int h = key.hashCode();
+        return segments[(h ^ (h >>> 16)) & (segments.length - 1)];
+    }
+
+    private static class Segment {
+
+        private final String[] keys;
+
+        private final long[] values;
+
+        private final long[] errors;
+
+        private int size = 0;
+
+        private Segment(int capacity) {
+            this.keys = new String[capacity];
+            this.values = new long[capacity];
+            this.errors = new long[capacity];
+        }
+
+        private synchronized void add(String key, long delta) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                values[index] += delta;
+            } else if (size < keys.length) {
+                keys[size] = key;
+                values[size] = delta;
+                errors[size] = 0;
+                size++;
+            } else {
+                int minIndex = worstIndex(false);
+                long minValue = values[minIndex];
+                keys[minIndex] = key;
+                values[minIndex] = minValue + delta;
+                errors[minIndex] = minValue;
+            }
+        }
+
+        private synchronized void update(String key, long value, boolean ascending) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                values[index] = value;
+            } else if (size < keys.length) {
+                keys[size] = key;
+                values[size] = value;
+                errors[size] = 0;
+                size++;
+            } else {
+                int worstIndex = worstIndex(ascending);
+                if (ascending ? value < values[worstIndex] : value > values[worstIndex]) {
+                    keys[worstIndex] = key;
+                    values[worstIndex] = value;
+                    errors[worstIndex] = 0;
+                }
+            }
+        }
+
+        private synchronized void remove(String key) {
+            int index = indexOf(key);
+            if (index >= 0) {
+                int last = --size;
+                keys[index] = keys[last];
+                values[index] = values[last];
+                errors[index] = errors[last];
+                keys[last] = null;
+            }
+        }
+
+        private synchronized void copyTo(List<IMClientHeavyHitter> hitterList) {
+            for (int i = 0; i < size; i++) {
+                hitterList.add(new IMClientHeavyHitter(keys[i], values[i], errors[i]));
+            }
+        }
+
+        private int indexOf(String key) {
+            for (int i = 0; i < size; i++) {
+                String current = keys[i];
+                if (current == key || current.equals(key)) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private int worstIndex(boolean ascending) {
+            int worstIndex = 0;
+            for (int i = 1; i < size; i++) {
+                if (ascending ? values[i] > values[worstIndex] : values[i] < values[worstIndex]) {
+                    worstIndex = i;
+                }
+            }
+            return worstIndex;
+        }
+    }
+}
@@ -0,0 +1,100 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.monitor;
+
+/**
+ * Top-K 统计结果中的一项，记录 IM 客户端 ID 及其对应的统计值。
+ *
+ * <p><strong>说明：</strong>IMClientHeavyHitter 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ * @see HeavyHitterTracker
+ */
+public class IMClientHeavyHitter {
+
+    /**
+     * IM 客户端 ID
+     */
+    private final String clientId;
+
+    /**
+     * 统计值
+     */
+    private final long value;
+
+    /**
+     * 统计值可能存在的最大误差，统计值减去该误差为真实值的下限
+     */
+    private final long error;
+
+    /**
+     * 构造一个 IMClientHeavyHitter 实例。
+     *
+     * @param clientId IM 客户端 ID
+     * @param value 统计值
+     * @param error 统计值可能存在的最大误差
+     */
+    public IMClientHeavyHitter(String clientId, long value, long error) {
+        this.clientId = clientId;
+        this.value = value;
+        this.error = error;
+    }
+
+    /**
+     * 获得 IM 客户端 ID。
+     *
+     * @return IM 客户端 ID
+     */
+    public String getClientId() {
+        return clientId;
+    }
+
+    /**
+     * 获得统计值。
+     *
+     * @return 统计值
+     */
+    public long getValue() {
+        return value;
+    }
+
+    /**
+     * 获得统计值可能存在的最大误差，统计值减去该误差为真实值的下限。
+     *
+     * @return 统计值可能存在的最大误差
+     */
+    public long getError() {
+        return error;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientHeavyHitter{" +
+                "clientId='" + clientId + '\'' +
+                ", value=" + value +
+                ", error=" + error +
+                '}';
+    }
+}
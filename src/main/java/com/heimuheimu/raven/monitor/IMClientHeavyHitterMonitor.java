@@ -0,0 +1,148 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.monitor;
+
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.function.Function;
+
+/**
+ * IM 客户端 Top-K 信息监控器，合并所有 IM 客户端管理器的 {@link IMClientHeavyHitterRecorder}，可低成本地获得以下排名：
+ * <ul>
+ *     <li>待发送字节数最多的 IM 客户端</li>
+ *     <li>最早的待发送消息滞留时间最长的 IM 客户端</li>
+ *     <li>自连接建立以来接收字节数最多的 IM 客户端</li>
+ * </ul>
+ *
+ * <p>
+ *     每个 IM 客户端管理器仅在自己的 Selector 线程中更新所属的记录器，查询时合并各个记录器的排名，读、写数据时不会在多个 Selector 线程之间产生锁竞争。
+ * </p>
+ *
+ * <p><strong>注意：</strong>排名结果为近似值，仅保证数值足够突出的 IM 客户端能被统计到。IM 客户端迁移至其它管理器后，接收字节数将重新统计。</p>
+ *
+ * <p><strong>说明：</strong>IMClientHeavyHitterMonitor 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientHeavyHitterMonitor {
+
+    private static final IMClientHeavyHitterMonitor INSTANCE = new IMClientHeavyHitterMonitor();
+
+    /**
+     * 当前可用的 IM 客户端管理器 Top-K 信息记录器列表
+     */
+    private final CopyOnWriteArrayList<IMClientHeavyHitterRecorder> recorderList = new CopyOnWriteArrayList<>();
+
+    private IMClientHeavyHitterMonitor() {
+        // private constructor
+    }
+
+    /**
+     * 注册一个 IM 客户端管理器使用的 Top-K 信息记录器，通常在 IM 客户端管理器启动时调用。
+     *
+     * @param recorder Top-K 信息记录器，不允许为 {@code null}
+     */
+    public void register(IMClientHeavyHitterRecorder recorder) {
+        recorderList.addIfAbsent(recorder);
+    }
+
+    /**
+     * 移除一个 IM 客户端管理器使用的 Top-K 信息记录器，通常在 IM 客户端管理器关闭时调用。
+     *
+     * @param recorder Top-K 信息记录器，不允许为 {@code null}
+     */
+    public void unregister(IMClientHeavyHitterRecorder recorder) {
+        recorderList.remove(recorder);
+    }
+
+    /**
+     * 获得待发送字节数最多的 {@code k} 个 IM 客户端，统计值为待发送的字节数，该方法不会返回 {@code null}。
+     *
+     * @param k 需要获取的数量
+     * @return 按待发送字节数从大到小排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopPendingByteClients(int k) {
+        return top(k, IMClientHeavyHitterRecorder::getPendingByteTracker, false);
+    }
+
+    /**
+     * 获得最早的待发送消息滞留时间最长的 {@code k} 个 IM 客户端，统计值为该消息的创建时间，该方法不会返回 {@code null}。
+     *
+     * @param k 需要获取的数量
+     * @return 按待发送消息创建时间从早到晚排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopOldestUnsentClients(int k) {
+        return top(k, IMClientHeavyHitterRecorder::getOldestUnsentTracker, true);
+    }
+
+    /**
+     * 获得自连接建立以来接收字节数最多的 {@code k} 个 IM 客户端，统计值为接收的字节数，该方法不会返回 {@code null}。
+     *
+     * @param k 需要获取的数量
+     * @return 按接收字节数从大到小排序的列表
+     */
+    public List<IMClientHeavyHitter> getTopReceivedByteClients(int k) {
+        return top(k, IMClientHeavyHitterRecorder::getReceivedByteTracker, false);
+    }
+
+    /**
+     * 合并所有记录器中指定统计器的排名，返回排名前 {@code k} 的统计项。
+     *
+     * @param k 需要获取的数量
+     * @param trackerGetter 从记录器中获得统计器的方法
+     * @param ascending 数值是否越小越靠前
+     * @return 排名前 {@code k} 的统计项列表，按排名先后排序
+     */
+    private List<IMClientHeavyHitter> top(int k, Function<IMClientHeavyHitterRecorder, HeavyHitterTracker> trackerGetter, boolean ascending) {
+        List<IMClientHeavyHitter> hitterList = new ArrayList<>();
+        if (k <= 0) {
+            return hitterList;
+        }
+        for (IMClientHeavyHitterRecorder recorder : recorderList) {
+            hitterList.addAll(trackerGetter.apply(recorder).top(k));
+        }
+        Comparator<IMClientHeavyHitter> comparator = Comparator.comparingLong(IMClientHeavyHitter::getValue);
+        hitterList.sort(ascending ? comparator : comparator.reversed());
+        return hitterList.size() > k ? new ArrayList<>(hitterList.subList(0, k)) : hitterList;
+    }
+
+    /**
+     * 获得 IM 客户端 Top-K 信息监控器，该方法不会返回 {@code null}。
+     *
+     * @return IM 客户端 Top-K 信息监控器
+     */
+    public static IMClientHeavyHitterMonitor getInstance() {
+        return INSTANCE;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientHeavyHitterMonitor{" +
+                "recorderList=" + recorderList +
+                '}';
+    }
+}
@@ -0,0 +1,143 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.monitor;
+
+/**
+ * 单个 IM 客户端管理器使用的 IM 客户端 Top-K 信息记录器，每个 IM 客户端管理器拥有一个独立的实例，
+ * 由 {@link IMClientHeavyHitterMonitor} 在查询时合并所有记录器的排名。
+ *
+ * <p>
+ *     记录器仅由所属 IM 客户端管理器的 Selector 线程更新，其它线程中发生的待发送数据变化将在 Selector 线程的下一轮 select 中合并更新，
+ *     不同 Selector 线程之间不会竞争同一把锁。
+ * </p>
+ *
+ * <p><strong>说明：</strong>IMClientHeavyHitterRecorder 类是线程安全的，但更新方法应只在所属 IM 客户端管理器的 Selector 线程中调用。</p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientHeavyHitterRecorder {
+
+    /**
+     * 统计器分段数量
+     */
+    private static final int SEGMENT_COUNT = 16;
+
+    /**
+     * 统计器每个分段最多记录的 IM 客户端数量
+     */
+    private static final int SEGMENT_CAPACITY = 16;
+
+    /**
+     * 待发送字节数统计器
+     */
+    private final HeavyHitterTracker pendingByteTracker = new HeavyHitterTracker(SEGMENT_COUNT, SEGMENT_CAPACITY, false);
+
+    /**
+     * 最早的待发送消息创建时间统计器
+     */
+    private final HeavyHitterTracker oldestUnsentTracker = new HeavyHitterTracker(SEGMENT_COUNT, SEGMENT_CAPACITY, true);
+
+    /**
+     * 接收字节数统计器
+     */
+    private final HeavyHitterTracker receivedByteTracker = new HeavyHitterTracker(SEGMENT_COUNT, SEGMENT_CAPACITY, false);
+
+    /**
+     * 在 IM 客户端接收到数据时进行监控。
+     *
+     * @param clientId IM 客户端 ID
+     * @param byteLength 接收到的字节数
+     */
+    public void onReceived(String clientId, int byteLength) {
+        if (byteLength > 0) {
+            receivedByteTracker.add(clientId, byteLength);
+        }
+    }
+
+    /**
+     * 在 IM 客户端待发送数据发生变化时进行监控。
+     *
+     * @param clientId IM 客户端 ID
+     * @param pendingByteLength 待发送的字节数，如果小于等于 0，则表示已无待发送数据
+     * @param oldestCreatedTime 最早的待发送消息创建时间
+     */
+    public void onPendingChanged(String clientId, long pendingByteLength, long oldestCreatedTime) {
+        if (pendingByteLength > 0) {
+            pendingByteTracker.update(clientId, pendingByteLength);
+            oldestUnsentTracker.update(clientId, oldestCreatedTime);
+        } else {
+            pendingByteTracker.remove(clientId);
+            oldestUnsentTracker.remove(clientId);
+        }
+    }
+
+    /**
+     * 在 IM 客户端关闭或迁移至其它 IM 客户端管理器后进行监控，移除该客户端的全部统计信息。
+     *
+     * @param clientId IM 客户端 ID
+     */
+    public void onClosed(String clientId) {
+        pendingByteTracker.remove(clientId);
+        oldestUnsentTracker.remove(clientId);
+        receivedByteTracker.remove(clientId);
+    }
+
+    /**
+     * 获得待发送字节数统计器。
+     *
+     * @return 待发送字节数统计器
+     */
+    HeavyHitterTracker getPendingByteTracker() {
+        return pendingByteTracker;
+    }
+
+    /**
+     * 获得最早的待发送消息创建时间统计器。
+     *
+     * @return 最早的待发送消息创建时间统计器
+     */
+    HeavyHitterTracker getOldestUnsentTracker() {
+        return oldestUnsentTracker;
+    }
+
+    /**
+     * 获得接收字节数统计器。
+     *
+     * @return 接收字节数统计器
+     */
+    HeavyHitterTracker getReceivedByteTracker() {
+        return receivedByteTracker;
+    }
+
+    @Override
+    public String toString() {
+        return "IMClientHeavyHitterRecorder{" +
+                "pendingByteTracker=" + pendingByteTracker +
+                ", oldestUnsentTracker=" + oldestUnsentTracker +
+                ", receivedByteTracker=" + receivedByteTracker +
+                '}';
+    }
+}
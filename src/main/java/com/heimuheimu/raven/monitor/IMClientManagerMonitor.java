@@ -82,6 +82,31 @@ public class IMClientManagerMonitor {
      */
     private final AtomicLong writableClientCount = new AtomicLong();
 
+    /**
+     * Socket 发送缓冲区已满导致写入不完整的次数
+     */
+    private final AtomicLong partialWriteCount = new AtomicLong();
+
+    /**
+     * 已完成写入的字节消息数量
+     */
+    private final AtomicLong writtenMessageCount = new AtomicLong();
+
+    /**
+     * 已完成写入的字节消息经历的写入轮次总和，每轮 select 中的写入记为一轮
+     */
+    private final AtomicLong writtenMessageRoundCount = new AtomicLong();
+
+    /**
+     * 在 Selector 线程中识别到的心跳帧数量
+     */
+    private final AtomicLong heartbeatCount = new AtomicLong();
+
+    /**
+     * 在 Selector 线程中回复的心跳响应帧数量
+     */
+    private final AtomicLong heartbeatResponseCount = new AtomicLong();
+
     /**
      * 可读的 IM 客户端数量 +1。
      */
@@ -96,6 +121,62 @@ public class IMClientManagerMonitor {
         MonitorUtil.safeAdd(writableClientCount, 1);
     }
 
+    /**
+     * 可读的 IM 客户端数量增加指定值，用于 Selector 线程每轮 select 合并更新。
+     *
+     * @param count 本轮 select 中可读的 IM 客户端数量
+     */
+    public void addReadableClient(int count) {
+        MonitorUtil.safeAdd(readableClientCount, count);
+    }
+
+    /**
+     * 可写的 IM 客户端数量增加指定值，用于 Selector 线程每轮 select 合并更新。
+     *
+     * @param count 本轮 select 中可写的 IM 客户端数量
+     */
+    public void addWritableClient(int count) {
+        MonitorUtil.safeAdd(writableClientCount, count);
+    }
+
+    /**
+     * Socket 发送缓冲区已满导致写入不完整的次数增加指定值，用于 Selector 线程每轮 select 合并更新。
+     *
+     * @param count 本轮 select 中写入不完整的次数
+     */
+    public void addPartialWrite(int count) {
+        MonitorUtil.safeAdd(partialWriteCount, count);
+    }
+
+    /**
+     * 识别到的心跳帧数量增加指定值，用于 Selector 线程每轮 select 合并更新。
+     *
+     * @param count 本轮 select 中识别到的心跳帧数量
+     */
+    public void addHeartbeat(int count) {
+        MonitorUtil.safeAdd(heartbeatCount, count);
+    }
+
+    /**
+     * 回复的心跳响应帧数量增加指定值，用于 Selector 线程每轮 select 合并更新。
+     *
+     * @param count 本轮 select 中回复的心跳响应帧数量
+     */
+    public void addHeartbeatResponse(int count) {
+        MonitorUtil.safeAdd(heartbeatResponseCount, count);
+    }
+
+    /**
+     * 在一批字节消息完成写入后调用此方法，记录字节消息数量及其经历的写入轮次。
+     *
+     * @param messageCount 本批完成写入的字节消息数量
+     * @param roundCount 本批数据经历的写入轮次
+     */
+    public void onMessageWritten(int messageCount, int roundCount) {
+        MonitorUtil.safeAdd(writtenMessageCount, messageCount);
+        MonitorUtil.safeAdd(writtenMessageRoundCount, (long) messageCount * roundCount);
+    }
+
     /**
      * 获得 IM 客户端管理器执行信息监控器。
      *
@@ -132,6 +213,51 @@ public class IMClientManagerMonitor {
         return writableClientCount.get();
     }
 
+    /**
+     * 获得 Socket 发送缓冲区已满导致写入不完整的次数。
+     *
+     * @return Socket 发送缓冲区已满导致写入不完整的次数
+     */
+    public long getPartialWriteCount() {
+        return partialWriteCount.get();
+    }
+
+    /**
+     * 获得已完成写入的字节消息数量。
+     *
+     * @return 已完成写入的字节消息数量
+     */
+    public long getWrittenMessageCount() {
+        return writtenMessageCount.get();
+    }
+
+    /**
+     * 获得已完成写入的字节消息经历的写入轮次总和，与 {@link #getWrittenMessageCount()} 相除可得到每条字节消息平均写入轮次。
+     *
+     * @return 已完成写入的字节消息经历的写入轮次总和
+     */
+    public long getWrittenMessageRoundCount() {
+        return writtenMessageRoundCount.get();
+    }
+
+    /**
+     * 获得在 Selector 线程中识别到的心跳帧数量。
+     *
+     * @return 识别到的心跳帧数量
+     */
+    public long getHeartbeatCount() {
+        return heartbeatCount.get();
+    }
+
+    /**
+     * 获得在 Selector 线程中回复的心跳响应帧数量，同一次读取中的多个心跳帧仅回复一次。
+     *
+     * @return 回复的心跳响应帧数量
+     */
+    public long getHeartbeatResponseCount() {
+        return heartbeatResponseCount.get();
+    }
+
     /**
      * 获得 IM 客户端管理器信息监控器，该方法不会返回 {@code null}。
      *
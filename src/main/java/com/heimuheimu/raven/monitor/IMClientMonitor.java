@@ -53,6 +53,21 @@ public class IMClientMonitor {
      */
     public static final int ERROR_CODE_TIMEOUT = -30;
 
+    /**
+     * 拒绝代码：超过全局接收速率。
+     */
+    public static final int REJECT_CODE_RATE_LIMITED = -110;
+
+    /**
+     * 拒绝代码：握手中的 IM 客户端数量已达上限。
+     */
+    public static final int REJECT_CODE_TOO_MANY_HANDSHAKES = -120;
+
+    /**
+     * 拒绝代码：超过单个来源地址接收速率。
+     */
+    public static final int REJECT_CODE_ADDRESS_LIMITED = -130;
+
     private static final IMClientMonitor INSTANCE = new IMClientMonitor();
 
     private IMClientMonitor() {
@@ -69,11 +84,26 @@ public class IMClientMonitor {
      */
     private final AtomicLong closedCount = new AtomicLong();
 
+    /**
+     * 已恢复的 IM 客户端会话数量
+     */
+    private final AtomicLong sessionResumedCount = new AtomicLong();
+
+    /**
+     * 因超过保留时间被丢弃的 IM 客户端会话数量
+     */
+    private final AtomicLong sessionExpiredCount = new AtomicLong();
+
     /**
      * IM 客户端失败次数 Map，Key 为错误代码，Value 为该错误代码对应的失败次数
      */
     private final ConcurrentHashMap<Integer, AtomicLong> errorCountMap = new ConcurrentHashMap<>();
 
+    /**
+     * 被准入控制拒绝的连接数量 Map，Key 为拒绝代码，Value 为该拒绝代码对应的拒绝次数
+     */
+    private final ConcurrentHashMap<Integer, AtomicLong> rejectedCountMap = new ConcurrentHashMap<>();
+
     /**
      * 在 IM 客户端创建后进行监控。
      */
@@ -106,6 +136,40 @@ public class IMClientMonitor {
         return closedCount.get();
     }
 
+    /**
+     * 在 IM 客户端会话恢复后进行监控。
+     */
+    public void onSessionResumed() {
+        MonitorUtil.safeAdd(sessionResumedCount, 1);
+    }
+
+    /**
+     * 获得已恢复的 IM 客户端会话数量。
+     *
+     * @return 已恢复的 IM 客户端会话数量
+     */
+    public long getSessionResumedCount() {
+        return sessionResumedCount.get();
+    }
+
+    /**
+     * 在 IM 客户端会话因超过保留时间被丢弃后进行监控。
+     *
+     * @param count 被丢弃的会话数量
+     */
+    public void onSessionExpired(int count) {
+        MonitorUtil.safeAdd(sessionExpiredCount, count);
+    }
+
+    /**
+     * 获得因超过保留时间被丢弃的 IM 客户端会话数量。
+     *
+     * @return 因超过保留时间被丢弃的 IM 客户端会话数量
+     */
+    public long getSessionExpiredCount() {
+        return sessionExpiredCount.get();
+    }
+
     /**
      * 对 IM 客户端创建或关闭过程中发生的错误进行监控，错误码对应的失败次数 +1，可通过 {@link #getErrorCount(int)} 方法进行失败次数获取。
      *
@@ -139,12 +203,47 @@ public class IMClientMonitor {
         }
     }
 
+    /**
+     * 对被准入控制拒绝的连接进行监控，拒绝代码对应的拒绝次数 +1，可通过 {@link #getRejectedCount(int)} 方法进行拒绝次数获取。
+     *
+     * @param rejectCode 拒绝代码
+     */
+    public void onRejected(int rejectCode) {
+        AtomicLong rejectedCount = rejectedCountMap.get(rejectCode);
+        if (rejectedCount == null) {
+            rejectedCount = new AtomicLong();
+            AtomicLong prevRejectedCount = rejectedCountMap.putIfAbsent(rejectCode, rejectedCount);
+            if (prevRejectedCount != null) {
+                rejectedCount = prevRejectedCount;
+            }
+        }
+        MonitorUtil.safeAdd(rejectedCount, 1);
+    }
+
+    /**
+     * 获得拒绝代码对应的连接拒绝总次数。
+     *
+     * @param rejectCode 拒绝代码
+     * @return 拒绝代码对应的连接拒绝总次数
+     */
+    public long getRejectedCount(int rejectCode) {
+        AtomicLong rejectedCount = rejectedCountMap.get(rejectCode);
+        if (rejectedCount != null) {
+            return rejectedCount.get();
+        } else {
+            return 0;
+        }
+    }
+
     @Override
     public String toString() {
         return "IMClientMonitor{" +
                 "createdCount=" + createdCount +
                 ", closedCount=" + closedCount +
+                ", sessionResumedCount=" + sessionResumedCount +
+                ", sessionExpiredCount=" + sessionExpiredCount +
                 ", errorCountMap=" + errorCountMap +
+                ", rejectedCountMap=" + rejectedCountMap +
                 '}';
     }
 
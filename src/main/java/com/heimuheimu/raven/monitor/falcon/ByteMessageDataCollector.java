@@ -43,6 +43,9 @@ import java.util.List;
  *     <li>raven_byte_message_sent_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内发送成功的消息总数</li>
  *     <li>raven_byte_message_sent_avg_delay/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内发送成功的消息平均延迟时间，单位：毫秒</li>
  *     <li>raven_byte_message_sent_max_delay/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内发送成功的消息最大延迟时间，单位：毫秒</li>
+ *     <li>raven_byte_message_expired_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因过期被丢弃的消息总数</li>
+ *     <li>raven_byte_message_replaced_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因被相同槽位的新消息替换而未发送的消息总数</li>
+ *     <li>raven_byte_message_acknowledged_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内被 IM 客户端确认的消息总数</li>
  * </ul>
  *
  * @author heimuheimu
@@ -74,6 +77,21 @@ public class ByteMessageDataCollector extends AbstractFalconDataCollector {
      */
     private volatile long lastTotalDelayedMills = 0;
 
+    /**
+     * 上一次因过期被丢弃的消息总数
+     */
+    private volatile long lastExpiredCount = 0;
+
+    /**
+     * 上一次因被相同槽位的新消息替换而未发送的消息总数
+     */
+    private volatile long lastReplacedCount = 0;
+
+    /**
+     * 上一次被 IM 客户端确认的消息总数
+     */
+    private volatile long lastAcknowledgedCount = 0;
+
     @Override
     public List<FalconData> getList() {
         ByteMessageMonitor monitor = ByteMessageMonitor.getInstance();
@@ -117,6 +135,18 @@ public class ByteMessageDataCollector extends AbstractFalconDataCollector {
 
         falconDataList.add(create("_byte_message_sent_max_delay", monitor.getMaxDelayedMills()));
         monitor.resetMaxDelayedMills();
+
+        long expiredCount = monitor.getExpiredCount();
+        falconDataList.add(create("_byte_message_expired_count", expiredCount - lastExpiredCount));
+        lastExpiredCount = expiredCount;
+
+        long replacedCount = monitor.getReplacedCount();
+        falconDataList.add(create("_byte_message_replaced_count", replacedCount - lastReplacedCount));
+        lastReplacedCount = replacedCount;
+
+        long acknowledgedCount = monitor.getAcknowledgedCount();
+        falconDataList.add(create("_byte_message_acknowledged_count", acknowledgedCount - lastAcknowledgedCount));
+        lastAcknowledgedCount = acknowledgedCount;
         return falconDataList;
     }
 
@@ -46,6 +46,11 @@ import java.util.concurrent.ConcurrentHashMap;
  *     <li>raven_client_established_error_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内 IM 客户端创建失败的次数</li>
  *     <li>raven_client_closed_error_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内 IM 客户端关闭失败的次数</li>
  *     <li>raven_client_timeout_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内发生超时错误的 IM 客户端数量</li>
+ *     <li>raven_client_session_resumed_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内恢复的 IM 客户端会话数量</li>
+ *     <li>raven_client_session_expired_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因超过保留时间被丢弃的 IM 客户端会话数量</li>
+ *     <li>raven_client_rate_limited_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因超过全局接收速率被拒绝的连接数量</li>
+ *     <li>raven_client_handshake_limited_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因握手中 IM 客户端过多被拒绝的连接数量</li>
+ *     <li>raven_client_address_limited_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因超过单个来源地址接收速率被拒绝的连接数量</li>
  * </ul>
  *
  * @author heimuheimu
@@ -62,18 +67,40 @@ public class IMClientDataCollector extends AbstractFalconDataCollector {
      */
     private volatile long lastClosedCount = 0;
 
+    /**
+     * 上一次已恢复的 IM 客户端会话数量
+     */
+    private volatile long lastSessionResumedCount = 0;
+
+    /**
+     * 上一次因超过保留时间被丢弃的 IM 客户端会话数量
+     */
+    private volatile long lastSessionExpiredCount = 0;
+
     /**
      * 上一次 IM 客户端发生错误的次数，Key 为错误代码，Value 为上一次错误次数
      */
     private final ConcurrentHashMap<Integer, Long> lastErrorCountMap = new ConcurrentHashMap<>();
 
+    /**
+     * 上一次被准入控制拒绝的连接数量，Key 为拒绝代码，Value 为上一次拒绝次数
+     */
+    private final ConcurrentHashMap<Integer, Long> lastRejectedCountMap = new ConcurrentHashMap<>();
+
     private final Map<Integer, String> errorMetricSuffixMap;
 
+    private final Map<Integer, String> rejectedMetricSuffixMap;
+
     public IMClientDataCollector() {
         errorMetricSuffixMap = new HashMap<>();
         errorMetricSuffixMap.put(IMClientMonitor.ERROR_CODE_FAILS_TO_ESTABLISH, "_client_established_error_count");
         errorMetricSuffixMap.put(IMClientMonitor.ERROR_CODE_FAILS_TO_CLOSE, "_client_closed_error_count");
         errorMetricSuffixMap.put(IMClientMonitor.ERROR_CODE_TIMEOUT, "_client_timeout_count");
+
+        rejectedMetricSuffixMap = new HashMap<>();
+        rejectedMetricSuffixMap.put(IMClientMonitor.REJECT_CODE_RATE_LIMITED, "_client_rate_limited_count");
+        rejectedMetricSuffixMap.put(IMClientMonitor.REJECT_CODE_TOO_MANY_HANDSHAKES, "_client_handshake_limited_count");
+        rejectedMetricSuffixMap.put(IMClientMonitor.REJECT_CODE_ADDRESS_LIMITED, "_client_address_limited_count");
     }
 
     @Override
@@ -96,6 +123,14 @@ public class IMClientDataCollector extends AbstractFalconDataCollector {
         falconDataList.add(create("_client_closed_count", closedCount - lastClosedCount));
         lastClosedCount = closedCount;
 
+        long sessionResumedCount = monitor.getSessionResumedCount();
+        falconDataList.add(create("_client_session_resumed_count", sessionResumedCount - lastSessionResumedCount));
+        lastSessionResumedCount = sessionResumedCount;
+
+        long sessionExpiredCount = monitor.getSessionExpiredCount();
+        falconDataList.add(create("_client_session_expired_count", sessionExpiredCount - lastSessionExpiredCount));
+        lastSessionExpiredCount = sessionExpiredCount;
+
         for (Integer errorCode : errorMetricSuffixMap.keySet()) {
             long errorCount = monitor.getErrorCount(errorCode);
             Long lastErrorCount = lastErrorCountMap.get(errorCode);
@@ -105,6 +140,16 @@ public class IMClientDataCollector extends AbstractFalconDataCollector {
             falconDataList.add(create(errorMetricSuffixMap.get(errorCode), errorCount - lastErrorCount));
             lastErrorCountMap.put(errorCode, errorCount);
         }
+
+        for (Integer rejectCode : rejectedMetricSuffixMap.keySet()) {
+            long rejectedCount = monitor.getRejectedCount(rejectCode);
+            Long lastRejectedCount = lastRejectedCountMap.get(rejectCode);
+            if (lastRejectedCount == null) {
+                lastRejectedCount = 0L;
+            }
+            falconDataList.add(create(rejectedMetricSuffixMap.get(rejectCode), rejectedCount - lastRejectedCount));
+            lastRejectedCountMap.put(rejectCode, rejectedCount);
+        }
         return falconDataList;
     }
 
@@ -48,6 +48,10 @@ import java.util.*;
  *     <li>raven_manager_max_client_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 当前单个 IM 客户端管理器已管理的 IM 客户端最大数量</li>
  *     <li>raven_manager_readable_client_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内可读的 IM 客户端数量</li>
  *     <li>raven_manager_writable_client_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内可写的 IM 客户端数量</li>
+ *     <li>raven_manager_partial_write_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内因 Socket 发送缓冲区已满导致写入不完整的次数</li>
+ *     <li>raven_manager_write_rounds_per_message/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内完成写入的字节消息平均经历的写入轮次</li>
+ *     <li>raven_manager_heartbeat_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内在 Selector 线程中识别到的心跳帧数量</li>
+ *     <li>raven_manager_heartbeat_response_count/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 30 秒内在 Selector 线程中回复的心跳响应帧数量</li>
  *     <li>raven_manager_tps/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 迭代所有可用的 IM 客户端方法在 30 秒内每秒平均执行次数</li>
  *     <li>raven_manager_peak_tps/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 迭代所有可用的 IM 客户端方法在 30 秒内每秒最大执行次数</li>
  *     <li>raven_manager_avg_exec_time/module=raven &nbsp;&nbsp;&nbsp;&nbsp; 迭代所有可用的 IM 客户端方法在 30 秒内单次操作平均执行时间</li>
@@ -136,6 +140,31 @@ public class IMClientManagerDataCollector extends AbstractFalconDataCollector {
      */
     private volatile long lastWritableClientCount = 0;
 
+    /**
+     * 上一次写入不完整的次数
+     */
+    private volatile long lastPartialWriteCount = 0;
+
+    /**
+     * 上一次已完成写入的字节消息数量
+     */
+    private volatile long lastWrittenMessageCount = 0;
+
+    /**
+     * 上一次已完成写入的字节消息经历的写入轮次总和
+     */
+    private volatile long lastWrittenMessageRoundCount = 0;
+
+    /**
+     * 上一次识别到的心跳帧数量
+     */
+    private volatile long lastHeartbeatCount = 0;
+
+    /**
+     * 上一次回复的心跳响应帧数量
+     */
+    private volatile long lastHeartbeatResponseCount = 0;
+
     @Override
     public List<FalconData> getList() {
         List<FalconData> falconDataList = new ArrayList<>();
@@ -177,6 +206,29 @@ public class IMClientManagerDataCollector extends AbstractFalconDataCollector {
         falconDataList.add(create("_writable_client_count", writableClientCount - lastWritableClientCount));
         lastWritableClientCount = writableClientCount;
 
+        long partialWriteCount = monitor.getPartialWriteCount();
+        falconDataList.add(create("_partial_write_count", partialWriteCount - lastPartialWriteCount));
+        lastPartialWriteCount = partialWriteCount;
+
+        long writtenMessageCount = monitor.getWrittenMessageCount();
+        long writtenMessageRoundCount = monitor.getWrittenMessageRoundCount();
+        long periodWrittenMessageCount = writtenMessageCount - lastWrittenMessageCount;
+        double writeRoundsPerMessage = 0;
+        if (periodWrittenMessageCount > 0) {
+            writeRoundsPerMessage = (double) (writtenMessageRoundCount - lastWrittenMessageRoundCount) / periodWrittenMessageCount;
+        }
+        falconDataList.add(create("_write_rounds_per_message", writeRoundsPerMessage));
+        lastWrittenMessageCount = writtenMessageCount;
+        lastWrittenMessageRoundCount = writtenMessageRoundCount;
+
+        long heartbeatCount = monitor.getHeartbeatCount();
+        falconDataList.add(create("_heartbeat_count", heartbeatCount - lastHeartbeatCount));
+        lastHeartbeatCount = heartbeatCount;
+
+        long heartbeatResponseCount = monitor.getHeartbeatResponseCount();
+        falconDataList.add(create("_heartbeat_response_count", heartbeatResponseCount - lastHeartbeatResponseCount));
+        lastHeartbeatResponseCount = heartbeatResponseCount;
+
         falconDataList.addAll(executionDataCollector.getList());
         falconDataList.addAll(socketDataCollector.getList());
         return falconDataList;
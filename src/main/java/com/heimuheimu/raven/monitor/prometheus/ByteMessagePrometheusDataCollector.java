@@ -43,6 +43,9 @@ import java.util.List;
  *     <li>raven_byte_message_sent_count 相邻两次采集周期内发送成功的消息总数</li>
  *     <li>raven_byte_message_sent_avg_delay_milliseconds 相邻两次采集周期内发送成功的消息平均延迟时间，单位：毫秒</li>
  *     <li>raven_byte_message_sent_max_delay_milliseconds 相邻两次采集周期内发送成功的消息最大延迟时间，单位：毫秒</li>
+ *     <li>raven_byte_message_expired_count 相邻两次采集周期内因过期被丢弃的消息总数</li>
+ *     <li>raven_byte_message_replaced_count 相邻两次采集周期内因被相同槽位的新消息替换而未发送的消息总数</li>
+ *     <li>raven_byte_message_acknowledged_count 相邻两次采集周期内被 IM 客户端确认的消息总数</li>
  * </ul>
  *
  * @author heimuheimu
@@ -83,6 +86,15 @@ public class ByteMessagePrometheusDataCollector implements PrometheusCollector {
         dataList.add(PrometheusData.buildGauge("raven_byte_message_sent_max_delay_milliseconds", "")
                 .addSample(PrometheusSample.build(monitor.getMaxDelayedMills())));
         monitor.resetMaxDelayedMills();
+        // add raven_byte_message_expired_count
+        dataList.add(PrometheusData.buildGauge("raven_byte_message_expired_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("ExpiredCount", monitor.getExpiredCount()))));
+        // add raven_byte_message_replaced_count
+        dataList.add(PrometheusData.buildGauge("raven_byte_message_replaced_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("ReplacedCount", monitor.getReplacedCount()))));
+        // add raven_byte_message_acknowledged_count
+        dataList.add(PrometheusData.buildGauge("raven_byte_message_acknowledged_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("AcknowledgedCount", monitor.getAcknowledgedCount()))));
         return dataList;
     }
 }
@@ -0,0 +1,87 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2020 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.monitor.prometheus;
+
+import com.heimuheimu.naivemonitor.prometheus.PrometheusCollector;
+import com.heimuheimu.naivemonitor.prometheus.PrometheusData;
+import com.heimuheimu.naivemonitor.prometheus.PrometheusSample;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitter;
+import com.heimuheimu.raven.monitor.IMClientHeavyHitterMonitor;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * IM 客户端 Top-K 监控信息采集器，每项数据最多返回 {@link #TOP_SIZE} 个样本，通过 rank 标签区分排名（从 1 开始），
+ * 不会将 IM 客户端 ID 作为标签，保证监控数据的基数有界，采集时会返回以下数据：
+ * <ul>
+ *     <li>raven_client_top_pending_bytes{rank="1"} 采集时刻待发送字节数排名对应的字节数</li>
+ *     <li>raven_client_top_unsent_delay_milliseconds{rank="1"} 采集时刻最早的待发送消息滞留时间排名对应的滞留时间，单位：毫秒</li>
+ *     <li>raven_client_top_received_bytes{rank="1"} 采集时刻自连接建立以来接收字节数排名对应的字节数</li>
+ * </ul>
+ *
+ * @author heimuheimu
+ */
+public class IMClientHeavyHitterPrometheusDataCollector implements PrometheusCollector {
+
+    /**
+     * 每项数据返回的最大样本数量
+     */
+    public static final int TOP_SIZE = 5;
+
+    @Override
+    public List<PrometheusData> getList() {
+        IMClientHeavyHitterMonitor monitor = IMClientHeavyHitterMonitor.getInstance();
+        List<PrometheusData> dataList = new ArrayList<>();
+        // add raven_client_top_pending_bytes
+        PrometheusData pendingBytesData = PrometheusData.buildGauge("raven_client_top_pending_bytes", "");
+        List<IMClientHeavyHitter> pendingList = monitor.getTopPendingByteClients(TOP_SIZE);
+        for (int i = 0; i < pendingList.size(); i++) {
+            pendingBytesData.addSample(buildSample(pendingList.get(i).getValue(), i));
+        }
+        dataList.add(pendingBytesData);
+        // add raven_client_top_unsent_delay_milliseconds
+        PrometheusData unsentDelayData = PrometheusData.buildGauge("raven_client_top_unsent_delay_milliseconds", "");
+        List<IMClientHeavyHitter> oldestUnsentList = monitor.getTopOldestUnsentClients(TOP_SIZE);
+        long currentTime = System.currentTimeMillis();
+        for (int i = 0; i < oldestUnsentList.size(); i++) {
+            long delay = Math.max(currentTime - oldestUnsentList.get(i).getValue(), 0);
+            unsentDelayData.addSample(buildSample(delay, i));
+        }
+        dataList.add(unsentDelayData);
+        // add raven_client_top_received_bytes
+        PrometheusData receivedBytesData = PrometheusData.buildGauge("raven_client_top_received_bytes", "");
+        List<IMClientHeavyHitter> receivedList = monitor.getTopReceivedByteClients(TOP_SIZE);
+        for (int i = 0; i < receivedList.size(); i++) {
+            receivedBytesData.addSample(buildSample(receivedList.get(i).getValue(), i));
+        }
+        dataList.add(receivedBytesData);
+        return dataList;
+    }
+
+    private PrometheusSample buildSample(long value, int index) {
+        return PrometheusSample.build(value).addSampleLabel("rank", String.valueOf(index + 1));
+    }
+}
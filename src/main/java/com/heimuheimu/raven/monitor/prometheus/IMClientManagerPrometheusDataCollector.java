@@ -45,6 +45,10 @@ import java.util.List;
  *     <li>raven_manager_max_client_count 采集时刻单个 IM 客户端管理器已管理的 IM 客户端最大数量</li>
  *     <li>raven_manager_readable_client_count 相邻两次采集周期内可读的 IM 客户端数量，如果相同的客户端在多次迭代中都处于可读状态，会进行累加</li>
  *     <li>raven_manager_writable_client_count 相邻两次采集周期内可写的 IM 客户端数量，如果相同的客户端在多次迭代中都处于可写状态，会进行累加</li>
+ *     <li>raven_manager_partial_write_count 相邻两次采集周期内因 Socket 发送缓冲区已满导致写入不完整的次数</li>
+ *     <li>raven_manager_write_rounds_per_message 相邻两次采集周期内完成写入的字节消息平均经历的写入轮次</li>
+ *     <li>raven_manager_heartbeat_count 相邻两次采集周期内在 Selector 线程中识别到的心跳帧数量</li>
+ *     <li>raven_manager_heartbeat_response_count 相邻两次采集周期内在 Selector 线程中回复的心跳响应帧数量</li>
  * </ul>
  *
  * @author heimuheimu
@@ -100,6 +104,20 @@ public class IMClientManagerPrometheusDataCollector implements PrometheusCollect
         // add raven_manager_writable_client_count
         dataList.add(PrometheusData.buildGauge("raven_manager_writable_client_count", "")
                 .addSample(PrometheusSample.build(deltaCalculator.delta("WritableClientCount", monitor.getWritableClientCount()))));
+        // add raven_manager_partial_write_count
+        dataList.add(PrometheusData.buildGauge("raven_manager_partial_write_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("PartialWriteCount", monitor.getPartialWriteCount()))));
+        // add raven_manager_write_rounds_per_message
+        double writtenMessageCount = deltaCalculator.delta("WrittenMessageCount", monitor.getWrittenMessageCount());
+        double writeRoundsPerMessage = writtenMessageCount > 0 ? deltaCalculator.delta("WrittenMessageRoundCount", monitor.getWrittenMessageRoundCount()) / writtenMessageCount : 0;
+        dataList.add(PrometheusData.buildGauge("raven_manager_write_rounds_per_message", "")
+                .addSample(PrometheusSample.build(writeRoundsPerMessage)));
+        // add raven_manager_heartbeat_count
+        dataList.add(PrometheusData.buildGauge("raven_manager_heartbeat_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("HeartbeatCount", monitor.getHeartbeatCount()))));
+        // add raven_manager_heartbeat_response_count
+        dataList.add(PrometheusData.buildGauge("raven_manager_heartbeat_response_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("HeartbeatResponseCount", monitor.getHeartbeatResponseCount()))));
         return dataList;
     }
 }
@@ -44,6 +44,9 @@ import java.util.List;
  *     <li>raven_client_established_error_count 相邻两次采集周期内 IM 客户端创建失败的次数</li>
  *     <li>raven_client_closed_error_count 相邻两次采集周期内 IM 客户端关闭失败的次数</li>
  *     <li>raven_client_timeout_count 相邻两次采集周期内发生超时错误的 IM 客户端数量</li>
+ *     <li>raven_client_session_resumed_count 相邻两次采集周期内恢复的 IM 客户端会话数量</li>
+ *     <li>raven_client_session_expired_count 相邻两次采集周期内因超过保留时间被丢弃的 IM 客户端会话数量</li>
+ *     <li>raven_client_rejected_count{reason="$reason"} 相邻两次采集周期内被准入控制拒绝的连接数量，reason 为 rate、handshake 或 address</li>
  * </ul>
  *
  * @author heimuheimu
@@ -82,6 +85,20 @@ public class IMClientPrometheusDataCollector implements PrometheusCollector {
         // add raven_client_timeout_count
         dataList.add(PrometheusData.buildGauge("raven_client_timeout_count", "")
                 .addSample(PrometheusSample.build(deltaCalculator.delta("TimeoutCount", monitor.getErrorCount(IMClientMonitor.ERROR_CODE_TIMEOUT)))));
+        // add raven_client_session_resumed_count
+        dataList.add(PrometheusData.buildGauge("raven_client_session_resumed_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("SessionResumedCount", monitor.getSessionResumedCount()))));
+        // add raven_client_session_expired_count
+        dataList.add(PrometheusData.buildGauge("raven_client_session_expired_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("SessionExpiredCount", monitor.getSessionExpiredCount()))));
+        // add raven_client_rejected_count
+        dataList.add(PrometheusData.buildGauge("raven_client_rejected_count", "")
+                .addSample(PrometheusSample.build(deltaCalculator.delta("RateLimitedCount", monitor.getRejectedCount(IMClientMonitor.REJECT_CODE_RATE_LIMITED)))
+                        .addSampleLabel("reason", "rate"))
+                .addSample(PrometheusSample.build(deltaCalculator.delta("HandshakeLimitedCount", monitor.getRejectedCount(IMClientMonitor.REJECT_CODE_TOO_MANY_HANDSHAKES)))
+                        .addSampleLabel("reason", "handshake"))
+                .addSample(PrometheusSample.build(deltaCalculator.delta("AddressLimitedCount", monitor.getRejectedCount(IMClientMonitor.REJECT_CODE_ADDRESS_LIMITED)))
+                        .addSampleLabel("reason", "address")));
         return dataList;
     }
 }
@@ -38,6 +38,7 @@ import java.util.List;
  *     <li>{@link IMClientManagerPrometheusDataCollector} IM 客户端管理器监控信息采集器</li>
  *     <li>{@link IMClientManagerExecutionPrometheusDataCollector} IM 客户端管理器执行信息采集器</li>
  *     <li>{@link IMClientManagerSocketPrometheusDataCollector} IM 客户端管理器 Socket 读、写信息采集器</li>
+ *     <li>{@link IMClientHeavyHitterPrometheusDataCollector} IM 客户端 Top-K 监控信息采集器</li>
  * </ul>
  *
  * @author heimuheimu
@@ -69,6 +70,11 @@ public class IMCompositePrometheusCollector implements PrometheusCollector {
      */
     private final IMClientManagerSocketPrometheusDataCollector imClientManagerSocketCollector;
 
+    /**
+     * IM 客户端 Top-K 监控信息采集器
+     */
+    private final IMClientHeavyHitterPrometheusDataCollector imClientHeavyHitterCollector;
+
     /**
      * 构造一个 IMCompositePrometheusCollector 实例。
      */
@@ -78,6 +84,7 @@ public class IMCompositePrometheusCollector implements PrometheusCollector {
         this.imClientManagerCollector = new IMClientManagerPrometheusDataCollector();
         this.imClientManagerExecutionCollector = new IMClientManagerExecutionPrometheusDataCollector();
         this.imClientManagerSocketCollector = new IMClientManagerSocketPrometheusDataCollector();
+        this.imClientHeavyHitterCollector = new IMClientHeavyHitterPrometheusDataCollector();
     }
 
     @Override
@@ -88,6 +95,7 @@ public class IMCompositePrometheusCollector implements PrometheusCollector {
         dataList.addAll(imClientManagerCollector.getList());
         dataList.addAll(imClientManagerExecutionCollector.getList());
         dataList.addAll(imClientManagerSocketCollector.getList());
+        dataList.addAll(imClientHeavyHitterCollector.getList());
         return dataList;
     }
 }
@@ -0,0 +1,526 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.store;
+
+import com.heimuheimu.raven.clients.ByteMessage;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+
+/**
+ * 离线消息日志分段，对应一个通过内存映射访问的定长文件，记录只允许追加，不允许修改。
+ *
+ * <p>
+ *     文件以 8 字节的文件头开始，之后为连续排列的记录，每条记录的格式如下：
+ *     <pre>
+ *     int 记录长度 | byte 记录类型 | long 序号 | long 写入时间 | short 接收方长度 | 接收方
+ *     | (消息记录) long 过期时间 | byte 优先级 | byte 是否分块 | short ID 长度 | ID | short 槽位长度 | 槽位 | int 内容长度 | 内容
+ *     </pre>
+ *     记录长度在记录内容写入完成后最后写入，因此进程崩溃时未写完的记录将被视为不存在。记录长度为 0 表示分段的结尾。
+ * </p>
+ *
+ * <p><strong>说明：</strong>OfflineMessageSegment 类是非线程安全的，写入操作需由 {@link OfflineMessageStore} 加锁执行，
+ * 读取操作使用独立的缓存视图，可与写入并发执行。</p>
+ *
+ * @author heimuheimu
+ */
+class OfflineMessageSegment {
+
+    /**
+     * 记录类型：离线消息
+     */
+    static final byte TYPE_MESSAGE = 1;
+
+    /**
+     * 记录类型：读取标记，表示接收方在该序号之前的离线消息均已被读取
+     */
+    static final byte TYPE_TOMBSTONE = 2;
+
+    /**
+     * 文件头魔数
+     */
+    private static final int MAGIC = 0x5241564E;
+
+    /**
+     * 文件格式版本
+     */
+    private static final int VERSION = 1;
+
+    /**
+     * 文件头字节数
+     */
+    static final int HEADER_BYTE_LENGTH = 8;
+
+    /**
+     * 记录公共部分的字节数，不包括接收方内容
+     */
+    private static final int RECORD_HEADER_BYTE_LENGTH = 4 + 1 + 8 + 8 + 2;
+
+    /**
+     * 消息记录扩展部分的字节数，不包括 ID、槽位及内容
+     */
+    private static final int MESSAGE_HEADER_BYTE_LENGTH = 8 + 1 + 1 + 2 + 2 + 4;
+
+    /**
+     * 分段 ID，按创建顺序递增
+     */
+    private final int id;
+
+    /**
+     * 分段文件
+     */
+    private final File file;
+
+    /**
+     * 分段文件的内存映射
+     */
+    private final MappedByteBuffer buffer;
+
+    /**
+     * 下一条记录的写入位置
+     */
+    private int writePosition = HEADER_BYTE_LENGTH;
+
+    /**
+     * 分段中的离线消息记录总数
+     */
+    private int messageCount = 0;
+
+    /**
+     * 分段中尚未被读取的离线消息记录数量
+     */
+    private int liveCount = 0;
+
+    /**
+     * 分段中最后一条记录的写入时间
+     */
+    private long lastStoredTime = 0;
+
+    /**
+     * 是否存在尚未刷盘的写入
+     */
+    private volatile boolean dirty = false;
+
+    private OfflineMessageSegment(int id, File file, MappedByteBuffer buffer) {
+        this.id = id;
+        this.file = file;
+        this.buffer = buffer;
+    }
+
+    /**
+     * 创建一个新的日志分段。
+     *
+     * @param directory 存储目录
+     * @param id 分段 ID
+     * @param byteLength 分段文件字节数
+     * @return 日志分段
+     * @throws IOException 如果创建文件失败，将会抛出此异常
+     */
+    static OfflineMessageSegment create(File directory, int id, int byteLength) throws IOException {
+        File file = new File(directory, getFileName(id));
+        OfflineMessageSegment segment = new OfflineMessageSegment(id, file, map(file, byteLength));
+        segment.buffer.putInt(0, MAGIC);
+        segment.buffer.putInt(4, VERSION);
+        segment.buffer.putInt(HEADER_BYTE_LENGTH, 0);
+        segment.dirty = true;
+        return segment;
+    }
+
+    /**
+     * 打开已存在的日志分段，如果文件头不合法，将会返回 {@code null}。
+     *
+     * @param file 分段文件
+     * @param id 分段 ID
+     * @return 日志分段，可能为 {@code null}
+     * @throws IOException 如果打开文件失败，将会抛出此异常
+     */
+    static OfflineMessageSegment open(File file, int id) throws IOException {
+        long byteLength = file.length();
+        if (byteLength < HEADER_BYTE_LENGTH + 4 || byteLength > Integer.MAX_VALUE) {
+            return null;
+        }
+        MappedByteBuffer buffer = map(file, (int) byteLength);
+        if (buffer.getInt(0) != MAGIC || buffer.getInt(4) != VERSION) {
+            return null;
+        }
+        return new OfflineMessageSegment(id, file, buffer);
+    }
+
+    /**
+     * 根据分段 ID 获得分段文件名。
+     *
+     * @param id 分段 ID
+     * @return 分段文件名
+     */
+    static String getFileName(int id) {
+        return String.format("%010d.log", id);
+    }
+
+    /**
+     * 根据分段文件名获得分段 ID，如果不是分段文件，将会返回 -1。
+     *
+     * @param fileName 文件名
+     * @return 分段 ID
+     */
+    static int parseId(String fileName) {
+        if (fileName.length() == 14 && fileName.endsWith(".log")) {
+            try {
+                return Integer.parseInt(fileName.substring(0, 10));
+            } catch (NumberFormatException ignored) {}
+        }
+        return -1;
+    }
+
+    /**
+     * 计算离线消息记录的字节数。
+     *
+     * @param recipient 接收方编码后的字节数组
+     * @param id 字节消息 ID 编码后的字节数组
+     * @param slotKey 字节消息槽位编码后的字节数组，允许为 {@code null}
+     * @param contentByteLength 字节消息内容字节数
+     * @return 记录字节数
+     */
+    static long getMessageRecordByteLength(byte[] recipient, byte[] id, byte[] slotKey, int contentByteLength) {
+        return RECORD_HEADER_BYTE_LENGTH + recipient.length + MESSAGE_HEADER_BYTE_LENGTH + id.length
+                + (slotKey != null ? slotKey.length : 0) + (long) contentByteLength;
+    }
+
+    /**
+     * 计算读取标记记录的字节数。
+     *
+     * @param recipient 接收方编码后的字节数组
+     * @return 记录字节数
+     */
+    static long getTombstoneRecordByteLength(byte[] recipient) {
+        return RECORD_HEADER_BYTE_LENGTH + recipient.length;
+    }
+
+    /**
+     * 获得分段 ID。
+     *
+     * @return 分段 ID
+     */
+    int getId() {
+        return id;
+    }
+
+    /**
+     * 获得分段文件字节数。
+     *
+     * @return 分段文件字节数
+     */
+    int getCapacity() {
+        return buffer.capacity();
+    }
+
+    /**
+     * 判断分段剩余空间是否可写入指定字节数的记录，需为结尾标记预留 4 字节。
+     *
+     * @param recordByteLength 记录字节数
+     * @return 是否可写入
+     */
+    boolean hasRemaining(long recordByteLength) {
+        return writePosition + recordByteLength + 4 <= buffer.capacity();
+    }
+
+    /**
+     * 追加一条离线消息记录，返回记录在分段中的位置。
+     *
+     * @param sequence 序号
+     * @param storedTime 写入时间
+     * @param recipient 接收方编码后的字节数组
+     * @param id 字节消息 ID 编码后的字节数组
+     * @param slotKey 字节消息槽位编码后的字节数组，允许为 {@code null}
+     * @param message 离线消息
+     * @return 记录位置
+     */
+    int appendMessage(long sequence, long storedTime, byte[] recipient, byte[] id, byte[] slotKey, ByteMessage message) {
+        int position = writePosition;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + 4);
+        writeRecordHeader(target, TYPE_MESSAGE, sequence, storedTime, recipient);
+        target.putLong(message.getExpiredTime());
+        target.put((byte) message.getPriority());
+        target.put((byte) (message.isChunked() ? 1 : 0));
+        writeBytes(target, id);
+        writeBytes(target, slotKey);
+        target.putInt(message.getContent().length);
+        target.put(message.getContent());
+        commit(position, target.position() - position, storedTime);
+        messageCount++;
+        liveCount++;
+        return position;
+    }
+
+    /**
+     * 追加一条读取标记记录，返回记录在分段中的位置。
+     *
+     * @param sequence 序号，接收方在该序号之前的离线消息均已被读取
+     * @param storedTime 写入时间
+     * @param recipient 接收方编码后的字节数组
+     * @return 记录位置
+     */
+    int appendTombstone(long sequence, long storedTime, byte[] recipient) {
+        int position = writePosition;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + 4);
+        writeRecordHeader(target, TYPE_TOMBSTONE, sequence, storedTime, recipient);
+        commit(position, target.position() - position, storedTime);
+        return position;
+    }
+
+    /**
+     * 将其它分段中的记录原样复制到当前分段，返回记录在当前分段中的位置，用于压缩操作。
+     *
+     * @param source 源分段
+     * @param sourcePosition 记录在源分段中的位置
+     * @return 记录位置
+     */
+    int copyRecord(OfflineMessageSegment source, int sourcePosition) {
+        int recordByteLength = source.getRecordByteLength(sourcePosition);
+        ByteBuffer sourceView = source.buffer.duplicate();
+        sourceView.limit(sourcePosition + recordByteLength).position(sourcePosition + 4);
+        int position = writePosition;
+        ByteBuffer target = buffer.duplicate();
+        target.position(position + 4);
+        target.put(sourceView);
+        commit(position, recordByteLength, source.getStoredTime(sourcePosition));
+        if (source.getType(sourcePosition) == TYPE_MESSAGE) {
+            messageCount++;
+            liveCount++;
+        }
+        return position;
+    }
+
+    /**
+     * 获得指定位置的记录字节数，如果该位置为分段结尾或记录不完整，将会返回 0。
+     *
+     * @param position 记录位置
+     * @return 记录字节数
+     */
+    int getRecordByteLength(int position) {
+        if (position < HEADER_BYTE_LENGTH || position + 4 > buffer.capacity()) {
+            return 0;
+        }
+        int recordByteLength = buffer.getInt(position);
+        if (recordByteLength < RECORD_HEADER_BYTE_LENGTH || position + recordByteLength + 4 > buffer.capacity()) {
+            return 0;
+        }
+        return recordByteLength;
+    }
+
+    byte getType(int position) {
+        return buffer.get(position + 4);
+    }
+
+    long getSequence(int position) {
+        return buffer.getLong(position + 5);
+    }
+
+    long getStoredTime(int position) {
+        return buffer.getLong(position + 13);
+    }
+
+    /**
+     * 获得指定位置记录的接收方。
+     *
+     * @param position 记录位置
+     * @return 接收方
+     */
+    String getRecipient(int position) {
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + 21);
+        return readString(source);
+    }
+
+    /**
+     * 获得指定位置的离线消息记录的过期时间，如果为 0，则永不过期。
+     *
+     * @param position 记录位置，必须为离线消息记录
+     * @return 过期时间
+     */
+    long getExpiredTime(int position) {
+        return buffer.getLong(position + 23 + (buffer.getShort(position + 21) & 0xFFFF));
+    }
+
+    /**
+     * 读取指定位置的离线消息记录，消息内容将从内存映射中直接复制到字节消息内容数组，如果离线消息已过期，将会返回 {@code null}。
+     *
+     * @param position 记录位置，必须为离线消息记录
+     * @param currentTime 当前时间
+     * @return 字节消息，可能为 {@code null}
+     */
+    ByteMessage readMessage(int position, long currentTime) {
+        ByteBuffer source = buffer.duplicate();
+        source.position(position + 23 + (buffer.getShort(position + 21) & 0xFFFF));
+        long expiredTime = source.getLong();
+        long ttl = 0;
+        if (expiredTime > 0) {
+            ttl = expiredTime - currentTime;
+            if (ttl <= 0) {
+                return null;
+            }
+        }
+        int priority = source.get();
+        boolean chunked = source.get() == 1;
+        String id = readString(source);
+        String slotKey = readString(source);
+        byte[] content = new byte[source.getInt()];
+        source.get(content);
+        return new ByteMessage(id, content, ttl, priority, chunked, slotKey);
+    }
+
+    /**
+     * 获得下一条记录的写入位置。
+     *
+     * @return 下一条记录的写入位置
+     */
+    int getWritePosition() {
+        return writePosition;
+    }
+
+    /**
+     * 在打开已存在的分段时，根据扫描结果恢复分段状态。
+     *
+     * @param writePosition 下一条记录的写入位置
+     * @param lastStoredTime 最后一条记录的写入时间
+     */
+    void recover(int writePosition, long lastStoredTime) {
+        this.writePosition = writePosition;
+        this.lastStoredTime = lastStoredTime;
+        if (writePosition + 4 <= buffer.capacity()) {
+            buffer.putInt(writePosition, 0); // 清除未写完的记录
+        }
+    }
+
+    /**
+     * 在打开已存在的分段时，记录扫描到的离线消息记录。
+     */
+    void onRecovered() {
+        messageCount++;
+        liveCount++;
+    }
+
+    /**
+     * 在离线消息被读取、过期或移出当前分段后调用。
+     */
+    void onRemoved() {
+        liveCount--;
+    }
+
+    int getMessageCount() {
+        return messageCount;
+    }
+
+    int getLiveCount() {
+        return liveCount;
+    }
+
+    long getLastStoredTime() {
+        return lastStoredTime;
+    }
+
+    /**
+     * 将尚未刷盘的写入同步到磁盘。
+     */
+    void force() {
+        if (dirty) {
+            dirty = false;
+            buffer.force();
+        }
+    }
+
+    /**
+     * 删除分段文件，内存映射将在被垃圾回收后释放。
+     *
+     * @return 是否删除成功
+     */
+    boolean delete() {
+        return file.delete();
+    }
+
+    private void writeRecordHeader(ByteBuffer target, byte type, long sequence, long storedTime, byte[] recipient) {
+        target.put(type);
+        target.putLong(sequence);
+        target.putLong(storedTime);
+        target.putShort((short) recipient.length);
+        target.put(recipient);
+    }
+
+    private void commit(int position, int recordByteLength, long storedTime) {
+        buffer.putInt(position + recordByteLength, 0);
+        buffer.putInt(position, recordByteLength);
+        writePosition = position + recordByteLength;
+        if (storedTime > lastStoredTime) {
+            lastStoredTime = storedTime;
+        }
+        dirty = true;
+    }
+
+    private static void writeBytes(ByteBuffer target, byte[] bytes) {
+        if (bytes == null) {
+            target.putShort((short) -1);
+        } else {
+            target.putShort((short) bytes.length);
+            target.put(bytes);
+        }
+    }
+
+    private static String readString(ByteBuffer source) {
+        short byteLength = source.getShort();
+        if (byteLength < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[byteLength];
+        source.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private static MappedByteBuffer map(File file, int byteLength) throws IOException {
+        try (RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+             FileChannel channel = randomAccessFile.getChannel()) {
+            return channel.map(FileChannel.MapMode.READ_WRITE, 0, byteLength);
+        }
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineMessageSegment{" +
+                "id=" + id +
+                ", file=" + file +
+                ", capacity=" + buffer.capacity() +
+                ", writePosition=" + writePosition +
+                ", messageCount=" + messageCount +
+                ", liveCount=" + liveCount +
+                ", lastStoredTime=" + lastStoredTime +
+                '}';
+    }
+}
@@ -0,0 +1,724 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.store;
+
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.constant.BeanStatusEnum;
+import com.heimuheimu.raven.exception.RavenException;
+import com.heimuheimu.raven.util.LogBuildUtil;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.Closeable;
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * 本地离线消息存储，用于保存未能送达 IM 客户端的字节消息，在 IM 客户端重新连接后读取并继续发送。
+ *
+ * <p>
+ *     离线消息以追加方式写入分段的内存映射日志文件，内存中为每个接收方维护一份记录位置索引，写入和读取均不经过额外的中间缓存：
+ *     写入时消息内容直接复制到内存映射，读取时直接从内存映射复制到字节消息内容数组。接收方读取离线消息后，将会写入一条读取标记，
+ *     重启时通过顺序扫描全部分段重建索引。
+ * </p>
+ *
+ * <p>
+ *     后台线程定期执行以下操作：
+ *     <ul>
+ *         <li>将内存映射中尚未同步的数据刷入磁盘</li>
+ *         <li>删除最后写入时间超过保留时间的分段</li>
+ *         <li>压缩有效记录比例过低的分段，将尚未读取的离线消息复制到活跃分段后删除原分段</li>
+ *     </ul>
+ * </p>
+ *
+ * <p><strong>说明：</strong>OfflineMessageStore 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class OfflineMessageStore implements Closeable {
+
+    private static final Logger LOGGER = LoggerFactory.getLogger(OfflineMessageStore.class);
+
+    private static final Logger RAVEN_OFFLINE_MESSAGE_STORE_LOG = LoggerFactory.getLogger("RAVEN_OFFLINE_MESSAGE_STORE_LOG");
+
+    /**
+     * 离线消息存储使用的配置信息
+     */
+    private final OfflineMessageStoreConfiguration configuration;
+
+    /**
+     * 读写日志分段及索引使用的私有锁
+     */
+    private final Object lock = new Object();
+
+    /**
+     * 日志分段 Map，Key 为分段 ID，按 ID 升序排列，访问此变量需先获得锁 {@link #lock}
+     */
+    private final TreeMap<Integer, OfflineMessageSegment> segmentMap = new TreeMap<>();
+
+    /**
+     * 接收方索引 Map，Key 为接收方，Value 为该接收方尚未读取的离线消息记录位置，访问此变量需先获得锁 {@link #lock}
+     */
+    private final HashMap<String, RecipientIndex> indexMap = new HashMap<>();
+
+    /**
+     * 当前写入的日志分段，访问此变量需先获得锁 {@link #lock}
+     */
+    private OfflineMessageSegment activeSegment = null;
+
+    /**
+     * 最后写入的记录序号，访问此变量需先获得锁 {@link #lock}
+     */
+    private long sequence = 0;
+
+    /**
+     * 离线消息存储目录
+     */
+    private File directory = null;
+
+    /**
+     * 后台清理任务
+     */
+    private CleanTask cleanTask = null;
+
+    /**
+     * 当前 OfflineMessageStore 实例所处状态
+     */
+    private volatile BeanStatusEnum state = BeanStatusEnum.UNINITIALIZED;
+
+    /**
+     * 构造一个 OfflineMessageStore 实例。
+     *
+     * @param configuration 离线消息存储使用的配置信息，不允许为 {@code null}
+     */
+    public OfflineMessageStore(OfflineMessageStoreConfiguration configuration) {
+        this.configuration = configuration;
+    }
+
+    /**
+     * 打开离线消息存储，扫描已存在的日志分段重建索引，并启动后台清理任务，如果已经打开过一次，调用该方法不会有任何效果。
+     *
+     * @throws RavenException 如果打开失败，将会抛出此异常
+     */
+    public synchronized void init() throws RavenException {
+        if (state == BeanStatusEnum.UNINITIALIZED) {
+            long startTime = System.currentTimeMillis();
+            state = BeanStatusEnum.NORMAL;
+            try {
+                if (configuration.getDirectory() == null) {
+                    throw new IllegalArgumentException("null directory");
+                }
+                directory = new File(configuration.getDirectory());
+                if (!directory.isDirectory() && !directory.mkdirs()) {
+                    throw new IllegalArgumentException("invalid directory");
+                }
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                synchronized (lock) {
+                    recover();
+                    if (activeSegment == null) {
+                        roll();
+                    }
+                    int messageCount = 0;
+                    for (RecipientIndex index : indexMap.values()) {
+                        messageCount += index.size;
+                    }
+                    params.put("segmentCount", segmentMap.size());
+                    params.put("recipientCount", indexMap.size());
+                    params.put("messageCount", messageCount);
+                }
+
+                cleanTask = new CleanTask();
+                cleanTask.setName("raven-offline-message-store");
+                cleanTask.setDaemon(true);
+                cleanTask.start();
+
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                RAVEN_OFFLINE_MESSAGE_STORE_LOG.info("Started OfflineMessageStore.{}", LogBuildUtil.build(params));
+            } catch (Exception e) {
+                String errorMessage = "OfflineMessageStore fails to start: `" + e.getMessage() + "`." + LogBuildUtil.build(buildParamsMap());
+                LOGGER.error(errorMessage, e);
+                close();
+                throw new RavenException(errorMessage, e);
+            }
+        }
+    }
+
+    /**
+     * 保存一条发往指定接收方的离线消息，已过期的字节消息将被忽略。
+     *
+     * @param recipient 接收方，通常为 IM 客户端的会话令牌或用户 ID，不允许为 {@code null}
+     * @param message 字节消息，不允许为 {@code null}
+     * @throws IllegalArgumentException 如果 {@code recipient} 或 {@code message} 为 {@code null}，或记录长度超过分段大小，将会抛出此异常
+     * @throws IllegalStateException 如果离线消息存储未打开或已关闭，将会抛出此异常
+     * @throws RavenException 如果创建新的日志分段失败，将会抛出此异常
+     */
+    public void append(String recipient, ByteMessage message) throws IllegalArgumentException, IllegalStateException, RavenException {
+        append(recipient, Collections.singletonList(message));
+    }
+
+    /**
+     * 保存多条发往指定接收方的离线消息，整批消息仅需获取一次锁，已过期的字节消息将被忽略。
+     *
+     * @param recipient 接收方，通常为 IM 客户端的会话令牌或用户 ID，不允许为 {@code null}
+     * @param messages 字节消息集合，不允许为 {@code null}，也不允许包含 {@code null} 元素
+     * @throws IllegalArgumentException 如果参数为 {@code null}，或记录长度超过分段大小，将会抛出此异常，此时整批消息均不会被保存
+     * @throws IllegalStateException 如果离线消息存储未打开或已关闭，将会抛出此异常
+     * @throws RavenException 如果创建新的日志分段失败，将会抛出此异常
+     */
+    public void append(String recipient, Collection<ByteMessage> messages) throws IllegalArgumentException, IllegalStateException, RavenException {
+        if (recipient == null || messages == null || messages.contains(null)) {
+            String errorMessage = "OfflineMessageStore fails to append: `null recipient or message`. `recipient`:`" + recipient + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        byte[] recipientBytes = encode(recipient);
+        long currentTime = System.currentTimeMillis();
+        int messageCount = messages.size();
+        byte[][] idBytesArray = new byte[messageCount][];
+        byte[][] slotKeyBytesArray = new byte[messageCount][];
+        long[] recordByteLengthArray = new long[messageCount];
+        int index = 0;
+        for (ByteMessage message : messages) {
+            idBytesArray[index] = encode(message.getId());
+            slotKeyBytesArray[index] = message.getSlotKey() != null ? encode(message.getSlotKey()) : null;
+            recordByteLengthArray[index] = OfflineMessageSegment.getMessageRecordByteLength(recipientBytes, idBytesArray[index],
+                    slotKeyBytesArray[index], message.getContent().length);
+            if (OfflineMessageSegment.HEADER_BYTE_LENGTH + recordByteLengthArray[index] + 4 > configuration.getSegmentByteLength()) {
+                String errorMessage = "OfflineMessageStore fails to append: `record is too large`. `recipient`:`" + recipient
+                        + "`. `messageId`:`" + message.getId() + "`. `recordByteLength`:`" + recordByteLengthArray[index] + "`.";
+                LOGGER.error(errorMessage);
+                throw new IllegalArgumentException(errorMessage);
+            }
+            index++;
+        }
+        synchronized (lock) {
+            checkState(recipient);
+            index = 0;
+            for (ByteMessage message : messages) {
+                if (!message.isExpired(currentTime)) {
+                    ensureRemaining(recordByteLengthArray[index]);
+                    int position = activeSegment.appendMessage(++sequence, currentTime, recipientBytes,
+                            idBytesArray[index], slotKeyBytesArray[index], message);
+                    RecipientIndex recipientIndex = indexMap.get(recipient);
+                    if (recipientIndex == null) {
+                        recipientIndex = new RecipientIndex();
+                        indexMap.put(recipient, recipientIndex);
+                    }
+                    recipientIndex.add(toLocation(activeSegment.getId(), position), sequence);
+                }
+                index++;
+            }
+        }
+    }
+
+    /**
+     * 读取并移除发往指定接收方的全部离线消息，按保存顺序排列，已过期的离线消息将被忽略，该方法不会返回 {@code null}。
+     *
+     * <p>
+     *     消息内容直接从内存映射复制到字节消息内容数组。如果读取后未能发送，可再次调用 {@link #append(String, Collection)} 方法保存。
+     * </p>
+     *
+     * @param recipient 接收方，不允许为 {@code null}
+     * @return 离线消息列表
+     * @throws IllegalArgumentException 如果 {@code recipient} 为 {@code null}，将会抛出此异常
+     * @throws IllegalStateException 如果离线消息存储未打开或已关闭，将会抛出此异常
+     * @throws RavenException 如果创建新的日志分段失败，将会抛出此异常
+     */
+    public List<ByteMessage> take(String recipient) throws IllegalArgumentException, IllegalStateException, RavenException {
+        if (recipient == null) {
+            String errorMessage = "OfflineMessageStore fails to take: `null recipient`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        byte[] recipientBytes = encode(recipient);
+        long currentTime = System.currentTimeMillis();
+        synchronized (lock) {
+            checkState(recipient);
+            RecipientIndex recipientIndex = indexMap.remove(recipient);
+            if (recipientIndex == null) {
+                return new ArrayList<>();
+            }
+            List<ByteMessage> messageList = new ArrayList<>(recipientIndex.size);
+            for (int i = 0; i < recipientIndex.size; i++) {
+                long location = recipientIndex.locations[i];
+                OfflineMessageSegment segment = segmentMap.get(getSegmentId(location));
+                ByteMessage message = segment.readMessage(getPosition(location), currentTime);
+                if (message != null) {
+                    messageList.add(message);
+                }
+                segment.onRemoved();
+            }
+            ensureRemaining(OfflineMessageSegment.getTombstoneRecordByteLength(recipientBytes));
+            activeSegment.appendTombstone(sequence, currentTime, recipientBytes);
+            return messageList;
+        }
+    }
+
+    /**
+     * 获得发往指定接收方的离线消息数量，包括已过期但尚未清理的离线消息。
+     *
+     * @param recipient 接收方
+     * @return 离线消息数量
+     */
+    public int getMessageCount(String recipient) {
+        synchronized (lock) {
+            RecipientIndex recipientIndex = indexMap.get(recipient);
+            return recipientIndex != null ? recipientIndex.size : 0;
+        }
+    }
+
+    /**
+     * 获得存在离线消息的接收方数量。
+     *
+     * @return 存在离线消息的接收方数量
+     */
+    public int getRecipientCount() {
+        synchronized (lock) {
+            return indexMap.size();
+        }
+    }
+
+    /**
+     * 获得日志分段数量。
+     *
+     * @return 日志分段数量
+     */
+    public int getSegmentCount() {
+        synchronized (lock) {
+            return segmentMap.size();
+        }
+    }
+
+    /**
+     * 判断当前离线消息存储是否可用。
+     *
+     * @return 当前离线消息存储是否可用
+     */
+    public boolean isActive() {
+        return state == BeanStatusEnum.NORMAL;
+    }
+
+    /**
+     * 关闭离线消息存储，停止后台清理任务并将全部数据刷入磁盘，如果已经关闭，调用该方法不会有任何效果。
+     */
+    @Override
+    public synchronized void close() {
+        if (state != BeanStatusEnum.CLOSED) {
+            long startTime = System.currentTimeMillis();
+            state = BeanStatusEnum.CLOSED;
+            try {
+                if (cleanTask != null) {
+                    cleanTask.close();
+                }
+                synchronized (lock) {
+                    for (OfflineMessageSegment segment : segmentMap.values()) {
+                        segment.force();
+                    }
+                }
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                RAVEN_OFFLINE_MESSAGE_STORE_LOG.info("Stopped OfflineMessageStore.{}", LogBuildUtil.build(params));
+            } catch (Exception e) {
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                LOGGER.error("OfflineMessageStore fails to stop: `unexpected error`." + LogBuildUtil.build(params), e);
+            }
+        }
+    }
+
+    /**
+     * 扫描存储目录中已存在的日志分段，重建接收方索引，调用此方法需先获得锁 {@link #lock}。
+     *
+     * @throws Exception 如果打开分段文件失败，将会抛出此异常
+     */
+    private void recover() throws Exception {
+        String[] fileNames = directory.list();
+        if (fileNames == null) {
+            return;
+        }
+        Arrays.sort(fileNames);
+        Map<String, Long> tombstoneMap = new HashMap<>();
+        for (String fileName : fileNames) {
+            int segmentId = OfflineMessageSegment.parseId(fileName);
+            if (segmentId < 0) {
+                continue;
+            }
+            OfflineMessageSegment segment = OfflineMessageSegment.open(new File(directory, fileName), segmentId);
+            if (segment == null) {
+                LinkedHashMap<String, Object> params = buildParamsMap();
+                params.put("file", fileName);
+                RAVEN_OFFLINE_MESSAGE_STORE_LOG.error("OfflineMessageStore skips invalid segment.{}", LogBuildUtil.build(params));
+                continue;
+            }
+            segmentMap.put(segmentId, segment);
+            int position = OfflineMessageSegment.HEADER_BYTE_LENGTH;
+            long lastStoredTime = 0;
+            int recordByteLength;
+            while ((recordByteLength = segment.getRecordByteLength(position)) > 0) {
+                long recordSequence = segment.getSequence(position);
+                String recipient = segment.getRecipient(position);
+                Long tombstoneSequence = tombstoneMap.get(recipient);
+                if (segment.getType(position) == OfflineMessageSegment.TYPE_MESSAGE) {
+                    segment.onRecovered();
+                    if (tombstoneSequence != null && recordSequence <= tombstoneSequence) {
+                        segment.onRemoved();
+                    } else {
+                        RecipientIndex recipientIndex = indexMap.get(recipient);
+                        if (recipientIndex == null) {
+                            recipientIndex = new RecipientIndex();
+                            indexMap.put(recipient, recipientIndex);
+                        }
+                        recipientIndex.add(toLocation(segmentId, position), recordSequence);
+                    }
+                } else {
+                    if (tombstoneSequence == null || recordSequence > tombstoneSequence) {
+                        tombstoneMap.put(recipient, recordSequence);
+                    }
+                    RecipientIndex recipientIndex = indexMap.get(recipient);
+                    if (recipientIndex != null) {
+                        recipientIndex.removeUntil(recordSequence, segmentMap);
+                        if (recipientIndex.size == 0) {
+                            indexMap.remove(recipient);
+                        }
+                    }
+                }
+                sequence = Math.max(sequence, recordSequence);
+                lastStoredTime = Math.max(lastStoredTime, segment.getStoredTime(position));
+                position += recordByteLength;
+            }
+            segment.recover(position, lastStoredTime);
+            activeSegment = segment;
+        }
+        for (RecipientIndex recipientIndex : indexMap.values()) {
+            recipientIndex.sort(); // 压缩后复制的记录位于较新的分段中，需按序号恢复保存顺序
+        }
+    }
+
+    /**
+     * 确保活跃分段可写入指定字节数的记录，如果剩余空间不足，将会创建新的活跃分段，调用此方法需先获得锁 {@link #lock}。
+     *
+     * @param recordByteLength 记录字节数
+     * @throws RavenException 如果创建新的日志分段失败，将会抛出此异常
+     */
+    private void ensureRemaining(long recordByteLength) throws RavenException {
+        if (!activeSegment.hasRemaining(recordByteLength)) {
+            roll();
+        }
+    }
+
+    /**
+     * 创建新的日志分段作为活跃分段，调用此方法需先获得锁 {@link #lock}。
+     *
+     * @throws RavenException 如果创建新的日志分段失败，将会抛出此异常
+     */
+    private void roll() throws RavenException {
+        int segmentId = activeSegment != null ? activeSegment.getId() + 1 : 0;
+        try {
+            OfflineMessageSegment segment = OfflineMessageSegment.create(directory, segmentId, configuration.getSegmentByteLength());
+            segmentMap.put(segmentId, segment);
+            activeSegment = segment;
+        } catch (Exception e) {
+            LinkedHashMap<String, Object> params = buildParamsMap();
+            params.put("segmentId", segmentId);
+            String errorMessage = "OfflineMessageStore fails to roll segment: `unexpected error`." + LogBuildUtil.build(params);
+            LOGGER.error(errorMessage, e);
+            throw new RavenException(errorMessage, e);
+        }
+    }
+
+    /**
+     * 将日志分段中尚未读取的离线消息复制到活跃分段后删除该分段，调用此方法时不允许持有锁 {@link #lock}。
+     *
+     * <p>
+     *     非活跃分段不会再被修改，因此可以在锁外顺序读取，仅在检查、更新单条记录的索引时加锁，避免长时间阻塞写入。
+     *     读取标记可能需要覆盖更早分段中的离线消息，因此仅在该分段为最早的分段时才会被丢弃。
+     * </p>
+     *
+     * @param segment 需要压缩的非活跃分段
+     * @param expired 该分段是否已超过保留时间，如果为 {@code true}，其中的离线消息将被丢弃
+     */
+    private void compact(OfflineMessageSegment segment, boolean expired) {
+        long startTime = System.currentTimeMillis();
+        int segmentId = segment.getId();
+        int movedCount = 0;
+        int droppedCount = 0;
+        int position = OfflineMessageSegment.HEADER_BYTE_LENGTH;
+        int recordByteLength;
+        while ((recordByteLength = segment.getRecordByteLength(position)) > 0) {
+            boolean isMessage = segment.getType(position) == OfflineMessageSegment.TYPE_MESSAGE;
+            String recipient = segment.getRecipient(position);
+            synchronized (lock) {
+                if (isMessage) {
+                    RecipientIndex recipientIndex = indexMap.get(recipient);
+                    int index = recipientIndex != null ? recipientIndex.indexOf(toLocation(segmentId, position)) : -1;
+                    if (index >= 0) {
+                        long expiredTime = segment.getExpiredTime(position);
+                        if (expired || (expiredTime > 0 && expiredTime < startTime)) {
+                            recipientIndex.remove(index);
+                            if (recipientIndex.size == 0) {
+                                indexMap.remove(recipient);
+                            }
+                            droppedCount++;
+                        } else {
+                            ensureRemaining(recordByteLength);
+                            int newPosition = activeSegment.copyRecord(segment, position);
+                            recipientIndex.locations[index] = toLocation(activeSegment.getId(), newPosition);
+                            movedCount++;
+                        }
+                        segment.onRemoved();
+                    }
+                } else if (segmentMap.firstKey() != segmentId) {
+                    ensureRemaining(recordByteLength);
+                    activeSegment.copyRecord(segment, position);
+                }
+            }
+            position += recordByteLength;
+        }
+        OfflineMessageSegment targetSegment;
+        synchronized (lock) {
+            segmentMap.remove(segmentId);
+            targetSegment = activeSegment;
+        }
+        targetSegment.force(); // 复制的数据落盘后再删除原分段
+        boolean isDeleted = segment.delete();
+
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("segment", segment);
+        params.put("expired", expired);
+        params.put("movedCount", movedCount);
+        params.put("droppedCount", droppedCount);
+        params.put("isDeleted", isDeleted);
+        params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+        RAVEN_OFFLINE_MESSAGE_STORE_LOG.info("OfflineMessageStore compacted segment.{}", LogBuildUtil.build(params));
+    }
+
+    private void checkState(String recipient) throws IllegalStateException {
+        if (state != BeanStatusEnum.NORMAL) {
+            String errorMessage = "OfflineMessageStore fails to access: `illegal state`. `recipient`:`" + recipient
+                    + "`. `state`:`" + state + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalStateException(errorMessage);
+        }
+    }
+
+    private static byte[] encode(String value) throws IllegalArgumentException {
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        if (bytes.length > Short.MAX_VALUE) {
+            String errorMessage = "OfflineMessageStore fails to encode: `string is too long`. `byteLength`:`" + bytes.length + "`.";
+            LOGGER.error(errorMessage);
+            throw new IllegalArgumentException(errorMessage);
+        }
+        return bytes;
+    }
+
+    private static long toLocation(int segmentId, int position) {
+        return ((long) segmentId << 32) | (position & 0xFFFFFFFFL);
+    }
+
+    private static int getSegmentId(long location) {
+        return (int) (location >>> 32);
+    }
+
+    private static int getPosition(long location) {
+        return (int) location;
+    }
+
+    private LinkedHashMap<String, Object> buildParamsMap() {
+        LinkedHashMap<String, Object> params = new LinkedHashMap<>();
+        params.put("configuration", configuration);
+        params.put("state", state);
+        return params;
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineMessageStore{" +
+                "configuration=" + configuration +
+                ", state=" + state +
+                '}';
+    }
+
+    /**
+     * 接收方索引，按保存顺序记录该接收方尚未读取的离线消息位置及序号。
+     */
+    private static class RecipientIndex {
+
+        /**
+         * 离线消息位置数组，高 32 位为分段 ID，低 32 位为记录在分段中的位置
+         */
+        private long[] locations = new long[4];
+
+        /**
+         * 离线消息序号数组，与 {@link #locations} 一一对应
+         */
+        private long[] sequences = new long[4];
+
+        private int size = 0;
+
+        private void add(long location, long sequence) {
+            if (size == locations.length) {
+                locations = Arrays.copyOf(locations, size * 2);
+                sequences = Arrays.copyOf(sequences, size * 2);
+            }
+            locations[size] = location;
+            sequences[size++] = sequence;
+        }
+
+        private int indexOf(long location) {
+            for (int i = 0; i < size; i++) {
+                if (locations[i] == location) {
+                    return i;
+                }
+            }
+            return -1;
+        }
+
+        private void remove(int index) {
+            int moved = size - index - 1;
+            if (moved > 0) {
+                System.arraycopy(locations, index + 1, locations, index, moved);
+                System.arraycopy(sequences, index + 1, sequences, index, moved);
+            }
+            size--;
+        }
+
+        /**
+         * 按序号对离线消息位置进行排序，用于重建索引后恢复保存顺序。
+         */
+        private void sort() {
+            boolean sorted = true;
+            for (int i = 1; i < size && sorted; i++) {
+                sorted = sequences[i - 1] < sequences[i];
+            }
+            if (!sorted) {
+                Integer[] orders = new Integer[size];
+                for (int i = 0; i < size; i++) {
+                    orders[i] = i;
+                }
+                Arrays.sort(orders, (o1, o2) -> Long.compare(sequences[o1], sequences[o2]));
+                long[] sortedLocations = new long[locations.length];
+                long[] sortedSequences = new long[sequences.length];
+                for (int i = 0; i < size; i++) {
+                    sortedLocations[i] = locations[orders[i]];
+                    sortedSequences[i] = sequences[orders[i]];
+                }
+                locations = sortedLocations;
+                sequences = sortedSequences;
+            }
+        }
+
+        /**
+         * 移除序号小于等于指定值的离线消息，用于重建索引时处理读取标记。
+         */
+        private void removeUntil(long sequence, Map<Integer, OfflineMessageSegment> segmentMap) {
+            int newSize = 0;
+            for (int i = 0; i < size; i++) {
+                if (sequences[i] > sequence) {
+                    locations[newSize] = locations[i];
+                    sequences[newSize++] = sequences[i];
+                } else {
+                    segmentMap.get(getSegmentId(locations[i])).onRemoved();
+                }
+            }
+            size = newSize;
+        }
+    }
+
+    /**
+     * 离线消息存储后台清理任务，定期执行刷盘、过期清理及压缩操作。
+     */
+    private class CleanTask extends Thread {
+
+        private volatile boolean isRunning = true;
+
+        @Override
+        public void run() {
+            while (isRunning) {
+                long startTime = System.currentTimeMillis();
+                try {
+                    long retentionMills = TimeUnit.MILLISECONDS.convert(configuration.getRetentionPeriod(), TimeUnit.SECONDS);
+                    List<OfflineMessageSegment> inactiveSegmentList = new ArrayList<>();
+                    List<OfflineMessageSegment> segmentList;
+                    synchronized (lock) {
+                        if (retentionMills > 0 && activeSegment.getMessageCount() > 0
+                                && startTime - activeSegment.getLastStoredTime() > retentionMills) { // 长时间没有写入的活跃分段，切换后才能被删除
+                            roll();
+                        }
+                        segmentList = new ArrayList<>(segmentMap.values());
+                        for (OfflineMessageSegment segment : segmentList) {
+                            if (segment != activeSegment) {
+                                inactiveSegmentList.add(segment);
+                            }
+                        }
+                    }
+                    for (OfflineMessageSegment segment : segmentList) {
+                        segment.force();
+                    }
+
+                    for (OfflineMessageSegment segment : inactiveSegmentList) {
+                        if (!isRunning) {
+                            break;
+                        }
+                        boolean expired = retentionMills > 0 && startTime - segment.getLastStoredTime() > retentionMills;
+                        boolean compactable;
+                        synchronized (lock) {
+                            compactable = segment.getLiveCount() <= segment.getMessageCount() * configuration.getCompactRatio();
+                        }
+                        if (expired || compactable) {
+                            compact(segment, expired);
+                        }
+                    }
+                } catch (Exception e) {
+                    LinkedHashMap<String, Object> params = buildParamsMap();
+                    params.put("cost", (System.currentTimeMillis() - startTime) + "ms");
+                    LOGGER.error("OfflineMessageStore fails to clean: `unexpected error`." + LogBuildUtil.build(params), e);
+                }
+                try {
+                    long sleepTime = configuration.getCleanInterval() - (System.currentTimeMillis() - startTime);
+                    if (sleepTime > 0) {
+                        Thread.sleep(sleepTime);
+                    }
+                } catch (InterruptedException ignored) {}
+            }
+        }
+
+        private void close() throws InterruptedException {
+            this.isRunning = false;
+            interrupt();
+            join(10000);
+        }
+    }
+}
@@ -0,0 +1,162 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+
+package com.heimuheimu.raven.store;
+
+/**
+ * {@link OfflineMessageStore} 使用的配置信息。
+ *
+ * <p><strong>说明：</strong>OfflineMessageStoreConfiguration 类是线程安全的，可在多个线程中使用同一个实例。</p>
+ *
+ * @author heimuheimu
+ */
+public class OfflineMessageStoreConfiguration {
+
+    /**
+     * 离线消息存储目录，默认为 {@code null}，必须设置
+     */
+    private volatile String directory = null;
+
+    /**
+     * 单个日志分段文件的字节数，默认为 64 MB
+     */
+    private volatile int segmentByteLength = 64 * 1024 * 1024;
+
+    /**
+     * 离线消息保留时间，单位：秒，超过该时间的日志分段将被整体删除，如果小于等于 0，则永久保留，默认为 7 天
+     */
+    private volatile int retentionPeriod = 7 * 24 * 3600;
+
+    /**
+     * 日志分段的有效记录比例低于该值时将被压缩，默认为 0.5
+     */
+    private volatile double compactRatio = 0.5;
+
+    /**
+     * 后台任务执行间隔，包括刷盘、过期清理及压缩，单位：毫秒，默认为 1000 毫秒
+     */
+    private volatile int cleanInterval = 1000;
+
+    /**
+     * 获得离线消息存储目录，默认为 {@code null}。
+     *
+     * @return 离线消息存储目录
+     */
+    public String getDirectory() {
+        return directory;
+    }
+
+    /**
+     * 设置离线消息存储目录，目录不存在时将会自动创建，同一目录仅允许一个 {@link OfflineMessageStore} 实例使用。
+     *
+     * @param directory 离线消息存储目录
+     */
+    public void setDirectory(String directory) {
+        this.directory = directory;
+    }
+
+    /**
+     * 获得单个日志分段文件的字节数，默认为 64 MB。
+     *
+     * @return 单个日志分段文件的字节数
+     */
+    public int getSegmentByteLength() {
+        return segmentByteLength;
+    }
+
+    /**
+     * 设置单个日志分段文件的字节数，单条离线消息的记录长度不允许超过该值。
+     *
+     * @param segmentByteLength 单个日志分段文件的字节数
+     */
+    public void setSegmentByteLength(int segmentByteLength) {
+        this.segmentByteLength = segmentByteLength;
+    }
+
+    /**
+     * 获得离线消息保留时间，单位：秒，如果小于等于 0，则永久保留，默认为 7 天。
+     *
+     * @return 离线消息保留时间
+     */
+    public int getRetentionPeriod() {
+        return retentionPeriod;
+    }
+
+    /**
+     * 设置离线消息保留时间，单位：秒，如果小于等于 0，则永久保留。日志分段中最后一条记录的写入时间超过该时间后，整个分段将被删除。
+     *
+     * @param retentionPeriod 离线消息保留时间
+     */
+    public void setRetentionPeriod(int retentionPeriod) {
+        this.retentionPeriod = retentionPeriod;
+    }
+
+    /**
+     * 获得触发压缩的有效记录比例，默认为 0.5。
+     *
+     * @return 触发压缩的有效记录比例
+     */
+    public double getCompactRatio() {
+        return compactRatio;
+    }
+
+    /**
+     * 设置触发压缩的有效记录比例，非活跃日志分段中尚未被读取的离线消息比例低于该值时，剩余的离线消息将被复制到活跃分段，原分段被删除。
+     *
+     * @param compactRatio 触发压缩的有效记录比例
+     */
+    public void setCompactRatio(double compactRatio) {
+        this.compactRatio = compactRatio;
+    }
+
+    /**
+     * 获得后台任务执行间隔，单位：毫秒，默认为 1000 毫秒。
+     *
+     * @return 后台任务执行间隔
+     */
+    public int getCleanInterval() {
+        return cleanInterval;
+    }
+
+    /**
+     * 设置后台任务执行间隔，单位：毫秒，后台任务将执行刷盘、过期清理及压缩操作，进程崩溃时不会丢失数据，操作系统崩溃时最多丢失该间隔内写入的数据。
+     *
+     * @param cleanInterval 后台任务执行间隔
+     */
+    public void setCleanInterval(int cleanInterval) {
+        this.cleanInterval = cleanInterval;
+    }
+
+    @Override
+    public String toString() {
+        return "OfflineMessageStoreConfiguration{" +
+                "directory='" + directory + '\'' +
+                ", segmentByteLength=" + segmentByteLength +
+                ", retentionPeriod=" + retentionPeriod +
+                ", compactRatio=" + compactRatio +
+                ", cleanInterval=" + cleanInterval +
+                '}';
+    }
+}
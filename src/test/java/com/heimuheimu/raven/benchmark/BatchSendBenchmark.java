@@ -0,0 +1,166 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.clients.IMClient;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 批量发送基准测试程序，对比逐条发送与批量发送的调用耗时。
+ *
+ * <p>
+ *     该程序启动一个 {@link IMServer}，建立 {@link #CLIENT_COUNT} 个连接并在后台持续读取数据，分别统计：
+ * </p>
+ * <ul>
+ *     <li>向单个 IM 客户端发送 {@link #BATCH_SIZE} 条消息：逐条调用 {@link IMClient#asyncSend(ByteMessage)} 与调用一次
+ *     {@link IMClient#asyncSend(java.util.Collection)} 的平均耗时</li>
+ *     <li>向全部 IM 客户端发送同一条消息：逐个调用 {@link IMClient#asyncSend(ByteMessage)} 与调用一次
+ *     {@link IMServer#asyncSend(java.util.Collection, ByteMessage)} 的平均耗时</li>
+ * </ul>
+ *
+ * <p>
+ *     运行方式：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.BatchSendBenchmark
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class BatchSendBenchmark {
+
+    /**
+     * 测试使用的监听端口
+     */
+    private static final int PORT = 14195;
+
+    /**
+     * 连接的 IM 客户端数量
+     */
+    private static final int CLIENT_COUNT = 200;
+
+    /**
+     * 单个 IM 客户端每批发送的消息数量
+     */
+    private static final int BATCH_SIZE = 50;
+
+    /**
+     * 单个 IM 客户端每轮发送的批次数量
+     */
+    private static final int BATCH_COUNT = 20000;
+
+    /**
+     * 每轮向全部 IM 客户端发送的次数
+     */
+    private static final int FAN_OUT_COUNT = 2000;
+
+    /**
+     * 测试轮数，第一轮为预热
+     */
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] args) throws Exception {
+        IMServerConfiguration configuration = new IMServerConfiguration();
+        configuration.setPort(PORT);
+        configuration.setPoolSize(2);
+        IMServer server = new IMServer(configuration);
+        server.init();
+
+        List<Socket> socketList = new ArrayList<>();
+        try {
+            for (int i = 0; i < CLIENT_COUNT; i++) {
+                Socket socket = new Socket("127.0.0.1", PORT);
+                socketList.add(socket);
+                InputStream inputStream = socket.getInputStream();
+                Thread readThread = new Thread(() -> {
+                    byte[] buffer = new byte[65536];
+                    try {
+                        int readBytes = 0;
+                        while (readBytes >= 0) {
+                            readBytes = inputStream.read(buffer);
+                        }
+                    } catch (Exception ignored) {}
+                });
+                readThread.setDaemon(true);
+                readThread.start();
+            }
+            Thread.sleep(500);
+
+            List<String> clientIdList = new ArrayList<>(server.getEstablishedClientMap().keySet());
+            IMClient client = server.getEstablishedClient(clientIdList.get(0));
+            List<ByteMessage> batch = new ArrayList<>();
+            for (int i = 0; i < BATCH_SIZE; i++) {
+                batch.add(new ByteMessage("m" + i, new byte[100]));
+            }
+            ByteMessage message = new ByteMessage("f", new byte[100]);
+            for (int round = 0; round < ROUNDS; round++) {
+                long startTime = System.nanoTime();
+                for (int i = 0; i < BATCH_COUNT; i++) {
+                    for (ByteMessage batchMessage : batch) {
+                        client.asyncSend(batchMessage);
+                    }
+                }
+                long perMessageTime = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                for (int i = 0; i < BATCH_COUNT; i++) {
+                    client.asyncSend(batch);
+                }
+                long batchedTime = System.nanoTime() - startTime;
+                System.out.printf("round %d%s, one client %d messages: per-message %.1f us/batch, batched %.1f us/batch%n",
+                        round, round == 0 ? " (warmup)" : "", BATCH_SIZE, perMessageTime / 1e3 / BATCH_COUNT, batchedTime / 1e3 / BATCH_COUNT);
+
+                startTime = System.nanoTime();
+                for (int i = 0; i < FAN_OUT_COUNT; i++) {
+                    for (String clientId : clientIdList) {
+                        server.getEstablishedClient(clientId).asyncSend(message);
+                    }
+                }
+                long perClientTime = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                for (int i = 0; i < FAN_OUT_COUNT; i++) {
+                    server.asyncSend(clientIdList, message);
+                }
+                long multicastTime = System.nanoTime() - startTime;
+                System.out.printf("round %d%s, %d clients fan-out: per-client %.1f us/round, multicast %.1f us/round%n",
+                        round, round == 0 ? " (warmup)" : "", CLIENT_COUNT, perClientTime / 1e3 / FAN_OUT_COUNT, multicastTime / 1e3 / FAN_OUT_COUNT);
+                Thread.sleep(1000); // 等待发送缓冲区清空
+            }
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+            server.close();
+        }
+    }
+}
@@ -0,0 +1,174 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.clients.IMClientRegistry;
+import com.heimuheimu.raven.clients.support.IMClientRandomIDGenerator;
+import com.heimuheimu.raven.clients.support.IMClientSequenceIDGenerator;
+import com.heimuheimu.raven.clients.support.IMClientUUIDGenerator;
+
+import java.util.Random;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * IM 客户端 ID 生成及查找基准测试程序，对比 IMServer 在不同 ID 生成器下接收连接（生成 ID 并注册）及通过字符串 ID 查找 IM 客户端的耗时。
+ *
+ * <p>
+ *     参与对比的方式：
+ * </p>
+ * <ul>
+ *     <li>uuid：{@link IMClientUUIDGenerator} 生成 ID，同时注册到字符串 ID 索引（{@link ConcurrentHashMap}）与数字 ID 注册表</li>
+ *     <li>random：默认的 {@link IMClientRandomIDGenerator}，仅注册到数字 ID 注册表，查找时解析数字 ID 后校验完整 ID</li>
+ *     <li>sequence：{@link IMClientSequenceIDGenerator}，仅注册到数字 ID 注册表</li>
+ * </ul>
+ *
+ * <p>
+ *     查找使用新创建的字符串，与从网络中读取的 ID 一致，不会命中 String 已缓存的哈希值。运行方式（参数为 IM 客户端数量，默认为 100 万）：
+ * </p>
+ * <pre>
+ * java -Xmx2g -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.ClientIDBenchmark 1000000
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class ClientIDBenchmark {
+
+    /**
+     * 测试轮数，第一轮为预热
+     */
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] args) {
+        int count = args.length > 0 ? Integer.parseInt(args[0]) : 1000000;
+        long checksum = 0;
+        for (int round = 0; round < ROUNDS; round++) {
+            checksum += runUUID(count, round);
+            checksum += runRandom(count, round);
+            checksum += runSequence(count, round);
+        }
+        System.out.println("checksum: " + checksum);
+    }
+
+    private static long runUUID(int count, int round) {
+        IMClientUUIDGenerator generator = new IMClientUUIDGenerator();
+        ConcurrentHashMap<String, IMClient> clientIdMap = new ConcurrentHashMap<>();
+        IMClientRegistry registry = new IMClientRegistry(20);
+        String[] ids = new String[count];
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            String id = generator.generate();
+            IMClient client = createClient(id, i + 1);
+            clientIdMap.put(id, client);
+            registry.put(client);
+            ids[i] = id;
+        }
+        long acceptTime = System.nanoTime() - startTime;
+        String[] queries = shuffle(ids, round);
+        long checksum = 0;
+        startTime = System.nanoTime();
+        for (String query : queries) {
+            checksum += clientIdMap.get(query).getNumericId();
+        }
+        report("uuid", round, count, acceptTime, System.nanoTime() - startTime);
+        return checksum;
+    }
+
+    private static long runRandom(int count, int round) {
+        IMClientRandomIDGenerator generator = new IMClientRandomIDGenerator();
+        IMClientRegistry registry = new IMClientRegistry(20);
+        String[] ids = new String[count];
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long numericId = generator.generateNumericId();
+            String id = generator.toId(numericId);
+            registry.put(createClient(id, numericId));
+            ids[i] = id;
+        }
+        long acceptTime = System.nanoTime() - startTime;
+        String[] queries = shuffle(ids, round);
+        long checksum = 0;
+        startTime = System.nanoTime();
+        for (String query : queries) {
+            IMClient client = registry.get(generator.toNumericId(query));
+            if (client != null && client.getId().equals(query)) {
+                checksum += client.getNumericId();
+            }
+        }
+        report("random", round, count, acceptTime, System.nanoTime() - startTime);
+        return checksum;
+    }
+
+    private static long runSequence(int count, int round) {
+        IMClientSequenceIDGenerator generator = new IMClientSequenceIDGenerator();
+        IMClientRegistry registry = new IMClientRegistry(20);
+        String[] ids = new String[count];
+        long startTime = System.nanoTime();
+        for (int i = 0; i < count; i++) {
+            long numericId = generator.generateNumericId();
+            String id = generator.toId(numericId);
+            registry.put(createClient(id, numericId));
+            ids[i] = id;
+        }
+        long acceptTime = System.nanoTime() - startTime;
+        String[] queries = shuffle(ids, round);
+        long checksum = 0;
+        startTime = System.nanoTime();
+        for (String query : queries) {
+            checksum += registry.get(generator.toNumericId(query)).getNumericId();
+        }
+        report("sequence", round, count, acceptTime, System.nanoTime() - startTime);
+        return checksum;
+    }
+
+    private static IMClient createClient(String id, long numericId) {
+        return new IMClient(id, numericId, null, null, 0, null, null, null);
+    }
+
+    /**
+     * 打乱 ID 顺序并复制为新的字符串，避免查找时命中已缓存的哈希值及 CPU 缓存。
+     */
+    private static String[] shuffle(String[] ids, int round) {
+        String[] queries = new String[ids.length];
+        for (int i = 0; i < ids.length; i++) {
+            queries[i] = new String(ids[i].toCharArray());
+        }
+        Random random = new Random(round);
+        for (int i = queries.length - 1; i > 0; i--) {
+            int j = random.nextInt(i + 1);
+            String query = queries[i];
+            queries[i] = queries[j];
+            queries[j] = query;
+        }
+        return queries;
+    }
+
+    private static void report(String name, int round, int count, long acceptTime, long lookupTime) {
+        System.out.printf("%s round %d%s: accept %.0f ns/op, lookup %.0f ns/op%n", name, round, round == 0 ? " (warmup)" : "",
+                acceptTime / (double) count, lookupTime / (double) count);
+    }
+}
@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.cluster.IMClusterConfiguration;
+import com.heimuheimu.raven.cluster.support.InMemoryIMClientDirectory;
+
+import java.io.InputStream;
+import java.net.Socket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * 集群路由基准测试程序，在本机启动 {@link #NODE_COUNT} 个集群节点，统计消息路由至其它节点上 IM 客户端的吞吐量，并校验收到的数据。
+ *
+ * <p>
+ *     每个节点各连接一个 IM 客户端，由第一个节点依次执行：
+ * </p>
+ * <ul>
+ *     <li>调用 {@link IMServer#asyncRoute(java.util.Collection, ByteMessage, com.heimuheimu.raven.clients.ByteMessageCallback)}
+ *     向全部 IM 客户端发送一条 {@link #LARGE_MESSAGE_LENGTH} 字节的消息</li>
+ *     <li>调用 {@link IMServer#asyncRoute(String, ByteMessage, com.heimuheimu.raven.clients.ByteMessageCallback)}
+ *     向第二个节点上的 IM 客户端发送指定数量的 100 字节消息</li>
+ * </ul>
+ * <p>
+ *     统计路由调用的提交速率及第二个节点上的 IM 客户端收到全部数据的耗时，并逐字节校验大消息的内容。
+ *     参数为路由的小消息数量（默认为 20 万），例如：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.ClusterRoutingBenchmark 200000
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class ClusterRoutingBenchmark {
+
+    /**
+     * 集群节点数量
+     */
+    private static final int NODE_COUNT = 3;
+
+    /**
+     * 第一个节点监听 IM 客户端的端口，其它节点依次递增
+     */
+    private static final int PORT = 14189;
+
+    /**
+     * 第一个节点监听集群连接的端口，其它节点依次递增
+     */
+    private static final int CLUSTER_PORT = PORT + NODE_COUNT;
+
+    /**
+     * 发送给全部 IM 客户端的大消息字节数
+     */
+    private static final int LARGE_MESSAGE_LENGTH = 3 * 1024 * 1024;
+
+    /**
+     * 路由的小消息字节数
+     */
+    private static final int SMALL_MESSAGE_LENGTH = 100;
+
+    public static void main(String[] args) throws Exception {
+        int messageCount = args.length > 0 ? Integer.parseInt(args[0]) : 200000;
+        InMemoryIMClientDirectory clientDirectory = new InMemoryIMClientDirectory();
+        Map<String, String> nodeAddressMap = new HashMap<>();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodeAddressMap.put("node" + i, "127.0.0.1:" + (CLUSTER_PORT + i));
+        }
+        List<IMServer> serverList = new ArrayList<>();
+        List<Socket> socketList = new ArrayList<>();
+        try {
+            for (int i = 0; i < NODE_COUNT; i++) {
+                IMClusterConfiguration clusterConfiguration = new IMClusterConfiguration();
+                clusterConfiguration.setNodeId("node" + i);
+                clusterConfiguration.setPort(CLUSTER_PORT + i);
+                clusterConfiguration.setNodeAddressMap(nodeAddressMap);
+                clusterConfiguration.setClientDirectory(clientDirectory);
+                clusterConfiguration.setReconnectInterval(200);
+                IMServerConfiguration configuration = new IMServerConfiguration();
+                configuration.setPort(PORT + i);
+                configuration.setPoolSize(1);
+                configuration.setClusterConfiguration(clusterConfiguration);
+                IMServer server = new IMServer(configuration);
+                server.init();
+                serverList.add(server);
+            }
+            Thread.sleep(1000); // 等待节点之间建立连接
+            String[] clientIds = new String[NODE_COUNT];
+            for (int i = 0; i < NODE_COUNT; i++) {
+                socketList.add(new Socket("127.0.0.1", PORT + i));
+            }
+            Thread.sleep(500);
+            for (int i = 0; i < NODE_COUNT; i++) {
+                clientIds[i] = serverList.get(i).getEstablishedClientMap().keySet().iterator().next();
+            }
+
+            IMServer server = serverList.get(0);
+            byte[] largeContent = new byte[LARGE_MESSAGE_LENGTH];
+            for (int i = 0; i < largeContent.length; i++) {
+                largeContent[i] = (byte) i;
+            }
+            long startTime = System.nanoTime();
+            int failedCount = server.asyncRoute(Arrays.asList(clientIds), new ByteMessage("large", largeContent), null).size();
+            byte[] smallContent = new byte[SMALL_MESSAGE_LENGTH];
+            for (int i = 0; i < messageCount; i++) {
+                if (!server.asyncRoute(clientIds[1], new ByteMessage("m" + i, smallContent), null)) {
+                    failedCount++;
+                }
+            }
+            long submitTime = System.nanoTime() - startTime;
+            System.out.printf("submit: %d messages in %.0f ms (%.0f msg/s), failed: %d%n", messageCount,
+                    submitTime / 1e6, messageCount * 1e9 / submitTime, failedCount);
+
+            for (int i = 0; i < NODE_COUNT; i++) {
+                long expectedBytes = LARGE_MESSAGE_LENGTH + (i == 1 ? (long) messageCount * SMALL_MESSAGE_LENGTH : 0);
+                InputStream inputStream = socketList.get(i).getInputStream();
+                byte[] buffer = new byte[65536];
+                long totalBytes = 0;
+                boolean isMatched = true;
+                while (totalBytes < expectedBytes) {
+                    int readBytes = inputStream.read(buffer);
+                    if (readBytes < 0) {
+                        break;
+                    }
+                    for (int j = 0; j < readBytes; j++) {
+                        long position = totalBytes + j;
+                        if (position < LARGE_MESSAGE_LENGTH && buffer[j] != (byte) position) {
+                            isMatched = false;
+                        }
+                    }
+                    totalBytes += readBytes;
+                }
+                System.out.printf("node%d client: received %d/%d bytes, large message matched: %s, elapsed: %.0f ms%n",
+                        i, totalBytes, expectedBytes, isMatched, (System.nanoTime() - startTime) / 1e6);
+            }
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+            for (IMServer server : serverList) {
+                server.close();
+            }
+        }
+    }
+}
@@ -0,0 +1,214 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.cluster.IMClusterConfiguration;
+import com.heimuheimu.raven.cluster.support.GossipIMClientDirectory;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+/**
+ * 在线状态同步基准测试程序，在本机启动 {@link #NODE_COUNT} 个使用 {@link GossipIMClientDirectory} 的集群节点，
+ * 统计在线状态变更同步至其它节点的耗时及查找耗时。
+ *
+ * <p>
+ *     该程序依次执行：
+ * </p>
+ * <ul>
+ *     <li>在第一个节点注册指定数量的 IM 客户端，统计其它节点查找到全部 IM 客户端的耗时、未同步的数量及查找表占用的堆外内存</li>
+ *     <li>统计第一个节点快照数据压缩后的字节数</li>
+ *     <li>在其它节点上查找全部 IM 客户端，与相同数据的 {@link HashMap} 对比平均耗时，查找使用新创建的字符串</li>
+ *     <li>在第一个节点注销一半的 IM 客户端，统计其它节点同步完成的耗时</li>
+ * </ul>
+ * <p>
+ *     参数为注册的 IM 客户端数量（默认为 30 万），例如：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.GossipConvergenceBenchmark 300000
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class GossipConvergenceBenchmark {
+
+    /**
+     * 集群节点数量
+     */
+    private static final int NODE_COUNT = 3;
+
+    /**
+     * 第一个节点监听 IM 客户端的端口，其它节点依次递增
+     */
+    private static final int PORT = 14189;
+
+    /**
+     * 第一个节点监听集群连接的端口，其它节点依次递增
+     */
+    private static final int CLUSTER_PORT = PORT + NODE_COUNT;
+
+    /**
+     * 等待同步时抽样检查的间隔
+     */
+    private static final int SAMPLE_STEP = 997;
+
+    /**
+     * 查找测试轮数，第一轮为预热
+     */
+    private static final int ROUNDS = 4;
+
+    public static void main(String[] args) throws Exception {
+        int clientCount = args.length > 0 ? Integer.parseInt(args[0]) : 300000;
+        Map<String, String> nodeAddressMap = new HashMap<>();
+        for (int i = 0; i < NODE_COUNT; i++) {
+            nodeAddressMap.put("node" + i, "127.0.0.1:" + (CLUSTER_PORT + i));
+        }
+        List<IMServer> serverList = new ArrayList<>();
+        GossipIMClientDirectory[] directories = new GossipIMClientDirectory[NODE_COUNT];
+        try {
+            for (int i = 0; i < NODE_COUNT; i++) {
+                directories[i] = new GossipIMClientDirectory("node" + i);
+                IMClusterConfiguration clusterConfiguration = new IMClusterConfiguration();
+                clusterConfiguration.setNodeId("node" + i);
+                clusterConfiguration.setPort(CLUSTER_PORT + i);
+                clusterConfiguration.setNodeAddressMap(nodeAddressMap);
+                clusterConfiguration.setClientDirectory(directories[i]);
+                clusterConfiguration.setReconnectInterval(200);
+                IMServerConfiguration configuration = new IMServerConfiguration();
+                configuration.setPort(PORT + i);
+                configuration.setPoolSize(1);
+                configuration.setClusterConfiguration(clusterConfiguration);
+                IMServer server = new IMServer(configuration);
+                server.init();
+                serverList.add(server);
+            }
+            Thread.sleep(1000); // 等待节点之间建立连接
+
+            String[] clientIds = new String[clientCount];
+            for (int i = 0; i < clientCount; i++) {
+                clientIds[i] = UUID.randomUUID().toString().replace("-", "");
+            }
+            long startTime = System.nanoTime();
+            for (String clientId : clientIds) {
+                directories[0].register(clientId, "node0");
+            }
+            long registerTime = System.nanoTime() - startTime;
+            for (int i = 1; i < NODE_COUNT; i++) {
+                while (!isRegistered(directories[i], clientIds)) {
+                    Thread.sleep(1);
+                }
+            }
+            long convergedTime = System.nanoTime() - startTime;
+            int missCount = 0;
+            for (int i = 1; i < NODE_COUNT; i++) {
+                for (String clientId : clientIds) {
+                    if (!"node0".equals(directories[i].lookup(clientId))) {
+                        missCount++;
+                    }
+                }
+            }
+            System.out.printf("register %d clients: %.0f ms, converged on peers: %.0f ms, miss: %d, peer table: %d bytes%n",
+                    clientCount, registerTime / 1e6, convergedTime / 1e6, missCount, directories[1].getTableByteLength());
+
+            long snapshotBytes = 0;
+            for (byte[] chunk : directories[0].snapshot()) {
+                snapshotBytes += chunk.length;
+            }
+            long rawBytes = 0;
+            for (String clientId : clientIds) {
+                rawBytes += clientId.length();
+            }
+            System.out.printf("snapshot: %d compressed bytes, %d bytes of client ids (%.0f%%)%n", snapshotBytes, rawBytes,
+                    snapshotBytes * 100.0 / rawBytes);
+
+            Map<String, String> clientNodeMap = new HashMap<>();
+            for (String clientId : clientIds) {
+                clientNodeMap.put(clientId, "node0");
+            }
+            for (int round = 0; round < ROUNDS; round++) {
+                String[] queries = new String[clientCount];
+                for (int i = 0; i < clientCount; i++) {
+                    queries[i] = new String(clientIds[i].toCharArray());
+                }
+                int hitCount = 0;
+                startTime = System.nanoTime();
+                for (String query : queries) {
+                    if (directories[1].lookup(query) != null) {
+                        hitCount++;
+                    }
+                }
+                long directoryTime = System.nanoTime() - startTime;
+                for (int i = 0; i < clientCount; i++) {
+                    queries[i] = new String(clientIds[i].toCharArray());
+                }
+                startTime = System.nanoTime();
+                for (String query : queries) {
+                    if (clientNodeMap.get(query) != null) {
+                        hitCount++;
+                    }
+                }
+                long mapTime = System.nanoTime() - startTime;
+                System.out.printf("lookup round %d%s: directory %.0f ns/op, HashMap %.0f ns/op, hit: %d%n", round,
+                        round == 0 ? " (warmup)" : "", directoryTime / (double) clientCount, mapTime / (double) clientCount, hitCount);
+            }
+
+            startTime = System.nanoTime();
+            for (int i = 0; i < clientCount; i += 2) {
+                directories[0].unregister(clientIds[i], "node0");
+            }
+            int remainingCount = clientCount / 2;
+            for (int i = 1; i < NODE_COUNT; i++) {
+                while (directories[i].size() > remainingCount) {
+                    Thread.sleep(1);
+                }
+            }
+            System.out.printf("unregister %d clients: converged on peers: %.0f ms, peer size: %d%n", clientCount - remainingCount,
+                    (System.nanoTime() - startTime) / 1e6, directories[1].size());
+        } finally {
+            for (IMServer server : serverList) {
+                server.close();
+            }
+        }
+    }
+
+    /**
+     * 抽样检查 IM 客户端是否已同步至该节点，最后注册的 IM 客户端总是被检查。
+     */
+    private static boolean isRegistered(GossipIMClientDirectory directory, String[] clientIds) {
+        for (int i = 0; i < clientIds.length; i += SAMPLE_STEP) {
+            if (directory.lookup(clientIds[i]) == null) {
+                return false;
+            }
+        }
+        return directory.lookup(clientIds[clientIds.length - 1]) != null;
+    }
+}
@@ -0,0 +1,144 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMClientAdmissionConfiguration;
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+
+import java.io.File;
+import java.lang.management.ManagementFactory;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * 空闲连接内存占用基准测试程序，统计每个已建立但无数据往来的 IM 客户端占用的堆内存字节数。
+ *
+ * <p>
+ *     该程序启动一个 {@link IMServer}，并 fork 一个子进程向其建立指定数量的空闲连接，子进程中的连接对象不会计入服务端的堆内存。
+ *     连接将轮流使用 127.0.0.1 ~ 127.0.0.250 作为目标地址，每个地址最多建立 {@link #CONNECTIONS_PER_ADDRESS} 个连接，
+ *     避免单个目标地址的本地端口耗尽。
+ * </p>
+ *
+ * <p>
+ *     运行前需保证当前用户的最大文件描述符数量大于连接数量（服务端与子进程各占用一份），例如 10 万连接：
+ * </p>
+ * <pre>
+ * ulimit -n 110000
+ * java -Xmx4g -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.IdleClientMemoryBenchmark 100000
+ * </pre>
+ *
+ * <p>
+ *     100 万连接还需调大 {@code net.ipv4.ip_local_port_range}、{@code fs.nr_open} 及 {@code net.core.somaxconn} 等内核参数。
+ *     该程序仅用于人工验证，不会被单元测试执行。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public class IdleClientMemoryBenchmark {
+
+    /**
+     * 每个目标地址最多建立的连接数量
+     */
+    private static final int CONNECTIONS_PER_ADDRESS = 20000;
+
+    /**
+     * 等待连接全部建立的最长时间，单位：毫秒
+     */
+    private static final long CONNECT_TIMEOUT = 10 * 60 * 1000;
+
+    public static void main(String[] args) throws Exception {
+        if (args.length > 0 && "connect".equals(args[0])) {
+            connect(Integer.parseInt(args[1]), Integer.parseInt(args[2]));
+            return;
+        }
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 100000;
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 14195;
+
+        IMServerConfiguration configuration = new IMServerConfiguration();
+        configuration.setPort(port);
+        configuration.setBacklog(4096);
+        configuration.setPoolSize(Runtime.getRuntime().availableProcessors());
+        IMClientAdmissionConfiguration admissionConfiguration = new IMClientAdmissionConfiguration();
+        admissionConfiguration.setAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAcceptBurst(Integer.MAX_VALUE);
+        admissionConfiguration.setMaxHandshakeCount(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptBurst(Integer.MAX_VALUE);
+        configuration.setAdmissionConfiguration(admissionConfiguration);
+        IMServer server = new IMServer(configuration);
+        server.init();
+
+        Process connector = null;
+        try {
+            long baseline = getUsedHeap();
+            String java = System.getProperty("java.home") + File.separator + "bin" + File.separator + "java";
+            connector = new ProcessBuilder(java, "-cp", System.getProperty("java.class.path"),
+                    IdleClientMemoryBenchmark.class.getName(), "connect", String.valueOf(port), String.valueOf(connections))
+                    .inheritIO().start();
+            long deadline = System.currentTimeMillis() + CONNECT_TIMEOUT;
+            while (server.getEstablishedClientCount() < connections) {
+                if (!connector.isAlive() || System.currentTimeMillis() > deadline) {
+                    System.err.println("Connector exits before all connections are established. `established`:`"
+                            + server.getEstablishedClientCount() + "`. `expected`:`" + connections + "`.");
+                    return;
+                }
+                Thread.sleep(100);
+            }
+            Thread.sleep(1000);
+            long used = getUsedHeap();
+            System.out.printf("connections: %d, heap delta: %d bytes, per connection: %.0f bytes%n",
+                    connections, used - baseline, (used - baseline) / (double) connections);
+        } finally {
+            if (connector != null) {
+                connector.destroy();
+            }
+            server.close();
+        }
+    }
+
+    /**
+     * 子进程执行的方法，向本机指定端口建立空闲连接后保持，直至被父进程结束。
+     */
+    private static void connect(int port, int connections) throws Exception {
+        List<SocketChannel> channelList = new ArrayList<>(connections);
+        for (int i = 0; i < connections; i++) {
+            String host = "127.0.0." + (1 + (i / CONNECTIONS_PER_ADDRESS) % 250);
+            channelList.add(SocketChannel.open(new InetSocketAddress(host, port)));
+        }
+        System.out.println("Connected: " + channelList.size());
+        Thread.sleep(Long.MAX_VALUE);
+    }
+
+    private static long getUsedHeap() throws InterruptedException {
+        for (int i = 0; i < 4; i++) {
+            System.gc();
+            Thread.sleep(100);
+        }
+        return ManagementFactory.getMemoryMXBean().getHeapMemoryUsage().getUsed();
+    }
+}
@@ -0,0 +1,110 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.store.OfflineMessageStore;
+import com.heimuheimu.raven.store.OfflineMessageStoreConfiguration;
+
+import java.io.File;
+import java.nio.file.Files;
+
+/**
+ * 离线消息存储基准测试程序，统计 {@link OfflineMessageStore} 的写入及回放吞吐量。
+ *
+ * <p>
+ *     该程序在临时目录中创建离线消息存储，每轮向 {@link #RECIPIENT_COUNT} 个接收者依次写入指定数量的消息，再逐个取出全部消息，
+ *     第一轮为预热。参数依次为消息内容字节数（默认为 100）、每轮写入的消息数量（默认为 20 万），例如：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.OfflineMessageStoreBenchmark 100 200000
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.OfflineMessageStoreBenchmark 1024 200000
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class OfflineMessageStoreBenchmark {
+
+    /**
+     * 接收者数量
+     */
+    private static final int RECIPIENT_COUNT = 2000;
+
+    /**
+     * 分段文件大小
+     */
+    private static final int SEGMENT_BYTE_LENGTH = 8 * 1024 * 1024;
+
+    /**
+     * 测试轮数，第一轮为预热
+     */
+    private static final int ROUNDS = 3;
+
+    public static void main(String[] args) throws Exception {
+        int contentLength = args.length > 0 ? Integer.parseInt(args[0]) : 100;
+        int messageCount = args.length > 1 ? Integer.parseInt(args[1]) : 200000;
+        File directory = Files.createTempDirectory("raven-offline-benchmark").toFile();
+        OfflineMessageStoreConfiguration configuration = new OfflineMessageStoreConfiguration();
+        configuration.setDirectory(directory.getAbsolutePath());
+        configuration.setSegmentByteLength(SEGMENT_BYTE_LENGTH);
+        OfflineMessageStore store = new OfflineMessageStore(configuration);
+        store.init();
+        try {
+            String[] recipients = new String[RECIPIENT_COUNT];
+            for (int i = 0; i < RECIPIENT_COUNT; i++) {
+                recipients[i] = "user" + i;
+            }
+            byte[] content = new byte[contentLength];
+            for (int round = 0; round < ROUNDS; round++) {
+                long startTime = System.nanoTime();
+                for (int i = 0; i < messageCount; i++) {
+                    store.append(recipients[i % RECIPIENT_COUNT], new ByteMessage("m" + i, content));
+                }
+                long appendTime = System.nanoTime() - startTime;
+                startTime = System.nanoTime();
+                long replayCount = 0;
+                for (String recipient : recipients) {
+                    replayCount += store.take(recipient).size();
+                }
+                long replayTime = System.nanoTime() - startTime;
+                System.out.printf("round %d%s, content %d B: append %.0f msg/s (%.1f MB/s), replay %.0f msg/s (%.1f MB/s), segments %d%n",
+                        round, round == 0 ? " (warmup)" : "", contentLength,
+                        messageCount * 1e9 / appendTime, (double) messageCount * contentLength * 1e3 / appendTime,
+                        replayCount * 1e9 / replayTime, (double) replayCount * contentLength * 1e3 / replayTime, store.getSegmentCount());
+            }
+        } finally {
+            store.close();
+            File[] files = directory.listFiles();
+            if (files != null) {
+                for (File file : files) {
+                    Files.deleteIfExists(file.toPath());
+                }
+            }
+            Files.deleteIfExists(directory.toPath());
+        }
+    }
+}
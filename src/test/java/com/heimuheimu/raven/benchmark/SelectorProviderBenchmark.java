@@ -0,0 +1,175 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMClientAdmissionConfiguration;
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.clients.IMClientListenerSkeleton;
+import com.heimuheimu.raven.clients.IMClientManagerConfiguration;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * SelectorProvider 基准测试程序，对比不同 SelectorProvider 在存在大量空闲连接时的回显吞吐量及延迟。
+ *
+ * <p>
+ *     该程序启动一个回显数据的 {@link IMServer}，先建立指定数量的空闲连接，再由 {@link #ECHO_CLIENT_COUNT} 个线程各自通过一个连接
+ *     发送 64 字节数据并等待回显，统计每秒往返次数及 P50、P99、P999 延迟。未指定 SelectorProvider 时使用 JDK 默认实现，例如：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.SelectorProviderBenchmark 5000
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.SelectorProviderBenchmark 5000 sun.nio.ch.PollSelectorProvider
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class SelectorProviderBenchmark {
+
+    /**
+     * 测试使用的监听端口
+     */
+    private static final int PORT = 14195;
+
+    /**
+     * 发送数据的连接数量
+     */
+    private static final int ECHO_CLIENT_COUNT = 4;
+
+    /**
+     * 每个连接的往返次数
+     */
+    private static final int ITERATIONS = 20000;
+
+    public static void main(String[] args) throws Exception {
+        int idleCount = args.length > 0 ? Integer.parseInt(args[0]) : 0;
+        String selectorProvider = args.length > 1 ? args[1] : null;
+
+        IMServerConfiguration configuration = new IMServerConfiguration();
+        configuration.setPort(PORT);
+        configuration.setPoolSize(2);
+        IMClientAdmissionConfiguration admissionConfiguration = new IMClientAdmissionConfiguration();
+        admissionConfiguration.setAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAcceptBurst(Integer.MAX_VALUE);
+        admissionConfiguration.setMaxHandshakeCount(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptBurst(Integer.MAX_VALUE);
+        configuration.setAdmissionConfiguration(admissionConfiguration);
+        IMClientManagerConfiguration managerConfiguration = new IMClientManagerConfiguration();
+        managerConfiguration.setSelectorProvider(selectorProvider);
+        configuration.setClientManagerConfiguration(managerConfiguration);
+        AtomicLong messageId = new AtomicLong();
+        configuration.setClientListener(new IMClientListenerSkeleton() {
+
+            @Override
+            public void onReceived(IMClient client, ByteBuffer buffer) {
+                byte[] content = new byte[buffer.remaining()];
+                buffer.get(content);
+                client.asyncSend(new ByteMessage(String.valueOf(messageId.incrementAndGet()), content));
+            }
+        });
+        IMServer server = new IMServer(configuration);
+        server.init();
+
+        List<Socket> socketList = new ArrayList<>();
+        try {
+            for (int i = 0; i < idleCount; i++) {
+                socketList.add(new Socket("127.0.0.1", PORT));
+            }
+            Socket[] echoSockets = new Socket[ECHO_CLIENT_COUNT];
+            for (int i = 0; i < ECHO_CLIENT_COUNT; i++) {
+                echoSockets[i] = new Socket("127.0.0.1", PORT);
+                echoSockets[i].setTcpNoDelay(true);
+                socketList.add(echoSockets[i]);
+            }
+            Thread.sleep(1000);
+
+            long[][] latencies = new long[ECHO_CLIENT_COUNT][];
+            Thread[] threads = new Thread[ECHO_CLIENT_COUNT];
+            long startTime = System.nanoTime();
+            for (int i = 0; i < ECHO_CLIENT_COUNT; i++) {
+                final int index = i;
+                threads[i] = new Thread(() -> latencies[index] = echo(echoSockets[index]));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsedTime = System.nanoTime() - startTime;
+
+            long[] allLatencies = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("provider: %s, idle: %d, rtt/s: %.0f, p50: %dus, p99: %dus, p999: %dus%n",
+                    server.getManagerList().get(0).getSelector().provider().getClass().getName(), idleCount,
+                    allLatencies.length * 1e9 / elapsedTime, percentile(allLatencies, 0.5), percentile(allLatencies, 0.99),
+                    percentile(allLatencies, 0.999));
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+            server.close();
+        }
+    }
+
+    private static long[] echo(Socket socket) {
+        long[] latencies = new long[ITERATIONS];
+        byte[] request = new byte[64];
+        byte[] response = new byte[64];
+        try {
+            OutputStream outputStream = socket.getOutputStream();
+            InputStream inputStream = socket.getInputStream();
+            for (int i = 0; i < ITERATIONS; i++) {
+                long startTime = System.nanoTime();
+                outputStream.write(request);
+                int readBytes = 0;
+                while (readBytes < response.length) {
+                    int n = inputStream.read(response, readBytes, response.length - readBytes);
+                    if (n < 0) {
+                        throw new IllegalStateException("Connection closed.");
+                    }
+                    readBytes += n;
+                }
+                latencies[i] = System.nanoTime() - startTime;
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Echo failed.", e);
+        }
+        return latencies;
+    }
+
+    private static long percentile(long[] sortedLatencies, double percentile) {
+        return sortedLatencies[(int) (sortedLatencies.length * percentile)] / 1000;
+    }
+}
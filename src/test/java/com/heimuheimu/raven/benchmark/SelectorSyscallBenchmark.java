@@ -0,0 +1,197 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.benchmark;
+
+import com.heimuheimu.raven.IMClientAdmissionConfiguration;
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.clients.ByteMessage;
+import com.heimuheimu.raven.clients.IMClient;
+import com.heimuheimu.raven.clients.IMClientListenerSkeleton;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * 系统调用次数基准测试程序，统计 IMClientManager 事件循环在回显场景下每次往返产生的 read、write 系统调用次数。
+ *
+ * <p>
+ *     该程序启动一个回显数据的 {@link IMServer}，先建立指定数量的空闲连接，再由 {@link #ECHO_CLIENT_COUNT} 个线程各自通过一个连接
+ *     发送数据并等待回显，通过 /proc/self/io 中的 syscr、syscw 统计每次往返的系统调用次数（包括同一进程中客户端的调用，
+ *     每次往返客户端至少产生一次 read 及一次 write），同时输出每秒往返次数及 P50、P99 延迟。该程序仅支持 Linux。
+ *     参数依次为每次发送的字节数（默认为 64）、空闲连接数量（默认为 0），例如：
+ * </p>
+ * <pre>
+ * java -cp &lt;classpath&gt; com.heimuheimu.raven.benchmark.SelectorSyscallBenchmark 64 1000
+ * </pre>
+ *
+ * <p>该程序仅用于人工验证，不会被单元测试执行。</p>
+ *
+ * @author heimuheimu
+ */
+public class SelectorSyscallBenchmark {
+
+    /**
+     * 测试使用的监听端口
+     */
+    private static final int PORT = 14195;
+
+    /**
+     * 发送数据的连接数量
+     */
+    private static final int ECHO_CLIENT_COUNT = 4;
+
+    /**
+     * 每个连接的往返次数
+     */
+    private static final int ITERATIONS = 20000;
+
+    /**
+     * 当前进程的 IO 统计文件
+     */
+    private static final Path PROC_IO_PATH = Paths.get("/proc/self/io");
+
+    public static void main(String[] args) throws Exception {
+        int messageLength = args.length > 0 ? Integer.parseInt(args[0]) : 64;
+        int idleCount = args.length > 1 ? Integer.parseInt(args[1]) : 0;
+        if (!Files.isReadable(PROC_IO_PATH)) {
+            System.out.println("SelectorSyscallBenchmark requires " + PROC_IO_PATH + ".");
+            return;
+        }
+
+        IMServerConfiguration configuration = new IMServerConfiguration();
+        configuration.setPort(PORT);
+        configuration.setPoolSize(2);
+        IMClientAdmissionConfiguration admissionConfiguration = new IMClientAdmissionConfiguration();
+        admissionConfiguration.setAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAcceptBurst(Integer.MAX_VALUE);
+        admissionConfiguration.setMaxHandshakeCount(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptRate(Integer.MAX_VALUE);
+        admissionConfiguration.setAddressAcceptBurst(Integer.MAX_VALUE);
+        configuration.setAdmissionConfiguration(admissionConfiguration);
+        AtomicLong messageId = new AtomicLong();
+        configuration.setClientListener(new IMClientListenerSkeleton() {
+
+            @Override
+            public void onReceived(IMClient client, ByteBuffer buffer) {
+                byte[] content = new byte[buffer.remaining()];
+                buffer.get(content);
+                client.asyncSend(new ByteMessage(String.valueOf(messageId.incrementAndGet()), content));
+            }
+        });
+        IMServer server = new IMServer(configuration);
+        server.init();
+
+        List<Socket> socketList = new ArrayList<>();
+        try {
+            for (int i = 0; i < idleCount; i++) {
+                socketList.add(new Socket("127.0.0.1", PORT));
+            }
+            Socket[] echoSockets = new Socket[ECHO_CLIENT_COUNT];
+            for (int i = 0; i < ECHO_CLIENT_COUNT; i++) {
+                echoSockets[i] = new Socket("127.0.0.1", PORT);
+                echoSockets[i].setTcpNoDelay(true);
+                socketList.add(echoSockets[i]);
+            }
+            Thread.sleep(1000);
+
+            long[][] latencies = new long[ECHO_CLIENT_COUNT][];
+            Thread[] threads = new Thread[ECHO_CLIENT_COUNT];
+            long[] startSyscalls = readSyscalls();
+            long startTime = System.nanoTime();
+            for (int i = 0; i < ECHO_CLIENT_COUNT; i++) {
+                final int index = i;
+                threads[i] = new Thread(() -> latencies[index] = echo(echoSockets[index], messageLength));
+                threads[i].start();
+            }
+            for (Thread thread : threads) {
+                thread.join();
+            }
+            long elapsedTime = System.nanoTime() - startTime;
+            long[] endSyscalls = readSyscalls();
+
+            long[] allLatencies = Arrays.stream(latencies).flatMapToLong(Arrays::stream).sorted().toArray();
+            System.out.printf("size: %d, idle: %d, read syscalls/rtt: %.2f, write syscalls/rtt: %.2f, rtt/s: %.0f, p50: %dus, p99: %dus%n",
+                    messageLength, idleCount, (endSyscalls[0] - startSyscalls[0]) / (double) allLatencies.length,
+                    (endSyscalls[1] - startSyscalls[1]) / (double) allLatencies.length, allLatencies.length * 1e9 / elapsedTime,
+                    allLatencies[allLatencies.length / 2] / 1000, allLatencies[(int) (allLatencies.length * 0.99)] / 1000);
+        } finally {
+            for (Socket socket : socketList) {
+                socket.close();
+            }
+            server.close();
+        }
+    }
+
+    private static long[] echo(Socket socket, int messageLength) {
+        long[] latencies = new long[ITERATIONS];
+        byte[] request = new byte[messageLength];
+        byte[] response = new byte[messageLength];
+        try {
+            OutputStream outputStream = socket.getOutputStream();
+            InputStream inputStream = socket.getInputStream();
+            for (int i = 0; i < ITERATIONS; i++) {
+                long startTime = System.nanoTime();
+                outputStream.write(request);
+                int readBytes = 0;
+                while (readBytes < response.length) {
+                    int n = inputStream.read(response, readBytes, response.length - readBytes);
+                    if (n < 0) {
+                        throw new IllegalStateException("Connection closed.");
+                    }
+                    readBytes += n;
+                }
+                latencies[i] = System.nanoTime() - startTime;
+            }
+        } catch (Exception e) {
+            throw new IllegalStateException("Echo failed.", e);
+        }
+        return latencies;
+    }
+
+    /**
+     * 读取当前进程累计的 read、write 系统调用次数。
+     */
+    private static long[] readSyscalls() throws Exception {
+        long[] syscalls = new long[2];
+        for (String line : Files.readAllLines(PROC_IO_PATH)) {
+            if (line.startsWith("syscr:")) {
+                syscalls[0] = Long.parseLong(line.substring(6).trim());
+            } else if (line.startsWith("syscw:")) {
+                syscalls[1] = Long.parseLong(line.substring(6).trim());
+            }
+        }
+        return syscalls;
+    }
+}
@@ -0,0 +1,198 @@
+/*
+ * The MIT License (MIT)
+ *
+ * Copyright (c) 2019 heimuheimu
+ *
+ * Permission is hereby granted, free of charge, to any person obtaining a copy
+ * of this software and associated documentation files (the "Software"), to deal
+ * in the Software without restriction, including without limitation the rights
+ * to use, copy, modify, merge, publish, distribute, sublicense, and/or sell
+ * copies of the Software, and to permit persons to whom the Software is
+ * furnished to do so, subject to the following conditions:
+ *
+ * The above copyright notice and this permission notice shall be included in all
+ * copies or substantial portions of the Software.
+ *
+ * THE SOFTWARE IS PROVIDED "AS IS", WITHOUT WARRANTY OF ANY KIND, EXPRESS OR
+ * IMPLIED, INCLUDING BUT NOT LIMITED TO THE WARRANTIES OF MERCHANTABILITY,
+ * FITNESS FOR A PARTICULAR PURPOSE AND NONINFRINGEMENT. IN NO EVENT SHALL THE
+ * AUTHORS OR COPYRIGHT HOLDERS BE LIABLE FOR ANY CLAIM, DAMAGES OR OTHER
+ * LIABILITY, WHETHER IN AN ACTION OF CONTRACT, TORT OR OTHERWISE, ARISING FROM,
+ * OUT OF OR IN CONNECTION WITH THE SOFTWARE OR THE USE OR OTHER DEALINGS IN THE
+ * SOFTWARE.
+ */
+
+package com.heimuheimu.raven.clients;
+
+import com.heimuheimu.raven.IMServer;
+import com.heimuheimu.raven.IMServerConfiguration;
+import com.heimuheimu.raven.monitor.IMClientManagerMonitor;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.Selector;
+
+/**
+ * IMClientManager Selector 线程内存分配测试，校验空闲轮次（仅被唤醒）及繁忙轮次（持续读取数据）中 Selector 线程不分配任何内存。
+ *
+ * <p>
+ *     通过 {@link com.sun.management.ThreadMXBean#getThreadAllocatedBytes(long)} 统计 Selector 线程在每个检查周期内分配的字节数，
+ *     预热周期的内存分配（JIT 编译、类加载等）不计入检查结果。JDK 9 及以上版本需开放 {@code sun.nio.ch}（已在 pom.xml 的 jdk9+
+ *     profile 中配置），否则 IM 客户端管理器无法替换已选择键集合，测试将被跳过。
+ * </p>
+ *
+ * @author heimuheimu
+ */
+public class IMClientManagerAllocationTest {
+
+    /**
+     * 测试使用的监听端口
+     */
+    private static final int PORT = 14195;
+
+    /**
+     * 连接的 IM 客户端数量
+     */
+    private static final int CLIENT_COUNT = 8;
+
+    /**
+     * 预热周期数
+     */
+    private static final int WARMUP_ROUNDS = 3;
+
+    /**
+     * 检查周期数
+     */
+    private static final int CHECK_ROUNDS = 3;
+
+    /**
+     * 每个空闲周期唤醒 Selector 的次数
+     */
+    private static final int IDLE_WAKEUP_COUNT = 200000;
+
+    /**
+     * 每个繁忙周期每个 IM 客户端发送的数据包数量
+     */
+    private static final int BUSY_PACKET_COUNT = 50000;
+
+    private static final com.sun.management.ThreadMXBean THREAD_MX_BEAN =
+            (com.sun.management.ThreadMXBean) ManagementFactory.getThreadMXBean();
+
+    private static IMServer server;
+
+    private static Socket[] sockets;
+
+    private static IMClientManager manager;
+
+    private static long selectorThreadId;
+
+    @BeforeClass
+    public static void setUp() throws Exception {
+        Assume.assumeTrue("Thread allocated memory is not supported.", THREAD_MX_BEAN.isThreadAllocatedMemorySupported());
+        try (Selector selector = Selector.open()) {
+            IMClientSelectedKeySet.install(selector);
+        } catch (Exception e) {
+            Assume.assumeNoException("Selected-key set can not be installed.", e);
+        }
+        THREAD_MX_BEAN.setThreadAllocatedMemoryEnabled(true);
+
+        IMServerConfiguration configuration = new IMServerConfiguration();
+        configuration.setPort(PORT);
+        configuration.setPoolSize(1);
+        configuration.setClientListener(new IMClientListenerSkeleton() {
+
+            @Override
+            public void onReceived(IMClient client, ByteBuffer buffer) {
+                buffer.position(buffer.limit());
+            }
+        });
+        server = new IMServer(configuration);
+        server.init();
+        sockets = new Socket[CLIENT_COUNT];
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            sockets[i] = new Socket("127.0.0.1", PORT);
+            sockets[i].setTcpNoDelay(true);
+        }
+        Thread.sleep(500);
+        manager = server.getManagerList().get(0);
+        selectorThreadId = getThreadId(manager.getName());
+    }
+
+    @AfterClass
+    public static void tearDown() throws Exception {
+        if (sockets != null) {
+            for (Socket socket : sockets) {
+                if (socket != null) {
+                    socket.close();
+                }
+            }
+        }
+        if (server != null) {
+            server.close();
+        }
+    }
+
+    @Test
+    public void testIdleSelect() throws Exception {
+        Selector selector = manager.getSelector();
+        for (int round = 0; round < WARMUP_ROUNDS + CHECK_ROUNDS; round++) {
+            long startAllocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(selectorThreadId);
+            for (int i = 0; i < IDLE_WAKEUP_COUNT; i++) {
+                selector.wakeup();
+                if ((i & 63) == 0) {
+                    Thread.yield();
+                }
+            }
+            Thread.sleep(200);
+            long allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(selectorThreadId) - startAllocatedBytes;
+            if (round >= WARMUP_ROUNDS) {
+                Assert.assertEquals("Idle round " + round + " allocated bytes.", 0, allocatedBytes);
+            }
+        }
+    }
+
+    @Test
+    public void testBusySelect() throws Exception {
+        IMClientManagerMonitor monitor = IMClientManagerMonitor.getInstance();
+        OutputStream[] outputStreams = new OutputStream[CLIENT_COUNT];
+        for (int i = 0; i < CLIENT_COUNT; i++) {
+            outputStreams[i] = sockets[i].getOutputStream();
+        }
+        byte[] packet = new byte[64];
+        for (int round = 0; round < WARMUP_ROUNDS + CHECK_ROUNDS; round++) {
+            long startReadableCount = monitor.getReadableClientCount();
+            long startAllocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(selectorThreadId);
+            for (int i = 0; i < BUSY_PACKET_COUNT; i++) {
+                for (OutputStream outputStream : outputStreams) {
+                    outputStream.write(packet);
+                }
+                if ((i & 15) == 0) {
+                    Thread.sleep(0, 1);
+                }
+            }
+            Thread.sleep(300);
+            long allocatedBytes = THREAD_MX_BEAN.getThreadAllocatedBytes(selectorThreadId) - startAllocatedBytes;
+            if (round >= WARMUP_ROUNDS) {
+                Assert.assertTrue("Busy round " + round + " has no readable event.",
+                        monitor.getReadableClientCount() > startReadableCount);
+                Assert.assertEquals("Busy round " + round + " allocated bytes.", 0, allocatedBytes);
+            }
+        }
+    }
+
+    private static long getThreadId(String threadName) {
+        for (Thread thread : Thread.getAllStackTraces().keySet()) {
+            if (thread.getName().equals(threadName)) {
+                return thread.getId();
+            }
+        }
+        throw new IllegalStateException("Selector thread not found: `" + threadName + "`.");
+    }
+}